@@ -9,7 +9,10 @@ group = "vn.hoangtung"
 version = "0.0.1-SNAPSHOT"
 
 java {
-	sourceCompatibility = JavaVersion.VERSION_17
+	// Java 21 để chạy được hoangtung.ai.executor.mode=virtual (virtual thread)
+	toolchain {
+		languageVersion = JavaLanguageVersion.of(21)
+	}
 }
 springBoot {
     mainClass.set("vn.hoangtung.jobfind.JobFindApplication")
@@ -35,6 +38,7 @@ dependencies {
 	implementation("org.springframework.boot:spring-boot-starter-thymeleaf")
 	implementation("org.springframework.boot:spring-boot-starter-validation")
 	implementation("org.apache.pdfbox:pdfbox:3.0.2")
+	implementation("com.github.ben-manes.caffeine:caffeine")
 	implementation("org.springframework.boot:spring-boot-starter-web")
 	implementation("org.thymeleaf.extras:thymeleaf-extras-springsecurity6")
 	implementation("com.turkraft.springfilter:jpa:3.1.7")
@@ -54,3 +58,24 @@ dependencies {
 tasks.withType<Test> {
 	useJUnitPlatform()
 }
+
+tasks.named<Test>("test") {
+	useJUnitPlatform {
+		// benchmark chạy riêng bằng ./gradlew benchmark
+		excludeTags("benchmark")
+	}
+}
+
+tasks.register<Test>("benchmark") {
+	description = "Đo JobFeatureIndex trên catalogue 10k/100k/1M job"
+	group = "verification"
+	testClassesDirs = sourceSets.test.get().output.classesDirs
+	classpath = sourceSets.test.get().runtimeClasspath
+	useJUnitPlatform {
+		includeTags("benchmark")
+	}
+	maxHeapSize = "4g"
+	systemProperty("benchmark.sizes", providers.gradleProperty("benchmark.sizes").getOrElse("10000,100000,1000000"))
+	testLogging.showStandardStreams = true
+	outputs.upToDateWhen { false }
+}
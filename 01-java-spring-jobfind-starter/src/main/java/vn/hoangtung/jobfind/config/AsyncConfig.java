@@ -2,8 +2,11 @@ package vn.hoangtung.jobfind.config;
 
 import java.util.concurrent.ThreadPoolExecutor;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.core.task.TaskDecorator;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
@@ -11,21 +14,42 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import vn.hoangtung.jobfind.util.ai.TaskTypeBulkhead;
+
 @Configuration
 @EnableAsync
 @EnableScheduling
 public class AsyncConfig {
 
+    public static final String MODE_VIRTUAL = "virtual";
+
+    @Value("${hoangtung.ai.executor.mode:platform}")
+    private String executorMode;
+
     /**
-     * ThreadPool riêng cho AI tasks.
+     * Executor riêng cho AI tasks, chọn theo hoangtung.ai.executor.mode:
+     *
+     * platform (mặc định) - ThreadPool cố định:
      * - corePoolSize=4: luôn giữ 4 thread sẵn sàng
      * - maxPoolSize=8: scale lên tối đa 8 thread khi queue đầy
      * - queueCapacity=50: hàng đợi chứa tối đa 50 task chờ
      * - AbortPolicy: khi queue đầy thì fail-fast, không block HTTP request thread
-     * - SecurityContextTaskDecorator: truyền SecurityContext từ HTTP thread sang async thread
+     *
+     * virtual (cần Java 21) - mỗi task một virtual thread; task gần như chỉ chờ Groq/Pinecone/JDBC
+     * nên không cần giữ platform thread. Concurrency do aiTaskBulkhead giới hạn theo loại task.
+     *
+     * Cả hai đều dùng SecurityContextTaskDecorator để truyền SecurityContext từ HTTP thread sang async thread
      */
     @Bean("aiTaskExecutor")
-    public ThreadPoolTaskExecutor aiTaskExecutor() {
+    public AsyncTaskExecutor aiTaskExecutor() {
+        if (isVirtualMode()) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("ai-task-vt-");
+            executor.setVirtualThreads(true);
+            executor.setTaskDecorator(new SecurityContextTaskDecorator());
+            executor.setTaskTerminationTimeout(5000);
+            return executor;
+        }
+
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(4);
         executor.setMaxPoolSize(8);
@@ -39,6 +63,27 @@ public class AsyncConfig {
         return executor;
     }
 
+    /**
+     * Giới hạn concurrency theo loại task ở chế độ virtual (CHAT_SYNC là /api/v1/ai/chat đồng bộ).
+     * Dùng chung hoangtung.ai.task.type-limits với scheduler của hàng đợi, nên task đã claim không phải
+     * chờ permit. Ở chế độ platform, thread pool và thread pool của Tomcat đã tự giới hạn nên bulkhead
+     * không chặn gì.
+     */
+    @Bean
+    public TaskTypeBulkhead aiTaskBulkhead(
+            @Value("${hoangtung.ai.task.type-limits:CV_ANALYZE:4,CV_MATCH:4,CHAT:32,CHAT_SYNC:32}") String limits,
+            @Value("${hoangtung.ai.task.default-limit:16}") int defaultLimit,
+            @Value("${hoangtung.ai.executor.virtual.max-pending:500}") int maxPending) {
+        if (!isVirtualMode()) {
+            return TaskTypeBulkhead.unlimited();
+        }
+        return new TaskTypeBulkhead(TaskTypeBulkhead.parseLimits(limits), defaultLimit, maxPending);
+    }
+
+    private boolean isVirtualMode() {
+        return MODE_VIRTUAL.equalsIgnoreCase(executorMode == null ? "" : executorMode.trim());
+    }
+
     /**
      * TaskDecorator để propagate SecurityContext sang async thread.
      * Rất quan trọng vì CvDoctorService, InterviewCoachService đều
@@ -0,0 +1,40 @@
+package vn.hoangtung.jobfind.config;
+
+import java.time.Duration;
+
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import vn.hoangtung.jobfind.util.ai.BatchingEmbeddingModel;
+import vn.hoangtung.jobfind.util.ai.EmbeddingBatcher;
+
+@Configuration
+public class EmbeddingBatchingConfig {
+
+    /**
+     * Bọc EmbeddingModel do Spring AI tự cấu hình (transformers/ONNX) bằng BatchingEmbeddingModel.
+     * Dùng BeanPostProcessor thay vì khai báo bean EmbeddingModel mới để auto-config của
+     * transformers vẫn tạo model gốc (auto-config đó chỉ chạy khi chưa có bean EmbeddingModel).
+     * - batch-size: số đoạn tối đa mỗi lần chạy model
+     * - max-delay-ms: thời gian tối đa một đoạn chờ gom batch
+     */
+    @Bean
+    public static BeanPostProcessor embeddingBatchingPostProcessor(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof EmbeddingModel model) || bean instanceof BatchingEmbeddingModel
+                        || !environment.getProperty("hoangtung.ai.embedding.batch.enabled", Boolean.class, true)) {
+                    return bean;
+                }
+                int batchSize = environment.getProperty("hoangtung.ai.embedding.batch.size", Integer.class, 16);
+                long maxDelayMs = environment.getProperty("hoangtung.ai.embedding.batch.max-delay-ms", Long.class, 20L);
+                EmbeddingBatcher batcher = new EmbeddingBatcher(model::embed, batchSize, Duration.ofMillis(maxDelayMs));
+                return new BatchingEmbeddingModel(model, batcher);
+            }
+        };
+    }
+}
@@ -88,7 +88,7 @@ public class PermissionInterceptor implements HandlerInterceptor {
         if (path.startsWith("/api/v1/ai/") || path.startsWith("/api/v1/resumes")) {
             return true;
         }
-        if ("POST".equals(httpMethod) && "/api/v1/files".equals(path)) {
+        if ("POST".equals(httpMethod) && ("/api/v1/files".equals(path) || "/api/v1/files/stream".equals(path))) {
             return true;
         }
         if (path.startsWith("/api/v1/subscribers")) {
@@ -94,6 +94,8 @@ public class SecurityConfig {
                                 .requestMatchers(HttpMethod.GET, "/api/v1/jobs/**").permitAll()
                                 .requestMatchers(HttpMethod.GET, "/api/v1/skills/**").permitAll()
 
+                                // Kho blob (CV gửi CV Doctor...) không bao giờ được phục vụ trực tiếp
+                                .requestMatchers("/storage/blobs/**").denyAll()
                                 // Cho phép truy cập công khai ảnh logo công ty và ảnh public
                                 .requestMatchers(HttpMethod.GET, "/storage/**").permitAll()
 
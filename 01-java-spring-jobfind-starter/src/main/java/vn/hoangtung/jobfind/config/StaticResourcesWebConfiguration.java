@@ -1,22 +1,45 @@
 package vn.hoangtung.jobfind.config;
 
+import java.io.IOException;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import vn.hoangtung.jobfind.service.FileDownloadService;
+
 @Configuration
 public class StaticResourcesWebConfiguration implements WebMvcConfigurer {
 
     @Value("${hoangtung.upload-file.base-uri}")
     private String baseURI;
 
+    private final FileDownloadService fileDownloadService;
+
+    public StaticResourcesWebConfiguration(FileDownloadService fileDownloadService) {
+        this.fileDownloadService = fileDownloadService;
+    }
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         // Map /storage/** URL pattern to the upload directory
         // so that company logos and other public images can be served directly.
         // Example: /storage/company/fpt-logo.png -> file:/D:/Upload/company/fpt-logo.png
+        // Range/206 do ResourceHttpRequestHandler xử lý sẵn; thêm ETag theo SHA-256 nội dung và Cache-Control
         registry.addResourceHandler("/storage/**")
-                .addResourceLocations(baseURI);
+                .addResourceLocations(baseURI)
+                .setCacheControl(fileDownloadService.storageCacheControl())
+                .setUseLastModified(true)
+                .setEtagGenerator(this::etag);
+    }
+
+    private String etag(Resource resource) {
+        try {
+            return resource.isFile() ? fileDownloadService.etag(resource.getFile().toPath()) : null;
+        } catch (IOException e) {
+            return null;
+        }
     }
 }
@@ -1,7 +1,9 @@
 package vn.hoangtung.jobfind.controller;
 
+import java.time.Duration;
 import java.util.Map;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -18,8 +20,10 @@ import vn.hoangtung.jobfind.service.AIService;
 import vn.hoangtung.jobfind.service.AiRateLimitService;
 import vn.hoangtung.jobfind.service.AiTaskExecutorService;
 import vn.hoangtung.jobfind.util.SecurityUtil;
+import vn.hoangtung.jobfind.util.ai.TaskTypeBulkhead;
 import vn.hoangtung.jobfind.util.annotation.ApiMessage;
 import vn.hoangtung.jobfind.util.constant.AiTaskTypeEnum;
+import vn.hoangtung.jobfind.util.error.AiUnavailableException;
 import vn.hoangtung.jobfind.util.error.PermissionException;
 
 @RestController
@@ -32,16 +36,22 @@ public class AIController {
     private final AiTaskExecutorService aiTaskExecutorService;
     private final AiRateLimitService aiRateLimitService;
     private final ObjectMapper objectMapper;
+    private final TaskTypeBulkhead aiTaskBulkhead;
+    private final Duration chatWait;
 
     public AIController(
             AIService aiService,
             AiTaskExecutorService aiTaskExecutorService,
             AiRateLimitService aiRateLimitService,
-            ObjectMapper objectMapper) {
+            ObjectMapper objectMapper,
+            TaskTypeBulkhead aiTaskBulkhead,
+            @Value("${hoangtung.ai.executor.virtual.chat-wait-ms:2000}") long chatWaitMs) {
         this.aiService = aiService;
         this.aiTaskExecutorService = aiTaskExecutorService;
         this.aiRateLimitService = aiRateLimitService;
         this.objectMapper = objectMapper;
+        this.aiTaskBulkhead = aiTaskBulkhead;
+        this.chatWait = Duration.ofMillis(Math.max(0, chatWaitMs));
     }
 
     @PostMapping("/sync")
@@ -62,8 +72,18 @@ public class AIController {
         validateChatMessage(message);
         aiRateLimitService.checkChatLimit(rateLimitKey(request));
 
-        String response = aiService.chat(message);
-        return ResponseEntity.ok(response);
+        // Request thread (virtual thread khi bật) chờ tối đa chatWait để có permit CHAT_SYNC
+        TaskTypeBulkhead.Permit<String> permit;
+        try {
+            permit = aiTaskBulkhead.tryCall("CHAT_SYNC", chatWait, () -> aiService.chat(message));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AiUnavailableException("Yêu cầu chat bị hủy khi đang chờ AI");
+        }
+        if (!permit.acquired()) {
+            throw new AiUnavailableException("AI đang quá tải, vui lòng thử lại sau");
+        }
+        return ResponseEntity.ok(permit.value());
     }
 
     @PostMapping("/chat/async")
@@ -1,6 +1,7 @@
 package vn.hoangtung.jobfind.controller;
 
 import java.io.IOException;
+import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
@@ -26,6 +27,7 @@ import vn.hoangtung.jobfind.domain.response.ai.ResCvAnalysisDTO;
 import vn.hoangtung.jobfind.service.AiRateLimitService;
 import vn.hoangtung.jobfind.service.AiTaskExecutorService;
 import vn.hoangtung.jobfind.service.CvDoctorService;
+import vn.hoangtung.jobfind.service.FileService;
 import vn.hoangtung.jobfind.util.SecurityUtil;
 import vn.hoangtung.jobfind.util.annotation.ApiMessage;
 import vn.hoangtung.jobfind.util.constant.AiTaskTypeEnum;
@@ -37,16 +39,19 @@ public class CvDoctorController {
     private final CvDoctorService cvDoctorService;
     private final AiTaskExecutorService aiTaskExecutorService;
     private final AiRateLimitService aiRateLimitService;
+    private final FileService fileService;
     private final ObjectMapper objectMapper;
 
     public CvDoctorController(
             CvDoctorService cvDoctorService,
             AiTaskExecutorService aiTaskExecutorService,
             AiRateLimitService aiRateLimitService,
+            FileService fileService,
             ObjectMapper objectMapper) {
         this.cvDoctorService = cvDoctorService;
         this.aiTaskExecutorService = aiTaskExecutorService;
         this.aiRateLimitService = aiRateLimitService;
+        this.fileService = fileService;
         this.objectMapper = objectMapper;
     }
 
@@ -57,18 +62,32 @@ public class CvDoctorController {
             HttpServletRequest request) {
         aiRateLimitService.checkTaskLimit(rateLimitKey(request), AiTaskTypeEnum.CV_ANALYZE.name());
 
-        cvDoctorService.extractTextFromPdf(file);
+        cvDoctorService.validateCvUpload(file);
+        User currentUser = aiTaskExecutorService.getCurrentUserOrThrow();
         String tempFilePath = saveTempFile(file);
+        String blobSha256;
+        try {
+            // Parse ngay trên file tạm: text được cache theo hash nên task async không đọc PDF lần nữa
+            cvDoctorService.extractTextFromPath(tempFilePath);
+            // Task có thể chạy ở node khác (hàng đợi chung) nên file phải nằm trên storage dùng chung
+            blobSha256 = fileService.storeBlob(Path.of(tempFilePath));
+        } catch (IOException | URISyntaxException e) {
+            throw new RuntimeException("Cannot store CV file: " + e.getMessage(), e);
+        } finally {
+            deleteTempFile(tempFilePath);
+        }
 
-        User currentUser = aiTaskExecutorService.getCurrentUserOrThrow();
         String inputJson = buildJsonSafe(
-                "tempFilePath", tempFilePath,
+                "cvBlobSha256", blobSha256,
                 "originalFileName", file.getOriginalFilename());
-
-        ResAiTaskSubmittedDTO result = aiTaskExecutorService.submitTask(
-                AiTaskTypeEnum.CV_ANALYZE, inputJson, currentUser);
-
-        return ResponseEntity.status(HttpStatus.ACCEPTED).body(result);
+        try {
+            ResAiTaskSubmittedDTO result = aiTaskExecutorService.submitTask(
+                    AiTaskTypeEnum.CV_ANALYZE, inputJson, currentUser);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(result);
+        } catch (RuntimeException e) {
+            fileService.releaseBlobSafely(blobSha256);
+            throw e;
+        }
     }
 
     @GetMapping("/history")
@@ -113,6 +132,12 @@ public class CvDoctorController {
         }
     }
 
+    private void deleteTempFile(String tempFilePath) {
+        java.io.File tempFile = new java.io.File(tempFilePath);
+        tempFile.delete();
+        tempFile.getParentFile().delete();
+    }
+
     private String buildJsonSafe(Object... keyValuePairs) {
         try {
             java.util.Map<String, Object> map = new java.util.LinkedHashMap<>();
@@ -1,6 +1,5 @@
 package vn.hoangtung.jobfind.controller;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
@@ -8,9 +7,6 @@ import java.time.Instant;
 import java.util.List;
 import java.util.Locale;
 
-import org.springframework.core.io.InputStreamResource;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -20,7 +16,10 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import vn.hoangtung.jobfind.domain.response.file.ResUploadFileDTO;
+import vn.hoangtung.jobfind.service.FileDownloadService;
 import vn.hoangtung.jobfind.service.FileService;
 import vn.hoangtung.jobfind.util.annotation.ApiMessage;
 import vn.hoangtung.jobfind.util.error.StorageException;
@@ -33,9 +32,11 @@ public class FileController {
     private static final List<String> ALLOWED_EXTENSIONS = List.of(".pdf", ".jpg", ".jpeg", ".png");
 
     private final FileService fileService;
+    private final FileDownloadService fileDownloadService;
 
-    public FileController(FileService fileService) {
+    public FileController(FileService fileService, FileDownloadService fileDownloadService) {
         this.fileService = fileService;
+        this.fileDownloadService = fileDownloadService;
     }
 
     @PostMapping("/files")
@@ -48,36 +49,63 @@ public class FileController {
         if (file == null || file.isEmpty()) {
             throw new StorageException("File is empty. Please upload a file.");
         }
-
-        String fileName = file.getOriginalFilename();
-        if (fileName == null || fileName.isBlank()) {
-            throw new StorageException("Invalid file name.");
-        }
         if (file.getSize() > MAX_UPLOAD_SIZE_BYTES) {
             throw new StorageException("File is too large. Maximum size is 10MB.");
         }
-
-        String normalizedFileName = fileName.toLowerCase(Locale.ROOT);
-        boolean isValid = ALLOWED_EXTENSIONS.stream().anyMatch(normalizedFileName::endsWith);
-        if (!isValid) {
-            throw new StorageException("Invalid file extension. Only allows " + ALLOWED_EXTENSIONS);
-        }
-        validateFileSignature(file, normalizedFileName);
+        String normalizedFileName = validateFileName(file.getOriginalFilename());
 
         this.fileService.createDirectory(folder);
-        String uploadFile = this.fileService.store(file, folder);
+        String uploadFile;
+        try (InputStream inputStream = file.getInputStream()) {
+            // magic bytes, SHA-256 và ghi file trong cùng một lượt đọc
+            uploadFile = this.fileService.store(inputStream, file.getOriginalFilename(), folder,
+                    MAX_UPLOAD_SIZE_BYTES, (header, length) -> validateFileSignature(normalizedFileName, header, length));
+        }
 
         ResUploadFileDTO res = new ResUploadFileDTO(uploadFile, Instant.now());
 
         return ResponseEntity.ok().body(res);
     }
 
+    /**
+     * Upload không qua multipart: body request chính là nội dung file, tên file và folder nằm trên query.
+     * Spring không buffer request ra disk/memory trước, file được đọc thẳng từ socket một lượt.
+     */
+    @PostMapping(value = "/files/stream", consumes = {
+            MediaType.APPLICATION_OCTET_STREAM_VALUE,
+            MediaType.APPLICATION_PDF_VALUE,
+            MediaType.IMAGE_PNG_VALUE,
+            MediaType.IMAGE_JPEG_VALUE })
+    @ApiMessage("Upload single file (stream)")
+    public ResponseEntity<ResUploadFileDTO> uploadStream(
+            @RequestParam("fileName") String fileName,
+            @RequestParam("folder") String folder,
+            HttpServletRequest request)
+            throws URISyntaxException, IOException, StorageException {
+        long contentLength = request.getContentLengthLong();
+        if (contentLength == 0) {
+            throw new StorageException("File is empty. Please upload a file.");
+        }
+        if (contentLength > MAX_UPLOAD_SIZE_BYTES) {
+            throw new StorageException("File is too large. Maximum size is 10MB.");
+        }
+        String normalizedFileName = validateFileName(fileName);
+
+        this.fileService.createDirectory(folder);
+        String uploadFile = this.fileService.store(request.getInputStream(), fileName, folder,
+                MAX_UPLOAD_SIZE_BYTES, (header, length) -> validateFileSignature(normalizedFileName, header, length));
+
+        return ResponseEntity.ok().body(new ResUploadFileDTO(uploadFile, Instant.now()));
+    }
+
     @GetMapping("/files")
     @ApiMessage("Download a file")
-    public ResponseEntity<Resource> download(
+    public void download(
             @RequestParam(name = "fileName", required = false) String fileName,
-            @RequestParam(name = "folder", required = false) String folder)
-            throws StorageException, URISyntaxException, FileNotFoundException {
+            @RequestParam(name = "folder", required = false) String folder,
+            HttpServletRequest request,
+            HttpServletResponse response)
+            throws StorageException, URISyntaxException, IOException {
         if (fileName == null || folder == null) {
             throw new StorageException("Missing required params : (fileName or folder) in query params.");
         }
@@ -88,24 +116,25 @@ public class FileController {
             throw new StorageException("File with name = " + fileName + " not found.");
         }
 
-        // download a file
-        InputStreamResource resource = this.fileService.getResource(fileName, folder);
-
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
-                .contentLength(fileLength)
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(resource);
+        // ETag/304, Range/206 và Cache-Control; thân file đi qua sendfile/transferTo
+        this.fileDownloadService.write(this.fileService.getFilePath(fileName, folder), fileName, request, response);
     }
 
-    private void validateFileSignature(MultipartFile file, String normalizedFileName)
-            throws IOException, StorageException {
-        byte[] header = new byte[8];
-        int bytesRead;
-        try (InputStream inputStream = file.getInputStream()) {
-            bytesRead = inputStream.read(header);
+    private String validateFileName(String fileName) throws StorageException {
+        if (fileName == null || fileName.isBlank()) {
+            throw new StorageException("Invalid file name.");
+        }
+
+        String normalizedFileName = fileName.toLowerCase(Locale.ROOT);
+        boolean isValid = ALLOWED_EXTENSIONS.stream().anyMatch(normalizedFileName::endsWith);
+        if (!isValid) {
+            throw new StorageException("Invalid file extension. Only allows " + ALLOWED_EXTENSIONS);
         }
+        return normalizedFileName;
+    }
 
+    private void validateFileSignature(String normalizedFileName, byte[] header, int bytesRead)
+            throws StorageException {
         if (normalizedFileName.endsWith(".pdf") && !hasPdfSignature(header, bytesRead)) {
             throw new StorageException("Invalid PDF file signature.");
         }
@@ -25,7 +25,8 @@ import vn.hoangtung.jobfind.util.constant.AiTaskTypeEnum;
 @Table(name = "ai_tasks", indexes = {
         @Index(name = "idx_ai_task_user", columnList = "user_id"),
         @Index(name = "idx_ai_task_status_next_retry", columnList = "status, next_retry_at"),
-        @Index(name = "idx_ai_task_status_started", columnList = "status, started_at")
+        @Index(name = "idx_ai_task_status_started", columnList = "status, started_at"),
+        @Index(name = "idx_ai_task_status_heartbeat", columnList = "status, last_heartbeat_at")
 })
 @Getter
 @Setter
@@ -65,6 +66,10 @@ public class AiTask {
     private Instant nextRetryAt;
     private Instant lastHeartbeatAt;
 
+    // Node đang giữ lease và token của lần claim hiện tại; mọi ghi của worker phải khớp claimToken
+    private String lockedBy;
+    private String claimToken;
+
     private Instant createdAt;
     private Instant updatedAt;
     private String createdBy;
@@ -0,0 +1,53 @@
+package vn.hoangtung.jobfind.domain;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Một nội dung file duy nhất trên disk (blobs/ab/abcdef...), định danh bằng SHA-256.
+ * refCount = số tên file logic (StoredFile) đang trỏ vào blob; về 0 thì blob bị xóa.
+ */
+@Entity
+@Table(name = "file_blobs", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_file_blob_sha256", columnNames = "sha256")
+})
+@Getter
+@Setter
+public class FileBlob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @Column(nullable = false, length = 64)
+    private String sha256;
+
+    private long size;
+
+    private int refCount;
+
+    private Instant createdAt;
+    private Instant updatedAt;
+
+    @PrePersist
+    public void handleBeforeCreate() {
+        this.createdAt = Instant.now();
+        this.updatedAt = this.createdAt;
+    }
+
+    @PreUpdate
+    public void handleBeforeUpdate() {
+        this.updatedAt = Instant.now();
+    }
+}
@@ -65,6 +65,12 @@ public class Job {
     private String createdBy;
     private String updatedBy;
 
+    // Hash nội dung document đã upsert lên vector store: job không đổi nội dung thì không embed lại.
+    @JsonIgnore
+    private String vectorContentHash;
+    @JsonIgnore
+    private Instant vectorSyncedAt;
+
     @ManyToOne
     @JoinColumn(name = "company_id")
     private Company company;
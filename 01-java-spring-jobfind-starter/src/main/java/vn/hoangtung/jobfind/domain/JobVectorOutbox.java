@@ -0,0 +1,61 @@
+package vn.hoangtung.jobfind.domain;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.Setter;
+import vn.hoangtung.jobfind.util.constant.JobVectorChangeEnum;
+
+/**
+ * Outbox ghi thay đổi của job trong cùng transaction với JobService. Worker JobVectorSyncService claim
+ * dòng bằng lease (claimedUntil) để mỗi event chỉ được embed bởi một node, đánh processedAt khi xong;
+ * dòng đã xử lý được giữ thêm một thời gian để JobFeatureIndexService của mọi node đọc theo createdAt.
+ */
+@Entity
+@Table(name = "job_vector_outbox", indexes = {
+        @Index(name = "idx_job_vector_outbox_job", columnList = "job_id"),
+        @Index(name = "idx_job_vector_outbox_created", columnList = "created_at"),
+        @Index(name = "idx_job_vector_outbox_processed", columnList = "processed_at")
+})
+@Getter
+@Setter
+public class JobVectorOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @Column(name = "job_id", nullable = false)
+    private long jobId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20, nullable = false)
+    private JobVectorChangeEnum changeType;
+
+    private int attempts;
+
+    @Column(columnDefinition = "TEXT")
+    private String lastError;
+
+    private Instant createdAt;
+
+    // Node đang embed event giữ lease tới thời điểm này; hết hạn thì node khác claim lại.
+    private Instant claimedUntil;
+
+    private Instant processedAt;
+
+    @PrePersist
+    public void handleBeforeCreate() {
+        this.createdAt = Instant.now();
+    }
+}
@@ -0,0 +1,50 @@
+package vn.hoangtung.jobfind.domain;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Tên file logic trả về cho client (folder + fileName, ví dụ resume/1712-cv.pdf) và blob chứa nội dung.
+ */
+@Entity
+@Table(name = "stored_files", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_stored_file_name", columnNames = { "folder", "file_name" })
+})
+@Getter
+@Setter
+public class StoredFile {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @Column(nullable = false, length = 20)
+    private String folder;
+
+    @Column(name = "file_name", nullable = false)
+    private String fileName;
+
+    @ManyToOne(fetch = FetchType.EAGER, optional = false)
+    @JoinColumn(name = "blob_id", nullable = false)
+    private FileBlob blob;
+
+    private Instant createdAt;
+
+    @PrePersist
+    public void handleBeforeCreate() {
+        this.createdAt = Instant.now();
+    }
+}
@@ -0,0 +1,16 @@
+package vn.hoangtung.jobfind.domain.response.ai;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class ResAiTaskTokenDTO {
+    private long taskId;
+    // Tên lời gọi LLM sinh ra token (vd: ChatBot, CV-Doctor), một task có thể gồm nhiều lời gọi
+    private String context;
+    private long sequence;
+    private String delta;
+}
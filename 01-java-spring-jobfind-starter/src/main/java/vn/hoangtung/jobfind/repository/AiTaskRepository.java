@@ -1,12 +1,19 @@
 package vn.hoangtung.jobfind.repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.persistence.LockModeType;
 import vn.hoangtung.jobfind.domain.AiTask;
 import vn.hoangtung.jobfind.domain.User;
 import vn.hoangtung.jobfind.util.constant.AiTaskStatusEnum;
@@ -16,7 +23,62 @@ public interface AiTaskRepository extends JpaRepository<AiTask, Long> {
 
     Optional<AiTask> findByIdAndUser(long id, User user);
 
-    List<AiTask> findByStatusAndNextRetryAtBefore(AiTaskStatusEnum status, Instant cutoff);
+    List<AiTask> findByStatusIn(Collection<AiTaskStatusEnum> statuses);
 
-    List<AiTask> findByStatusAndStartedAtBefore(AiTaskStatusEnum status, Instant cutoff);
+    long countByStatusIn(Collection<AiTaskStatusEnum> statuses);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select t from AiTask t where t.id = :id")
+    Optional<AiTask> findByIdForUpdate(@Param("id") long id);
+
+    /**
+     * Id các task có thể chạy: PENDING, RETRYING đến hạn, hoặc PROCESSING mà node giữ lease đã ngừng
+     * heartbeat. Xếp xen kẽ theo (user, loại task): task đầu hàng của mỗi cặp đứng trước, để một user
+     * dồn nhiều task không che mất task của user khác hay loại task khác khỏi cửa sổ ứng viên.
+     * Đọc không khóa; lockClaimableByIds kiểm tra lại điều kiện khi khóa.
+     */
+    @Query(value = """
+            select ranked.id from (
+                select t.id,
+                       row_number() over (partition by t.user_id, t.task_type order by t.id) as queue_rank
+                from ai_tasks t
+                where t.status = 'PENDING'
+                   or (t.status = 'RETRYING' and t.next_retry_at <= :now)
+                   or (t.status = 'PROCESSING' and t.last_heartbeat_at < :staleBefore)
+            ) ranked
+            order by ranked.queue_rank, ranked.id
+            limit :limit
+            """, nativeQuery = true)
+    List<Long> findClaimableIds(
+            @Param("now") Instant now,
+            @Param("staleBefore") Instant staleBefore,
+            @Param("limit") int limit);
+
+    /**
+     * Khóa các ứng viên còn claim được. SKIP LOCKED để nhiều node claim song song mà không chờ nhau
+     * hay lấy trùng. Phải gọi trong transaction; khóa được giữ đến khi commit.
+     */
+    @Query(value = """
+            select * from ai_tasks
+            where id in (:ids)
+              and (status = 'PENDING'
+                   or (status = 'RETRYING' and next_retry_at <= :now)
+                   or (status = 'PROCESSING' and last_heartbeat_at < :staleBefore))
+            for update skip locked
+            """, nativeQuery = true)
+    List<AiTask> lockClaimableByIds(
+            @Param("ids") Collection<Long> ids,
+            @Param("now") Instant now,
+            @Param("staleBefore") Instant staleBefore);
+
+    // Bulk update để heartbeat không đổi updatedAt (client SSE không nhận event thừa).
+    @Transactional
+    @Modifying
+    @Query("""
+            update AiTask t set t.lastHeartbeatAt = :now
+            where t.id = :id
+              and t.claimToken = :token
+              and t.status = vn.hoangtung.jobfind.util.constant.AiTaskStatusEnum.PROCESSING
+            """)
+    int renewLease(@Param("id") long id, @Param("token") String token, @Param("now") Instant now);
 }
@@ -0,0 +1,41 @@
+package vn.hoangtung.jobfind.repository;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import jakarta.persistence.LockModeType;
+import vn.hoangtung.jobfind.domain.FileBlob;
+
+@Repository
+public interface FileBlobRepository extends JpaRepository<FileBlob, Long> {
+
+    Optional<FileBlob> findBySha256(String sha256);
+
+    /** Khóa dòng blob đến hết transaction; phải gọi trong transaction. */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from FileBlob b where b.sha256 = :sha256")
+    Optional<FileBlob> findBySha256ForUpdate(@Param("sha256") String sha256);
+
+    /**
+     * Tạo blob với refCount=1 hoặc tăng refCount nếu đã có, trong một câu lệnh: hai node upload
+     * cùng nội dung không mất lượt tăng và không vi phạm uk_file_blob_sha256. Dòng bị khóa đến hết
+     * transaction.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(value = """
+            insert into file_blobs (sha256, size, ref_count, created_at, updated_at)
+            values (:sha256, :size, 1, :now, :now)
+            on duplicate key update ref_count = ref_count + 1, updated_at = :now
+            """, nativeQuery = true)
+    int insertOrIncrementRefCount(
+            @Param("sha256") String sha256,
+            @Param("size") long size,
+            @Param("now") Instant now);
+}
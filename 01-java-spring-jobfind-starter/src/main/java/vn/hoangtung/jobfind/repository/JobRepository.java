@@ -1,11 +1,16 @@
 package vn.hoangtung.jobfind.repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import vn.hoangtung.jobfind.domain.Job;
 import vn.hoangtung.jobfind.domain.Skill;
@@ -22,4 +27,33 @@ public interface JobRepository extends JpaRepository<Job, Long>, JpaSpecificatio
             where j.active = true
             """)
     List<Job> findActiveJobsWithSkillsAndCompany();
+
+    @Query("""
+            select distinct j
+            from Job j
+            left join fetch j.skills
+            left join fetch j.company
+            where j.id in :ids
+            """)
+    List<Job> findWithSkillsAndCompanyByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("""
+            select distinct j
+            from Job j
+            left join fetch j.skills
+            left join fetch j.company
+            """)
+    List<Job> findAllWithSkillsAndCompany();
+
+    @Query("select j.id from Job j where j.company.id = :companyId")
+    List<Long> findIdsByCompanyId(@Param("companyId") long companyId);
+
+    @Query("select j.id from Job j join j.skills s where s.id = :skillId")
+    List<Long> findIdsBySkillId(@Param("skillId") long skillId);
+
+    // Bulk update để không kích hoạt @PreUpdate (không làm đổi updatedAt/updatedBy của job).
+    @Transactional
+    @Modifying
+    @Query("update Job j set j.vectorContentHash = :hash, j.vectorSyncedAt = :syncedAt where j.id = :id")
+    int markVectorSynced(@Param("id") long id, @Param("hash") String hash, @Param("syncedAt") Instant syncedAt);
 }
@@ -0,0 +1,46 @@
+package vn.hoangtung.jobfind.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import vn.hoangtung.jobfind.domain.JobVectorOutbox;
+
+@Repository
+public interface JobVectorOutboxRepository extends JpaRepository<JobVectorOutbox, Long> {
+
+    /**
+     * Khóa các event chưa xử lý và chưa có node nào giữ lease. SKIP LOCKED để các node claim song song
+     * mà không lấy trùng; phải gọi trong transaction và ghi claimedUntil trước khi commit.
+     */
+    @Query(value = """
+            select * from job_vector_outbox
+            where processed_at is null
+              and (claimed_until is null or claimed_until < :now)
+            order by id
+            limit :limit
+            for update skip locked
+            """, nativeQuery = true)
+    List<JobVectorOutbox> lockClaimable(@Param("now") Instant now, @Param("limit") int limit);
+
+    /** Job có event ghi từ since (kể cả event đã xử lý), để index trong bộ nhớ của từng node cập nhật theo. */
+    @Query("select distinct o.jobId from JobVectorOutbox o where o.createdAt >= :since")
+    List<Long> findJobIdsChangedSince(@Param("since") Instant since);
+
+    @Transactional
+    @Modifying
+    @Query("update JobVectorOutbox o set o.processedAt = :processedAt, o.claimedUntil = null where o.id in :ids")
+    int markProcessed(@Param("ids") Collection<Long> ids, @Param("processedAt") Instant processedAt);
+
+    @Transactional
+    @Modifying
+    @Query("delete from JobVectorOutbox o where o.processedAt < :before")
+    int deleteProcessedBefore(@Param("before") Instant before);
+}
@@ -13,4 +13,6 @@ public interface ResumeRepository extends JpaRepository<Resume, Long>, JpaSpecif
     Optional<Resume> findTopByUserOrderByCreatedAtDesc(User user);
 
     boolean existsByUserIdAndJobId(long userId, long jobId);
+
+    boolean existsByUrl(String url);
 }
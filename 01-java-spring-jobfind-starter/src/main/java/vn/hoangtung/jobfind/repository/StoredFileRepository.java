@@ -0,0 +1,14 @@
+package vn.hoangtung.jobfind.repository;
+
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import vn.hoangtung.jobfind.domain.StoredFile;
+
+@Repository
+public interface StoredFileRepository extends JpaRepository<StoredFile, Long> {
+
+    Optional<StoredFile> findByFolderAndFileName(String folder, String fileName);
+}
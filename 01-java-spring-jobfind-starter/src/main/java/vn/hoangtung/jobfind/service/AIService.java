@@ -2,10 +2,8 @@ package vn.hoangtung.jobfind.service;
 
 import java.time.Duration;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -18,101 +16,58 @@ import org.springframework.stereotype.Service;
 import vn.hoangtung.jobfind.domain.Job;
 import vn.hoangtung.jobfind.domain.Skill;
 import vn.hoangtung.jobfind.domain.Subscriber;
-import vn.hoangtung.jobfind.repository.JobRepository;
-import vn.hoangtung.jobfind.repository.SkillRepository;
 import vn.hoangtung.jobfind.repository.SubscriberRepository;
 import vn.hoangtung.jobfind.util.SecurityUtil;
 import vn.hoangtung.jobfind.util.ai.AiFeatureUtils;
+import vn.hoangtung.jobfind.util.ai.Bm25Index;
+import vn.hoangtung.jobfind.util.ai.CacheTagIndex;
+import vn.hoangtung.jobfind.util.ai.JobFeatureIndex;
 import vn.hoangtung.jobfind.util.ai.AiFeatureUtils.ChatIntent;
 import vn.hoangtung.jobfind.util.ai.AiFeatureUtils.RankedJob;
+import vn.hoangtung.jobfind.util.ai.PromptCompiler;
+import vn.hoangtung.jobfind.util.ai.PromptCompiler.CompiledPrompt;
+import vn.hoangtung.jobfind.util.ai.TokenEstimator;
 
 @Service
 public class AIService {
 
     private static final String CHATBOT_PROMPT_VERSION = "job-chat-v2";
+    // Ngân sách token cho prompt chatbot (Llama 3 tokenizer, ước lượng local)
+    private static final int CHAT_PROMPT_TOKEN_BUDGET = 2200;
     private static final int VECTOR_TOP_K = 12;
     private static final int MAX_RESULT_JOBS = 5;
 
-    private final JobRepository jobRepository;
     private final VectorStore vectorStore;
-    private final SkillRepository skillRepository;
+    private final JobVectorSyncService jobVectorSyncService;
+    private final SkillTaxonomyRegistry skillTaxonomyRegistry;
     private final SubscriberRepository subscriberRepository;
     private final AiGatewayService aiGatewayService;
+    private final ChatSemanticCache chatSemanticCache;
+    private final JobFeatureIndexService jobFeatureIndexService;
 
-    public AIService(JobRepository jobRepository,
-            VectorStore vectorStore,
-            SkillRepository skillRepository,
+    public AIService(VectorStore vectorStore,
+            JobVectorSyncService jobVectorSyncService,
+            SkillTaxonomyRegistry skillTaxonomyRegistry,
             SubscriberRepository subscriberRepository,
-            AiGatewayService aiGatewayService) {
-        this.jobRepository = jobRepository;
+            AiGatewayService aiGatewayService,
+            ChatSemanticCache chatSemanticCache,
+            JobFeatureIndexService jobFeatureIndexService) {
         this.vectorStore = vectorStore;
-        this.skillRepository = skillRepository;
+        this.jobVectorSyncService = jobVectorSyncService;
+        this.skillTaxonomyRegistry = skillTaxonomyRegistry;
         this.subscriberRepository = subscriberRepository;
         this.aiGatewayService = aiGatewayService;
+        this.chatSemanticCache = chatSemanticCache;
+        this.jobFeatureIndexService = jobFeatureIndexService;
     }
 
+    /**
+     * Đối soát job với vector store: chỉ job có nội dung đổi (theo hash) mới bị embed lại.
+     * Thay đổi thường ngày đã được JobVectorSyncService đồng bộ qua outbox.
+     */
     public String syncJobData() {
-        List<Job> allJobs = jobRepository.findAll();
-        List<Document> documents = new ArrayList<>();
-
-        for (Job job : allJobs) {
-            String skillNames = AiFeatureUtils.jobSkillNames(job).stream()
-                    .collect(Collectors.joining(", "));
-
-            String companyName = job.getCompany() != null ? job.getCompany().getName() : "Chưa xác định";
-            String companyDesc = job.getCompany() != null && job.getCompany().getDescription() != null
-                    ? job.getCompany().getDescription()
-                    : "";
-            String companyAddress = job.getCompany() != null && job.getCompany().getAddress() != null
-                    ? job.getCompany().getAddress()
-                    : "";
-            String level = job.getLevel() != null ? job.getLevel().toString() : "Không yêu cầu";
-
-            StringBuilder contentBuilder = new StringBuilder();
-            contentBuilder.append("=== THÔNG TIN CÔNG VIỆC ===\n");
-            contentBuilder.append("ID: ").append(job.getId()).append("\n");
-            contentBuilder.append("Vị trí: ").append(job.getName()).append("\n");
-            contentBuilder.append("Công ty: ").append(companyName).append("\n");
-            contentBuilder.append("Cấp độ: ").append(level).append("\n");
-            contentBuilder.append("Mức lương: ").append(String.format("%.0f", job.getSalary())).append(" VNĐ\n");
-            contentBuilder.append("Địa điểm: ").append(job.getLocation()).append("\n");
-            contentBuilder.append("Kỹ năng yêu cầu: ").append(skillNames.isBlank() ? "Chưa cập nhật" : skillNames).append("\n");
-            contentBuilder.append("Số lượng tuyển: ").append(job.getQuantity()).append(" người\n");
-            contentBuilder.append("Trạng thái: ").append(job.isActive() ? "Đang tuyển" : "Đã đóng").append("\n");
-
-            if (!companyDesc.isEmpty()) {
-                contentBuilder.append("\n=== VỀ CÔNG TY ===\n");
-                contentBuilder.append(companyDesc).append("\n");
-            }
-            if (!companyAddress.isEmpty()) {
-                contentBuilder.append("Địa chỉ công ty: ").append(companyAddress).append("\n");
-            }
-
-            if (job.getDescription() != null && !job.getDescription().isBlank()) {
-                contentBuilder.append("\n=== MÔ TẢ CÔNG VIỆC ===\n");
-                contentBuilder.append(job.getDescription());
-            }
-
-            Map<String, Object> metadata = Map.of(
-                    "doc_type", CvVectorService.DOC_TYPE_JOB,
-                    "source_type", "JOB",
-                    "job_id", job.getId(),
-                    "company_name", companyName,
-                    "level", level,
-                    "salary", job.getSalary(),
-                    "location", job.getLocation(),
-                    "active", job.isActive());
-
-            documents.add(new Document(String.valueOf(job.getId()), contentBuilder.toString(), metadata));
-        }
-
-        if (documents.isEmpty()) {
-            return "Không có công việc nào để đồng bộ.";
-        }
-
-        vectorStore.add(documents);
-        aiGatewayService.clearCache();
-        return "Đã đồng bộ thành công " + documents.size() + " công việc lên Pinecone và làm mới cache ChatBot.";
+        JobVectorSyncService.SyncResult result = jobVectorSyncService.reconcileAll();
+        return result.describe();
     }
 
     public String chat(String userMessage) {
@@ -120,46 +75,50 @@ public class AIService {
             return "Vui lòng nhập câu hỏi cụ thể về việc làm.";
         }
 
-        List<Job> activeJobs = jobRepository.findActiveJobsWithSkillsAndCompany();
-        if (activeJobs.isEmpty()) {
+        // Job đang tuyển đã được index sẵn (skill bitset, địa điểm, lương...), không load lại từ DB.
+        JobFeatureIndex jobIndex = jobFeatureIndexService.index();
+        if (jobIndex.isEmpty()) {
             return "Hiện chưa có việc làm đang tuyển để tư vấn.";
         }
 
         Set<String> knownSkills = loadKnownSkills();
-        Set<String> knownLocations = activeJobs.stream()
-                .map(Job::getLocation)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toCollection(LinkedHashSet::new));
         Set<String> userSkills = resolveUserSkillPreferences();
 
         String processedQuery = preprocessQuery(userMessage);
-        ChatIntent intent = AiFeatureUtils.parseChatIntent(processedQuery, knownLocations, knownSkills);
-
-        List<Job> vectorCandidates = findVectorCandidates(processedQuery, activeJobs);
-        List<RankedJob> rankedCandidates = AiFeatureUtils.rankJobs(intent, vectorCandidates, userSkills);
+        ChatIntent intent = AiFeatureUtils.parseChatIntent(processedQuery, jobIndex.knownLocations(), knownSkills);
 
-        List<RankedJob> exactMatches = rankedCandidates.stream()
-                .filter(rankedJob -> AiFeatureUtils.matchesHardConstraints(intent, rankedJob.job()))
-                .limit(MAX_RESULT_JOBS)
-                .toList();
+        JobFeatureIndex.Ranking ranking = jobIndex.rank(
+                intent, findCandidateIds(jobIndex, processedQuery), userSkills, MAX_RESULT_JOBS);
+        List<RankedJob> exactMatches = ranking.exactMatches();
 
         List<RankedJob> finalJobs = !exactMatches.isEmpty()
                 ? exactMatches
-                : rankedCandidates.stream().limit(MAX_RESULT_JOBS).toList();
+                : ranking.top();
 
         if (finalJobs.isEmpty()) {
-            return buildNoResultMessage(intent, activeJobs);
+            return buildNoResultMessage(intent, jobIndex.sampleSkillNames(6));
         }
 
         String promptText = buildChatPrompt(userMessage, intent, finalJobs, userSkills, !exactMatches.isEmpty());
-        String cacheKey = aiGatewayService.fingerprint(
-                CHATBOT_PROMPT_VERSION,
-                SecurityUtil.getCurrentUserLogin().orElse("guest"),
-                userMessage,
-                finalJobs.stream().map(item -> String.valueOf(item.job().getId())).collect(Collectors.joining(",")));
+        String currentUser = SecurityUtil.getCurrentUserLogin().orElse("guest");
+        String jobIds = finalJobs.stream().map(item -> String.valueOf(item.job().getId())).collect(Collectors.joining(","));
+        String cacheKey = aiGatewayService.fingerprint(CHATBOT_PROMPT_VERSION, currentUser, userMessage, jobIds);
+        // Gắn tag job:{id} để khi job đổi chỉ xóa các câu trả lời có nhắc tới job đó.
+        List<String> jobTags = finalJobs.stream().map(item -> CacheTagIndex.jobTag(item.job().getId())).toList();
+        aiGatewayService.tagCacheKey(cacheKey, jobTags);
+
+        // Câu hỏi gần nghĩa với cùng tập job ứng viên -> dùng lại câu trả lời, không gọi LLM.
+        String semanticScope = aiGatewayService.fingerprint(
+                CHATBOT_PROMPT_VERSION, currentUser, String.valueOf(!exactMatches.isEmpty()), jobIds);
+        ChatSemanticCache.Probe semanticProbe = chatSemanticCache.lookup(semanticScope, processedQuery);
+        if (semanticProbe.hit()) {
+            return aiGatewayService.replayToListener("ChatBot", semanticProbe.cachedAnswer());
+        }
 
         try {
-            return aiGatewayService.callText(promptText, "ChatBot", cacheKey, Duration.ofMinutes(10));
+            String answer = aiGatewayService.callText(promptText, "ChatBot", cacheKey, Duration.ofMinutes(10));
+            chatSemanticCache.store(semanticProbe, answer, jobTags);
+            return answer;
         } catch (Exception e) {
             System.out.println(">>> [ChatBot] ⚠️ Dùng fallback do LLM lỗi: " + e.getMessage());
             return buildDeterministicResponse(finalJobs, !exactMatches.isEmpty());
@@ -167,8 +126,7 @@ public class AIService {
     }
 
     private Set<String> loadKnownSkills() {
-        return AiFeatureUtils.buildKnownSkills(
-                skillRepository.findAll().stream().map(Skill::getName).toList());
+        return skillTaxonomyRegistry.knownSkills();
     }
 
     private Set<String> resolveUserSkillPreferences() {
@@ -190,11 +148,25 @@ public class AIService {
                 .collect(Collectors.toCollection(LinkedHashSet::new));
     }
 
-    private List<Job> findVectorCandidates(String processedQuery, List<Job> activeJobs) {
+    /**
+     * Ứng viên hybrid: trộn thứ tự vector với thứ tự BM25 bằng reciprocal rank fusion. Vector
+     * search lỗi thì chỉ còn BM25; rỗng cả hai (câu hỏi không có từ khóa nào khớp job) thì
+     * JobFeatureIndex chấm toàn bộ job.
+     */
+    private List<Long> findCandidateIds(JobFeatureIndex jobIndex, String processedQuery) {
+        List<Long> vectorIds = findVectorCandidateIds(processedQuery);
+        List<Long> lexicalIds = jobIndex.lexicalCandidateIds(processedQuery, VECTOR_TOP_K);
+        return Bm25Index.fuse(List.of(vectorIds, lexicalIds), VECTOR_TOP_K);
+    }
+
+    /**
+     * Id job theo thứ tự độ tương đồng; rỗng khi vector search lỗi hoặc không có kết quả.
+     */
+    private List<Long> findVectorCandidateIds(String processedQuery) {
         try {
             List<Document> similarDocs = findJobVectorDocuments(processedQuery);
             if (similarDocs == null || similarDocs.isEmpty()) {
-                return activeJobs;
+                return List.of();
             }
 
             LinkedHashSet<Long> orderedIds = new LinkedHashSet<>();
@@ -204,26 +176,11 @@ public class AIService {
                     orderedIds.add(jobId);
                 }
             }
-
-            if (orderedIds.isEmpty()) {
-                return activeJobs;
-            }
-
-            Map<Long, Job> jobsById = activeJobs.stream()
-                    .collect(Collectors.toMap(Job::getId, job -> job, (left, right) -> left, LinkedHashMap::new));
-
-            List<Job> candidates = orderedIds.stream()
-                    .map(jobsById::get)
-                    .filter(Objects::nonNull)
-                    .toList();
-
-            if (!candidates.isEmpty()) {
-                return candidates;
-            }
+            return List.copyOf(orderedIds);
         } catch (Exception e) {
-            System.out.println(">>> [ChatBot] ⚠️ Vector search lỗi, fallback DB-only: " + e.getMessage());
+            System.out.println(">>> [ChatBot] ⚠️ Vector search lỗi, chỉ dùng BM25: " + e.getMessage());
         }
-        return activeJobs;
+        return List.of();
     }
 
     private List<Document> findJobVectorDocuments(String processedQuery) {
@@ -283,15 +240,29 @@ public class AIService {
             jobsBlock.append("Địa điểm: ").append(job.getLocation()).append("\n");
             jobsBlock.append("Skills: ").append(skillNames.isBlank() ? "Chưa cập nhật" : skillNames).append("\n");
             jobsBlock.append("Lý do match: ").append(String.join("; ", rankedJob.reasons())).append("\n");
-            jobsBlock.append("Mô tả rút gọn: ").append(aiGatewayService.sanitizeForPrompt(job.getDescription(), 420)).append("\n");
+            jobsBlock.append("Mô tả rút gọn: ")
+                    .append(TokenEstimator.truncate(PromptCompiler.sanitize(job.getDescription()), 110))
+                    .append("\n");
             jobsBlock.append("-----\n");
         }
 
         String profileBlock = userSkills.isEmpty()
                 ? "Người dùng chưa có hồ sơ kỹ năng cá nhân hóa."
                 : "Ưu tiên kỹ năng của người dùng: " + String.join(", ", userSkills);
+        String matchCriteria = """
+                exactMatchMode=%s
+                requestedLocation=%s
+                requestedMinSalary=%s
+                requestedSkills=%s
+                keywords=%s
+                """.formatted(
+                exactMatchMode,
+                intent.location() == null ? "none" : intent.location(),
+                intent.minSalary() == null ? "none" : intent.minSalary(),
+                intent.requestedSkills().isEmpty() ? "none" : String.join(", ", intent.requestedSkills()),
+                intent.keywords().isEmpty() ? "none" : String.join(", ", intent.keywords()));
 
-        return """
+        String template = """
                 Bạn là JobFind AI, trợ lý tư vấn việc làm IT.
                 Chỉ được dùng đúng dữ liệu job bên dưới. Không được bịa công ty, kỹ năng, lương hay địa điểm.
                 Nếu dữ liệu không có thì nói rõ là chưa có dữ liệu.
@@ -310,24 +281,20 @@ public class AIService {
                 3. Nếu đây chỉ là match gần đúng, nói rõ "kết quả gần đúng" ở câu mở đầu.
                 4. Không được lặp lại job trùng nhau.
                 5. Trả lời bằng tiếng Việt, ngắn gọn, giàu thông tin, không dùng markdown code block.
-                """.formatted(
-                aiGatewayService.boundedBlock("USER_QUERY", userMessage, 500),
-                aiGatewayService.boundedBlock("MATCH_CRITERIA",
-                        """
-                                exactMatchMode=%s
-                                requestedLocation=%s
-                                requestedMinSalary=%s
-                                requestedSkills=%s
-                                keywords=%s
-                                """.formatted(
-                                exactMatchMode,
-                                intent.location() == null ? "none" : intent.location(),
-                                intent.minSalary() == null ? "none" : intent.minSalary(),
-                                intent.requestedSkills().isEmpty() ? "none" : String.join(", ", intent.requestedSkills()),
-                                intent.keywords().isEmpty() ? "none" : String.join(", ", intent.keywords())),
-                        600),
-                aiGatewayService.boundedBlock("USER_PROFILE", profileBlock, 400),
-                aiGatewayService.boundedBlock("JOB_CANDIDATES", jobsBlock.toString(), 3500));
+                """;
+        // Câu hỏi và tiêu chí luôn được giữ trọn, danh sách job lấp phần ngân sách còn lại.
+        CompiledPrompt compiled = PromptCompiler.budget(CHAT_PROMPT_TOKEN_BUDGET)
+                .fixed(template)
+                .section("USER_QUERY", userMessage, 4, 200)
+                .section("MATCH_CRITERIA", matchCriteria, 3, 200)
+                .section("USER_PROFILE", profileBlock, 2, 150)
+                .section("JOB_CANDIDATES", jobsBlock.toString(), 1, 1500)
+                .compile();
+        return template.formatted(
+                compiled.block("USER_QUERY"),
+                compiled.block("MATCH_CRITERIA"),
+                compiled.block("USER_PROFILE"),
+                compiled.block("JOB_CANDIDATES"));
     }
 
     private String buildDeterministicResponse(List<RankedJob> rankedJobs, boolean exactMatchMode) {
@@ -350,7 +317,7 @@ public class AIService {
         return response.toString().trim();
     }
 
-    private String buildNoResultMessage(ChatIntent intent, List<Job> activeJobs) {
+    private String buildNoResultMessage(ChatIntent intent, List<String> sampleSkills) {
         List<String> suggestions = new ArrayList<>();
         if (intent.location() != null) {
             suggestions.add("bỏ bớt ràng buộc địa điểm `" + intent.location() + "`");
@@ -362,11 +329,7 @@ public class AIService {
             suggestions.add("thử tìm theo 1-2 kỹ năng chính thay vì tất cả kỹ năng");
         }
 
-        String popularSkills = activeJobs.stream()
-                .flatMap(job -> AiFeatureUtils.jobSkillNames(job).stream())
-                .filter(Objects::nonNull)
-                .limit(6)
-                .collect(Collectors.joining(", "));
+        String popularSkills = String.join(", ", sampleSkills);
 
         StringBuilder response = new StringBuilder("Hiện tôi chưa tìm thấy job khớp đủ điều kiện bạn đang hỏi.");
         if (!suggestions.isEmpty()) {
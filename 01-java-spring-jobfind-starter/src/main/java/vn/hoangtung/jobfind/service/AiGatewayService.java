@@ -3,34 +3,147 @@ package vn.hoangtung.jobfind.service;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Collection;
 import java.util.HexFormat;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
+import org.springframework.ai.chat.metadata.Usage;
 import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.StreamingChatModel;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Scheduler;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import vn.hoangtung.jobfind.util.ai.AdaptiveConcurrencyLimiter;
+import vn.hoangtung.jobfind.util.ai.CacheTagIndex;
+import vn.hoangtung.jobfind.util.ai.CircuitBreaker;
+import vn.hoangtung.jobfind.util.ai.PromptCompiler;
+import vn.hoangtung.jobfind.util.ai.TokenEstimator;
+import vn.hoangtung.jobfind.util.ai.UpstreamErrors;
+import vn.hoangtung.jobfind.util.error.AiUnavailableException;
 
 @Service
 public class AiGatewayService {
 
     private static final int MAX_RETRIES = 2;
     private static final Duration DEFAULT_CACHE_TTL = Duration.ofMinutes(30);
+    private static final String CACHE_METRIC_NAME = "ai.prompt.cache";
+    // Chi phí cố định ước lượng cho mỗi entry (object header, record, node của cache).
+    private static final int CACHE_ENTRY_OVERHEAD_BYTES = 96;
+    private static final Duration STREAM_TIMEOUT = Duration.ofMinutes(2);
+    private static final Duration BACKOFF_BASE = Duration.ofMillis(500);
+    private static final Duration BACKOFF_CAP = Duration.ofSeconds(8);
+    private static final Duration MAX_RETRY_AFTER_WAIT = Duration.ofSeconds(10);
+    private static final Duration LIMITER_MAX_WAIT = Duration.ofSeconds(10);
+    private static final int BREAKER_FAILURE_THRESHOLD = 5;
+    private static final Duration BREAKER_OPEN_DURATION = Duration.ofSeconds(30);
 
     private final ChatModel chatModel;
     private final ObjectMapper objectMapper;
-    private final ConcurrentMap<String, CacheEntry> promptCache = new ConcurrentHashMap<>();
-
-    public AiGatewayService(ChatModel chatModel, ObjectMapper objectMapper) {
+    private final MeterRegistry meterRegistry;
+    private final Cache<String, CacheEntry> promptCache;
+    private final AiResponseDiskCache diskCache;
+    // Tag (vd: job:42) -> cache key, để invalidate đúng các entry bị ảnh hưởng khi dữ liệu nguồn đổi.
+    private final CacheTagIndex cacheTags = new CacheTagIndex(Duration.ofHours(1), 100_000);
+    // Single-flight: các lời gọi cùng cacheKey đang chạy dùng chung một future thay vì gọi LLM lặp lại.
+    private final ConcurrentMap<String, CompletableFuture<String>> inFlightCalls = new ConcurrentHashMap<>();
+    // Listener nhận token theo thời gian thực, gắn theo thread của AI task đang chạy.
+    private final ThreadLocal<TokenListener> tokenListener = new ThreadLocal<>();
+    // Chặn dồn request lên Groq: AIMD giới hạn số lời gọi song song, breaker cắt hẳn khi upstream sập.
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter = new AdaptiveConcurrencyLimiter(4, 1, 16);
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(BREAKER_FAILURE_THRESHOLD,
+            BREAKER_OPEN_DURATION, Clock.systemUTC());
+
+    public AiGatewayService(
+            ChatModel chatModel,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            AiResponseDiskCache diskCache,
+            @Value("${hoangtung.ai.prompt-cache.max-bytes:67108864}") long maxCacheBytes) {
         this.chatModel = chatModel;
         this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.promptCache = buildPromptCache(maxCacheBytes);
+        this.diskCache = diskCache;
+
+        CaffeineCacheMetrics.monitor(meterRegistry, promptCache, CACHE_METRIC_NAME);
+        Gauge.builder(CACHE_METRIC_NAME + ".bytes", this, AiGatewayService::cachedBytes)
+                .description("Tổng dung lượng ước lượng (bytes) của các response đang nằm trong prompt cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder(CACHE_METRIC_NAME + ".max.bytes", () -> maxCacheBytes)
+                .description("Ngân sách bytes tối đa của prompt cache")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("ai.upstream.concurrency.limit", concurrencyLimiter, AdaptiveConcurrencyLimiter::currentLimit)
+                .description("Số lời gọi LLM song song tối đa hiện tại (AIMD)")
+                .register(meterRegistry);
+        Gauge.builder("ai.upstream.concurrency.inflight", concurrencyLimiter, AdaptiveConcurrencyLimiter::inFlight)
+                .description("Số lời gọi LLM đang chạy")
+                .register(meterRegistry);
+        Gauge.builder("ai.upstream.circuit.open", circuitBreaker,
+                breaker -> breaker.state() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .description("1 nếu circuit breaker của LLM đang mở hoặc half-open")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Prompt cache có giới hạn theo tổng bytes của response:
+     * - Caffeine dùng W-TinyLFU để quyết định entry nào được giữ lại khi vượt ngân sách
+     * - TTL tính theo từng entry (mỗi lời gọi callText tự truyền TTL của mình)
+     * - Scheduler hệ thống dọn entry hết hạn chủ động, không chờ tới lần đọc kế tiếp
+     */
+    private static Cache<String, CacheEntry> buildPromptCache(long maxCacheBytes) {
+        return Caffeine.newBuilder()
+                .maximumWeight(Math.max(1, maxCacheBytes))
+                .weigher((String key, CacheEntry entry) -> estimateEntryBytes(key, entry))
+                .expireAfter(new Expiry<String, CacheEntry>() {
+                    @Override
+                    public long expireAfterCreate(String key, CacheEntry entry, long currentTime) {
+                        return entry.ttlNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CacheEntry entry, long currentTime,
+                            long currentDuration) {
+                        return entry.ttlNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CacheEntry entry, long currentTime,
+                            long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .scheduler(Scheduler.systemScheduler())
+                .recordStats()
+                .build();
     }
 
     public String callText(String promptText, String context) {
@@ -51,28 +164,156 @@ public class AiGatewayService {
         }
 
         String effectiveKey = cacheKey == null || cacheKey.isBlank() ? null : cacheKey;
-        if (effectiveKey != null) {
-            CacheEntry cached = promptCache.get(effectiveKey);
-            if (cached != null && !cached.isExpired(ttl)) {
-                return cached.response();
+        if (effectiveKey == null) {
+            return invokeWithRetry(promptText, context, options);
+        }
+
+        String cached = readCache(effectiveKey, ttl);
+        if (cached != null) {
+            return replayToListener(context, cached);
+        }
+
+        CompletableFuture<String> flight = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlightCalls.putIfAbsent(effectiveKey, flight);
+        if (existing != null) {
+            return replayToListener(context, awaitInFlight(existing, context));
+        }
+
+        try {
+            // Kiểm tra lại: leader trước có thể vừa ghi cache rồi rời khỏi inFlightCalls.
+            String response = readCache(effectiveKey, ttl);
+            if (response != null) {
+                replayToListener(context, response);
+            } else {
+                response = invokeWithRetry(promptText, context, options);
+                if (response != null) {
+                    Instant createdAt = Instant.now();
+                    promptCache.put(effectiveKey, new CacheEntry(response, createdAt, ttl));
+                    diskCache.put(effectiveKey, response, createdAt, ttl);
+                }
+            }
+            flight.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightCalls.remove(effectiveKey, flight);
+        }
+    }
+
+    /**
+     * Gắn listener cho mọi lời gọi callText trong action (kể cả lời gọi nằm sâu trong các service khác)
+     * trên thread hiện tại, nhờ đó AI task có thể stream token mà không phải đổi chữ ký từng service.
+     */
+    public <T> T withTokenListener(TokenListener listener, Supplier<T> action) {
+        TokenListener previous = tokenListener.get();
+        tokenListener.set(listener);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                tokenListener.remove();
+            } else {
+                tokenListener.set(previous);
             }
         }
+    }
+
+    /**
+     * Huỷ lời gọi đang chạy theo cacheKey: các caller đang chờ nhận CancellationException,
+     * còn request LLM của leader vẫn chạy nốt nhưng kết quả không được chia sẻ nữa.
+     */
+    public boolean cancelInFlight(String cacheKey) {
+        if (cacheKey == null) {
+            return false;
+        }
+        CompletableFuture<String> flight = inFlightCalls.remove(cacheKey);
+        return flight != null && flight.cancel(false);
+    }
+
+    public CircuitBreaker.State circuitState() {
+        return circuitBreaker.state();
+    }
+
+    public int inFlightCount() {
+        return inFlightCalls.size();
+    }
 
+    private String readCache(String key, Duration ttl) {
+        CacheEntry cached = promptCache.getIfPresent(key);
+        if (cached != null && !cached.isExpired(ttl)) {
+            return cached.response();
+        }
+
+        // L1 miss (vd: vừa redeploy) -> thử tầng disk rồi nạp ngược lên RAM.
+        CacheEntry stored = diskCache.get(key)
+                .map(entry -> new CacheEntry(entry.response(), entry.createdAt(), ttl))
+                .orElse(null);
+        if (stored == null || stored.isExpired(ttl)) {
+            return null;
+        }
+        promptCache.put(key, stored);
+        return stored.response();
+    }
+
+    private String awaitInFlight(CompletableFuture<String> flight, String context) {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            // Caller bị ngắt (vd: task bị huỷ) chỉ ngừng chờ, không ảnh hưởng leader và các caller khác.
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Đã huỷ chờ phản hồi AI cho " + context);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException("AI không phản hồi cho " + context + ": " + e.getCause().getMessage(),
+                    e.getCause());
+        }
+    }
+
+    private String invokeWithRetry(String promptText, String context, AiCallOptions options) {
+        TokenListener listener = tokenListener.get();
         Exception lastError = null;
         for (int attempt = 1; attempt <= MAX_RETRIES; attempt++) {
+            acquireUpstreamSlot(context);
             try {
-                String response = chatModel.call(buildPrompt(promptText, options))
-                        .getResult()
-                        .getOutput()
-                        .getContent();
-
-                if (effectiveKey != null) {
-                    promptCache.put(effectiveKey, new CacheEntry(response, Instant.now()));
+                if (listener != null && attempt > 1) {
+                    // Client bỏ phần token đã nhận của lần thử trước.
+                    listener.onReset(context);
+                }
+                ModelReply reply;
+                if (listener != null && chatModel instanceof StreamingChatModel streamingChatModel) {
+                    reply = invokeStreaming(streamingChatModel, buildPrompt(promptText, options), context, listener);
+                } else {
+                    ChatResponse chatResponse = chatModel.call(buildPrompt(promptText, options));
+                    reply = new ModelReply(chatResponse.getResult().getOutput().getContent(), usageOf(chatResponse));
                 }
-                return response;
+                concurrencyLimiter.onSuccess();
+                circuitBreaker.onSuccess();
+                recordTokenUsage(context, promptText, reply);
+                return reply.text();
             } catch (Exception e) {
                 lastError = e;
+                boolean overloaded = UpstreamErrors.isOverloaded(e);
+                Duration retryAfter = overloaded ? UpstreamErrors.retryAfter(e) : null;
+                if (overloaded) {
+                    concurrencyLimiter.onDropped();
+                } else {
+                    concurrencyLimiter.onIgnored();
+                }
+                if (UpstreamErrors.isUnavailable(e)) {
+                    circuitBreaker.onFailure(retryAfter);
+                } else {
+                    // Lỗi của chính lời gọi (400, prompt sai): không làm mở breaker, chỉ trả lượt thử half-open.
+                    circuitBreaker.onAborted();
+                }
                 System.out.println(">>> [" + context + "] ⚠️ Lần " + attempt + " thất bại: " + e.getMessage());
+
+                if (attempt < MAX_RETRIES && !sleepBeforeRetry(attempt, retryAfter)) {
+                    break;
+                }
             }
         }
 
@@ -80,6 +321,121 @@ public class AiGatewayService {
                 + (lastError != null ? lastError.getMessage() : "unknown error"));
     }
 
+    private void acquireUpstreamSlot(String context) {
+        if (!circuitBreaker.tryAcquire()) {
+            Duration remaining = circuitBreaker.remainingOpen();
+            throw new AiUnavailableException("AI đang tạm ngưng cho " + context + ", thử lại sau "
+                    + remaining.toSeconds() + "s", remaining.plusSeconds(1));
+        }
+        boolean acquired;
+        try {
+            acquired = concurrencyLimiter.tryAcquire(LIMITER_MAX_WAIT);
+        } catch (InterruptedException e) {
+            circuitBreaker.onAborted();
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Đã huỷ chờ phản hồi AI cho " + context);
+        }
+        if (!acquired) {
+            circuitBreaker.onAborted();
+            throw new AiUnavailableException("AI đang quá tải cho " + context + " ("
+                    + concurrencyLimiter.currentLimit() + " lời gọi song song)", LIMITER_MAX_WAIT);
+        }
+    }
+
+    /**
+     * Chờ theo exponential backoff có jitter, tôn trọng Retry-After của upstream.
+     * Trả false nếu không nên thử lại (Retry-After quá dài so với request đồng bộ).
+     */
+    private boolean sleepBeforeRetry(int attempt, Duration retryAfter) {
+        if (retryAfter != null && retryAfter.compareTo(MAX_RETRY_AFTER_WAIT) > 0) {
+            return false;
+        }
+        Duration delay = UpstreamErrors.backoff(attempt, BACKOFF_BASE, BACKOFF_CAP, retryAfter);
+        try {
+            Thread.sleep(delay.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Đã huỷ thử lại lời gọi AI");
+        }
+    }
+
+    private ModelReply invokeStreaming(StreamingChatModel streamingChatModel, Prompt prompt, String context,
+            TokenListener listener) {
+        StringBuilder fullResponse = new StringBuilder();
+        AtomicReference<Usage> lastUsage = new AtomicReference<>();
+        streamingChatModel.stream(prompt)
+                .doOnNext(chunk -> {
+                    String delta = extractDelta(chunk);
+                    if (!delta.isEmpty()) {
+                        fullResponse.append(delta);
+                        listener.onToken(context, delta);
+                    }
+                    // Usage (nếu provider gửi) nằm ở chunk cuối cùng.
+                    Usage usage = usageOf(chunk);
+                    if (usage != null) {
+                        lastUsage.set(usage);
+                    }
+                })
+                .blockLast(STREAM_TIMEOUT);
+        return new ModelReply(fullResponse.toString(), lastUsage.get());
+    }
+
+    /**
+     * Ghi nhận token theo từng loại lời gọi (context): số liệu do provider trả về nếu có,
+     * ngược lại dùng ước lượng local (tag source=estimate) để dashboard không bị trống.
+     */
+    private void recordTokenUsage(String context, String promptText, ModelReply reply) {
+        String callType = context == null || context.isBlank() ? "unknown" : context;
+        Usage usage = reply.usage();
+        boolean fromProvider = usage != null;
+        long promptTokens = fromProvider ? usage.getPromptTokens() : TokenEstimator.count(promptText);
+        long completionTokens = fromProvider ? usage.getGenerationTokens() : TokenEstimator.count(reply.text());
+        String source = fromProvider ? "provider" : "estimate";
+
+        tokenSummary("ai.tokens.prompt", callType, source).record(promptTokens);
+        tokenSummary("ai.tokens.completion", callType, source).record(completionTokens);
+        tokenSummary("ai.tokens.prompt.estimated", callType, "estimate").record(TokenEstimator.count(promptText));
+    }
+
+    private DistributionSummary tokenSummary(String name, String callType, String source) {
+        return DistributionSummary.builder(name)
+                .description("Số token mỗi lời gọi LLM theo loại lời gọi")
+                .baseUnit("tokens")
+                .tag("call_type", callType)
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+
+    private static Usage usageOf(ChatResponse response) {
+        if (response == null || response.getMetadata() == null) {
+            return null;
+        }
+        Usage usage = response.getMetadata().getUsage();
+        if (usage == null || usage.getPromptTokens() == null || usage.getGenerationTokens() == null
+                || usage.getPromptTokens() + usage.getGenerationTokens() <= 0) {
+            return null;
+        }
+        return usage;
+    }
+
+    /** Kết quả lấy từ cache (kể cả cache ngoài gateway): đẩy nguyên khối để client hiển thị giống luồng stream. */
+    public String replayToListener(String context, String response) {
+        TokenListener listener = tokenListener.get();
+        if (listener != null && response != null && !response.isEmpty()) {
+            listener.onToken(context, response);
+        }
+        return response;
+    }
+
+    private static String extractDelta(ChatResponse chunk) {
+        if (chunk == null || chunk.getResult() == null || chunk.getResult().getOutput() == null) {
+            return "";
+        }
+        String content = chunk.getResult().getOutput().getContent();
+        return content == null ? "" : content;
+    }
+
     private Prompt buildPrompt(String promptText, AiCallOptions options) {
         AiCallOptions safeOptions = options == null ? AiCallOptions.defaults() : options;
         if (safeOptions.isDefault()) {
@@ -142,20 +498,9 @@ public class AiGatewayService {
     }
 
     public String sanitizeForPrompt(String rawContent, int maxChars) {
-        if (rawContent == null || rawContent.isBlank()) {
-            return "";
-        }
-
-        String sanitized = rawContent
-                .replace("\u0000", "")
-                .replace("```", "'''")
-                .replace("\r\n", "\n")
-                .replace("\r", "\n")
-                .replaceAll("[\\p{Cntrl}&&[^\n\t]]", " ")
-                .trim();
-
+        String sanitized = PromptCompiler.sanitize(rawContent);
         if (maxChars > 0 && sanitized.length() > maxChars) {
-            return sanitized.substring(0, maxChars) + "\n\n[... nội dung đã được cắt bớt ...]";
+            return sanitized.substring(0, maxChars) + PromptCompiler.TRUNCATED_MARKER;
         }
 
         return sanitized;
@@ -175,19 +520,77 @@ public class AiGatewayService {
     }
 
     public void clearCache() {
-        promptCache.clear();
+        promptCache.invalidateAll();
+        diskCache.clear();
+        cacheTags.clear();
+    }
+
+    public void tagCacheKey(String cacheKey, Collection<String> tags) {
+        cacheTags.tag(cacheKey, tags);
+    }
+
+    /** Xóa (cả L1 và L2) mọi entry đã được gắn một trong các tag; trả về số key bị xóa. */
+    public int invalidateTags(Collection<String> tags) {
+        Set<String> keys = cacheTags.drain(tags);
+        for (String key : keys) {
+            promptCache.invalidate(key);
+            diskCache.remove(key);
+        }
+        return keys.size();
     }
 
     public Map<String, CacheEntry> snapshotCache() {
-        return Map.copyOf(promptCache);
+        return Map.copyOf(promptCache.asMap());
+    }
+
+    public long cachedBytes() {
+        promptCache.cleanUp();
+        return weightedCacheBytes(promptCache);
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void sweepExpiredCacheEntries() {
+        promptCache.cleanUp();
+    }
+
+    private static long weightedCacheBytes(Cache<String, CacheEntry> cache) {
+        return cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
     }
 
-    public record CacheEntry(String response, Instant createdAt) {
+    private static int estimateEntryBytes(String key, CacheEntry entry) {
+        // Java String lưu tối đa 2 bytes/ký tự, dùng cận trên để ngân sách không bị vượt.
+        long bytes = 2L * (key.length() + entry.response().length()) + CACHE_ENTRY_OVERHEAD_BYTES;
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+
+    public record CacheEntry(String response, Instant createdAt, Duration ttl) {
         public boolean isExpired(Duration ttl) {
             return ttl == null || ttl.isZero() || ttl.isNegative()
                     ? false
                     : createdAt.plus(ttl).isBefore(Instant.now());
         }
+
+        private long ttlNanos() {
+            if (ttl == null || ttl.isZero() || ttl.isNegative()) {
+                return Long.MAX_VALUE;
+            }
+            // Entry nạp lại từ disk chỉ còn phần TTL chưa dùng hết.
+            Duration remaining = Duration.between(Instant.now(), createdAt.plus(ttl));
+            return remaining.isNegative() ? 0 : remaining.toNanos();
+        }
+    }
+
+    private record ModelReply(String text, Usage usage) {
+    }
+
+    @FunctionalInterface
+    public interface TokenListener {
+        void onToken(String context, String delta);
+
+        default void onReset(String context) {
+        }
     }
 
     public record AiCallOptions(Float temperature, Integer maxTokens) {
@@ -0,0 +1,451 @@
+package vn.hoangtung.jobfind.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import vn.hoangtung.jobfind.util.PrivateDataPathUtil;
+
+/**
+ * Tầng L2 (disk) cho prompt cache của AiGatewayService, giúp cache sống sót qua các lần redeploy.
+ *
+ * File log chỉ ghi nối (append-only) nằm trong hoangtung.ai.prompt-cache.disk.path, ngoài thư mục upload
+ * vì /storage/** phục vụ public toàn bộ upload root còn log chứa response AI (phân tích CV, chat). Mỗi record:
+ * [int độ dài payload][payload][long CRC32]
+ * payload = [byte op][long createdAt][long expiresAt][int len][key UTF-8][int len][response UTF-8]
+ *
+ * Khi khởi động, log được quét tuần tự một lần để dựng index trong RAM (key -> vị trí record),
+ * đọc response dùng positional read nên không chặn nhau. Record hỏng ở cuối file (crash giữa lúc ghi)
+ * bị cắt bỏ. Compaction ghi lại các entry còn hạn sang file mới rồi thay thế nguyên tử.
+ */
+@Service
+public class AiResponseDiskCache {
+
+    private static final String LOG_FILE_NAME = "prompt-cache.log";
+    // Thư mục cũ trong upload root, chỉ dùng để chuyển log ra ngoài
+    private static final String LEGACY_FOLDER = "ai-cache";
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+    private static final int HEADER_BYTES = Integer.BYTES;
+    private static final int TRAILER_BYTES = Long.BYTES;
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+    private static final long MIN_COMPACT_BYTES = 1024 * 1024;
+
+    private final boolean enabled;
+    private final String path;
+    private final String baseURI;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, IndexEntry> index = new ConcurrentHashMap<>();
+
+    private Path logPath;
+    private FileChannel channel;
+    private long liveBytes;
+
+    public AiResponseDiskCache(
+            @Value("${hoangtung.ai.prompt-cache.disk.enabled:true}") boolean enabled,
+            @Value("${hoangtung.ai.prompt-cache.disk.path:data/ai-cache}") String path,
+            @Value("${hoangtung.upload-file.base-uri}") String baseURI) {
+        this.enabled = enabled;
+        this.path = path;
+        this.baseURI = baseURI;
+    }
+
+    @PostConstruct
+    public void open() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Path folderPath = PrivateDataPathUtil.resolveOutsideUploadRoot(path, baseURI);
+            logPath = folderPath.resolve(LOG_FILE_NAME);
+            PrivateDataPathUtil.moveLegacyFile(baseURI, LEGACY_FOLDER, LOG_FILE_NAME, logPath);
+            channel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+
+            long startedAt = System.nanoTime();
+            long validEnd = rebuildIndex();
+            if (validEnd < channel.size()) {
+                System.out.println(">>> [AI-Disk-Cache] ⚠️ Cắt bỏ " + (channel.size() - validEnd)
+                        + " bytes hỏng ở cuối log");
+                channel.truncate(validEnd);
+            }
+            channel.position(channel.size());
+            System.out.println(">>> [AI-Disk-Cache] Nạp " + index.size() + " entry từ disk trong "
+                    + Duration.ofNanos(System.nanoTime() - startedAt).toMillis() + "ms");
+        } catch (Exception e) {
+            // Disk cache chỉ là tối ưu: lỗi IO không được làm hỏng việc khởi động ứng dụng.
+            System.out.println(">>> [AI-Disk-Cache] ⚠️ Không mở được cache trên disk: " + e.getMessage());
+            closeQuietly();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (channel != null) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            System.out.println(">>> [AI-Disk-Cache] ⚠️ Không flush được log: " + e.getMessage());
+        } finally {
+            closeQuietly();
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isAvailable() {
+        return channel != null;
+    }
+
+    public Optional<StoredResponse> get(String key) {
+        if (key == null) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            IndexEntry entry = index.get(key);
+            if (channel == null || entry == null || entry.isExpired(System.currentTimeMillis())) {
+                return Optional.empty();
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(entry.length());
+            readFully(buffer, entry.offset());
+            buffer.flip();
+            Record record = decodeRecord(buffer, entry.length());
+            if (record == null || !key.equals(record.key())) {
+                return Optional.empty();
+            }
+            return Optional.of(new StoredResponse(record.response(), Instant.ofEpochMilli(record.createdAt())));
+        } catch (IOException e) {
+            System.out.println(">>> [AI-Disk-Cache] ⚠️ Đọc cache thất bại: " + e.getMessage());
+            return Optional.empty();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(String key, String response, Instant createdAt, Duration ttl) {
+        if (key == null || response == null) {
+            return;
+        }
+        long expiresAt = ttl == null || ttl.isZero() || ttl.isNegative()
+                ? Long.MAX_VALUE
+                : createdAt.plus(ttl).toEpochMilli();
+        append(new Record(OP_PUT, key, response, createdAt.toEpochMilli(), expiresAt));
+    }
+
+    public void remove(String key) {
+        if (key == null || !index.containsKey(key)) {
+            return;
+        }
+        append(new Record(OP_DELETE, key, "", System.currentTimeMillis(), 0));
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            if (channel == null) {
+                return;
+            }
+            channel.truncate(0);
+            channel.position(0);
+            index.clear();
+            liveBytes = 0;
+        } catch (IOException e) {
+            System.out.println(">>> [AI-Disk-Cache] ⚠️ Xoá cache thất bại: " + e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public long fileBytes() {
+        lock.readLock().lock();
+        try {
+            return channel == null ? 0 : channel.size();
+        } catch (IOException e) {
+            return 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Compact khi phần lớn log là record chết (bị ghi đè, bị xoá hoặc đã hết hạn).
+     */
+    @Scheduled(fixedRate = 600000)
+    public void compactIfNeeded() {
+        long total;
+        long live;
+        lock.writeLock().lock();
+        try {
+            dropExpired(System.currentTimeMillis());
+            total = channel == null ? 0 : channel.size();
+            live = liveBytes;
+        } catch (IOException e) {
+            return;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (total >= MIN_COMPACT_BYTES && live * 2 < total) {
+            compact();
+        }
+    }
+
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            if (channel == null) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            Path tempPath = logPath.resolveSibling(LOG_FILE_NAME + ".compacting");
+            Map<String, IndexEntry> compacted = new ConcurrentHashMap<>();
+            long position = 0;
+            try (FileChannel target = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                for (Map.Entry<String, IndexEntry> item : index.entrySet()) {
+                    IndexEntry entry = item.getValue();
+                    if (entry.isExpired(now)) {
+                        continue;
+                    }
+                    ByteBuffer buffer = ByteBuffer.allocate(entry.length());
+                    readFully(buffer, entry.offset());
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        target.write(buffer);
+                    }
+                    compacted.put(item.getKey(), new IndexEntry(position, entry.length(), entry.expiresAt()));
+                    position += entry.length();
+                }
+                target.force(false);
+            }
+
+            channel.close();
+            Files.move(tempPath, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(logPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+            index.clear();
+            index.putAll(compacted);
+            liveBytes = position;
+        } catch (IOException e) {
+            System.out.println(">>> [AI-Disk-Cache] ⚠️ Compaction thất bại: " + e.getMessage());
+            // Mở lại log cũ để tiếp tục phục vụ; nếu không được thì tắt tầng disk.
+            reopenAfterFailure();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void append(Record record) {
+        ByteBuffer encoded = encodeRecord(record);
+        if (encoded == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (channel == null) {
+                return;
+            }
+            long offset = channel.position();
+            int length = encoded.remaining();
+            while (encoded.hasRemaining()) {
+                channel.write(encoded);
+            }
+            applyToIndex(record, offset, length);
+        } catch (IOException e) {
+            System.out.println(">>> [AI-Disk-Cache] ⚠️ Ghi cache thất bại: " + e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private long rebuildIndex() throws IOException {
+        index.clear();
+        liveBytes = 0;
+        long position = 0;
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (position + HEADER_BYTES + TRAILER_BYTES <= size) {
+            header.clear();
+            readFully(header, position);
+            header.flip();
+            int payloadLength = header.getInt();
+            int recordLength = HEADER_BYTES + payloadLength + TRAILER_BYTES;
+            if (payloadLength <= 0 || recordLength > MAX_RECORD_BYTES || position + recordLength > size) {
+                break;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(recordLength);
+            readFully(buffer, position);
+            buffer.flip();
+            Record record = decodeRecord(buffer, recordLength);
+            if (record == null) {
+                break;
+            }
+            applyToIndex(record, position, recordLength);
+            position += recordLength;
+        }
+
+        dropExpired(System.currentTimeMillis());
+        return position;
+    }
+
+    private void dropExpired(long nowMillis) {
+        index.entrySet().removeIf(item -> {
+            if (!item.getValue().isExpired(nowMillis)) {
+                return false;
+            }
+            liveBytes -= item.getValue().length();
+            return true;
+        });
+    }
+
+    private void applyToIndex(Record record, long offset, int length) {
+        IndexEntry previous;
+        if (record.op() == OP_PUT) {
+            previous = index.put(record.key(), new IndexEntry(offset, length, record.expiresAt()));
+            liveBytes += length;
+        } else {
+            previous = index.remove(record.key());
+        }
+        if (previous != null) {
+            liveBytes -= previous.length();
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        long current = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, current);
+            if (read < 0) {
+                throw new IOException("Log cache bị cắt ngắn");
+            }
+            current += read;
+        }
+    }
+
+    private static ByteBuffer encodeRecord(Record record) {
+        byte[] key = record.key().getBytes(StandardCharsets.UTF_8);
+        byte[] response = record.response().getBytes(StandardCharsets.UTF_8);
+        int payloadLength = 1 + Long.BYTES * 2 + Integer.BYTES * 2 + key.length + response.length;
+        int recordLength = HEADER_BYTES + payloadLength + TRAILER_BYTES;
+        if (recordLength > MAX_RECORD_BYTES) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(recordLength);
+        buffer.putInt(payloadLength);
+        buffer.put(record.op());
+        buffer.putLong(record.createdAt());
+        buffer.putLong(record.expiresAt());
+        buffer.putInt(key.length);
+        buffer.put(key);
+        buffer.putInt(response.length);
+        buffer.put(response);
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_BYTES, payloadLength);
+        buffer.putLong(crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    private static Record decodeRecord(ByteBuffer buffer, int recordLength) {
+        if (recordLength < HEADER_BYTES + TRAILER_BYTES) {
+            return null;
+        }
+        int payloadLength = buffer.getInt();
+        if (payloadLength != recordLength - HEADER_BYTES - TRAILER_BYTES) {
+            return null;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), HEADER_BYTES, payloadLength);
+        if (crc.getValue() != buffer.getLong(HEADER_BYTES + payloadLength)) {
+            return null;
+        }
+
+        try {
+            byte op = buffer.get();
+            long createdAt = buffer.getLong();
+            long expiresAt = buffer.getLong();
+            String key = readString(buffer);
+            String response = readString(buffer);
+            return op == OP_PUT || op == OP_DELETE ? new Record(op, key, response, createdAt, expiresAt) : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalStateException("Độ dài chuỗi không hợp lệ");
+        }
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private void reopenAfterFailure() {
+        try {
+            channel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            long validEnd = rebuildIndex();
+            channel.truncate(validEnd);
+            channel.position(validEnd);
+        } catch (IOException e) {
+            closeQuietly();
+        }
+    }
+
+    private void closeQuietly() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // không còn gì để làm
+            }
+        }
+        channel = null;
+        index.clear();
+        liveBytes = 0;
+    }
+
+    public record StoredResponse(String response, Instant createdAt) {
+    }
+
+    private record Record(byte op, String key, String response, long createdAt, long expiresAt) {
+    }
+
+    private record IndexEntry(long offset, int length, long expiresAt) {
+        boolean isExpired(long nowMillis) {
+            return expiresAt <= nowMillis;
+        }
+    }
+}
@@ -3,34 +3,51 @@ package vn.hoangtung.jobfind.service;
 import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.core.task.TaskRejectedException;
 import org.springframework.scheduling.annotation.Scheduled;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import vn.hoangtung.jobfind.domain.AiTask;
 import vn.hoangtung.jobfind.domain.User;
 import vn.hoangtung.jobfind.domain.request.ReqAnswerDTO;
 import vn.hoangtung.jobfind.domain.request.ReqStartInterviewDTO;
 import vn.hoangtung.jobfind.domain.response.ai.ResAiTaskDTO;
 import vn.hoangtung.jobfind.domain.response.ai.ResAiTaskSubmittedDTO;
+import vn.hoangtung.jobfind.domain.response.ai.ResAiTaskTokenDTO;
 import vn.hoangtung.jobfind.domain.response.ai.ResAnswerFeedbackDTO;
 import vn.hoangtung.jobfind.domain.response.ai.ResCvAnalysisDTO;
 import vn.hoangtung.jobfind.domain.response.ai.ResCvMatchDTO;
@@ -38,6 +55,9 @@ import vn.hoangtung.jobfind.domain.response.ai.ResInterviewQuestionDTO;
 import vn.hoangtung.jobfind.repository.AiTaskRepository;
 import vn.hoangtung.jobfind.repository.UserRepository;
 import vn.hoangtung.jobfind.util.SecurityUtil;
+import vn.hoangtung.jobfind.util.ai.HashedTimingWheel;
+import vn.hoangtung.jobfind.util.ai.ProgressCoalescer;
+import vn.hoangtung.jobfind.util.ai.TaskTypeBulkhead;
 import vn.hoangtung.jobfind.util.constant.AiTaskStatusEnum;
 import vn.hoangtung.jobfind.util.constant.AiTaskTypeEnum;
 
@@ -54,11 +74,27 @@ public class AiTaskExecutorService {
     private final CvDoctorService cvDoctorService;
     private final InterviewCoachService interviewCoachService;
     private final AIService aiService;
-    private final ThreadPoolTaskExecutor aiTaskExecutor;
+    private final AiGatewayService aiGatewayService;
+    private final FileService fileService;
+    private final AsyncTaskExecutor aiTaskExecutor;
+    private final TaskTypeBulkhead aiTaskBulkhead;
     private final JwtDecoder jwtDecoder;
 
-    private final ConcurrentMap<Long, Future<?>> runningTasks = new ConcurrentHashMap<>();
+    private final AiTaskQueueService aiTaskQueueService;
+    private final int workerCapacity;
+    private final int claimBatchSize;
+
+    // Task mà node này đang giữ claim (taskId -> claimToken + Future)
+    private final ConcurrentMap<Long, LocalClaim> runningTasks = new ConcurrentHashMap<>();
     private final ConcurrentMap<Long, CopyOnWriteArrayList<SseEmitter>> taskEmitters = new ConcurrentHashMap<>();
+    // updatedAt của trạng thái cuối cùng đã gửi qua SSE, để relay task chạy ở node khác
+    private final ConcurrentMap<Long, Instant> lastEmittedAt = new ConcurrentHashMap<>();
+    // Deadline timeout và giờ retry của từng task, chỉ chạm vào task đến hạn thay vì quét bảng
+    private final Duration timerTick;
+    private final HashedTimingWheel<TaskTimer> taskTimers;
+    private final ScheduledExecutorService timerExecutor;
+    // Progress giữa chừng: gom theo task rồi ghi theo lô, không findById + save mỗi lần cập nhật
+    private final ProgressCoalescer progressBuffer = new ProgressCoalescer();
 
     public AiTaskExecutorService(
             AiTaskRepository aiTaskRepository,
@@ -67,22 +103,46 @@ public class AiTaskExecutorService {
             CvDoctorService cvDoctorService,
             InterviewCoachService interviewCoachService,
             AIService aiService,
-            @Qualifier("aiTaskExecutor") ThreadPoolTaskExecutor aiTaskExecutor,
-            JwtDecoder jwtDecoder) {
+            AiGatewayService aiGatewayService,
+            FileService fileService,
+            @Qualifier("aiTaskExecutor") AsyncTaskExecutor aiTaskExecutor,
+            TaskTypeBulkhead aiTaskBulkhead,
+            JwtDecoder jwtDecoder,
+            AiTaskQueueService aiTaskQueueService,
+            @Value("${hoangtung.ai.queue.worker-capacity:8}") int workerCapacity,
+            @Value("${hoangtung.ai.queue.claim-batch-size:4}") int claimBatchSize,
+            @Value("${hoangtung.ai.queue.timer-tick-ms:100}") long timerTickMillis) {
         this.aiTaskRepository = aiTaskRepository;
         this.userRepository = userRepository;
         this.objectMapper = objectMapper;
         this.cvDoctorService = cvDoctorService;
         this.interviewCoachService = interviewCoachService;
         this.aiService = aiService;
+        this.aiGatewayService = aiGatewayService;
+        this.fileService = fileService;
         this.aiTaskExecutor = aiTaskExecutor;
+        this.aiTaskBulkhead = aiTaskBulkhead;
         this.jwtDecoder = jwtDecoder;
+        this.aiTaskQueueService = aiTaskQueueService;
+        this.workerCapacity = resolveWorkerCapacity(workerCapacity, aiTaskBulkhead);
+        this.claimBatchSize = Math.max(1, claimBatchSize);
+        this.timerTick = Duration.ofMillis(Math.max(10, timerTickMillis));
+        // 512 ô x 100ms = một vòng 51s; timeout 60-120s chỉ cần 2-3 vòng
+        this.taskTimers = new HashedTimingWheel<>(timerTick, 512, Instant.now());
+        this.timerExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ai-task-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     public ResAiTaskSubmittedDTO submitTask(AiTaskTypeEnum taskType, String inputDataJson, User user) {
         if (user == null) {
             throw new IllegalArgumentException("Vui lòng đăng nhập để sử dụng tác vụ AI bất đồng bộ");
         }
+        if (aiTaskQueueService.isBacklogFull()) {
+            throw new IllegalStateException("Hàng đợi AI đang đầy, vui lòng thử lại sau");
+        }
 
         AiTask task = new AiTask();
         task.setTaskType(taskType);
@@ -96,16 +156,8 @@ public class AiTaskExecutorService {
         task.setLastHeartbeatAt(Instant.now());
         task = aiTaskRepository.save(task);
 
-        try {
-            enqueueTask(task.getId());
-        } catch (TaskRejectedException ex) {
-            task.setStatus(AiTaskStatusEnum.FAILED);
-            task.setErrorMessage("Hàng đợi AI đang đầy, vui lòng thử lại sau");
-            task.setCompletedAt(Instant.now());
-            aiTaskRepository.save(task);
-            emitTaskUpdate(task);
-            throw new IllegalStateException(task.getErrorMessage(), ex);
-        }
+        // Task đã nằm trong DB; nếu node này còn chỗ thì chạy ngay, không thì worker (của bất kỳ node nào) sẽ claim
+        startLocally(task.getId(), taskType);
 
         String statusUrl = "/api/v1/ai/tasks/" + task.getId();
         String streamUrl = statusUrl + "/stream";
@@ -126,23 +178,18 @@ public class AiTaskExecutorService {
 
     public void cancelTask(long taskId, User user) {
         AiTask task = findTaskForUser(taskId, user);
-        if (isTerminal(task.getStatus())) {
-            throw new IllegalArgumentException("Task đã kết thúc nên không thể hủy");
-        }
-
-        task.setStatus(AiTaskStatusEnum.CANCELLED);
-        task.setProgress(0);
-        task.setCompletedAt(Instant.now());
-        task.setCancelledAt(Instant.now());
-        task.setErrorMessage("Task đã bị hủy bởi người dùng");
-        task.setLastHeartbeatAt(Instant.now());
-        task = aiTaskRepository.save(task);
-
-        Future<?> future = runningTasks.remove(taskId);
-        if (future != null) {
-            future.cancel(true);
-        }
-        emitTaskUpdate(task);
+        Instant now = Instant.now();
+        task = aiTaskQueueService.updateIfActive(task.getId(), active -> true, active -> {
+            active.setStatus(AiTaskStatusEnum.CANCELLED);
+            active.setProgress(0);
+            active.setCompletedAt(now);
+            active.setCancelledAt(now);
+            active.setErrorMessage("Task đã bị hủy bởi người dùng");
+        }).orElseThrow(() -> new IllegalArgumentException("Task đã kết thúc nên không thể hủy"));
+
+        // Task đang chạy ở node khác sẽ dừng khi heartbeat của node đó thấy task không còn PROCESSING
+        cancelLocal(taskId);
+        publishTransition(task);
     }
 
     public SseEmitter streamTaskStatus(long taskId, User user) {
@@ -160,7 +207,10 @@ public class AiTaskExecutorService {
         });
         emitter.onError(error -> removeEmitter(taskId, emitter));
 
-        sendTaskEvent(emitter, mapToDto(task));
+        sendEvent(emitter, buildEvent("status", mapToDto(task)));
+        if (task.getUpdatedAt() != null) {
+            lastEmittedAt.merge(taskId, task.getUpdatedAt(), (left, right) -> left.isAfter(right) ? left : right);
+        }
         if (isTerminal(task.getStatus())) {
             emitter.complete();
             removeEmitter(taskId, emitter);
@@ -190,40 +240,119 @@ public class AiTaskExecutorService {
         return user;
     }
 
-    private void enqueueTask(long taskId) {
-        Future<?> future = aiTaskExecutor.submit(() -> runTask(taskId));
-        runningTasks.put(taskId, future);
+    /**
+     * Số task node này giữ claim cùng lúc. Chế độ platform: worker-capacity (khớp thread pool).
+     * Chế độ virtual: tổng giới hạn bulkhead của các loại task trong hàng đợi (chặn bởi max-pending),
+     * để claim không dừng trước khi đạt giới hạn từng loại.
+     */
+    static int resolveWorkerCapacity(int configured, TaskTypeBulkhead bulkhead) {
+        int bulkheadCapacity = bulkhead.capacity(Arrays.stream(AiTaskTypeEnum.values()).map(Enum::name).toList());
+        if (bulkheadCapacity == Integer.MAX_VALUE) {
+            return Math.max(1, configured);
+        }
+        return Math.max(1, bulkheadCapacity);
     }
 
-    private void runTask(long taskId) {
-        AiTask task = aiTaskRepository.findById(taskId).orElse(null);
-        if (task == null || task.getStatus() != AiTaskStatusEnum.PENDING) {
+    /**
+     * Claim task vừa submit nếu node còn chỗ trống; nếu không task vẫn PENDING trong DB.
+     */
+    private void startLocally(long taskId, AiTaskTypeEnum taskType) {
+        if (runningTasks.size() >= workerCapacity || !aiTaskQueueService.hasCapacity(taskType, runningByType())) {
             return;
         }
+        try {
+            aiTaskQueueService.claimPending(taskId).ifPresent(this::startClaimed);
+        } catch (RuntimeException ex) {
+            System.out.println(">>> [AiQueue] ⚠️ Không claim ngay được task #" + taskId + ": " + ex.getMessage());
+        }
+    }
 
-        setTaskSecurityContext(task);
+    private void startClaimed(AiTask task) {
+        LocalClaim claim = new LocalClaim(task.getClaimToken(), task.getTaskType());
+        runningTasks.put(task.getId(), claim);
+        taskTimers.cancel(new TaskTimer(task.getId(), TimerKind.RETRY));
+        scheduleTimeout(task);
+        emitTaskUpdate(task);
         try {
-            task = markProcessing(task);
-            String resultJson = dispatchTask(task);
+            enqueueTask(task.getId(), task.getTaskType(), claim);
+        } catch (TaskRejectedException ex) {
+            // executor của node này đầy: trả task về hàng đợi chung
+            runningTasks.remove(task.getId(), claim);
+            taskTimers.cancel(new TaskTimer(task.getId(), TimerKind.TIMEOUT));
+            aiTaskQueueService.release(task.getId(), claim.token()).ifPresent(this::emitTaskUpdate);
+        }
+    }
+
+    private void enqueueTask(long taskId, AiTaskTypeEnum taskType, LocalClaim claim) {
+        // Chế độ virtual thread không có queue giới hạn: bulkhead thay queue đầy của thread pool
+        if (!aiTaskBulkhead.tryAdmit()) {
+            throw new TaskRejectedException("AI task backlog is full");
+        }
+        claim.admitted.set(true);
+        try {
+            claim.attach(aiTaskExecutor.submit(() -> {
+                try {
+                    aiTaskBulkhead.run(taskType.name(), () -> runTask(taskId, claim));
+                } catch (InterruptedException e) {
+                    // bị hủy khi đang chờ permit
+                    Thread.currentThread().interrupt();
+                } finally {
+                    leaveBulkhead(claim);
+                }
+            }));
+        } catch (RuntimeException e) {
+            leaveBulkhead(claim);
+            throw e;
+        }
+    }
+
+    // Future bị hủy trước khi chạy thì lambda không chạy, nên cancel cũng phải trả chỗ cho bulkhead
+    private void leaveBulkhead(LocalClaim claim) {
+        if (claim.admitted.compareAndSet(true, false)) {
+            aiTaskBulkhead.leave();
+        }
+    }
 
-            task = aiTaskRepository.findById(taskId).orElse(null);
-            if (task == null || isTerminal(task.getStatus())) {
+    private void cancelClaim(LocalClaim claim) {
+        claim.cancel();
+        leaveBulkhead(claim);
+    }
+
+    private void runTask(long taskId, LocalClaim claim) {
+        try {
+            AiTask task = aiTaskRepository.findById(taskId).orElse(null);
+            if (task == null
+                    || task.getStatus() != AiTaskStatusEnum.PROCESSING
+                    || !claim.token().equals(task.getClaimToken())) {
                 return;
             }
 
-            task.setStatus(AiTaskStatusEnum.COMPLETED);
-            task.setResultData(resultJson);
-            task.setProgress(100);
-            task.setCompletedAt(Instant.now());
-            task.setLastHeartbeatAt(Instant.now());
-            task = aiTaskRepository.save(task);
-            emitTaskUpdate(task);
+            setTaskSecurityContext(task);
+            String resultJson;
+            long startedNanos = System.nanoTime();
+            try {
+                resultJson = dispatchTask(task);
+            } finally {
+                aiTaskQueueService.recordServiceTime(task.getTaskType(), Duration.ofNanos(System.nanoTime() - startedNanos));
+            }
+
+            progressBuffer.discard(taskId);
+            Instant now = Instant.now();
+            aiTaskQueueService.updateIfOwned(taskId, claim.token(), owned -> {
+                owned.setStatus(AiTaskStatusEnum.COMPLETED);
+                owned.setResultData(resultJson);
+                owned.setProgress(100);
+                owned.setCompletedAt(now);
+            }).ifPresent(this::publishTransition);
         } catch (CancellationException ex) {
-            markCancelledIfStillActive(taskId, "Task đã bị hủy");
+            markCancelledIfStillOwned(taskId, claim, "Task đã bị hủy");
         } catch (Exception ex) {
-            handleExecutionFailure(taskId, ex);
+            handleExecutionFailure(taskId, claim, ex);
         } finally {
-            runningTasks.remove(taskId);
+            if (runningTasks.remove(taskId, claim)) {
+                taskTimers.cancel(new TaskTimer(taskId, TimerKind.TIMEOUT));
+                progressBuffer.discard(taskId);
+            }
             SecurityContextHolder.clearContext();
         }
     }
@@ -248,19 +377,24 @@ public class AiTaskExecutorService {
         }
 
         updateProgress(taskId, 30);
-        String result = aiService.chat(message);
+        String result = streamTokens(taskId, () -> aiService.chat(message));
         updateProgress(taskId, 90);
         return objectMapper.writeValueAsString(result);
     }
 
     private String handleCvAnalyze(long taskId, JsonNode input) throws Exception {
+        String blobSha256 = input.path("cvBlobSha256").asText("");
+        // Task tạo trước khi input chuyển sang blob vẫn mang đường dẫn file tạm trên node nhận upload
         String tempFilePath = input.path("tempFilePath").asText("");
-        if (tempFilePath.isBlank()) {
-            throw new IllegalArgumentException("Thiếu đường dẫn file CV");
+        if (blobSha256.isBlank() && tempFilePath.isBlank()) {
+            throw new IllegalArgumentException("Thiếu file CV");
         }
+        String originalFileName = input.path("originalFileName").asText("");
 
         updateProgress(taskId, 30);
-        ResCvAnalysisDTO result = cvDoctorService.analyzeCVFromPath(tempFilePath);
+        ResCvAnalysisDTO result = streamTokens(taskId, () -> blobSha256.isBlank()
+                ? cvDoctorService.analyzeCVFromPath(tempFilePath)
+                : cvDoctorService.analyzeCVFromBlob(blobSha256, originalFileName));
         updateProgress(taskId, 90);
         return objectMapper.writeValueAsString(result);
     }
@@ -295,136 +429,281 @@ public class AiTaskExecutorService {
         req.setAnswer(input.path("answer").asText(""));
 
         updateProgress(taskId, 30);
-        ResAnswerFeedbackDTO result = interviewCoachService.submitAnswer(req);
+        ResAnswerFeedbackDTO result = streamTokens(taskId, () -> interviewCoachService.submitAnswer(req));
         updateProgress(taskId, 90);
         return objectMapper.writeValueAsString(result);
     }
 
-    @Scheduled(fixedRate = 15000)
-    public void checkTimeouts() {
-        List<AiTask> processingTasks = aiTaskRepository.findByStatusAndStartedAtBefore(
-                AiTaskStatusEnum.PROCESSING,
-                Instant.now());
+    /**
+     * Chạy action với listener đẩy từng token LLM qua SSE (event "token"), kết quả cuối cùng
+     * vẫn được trả trong event "status" khi task COMPLETED nên client cũ không bị ảnh hưởng.
+     */
+    private <T> T streamTokens(long taskId, Supplier<T> action) {
+        AtomicLong sequence = new AtomicLong();
+        AiGatewayService.TokenListener listener = new AiGatewayService.TokenListener() {
+            @Override
+            public void onToken(String context, String delta) {
+                emitTaskToken(new ResAiTaskTokenDTO(taskId, context, sequence.incrementAndGet(), delta));
+            }
 
-        for (AiTask task : processingTasks) {
-            if (task.getStartedAt() == null || task.getTimeoutSeconds() <= 0) {
-                continue;
+            @Override
+            public void onReset(String context) {
+                emitTaskToken(new ResAiTaskTokenDTO(taskId, context, sequence.incrementAndGet(), null));
             }
+        };
+        return aiGatewayService.withTokenListener(listener, action);
+    }
+
+    /**
+     * Worker: claim task từ hàng đợi chung (PENDING, RETRYING đến hạn, lease hết hạn) theo số chỗ trống;
+     * task nào được chạy trước do scheduler của AiTaskQueueService quyết định.
+     */
+    @Scheduled(fixedDelayString = "${hoangtung.ai.queue.poll-interval-ms:1000}")
+    public void pollQueue() {
+        int free = workerCapacity - runningTasks.size();
+        if (free <= 0) {
+            return;
+        }
+        try {
+            AiTaskQueueService.ClaimResult result = aiTaskQueueService.claimBatch(
+                    Math.min(free, claimBatchSize),
+                    runningByType());
+            result.failed().forEach(this::publishTransition);
+            result.claimed().forEach(this::startClaimed);
+        } catch (RuntimeException ex) {
+            System.out.println(">>> [AiQueue] ⚠️ Claim task lỗi: " + ex.getMessage());
+        }
+    }
 
-            Instant deadline = task.getStartedAt().plusSeconds(task.getTimeoutSeconds());
-            if (deadline.isBefore(Instant.now())) {
-                task.setStatus(AiTaskStatusEnum.TIMEOUT);
-                task.setErrorMessage("Task đã vượt quá thời gian cho phép (" + task.getTimeoutSeconds() + "s)");
-                task.setCompletedAt(Instant.now());
-                task.setLastHeartbeatAt(Instant.now());
-                task = aiTaskRepository.save(task);
-
-                Future<?> future = runningTasks.remove(task.getId());
-                if (future != null) {
-                    future.cancel(true);
+    /**
+     * Gia hạn lease các task node này đang chạy. Mất lease (bị hủy/timeout ở node khác hoặc node khác
+     * đã lấy lại) thì dừng bản chạy ở đây.
+     */
+    @Scheduled(fixedDelayString = "${hoangtung.ai.queue.heartbeat-ms:15000}")
+    public void renewLeases() {
+        runningTasks.forEach((taskId, claim) -> {
+            try {
+                if (!aiTaskQueueService.renewLease(taskId, claim.token()) && runningTasks.remove(taskId, claim)) {
+                    taskTimers.cancel(new TaskTimer(taskId, TimerKind.TIMEOUT));
+                    cancelClaim(claim);
                 }
+            } catch (RuntimeException ex) {
+                System.out.println(">>> [AiQueue] ⚠️ Gia hạn lease task #" + taskId + " lỗi: " + ex.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Client SSE nối vào node này nhưng task chạy ở node khác: đọc trạng thái từ DB và đẩy khi có thay đổi.
+     */
+    @Scheduled(fixedDelayString = "${hoangtung.ai.queue.poll-interval-ms:1000}")
+    public void relayRemoteTaskUpdates() {
+        List<Long> remoteIds = taskEmitters.keySet().stream()
+                .filter(taskId -> !runningTasks.containsKey(taskId))
+                .toList();
+        if (remoteIds.isEmpty()) {
+            return;
+        }
+        for (AiTask task : aiTaskRepository.findAllById(remoteIds)) {
+            Instant last = lastEmittedAt.get(task.getId());
+            if (task.getUpdatedAt() != null && (last == null || task.getUpdatedAt().isAfter(last))) {
                 emitTaskUpdate(task);
             }
         }
     }
 
-    @Scheduled(fixedRate = 10000)
-    public void enqueueRetryingTasks() {
-        List<AiTask> retryingTasks = aiTaskRepository.findByStatusAndNextRetryAtBefore(
-                AiTaskStatusEnum.RETRYING,
-                Instant.now());
+    /**
+     * Ghi progress đã gom trong cửa sổ flush-ms theo một lô JDBC rồi đẩy SSE một lần cho mỗi task
+     * có người xem. Bản bị từ chối nghĩa là claim đã mất (hủy/timeout/node khác lấy): dừng bản chạy ở đây.
+     */
+    @Scheduled(fixedDelayString = "${hoangtung.ai.progress.flush-ms:250}")
+    public void flushProgress() {
+        List<ProgressCoalescer.ProgressUpdate> updates = progressBuffer.drain();
+        if (updates.isEmpty()) {
+            return;
+        }
+        List<ProgressCoalescer.ProgressUpdate> rejected;
+        try {
+            rejected = aiTaskQueueService.flushProgress(updates);
+        } catch (RuntimeException ex) {
+            // progress chỉ để hiển thị: bỏ lô này, lần cập nhật sau sẽ ghi lại
+            System.out.println(">>> [AiQueue] ⚠️ Ghi progress theo lô lỗi: " + ex.getMessage());
+            return;
+        }
+        for (ProgressCoalescer.ProgressUpdate update : rejected) {
+            LocalClaim claim = runningTasks.get(update.taskId());
+            if (claim != null && claim.token().equals(update.claimToken())
+                    && runningTasks.remove(update.taskId(), claim)) {
+                taskTimers.cancel(new TaskTimer(update.taskId(), TimerKind.TIMEOUT));
+                cancelClaim(claim);
+            }
+        }
+
+        List<Long> watched = updates.stream()
+                .filter(update -> !rejected.contains(update))
+                .map(ProgressCoalescer.ProgressUpdate::taskId)
+                .filter(taskEmitters::containsKey)
+                .toList();
+        if (!watched.isEmpty()) {
+            aiTaskRepository.findAllById(watched).forEach(this::emitTaskUpdate);
+        }
+    }
 
-        for (AiTask task : retryingTasks) {
-            if (task.getRetryCount() >= task.getMaxRetries()) {
-                task.setStatus(AiTaskStatusEnum.FAILED);
-                task.setCompletedAt(Instant.now());
-                task.setLastHeartbeatAt(Instant.now());
-                task = aiTaskRepository.save(task);
-                emitTaskUpdate(task);
-                continue;
+    /**
+     * Nạp lại timer từ DB khi khởi động (timeout của task đang PROCESSING, lần retry của task RETRYING)
+     * rồi chạy thread tick riêng, không dùng chung thread @Scheduled với các job truy vấn DB.
+     */
+    @PostConstruct
+    public void startTimers() {
+        try {
+            List<AiTask> activeTasks = aiTaskRepository.findByStatusIn(
+                    List.of(AiTaskStatusEnum.PROCESSING, AiTaskStatusEnum.RETRYING));
+            for (AiTask task : activeTasks) {
+                if (task.getStatus() == AiTaskStatusEnum.PROCESSING) {
+                    scheduleTimeout(task);
+                } else {
+                    scheduleRetry(task);
+                }
             }
+            System.out.println(">>> [AiQueue] Nạp " + taskTimers.size() + " timer timeout/retry từ DB");
+        } catch (RuntimeException ex) {
+            // task bị bỏ sót vẫn được worker claim lại khi lease hết hạn hoặc khi đến nextRetryAt
+            System.out.println(">>> [AiQueue] ⚠️ Không nạp được timer từ DB: " + ex.getMessage());
+        }
+        timerExecutor.scheduleWithFixedDelay(this::fireDueTimers, timerTick.toMillis(), timerTick.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
 
-            task.setStatus(AiTaskStatusEnum.PENDING);
-            task.setRetryCount(task.getRetryCount() + 1);
-            task.setProgress(0);
-            task.setStartedAt(null);
-            task.setCompletedAt(null);
-            task.setNextRetryAt(null);
-            task.setLastHeartbeatAt(Instant.now());
-            task = aiTaskRepository.save(task);
-            emitTaskUpdate(task);
+    @PreDestroy
+    public void stopTimers() {
+        timerExecutor.shutdownNow();
+    }
 
+    private void fireDueTimers() {
+        for (TaskTimer timer : taskTimers.advance(Instant.now())) {
             try {
-                enqueueTask(task.getId());
-            } catch (TaskRejectedException ex) {
-                task.setStatus(AiTaskStatusEnum.RETRYING);
-                task.setErrorMessage("Hàng đợi AI đang đầy, sẽ thử lại sau");
-                task.setNextRetryAt(Instant.now().plusSeconds(15));
-                task = aiTaskRepository.save(task);
-                emitTaskUpdate(task);
+                if (timer.kind() == TimerKind.TIMEOUT) {
+                    handleTimeout(timer.taskId());
+                } else {
+                    handleRetryDue(timer.taskId());
+                }
+            } catch (RuntimeException ex) {
+                System.out.println(">>> [AiQueue] ⚠️ Xử lý timer " + timer + " lỗi: " + ex.getMessage());
             }
         }
     }
 
-    private AiTask markProcessing(AiTask task) {
-        task.setStatus(AiTaskStatusEnum.PROCESSING);
-        task.setStartedAt(Instant.now());
-        task.setCompletedAt(null);
-        task.setProgress(10);
-        task.setLastHeartbeatAt(Instant.now());
-        task = aiTaskRepository.save(task);
-        emitTaskUpdate(task);
-        return task;
+    private void handleTimeout(long taskId) {
+        Instant now = Instant.now();
+        Optional<AiTask> timedOut = aiTaskQueueService.updateIfActive(taskId,
+                active -> active.getStatus() == AiTaskStatusEnum.PROCESSING && isPastDeadline(active),
+                active -> {
+                    active.setStatus(AiTaskStatusEnum.TIMEOUT);
+                    active.setErrorMessage("Task đã vượt quá thời gian cho phép (" + active.getTimeoutSeconds() + "s)");
+                    active.setCompletedAt(now);
+                });
+        if (timedOut.isPresent()) {
+            cancelLocal(taskId);
+            publishTransition(timedOut.get());
+            return;
+        }
+        // Task đã được claim lại (startedAt mới): hẹn lại theo deadline mới
+        aiTaskRepository.findById(taskId)
+                .filter(task -> task.getStatus() == AiTaskStatusEnum.PROCESSING)
+                .ifPresent(this::scheduleTimeout);
     }
 
-    private void updateProgress(long taskId, int progress) {
-        AiTask task = aiTaskRepository.findById(taskId)
-                .orElseThrow(() -> new CancellationException("Task không còn tồn tại"));
-        if (isTerminal(task.getStatus())) {
-            throw new CancellationException("Task đã kết thúc");
+    /**
+     * Đến giờ retry: claim ngay nếu node còn chỗ, không thì để worker (của node bất kỳ) claim ở vòng poll.
+     */
+    private void handleRetryDue(long taskId) {
+        if (runningTasks.size() >= workerCapacity) {
+            return;
         }
-        task.setProgress(Math.max(0, Math.min(99, progress)));
-        task.setLastHeartbeatAt(Instant.now());
-        task = aiTaskRepository.save(task);
-        emitTaskUpdate(task);
+        aiTaskQueueService.claimDueRetry(taskId, runningByType()).ifPresent(this::startClaimed);
     }
 
-    private void handleExecutionFailure(long taskId, Exception ex) {
-        AiTask task = aiTaskRepository.findById(taskId).orElse(null);
-        if (task == null || isTerminal(task.getStatus())) {
+    private void scheduleTimeout(AiTask task) {
+        if (task.getStartedAt() == null || task.getTimeoutSeconds() <= 0) {
             return;
         }
+        taskTimers.schedule(new TaskTimer(task.getId(), TimerKind.TIMEOUT),
+                task.getStartedAt().plusSeconds(task.getTimeoutSeconds()));
+    }
 
-        String message = ex.getMessage() != null ? ex.getMessage() : "Lỗi không xác định";
-        task.setErrorMessage(message);
-        task.setProgress(0);
-        task.setLastHeartbeatAt(Instant.now());
+    private void scheduleRetry(AiTask task) {
+        taskTimers.schedule(new TaskTimer(task.getId(), TimerKind.RETRY),
+                task.getNextRetryAt() != null ? task.getNextRetryAt() : Instant.now());
+    }
 
-        if (task.getRetryCount() < task.getMaxRetries()) {
-            task.setStatus(AiTaskStatusEnum.RETRYING);
-            task.setNextRetryAt(Instant.now().plusSeconds(retryBackoffSeconds(task.getRetryCount())));
-            task.setCompletedAt(null);
-        } else {
-            task.setStatus(AiTaskStatusEnum.FAILED);
-            task.setCompletedAt(Instant.now());
+    private boolean isPastDeadline(AiTask task) {
+        if (task.getStartedAt() == null || task.getTimeoutSeconds() <= 0) {
+            return false;
         }
+        return task.getStartedAt().plusSeconds(task.getTimeoutSeconds()).isBefore(Instant.now());
+    }
 
-        task = aiTaskRepository.save(task);
-        emitTaskUpdate(task);
+    private Map<String, Integer> runningByType() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (LocalClaim claim : runningTasks.values()) {
+            counts.merge(claim.taskType().name(), 1, Integer::sum);
+        }
+        return counts;
     }
 
-    private void markCancelledIfStillActive(long taskId, String message) {
-        AiTask task = aiTaskRepository.findById(taskId).orElse(null);
-        if (task == null || isTerminal(task.getStatus())) {
-            return;
+    private void cancelLocal(long taskId) {
+        taskTimers.cancel(new TaskTimer(taskId, TimerKind.TIMEOUT));
+        progressBuffer.discard(taskId);
+        LocalClaim claim = runningTasks.remove(taskId);
+        if (claim != null) {
+            cancelClaim(claim);
         }
-        task.setStatus(AiTaskStatusEnum.CANCELLED);
-        task.setErrorMessage(message);
-        task.setCompletedAt(Instant.now());
-        task.setCancelledAt(Instant.now());
-        task.setLastHeartbeatAt(Instant.now());
-        task = aiTaskRepository.save(task);
-        emitTaskUpdate(task);
+    }
+
+    private void updateProgress(long taskId, int progress) {
+        LocalClaim claim = runningTasks.get(taskId);
+        if (claim == null) {
+            throw new CancellationException("Task không còn thuộc node này");
+        }
+        if (claim.cancelled) {
+            throw new CancellationException("Task đã kết thúc hoặc đã chuyển sang node khác");
+        }
+        // flushProgress ghi xuống DB và đẩy SSE; mất claim thì flush phát hiện và hủy bản chạy ở đây
+        progressBuffer.offer(taskId, claim.token(), Math.max(0, Math.min(99, progress)), Instant.now());
+    }
+
+    private void handleExecutionFailure(long taskId, LocalClaim claim, Exception ex) {
+        progressBuffer.discard(taskId);
+        String message = ex.getMessage() != null ? ex.getMessage() : "Lỗi không xác định";
+        Instant now = Instant.now();
+        aiTaskQueueService.updateIfOwned(taskId, claim.token(), task -> {
+            task.setErrorMessage(message);
+            task.setProgress(0);
+            if (task.getRetryCount() < task.getMaxRetries()) {
+                // timer của node này claim lại đúng nextRetryAt; node chết thì worker node khác lấy
+                task.setStatus(AiTaskStatusEnum.RETRYING);
+                task.setNextRetryAt(now.plusSeconds(retryBackoffSeconds(task.getRetryCount())));
+                task.setCompletedAt(null);
+            } else {
+                task.setStatus(AiTaskStatusEnum.FAILED);
+                task.setCompletedAt(now);
+            }
+        }).ifPresent(task -> {
+            if (task.getStatus() == AiTaskStatusEnum.RETRYING) {
+                scheduleRetry(task);
+            }
+            publishTransition(task);
+        });
+    }
+
+    private void markCancelledIfStillOwned(long taskId, LocalClaim claim, String message) {
+        Instant now = Instant.now();
+        aiTaskQueueService.updateIfOwned(taskId, claim.token(), task -> {
+            task.setStatus(AiTaskStatusEnum.CANCELLED);
+            task.setErrorMessage(message);
+            task.setCompletedAt(now);
+            task.setCancelledAt(now);
+        }).ifPresent(this::publishTransition);
     }
 
     private AiTask findTaskForUser(long taskId, User user) {
@@ -461,15 +740,45 @@ public class AiTaskExecutorService {
         return dto;
     }
 
+    /**
+     * Trạng thái mới do node này ghi (điều kiện khóa dòng nên mỗi lần kết thúc chỉ đi qua đây một lần):
+     * kết thúc thì giải phóng input đã giữ cho task, sau đó đẩy SSE.
+     */
+    private void publishTransition(AiTask task) {
+        if (isTerminal(task.getStatus())) {
+            releaseTaskInput(task);
+        }
+        emitTaskUpdate(task);
+    }
+
+    // Blob CV giữ tới khi task kết thúc để retry/node khác vẫn đọc được
+    private void releaseTaskInput(AiTask task) {
+        if (task.getTaskType() != AiTaskTypeEnum.CV_ANALYZE || task.getInputData() == null) {
+            return;
+        }
+        try {
+            String blobSha256 = objectMapper.readTree(task.getInputData()).path("cvBlobSha256").asText("");
+            if (!blobSha256.isBlank()) {
+                fileService.releaseBlobSafely(blobSha256);
+            }
+        } catch (IOException e) {
+            System.out.println(">>> [AiTask] ⚠️ Không đọc được input task #" + task.getId() + ": " + e.getMessage());
+        }
+    }
+
     private void emitTaskUpdate(AiTask task) {
         CopyOnWriteArrayList<SseEmitter> emitters = taskEmitters.get(task.getId());
         if (emitters == null || emitters.isEmpty()) {
             return;
         }
 
-        ResAiTaskDTO dto = mapToDto(task);
+        // Serialize một lần cho mọi emitter đang xem task
+        Set<ResponseBodyEmitter.DataWithMediaType> event = buildEvent("status", mapToDto(task));
         for (SseEmitter emitter : emitters) {
-            sendTaskEvent(emitter, dto);
+            sendEvent(emitter, event);
+        }
+        if (task.getUpdatedAt() != null) {
+            lastEmittedAt.put(task.getId(), task.getUpdatedAt());
         }
 
         if (isTerminal(task.getStatus())) {
@@ -477,14 +786,48 @@ public class AiTaskExecutorService {
                 emitter.complete();
             }
             taskEmitters.remove(task.getId());
+            lastEmittedAt.remove(task.getId());
+        }
+    }
+
+    private void emitTaskToken(ResAiTaskTokenDTO token) {
+        CopyOnWriteArrayList<SseEmitter> emitters = taskEmitters.get(token.getTaskId());
+        if (emitters == null || emitters.isEmpty()) {
+            return;
+        }
+
+        // delta == null nghĩa là lần gọi trước thất bại, client xoá phần token của context đó.
+        String eventName = token.getDelta() == null ? "token-reset" : "token";
+        Set<ResponseBodyEmitter.DataWithMediaType> event = buildEvent(eventName, token);
+        for (SseEmitter emitter : emitters) {
+            sendEvent(emitter, event);
+        }
+    }
+
+    /**
+     * Dựng sẵn frame SSE với payload đã serialize thành JSON; các emitter gửi chung frame này
+     * thay vì mỗi emitter tự chạy message converter trên DTO.
+     */
+    private Set<ResponseBodyEmitter.DataWithMediaType> buildEvent(String name, Object payload) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException ex) {
+            System.out.println(">>> [AiTask] ⚠️ Không serialize được SSE event " + name + ": " + ex.getMessage());
+            return Set.of();
         }
+        return SseEmitter.event()
+                .name(name)
+                .data(json)
+                .build();
     }
 
-    private void sendTaskEvent(SseEmitter emitter, ResAiTaskDTO dto) {
+    private void sendEvent(SseEmitter emitter, Set<ResponseBodyEmitter.DataWithMediaType> event) {
+        if (event.isEmpty()) {
+            return;
+        }
         try {
-            emitter.send(SseEmitter.event()
-                    .name("status")
-                    .data(dto));
+            emitter.send(event);
         } catch (IOException | IllegalStateException ex) {
             emitter.completeWithError(ex);
         }
@@ -498,6 +841,7 @@ public class AiTaskExecutorService {
         emitters.remove(emitter);
         if (emitters.isEmpty()) {
             taskEmitters.remove(taskId);
+            lastEmittedAt.remove(taskId);
         }
     }
 
@@ -513,10 +857,7 @@ public class AiTaskExecutorService {
     }
 
     private boolean isTerminal(AiTaskStatusEnum status) {
-        return status == AiTaskStatusEnum.COMPLETED
-                || status == AiTaskStatusEnum.FAILED
-                || status == AiTaskStatusEnum.CANCELLED
-                || status == AiTaskStatusEnum.TIMEOUT;
+        return AiTaskQueueService.isTerminal(status);
     }
 
     private long retryBackoffSeconds(int retryCount) {
@@ -529,4 +870,52 @@ public class AiTaskExecutorService {
             case CV_ANALYZE, CV_MATCH, INTERVIEW_START, INTERVIEW_ANSWER -> 120;
         };
     }
+
+    private enum TimerKind {
+        TIMEOUT,
+        RETRY
+    }
+
+    private record TaskTimer(long taskId, TimerKind kind) {
+    }
+
+    /**
+     * Claim node này đang giữ: token để ghi có điều kiện, future để hủy bản chạy local.
+     */
+    private static final class LocalClaim {
+        private final String token;
+        private final AiTaskTypeEnum taskType;
+        private final AtomicBoolean admitted = new AtomicBoolean();
+        private volatile Future<?> future;
+        private volatile boolean cancelled;
+
+        LocalClaim(String token, AiTaskTypeEnum taskType) {
+            this.token = token;
+            this.taskType = taskType;
+        }
+
+        String token() {
+            return token;
+        }
+
+        AiTaskTypeEnum taskType() {
+            return taskType;
+        }
+
+        void attach(Future<?> submitted) {
+            future = submitted;
+            // cancel() có thể chạy trước khi submit trả về Future
+            if (cancelled) {
+                submitted.cancel(true);
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            Future<?> current = future;
+            if (current != null) {
+                current.cancel(true);
+            }
+        }
+    }
 }
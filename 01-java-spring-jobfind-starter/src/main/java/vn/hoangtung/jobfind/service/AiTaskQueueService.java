@@ -0,0 +1,375 @@
+package vn.hoangtung.jobfind.service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import vn.hoangtung.jobfind.domain.AiTask;
+import vn.hoangtung.jobfind.repository.AiTaskRepository;
+import vn.hoangtung.jobfind.util.ai.FairShareScheduler;
+import vn.hoangtung.jobfind.util.ai.ProgressCoalescer.ProgressUpdate;
+import vn.hoangtung.jobfind.util.ai.TaskTypeBulkhead;
+import vn.hoangtung.jobfind.util.constant.AiTaskPriorityEnum;
+import vn.hoangtung.jobfind.util.constant.AiTaskStatusEnum;
+import vn.hoangtung.jobfind.util.constant.AiTaskTypeEnum;
+
+/**
+ * Hàng đợi AI task bền vững trên bảng ai_tasks, dùng chung cho nhiều instance backend:
+ * - Task PENDING nằm trong DB nên không mất khi restart
+ * - Worker claim theo lô bằng SELECT ... FOR UPDATE SKIP LOCKED, mỗi lần claim sinh claimToken mới
+ * - Node giữ lease bằng cách cập nhật lastHeartbeatAt; lease hết hạn thì node khác lấy lại task
+ * - Mọi thay đổi của worker đi qua updateIfOwned (khóa dòng + so claimToken) nên worker đã mất
+ *   lease không ghi đè được kết quả của worker mới
+ * - Trong các ứng viên đã khóa, FairShareScheduler chọn task theo lớp ưu tiên, công bằng giữa user
+ *   và giới hạn theo loại; thời gian chờ và thời gian xử lý được đo theo lớp ưu tiên
+ * - Progress giữa chừng được ghi theo lô JDBC (flushProgress), không khóa dòng từng task
+ */
+@Service
+public class AiTaskQueueService {
+
+    private static final EnumSet<AiTaskStatusEnum> BACKLOG_STATUSES =
+            EnumSet.of(AiTaskStatusEnum.PENDING, AiTaskStatusEnum.RETRYING);
+    // Cùng điều kiện với updateIfOwned; ghi progress cũng tính là heartbeat của lease
+    private static final String FLUSH_PROGRESS_SQL = "UPDATE ai_tasks SET progress = ?, updated_at = ?, "
+            + "last_heartbeat_at = ? WHERE id = ? AND claim_token = ? AND status = 'PROCESSING'";
+    // Hibernate lưu Instant theo UTC, ghi tay cũng phải quy về UTC
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    private final AiTaskRepository aiTaskRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final String nodeId;
+    private final Duration lease;
+    private final long maxBacklog;
+    private final int candidateWindow;
+    private final FairShareScheduler scheduler;
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary progressBatchSize;
+
+    public AiTaskQueueService(
+            AiTaskRepository aiTaskRepository,
+            JdbcTemplate jdbcTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${hoangtung.ai.queue.node-id:}") String nodeId,
+            @Value("${hoangtung.ai.queue.lease-seconds:60}") long leaseSeconds,
+            @Value("${hoangtung.ai.queue.max-backlog:500}") long maxBacklog,
+            @Value("${hoangtung.ai.task.type-limits:CV_ANALYZE:4,CV_MATCH:4,CHAT:32,CHAT_SYNC:32}") String typeLimits,
+            @Value("${hoangtung.ai.task.default-limit:16}") int defaultTypeLimit,
+            @Value("${hoangtung.ai.scheduler.aging-seconds:30}") long agingSeconds,
+            @Value("${hoangtung.ai.scheduler.candidate-window:64}") int candidateWindow) {
+        this.aiTaskRepository = aiTaskRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        this.progressBatchSize = DistributionSummary.builder("ai.task.progress.batch.size")
+                .description("Số task được ghi progress trong một lô JDBC")
+                .register(meterRegistry);
+        this.candidateWindow = Math.max(1, candidateWindow);
+        // chi phí mặc định ~ thời gian một lời gọi LLM, được thay bằng số đo thực tế sau vài task
+        this.scheduler = new FairShareScheduler(
+                TaskTypeBulkhead.parseLimits(typeLimits),
+                defaultTypeLimit,
+                Duration.ofSeconds(Math.max(1, agingSeconds)),
+                5000);
+        this.nodeId = nodeId == null || nodeId.isBlank()
+                ? "node-" + UUID.randomUUID().toString().substring(0, 8)
+                : nodeId.trim();
+        this.lease = Duration.ofSeconds(Math.max(5, leaseSeconds));
+        this.maxBacklog = Math.max(1, maxBacklog);
+    }
+
+    public boolean isBacklogFull() {
+        return aiTaskRepository.countByStatusIn(BACKLOG_STATUSES) >= maxBacklog;
+    }
+
+    /**
+     * Claim tối đa limit task. runningByType: số task node này đang chạy theo loại, để áp giới hạn loại.
+     * Task RETRYING/lease hết hạn được tính là một lần retry; task đã hết lượt retry được đánh FAILED
+     * và trả về trong failed để báo cho client. Ứng viên không được chọn giữ nguyên trong hàng đợi.
+     */
+    @Transactional
+    public ClaimResult claimBatch(int limit, Map<String, Integer> runningByType) {
+        if (limit <= 0) {
+            return new ClaimResult(List.of(), List.of());
+        }
+        Instant now = Instant.now();
+        Instant staleBefore = now.minus(lease);
+        List<Long> ids = aiTaskRepository.findClaimableIds(now, staleBefore, candidateWindow);
+        if (ids.isEmpty()) {
+            return new ClaimResult(List.of(), List.of());
+        }
+        List<AiTask> rows = aiTaskRepository.lockClaimableByIds(ids, now, staleBefore);
+        if (rows.isEmpty()) {
+            return new ClaimResult(List.of(), List.of());
+        }
+
+        List<AiTask> failed = new ArrayList<>();
+        Map<Long, AiTask> runnable = new LinkedHashMap<>();
+        List<FairShareScheduler.Candidate> candidates = new ArrayList<>(rows.size());
+        for (AiTask task : rows) {
+            boolean leaseExpired = task.getStatus() == AiTaskStatusEnum.PROCESSING;
+            if (task.getStatus() != AiTaskStatusEnum.PENDING && task.getRetryCount() >= task.getMaxRetries()) {
+                task.setStatus(AiTaskStatusEnum.FAILED);
+                if (leaseExpired) {
+                    task.setErrorMessage("Worker xử lý task đã ngừng phản hồi");
+                }
+                task.setProgress(0);
+                task.setClaimToken(null);
+                task.setCompletedAt(now);
+                task.setLastHeartbeatAt(now);
+                failed.add(task);
+                continue;
+            }
+            runnable.put(task.getId(), task);
+            candidates.add(new FairShareScheduler.Candidate(
+                    task.getId(),
+                    task.getTaskType().name(),
+                    task.getUser() == null ? "anonymous" : String.valueOf(task.getUser().getId()),
+                    priorityOf(task.getTaskType()).ordinal(),
+                    queuedSince(task)));
+        }
+
+        List<AiTask> claimed = new ArrayList<>();
+        for (FairShareScheduler.Candidate candidate : scheduler.select(candidates, limit, runningByType, now)) {
+            AiTask task = runnable.get(candidate.id());
+            if (task.getStatus() == AiTaskStatusEnum.PROCESSING) {
+                System.out.println(">>> [AiQueue] ⚠️ Lấy lại task #" + task.getId() + " từ " + task.getLockedBy()
+                        + " (lease hết hạn)");
+            }
+            if (task.getStatus() != AiTaskStatusEnum.PENDING) {
+                task.setRetryCount(task.getRetryCount() + 1);
+            }
+            queueWaitTimer(task.getTaskType()).record(Duration.between(candidate.queuedSince(), now));
+            markClaimed(task, now);
+            claimed.add(task);
+        }
+
+        List<AiTask> changed = new ArrayList<>(failed);
+        changed.addAll(claimed);
+        aiTaskRepository.saveAll(changed);
+        return new ClaimResult(claimed, failed);
+    }
+
+    /**
+     * Claim task RETRYING vừa đến hạn (do timer gọi), nếu loại task còn chỗ trên node này.
+     */
+    @Transactional
+    public Optional<AiTask> claimDueRetry(long taskId, Map<String, Integer> runningByType) {
+        AiTask task = aiTaskRepository.findByIdForUpdate(taskId).orElse(null);
+        Instant now = Instant.now();
+        if (task == null
+                || task.getStatus() != AiTaskStatusEnum.RETRYING
+                || task.getRetryCount() >= task.getMaxRetries()
+                || (task.getNextRetryAt() != null && task.getNextRetryAt().isAfter(now))
+                || !hasCapacity(task.getTaskType(), runningByType)) {
+            return Optional.empty();
+        }
+        queueWaitTimer(task.getTaskType()).record(Duration.between(queuedSince(task), now));
+        task.setRetryCount(task.getRetryCount() + 1);
+        markClaimed(task, now);
+        return Optional.of(aiTaskRepository.save(task));
+    }
+
+    /** Loại task còn chỗ chạy trên node này không (giới hạn theo loại của scheduler). */
+    public boolean hasCapacity(AiTaskTypeEnum type, Map<String, Integer> runningByType) {
+        return scheduler.hasCapacity(type.name(), runningByType);
+    }
+
+    /** Thời gian xử lý thực tế của một task: ghi histogram và cập nhật chi phí cho scheduler. */
+    public void recordServiceTime(AiTaskTypeEnum type, Duration elapsed) {
+        serviceTimeTimer(type).record(elapsed);
+        scheduler.recordServiceTime(type.name(), elapsed.toMillis());
+    }
+
+    /**
+     * CHAT và trả lời phỏng vấn: người dùng đang chờ trên màn hình; CV_ANALYZE/CV_MATCH: đọc PDF + prompt dài.
+     */
+    public static AiTaskPriorityEnum priorityOf(AiTaskTypeEnum type) {
+        return switch (type) {
+            case CHAT, INTERVIEW_ANSWER -> AiTaskPriorityEnum.INTERACTIVE;
+            case INTERVIEW_START -> AiTaskPriorityEnum.STANDARD;
+            case CV_ANALYZE, CV_MATCH -> AiTaskPriorityEnum.BATCH;
+        };
+    }
+
+    /**
+     * Claim ngay task vừa submit nếu nó vẫn PENDING (chưa bị node khác lấy), không phải chờ vòng poll.
+     */
+    @Transactional
+    public Optional<AiTask> claimPending(long taskId) {
+        AiTask task = aiTaskRepository.findByIdForUpdate(taskId).orElse(null);
+        if (task == null || task.getStatus() != AiTaskStatusEnum.PENDING) {
+            return Optional.empty();
+        }
+        markClaimed(task, Instant.now());
+        return Optional.of(aiTaskRepository.save(task));
+    }
+
+    /**
+     * Gia hạn lease; false khi task không còn thuộc claim này (đã hủy, timeout hoặc bị node khác lấy).
+     */
+    public boolean renewLease(long taskId, String claimToken) {
+        return aiTaskRepository.renewLease(taskId, claimToken, Instant.now()) > 0;
+    }
+
+    /**
+     * Áp thay đổi của worker khi task vẫn PROCESSING theo đúng claimToken; rỗng nếu đã mất quyền.
+     * Chuyển sang trạng thái khác PROCESSING thì claim kết thúc.
+     */
+    @Transactional
+    public Optional<AiTask> updateIfOwned(long taskId, String claimToken, Consumer<AiTask> change) {
+        AiTask task = aiTaskRepository.findByIdForUpdate(taskId).orElse(null);
+        if (task == null
+                || task.getStatus() != AiTaskStatusEnum.PROCESSING
+                || claimToken == null
+                || !claimToken.equals(task.getClaimToken())) {
+            return Optional.empty();
+        }
+        change.accept(task);
+        task.setLastHeartbeatAt(Instant.now());
+        if (task.getStatus() != AiTaskStatusEnum.PROCESSING) {
+            task.setClaimToken(null);
+        }
+        return Optional.of(aiTaskRepository.save(task));
+    }
+
+    /**
+     * Áp thay đổi từ bên ngoài worker (người dùng hủy, hết thời gian) khi task chưa kết thúc
+     * và condition vẫn đúng với dữ liệu mới nhất (đã khóa dòng).
+     */
+    @Transactional
+    public Optional<AiTask> updateIfActive(long taskId, Predicate<AiTask> condition, Consumer<AiTask> change) {
+        AiTask task = aiTaskRepository.findByIdForUpdate(taskId).orElse(null);
+        if (task == null || isTerminal(task.getStatus()) || !condition.test(task)) {
+            return Optional.empty();
+        }
+        change.accept(task);
+        task.setLastHeartbeatAt(Instant.now());
+        if (isTerminal(task.getStatus())) {
+            task.setClaimToken(null);
+        }
+        return Optional.of(aiTaskRepository.save(task));
+    }
+
+    /**
+     * Ghi progress đã gom của nhiều task trong một lô JDBC, bỏ qua JPA (không load entity, không khóa
+     * dòng trước). Trả về các bản không ghi được: task đã kết thúc hoặc claimToken không còn khớp.
+     */
+    public List<ProgressUpdate> flushProgress(List<ProgressUpdate> updates) {
+        if (updates.isEmpty()) {
+            return List.of();
+        }
+        Instant now = Instant.now();
+        int[] counts = jdbcTemplate.batchUpdate(FLUSH_PROGRESS_SQL, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ProgressUpdate update = updates.get(i);
+                Calendar utc = Calendar.getInstance(UTC);
+                ps.setInt(1, update.progress());
+                ps.setTimestamp(2, Timestamp.from(update.at()), utc);
+                ps.setTimestamp(3, Timestamp.from(now), utc);
+                ps.setLong(4, update.taskId());
+                ps.setString(5, update.claimToken());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return updates.size();
+            }
+        });
+        progressBatchSize.record(updates.size());
+
+        List<ProgressUpdate> rejected = new ArrayList<>();
+        for (int i = 0; i < updates.size(); i++) {
+            // SUCCESS_NO_INFO (-2) khi driver gộp lô: coi như đã ghi, heartbeat sẽ phát hiện nếu mất lease
+            if (i < counts.length && counts[i] == 0) {
+                rejected.add(updates.get(i));
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * Trả task đã claim về PENDING khi node này không nhận thêm được (executor từ chối).
+     */
+    @Transactional
+    public Optional<AiTask> release(long taskId, String claimToken) {
+        return updateIfOwned(taskId, claimToken, task -> {
+            task.setStatus(AiTaskStatusEnum.PENDING);
+            task.setProgress(0);
+            task.setStartedAt(null);
+        });
+    }
+
+    // Thời điểm task bắt đầu chờ lần claim này (lần retry tính từ nextRetryAt, lease mất từ lúc hết hạn)
+    private Instant queuedSince(AiTask task) {
+        Instant since = switch (task.getStatus()) {
+            case RETRYING -> task.getNextRetryAt();
+            case PROCESSING -> task.getLastHeartbeatAt() == null ? null : task.getLastHeartbeatAt().plus(lease);
+            default -> task.getCreatedAt();
+        };
+        return since != null ? since : Instant.now();
+    }
+
+    private Timer queueWaitTimer(AiTaskTypeEnum type) {
+        return Timer.builder("ai.task.queue.wait")
+                .description("Thời gian AI task chờ trong hàng đợi trước khi được claim")
+                .tag("priority", priorityOf(type).name())
+                .tag("task_type", type.name())
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private Timer serviceTimeTimer(AiTaskTypeEnum type) {
+        return Timer.builder("ai.task.service.time")
+                .description("Thời gian xử lý AI task (từ lúc chạy đến khi xong hoặc lỗi)")
+                .tag("priority", priorityOf(type).name())
+                .tag("task_type", type.name())
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    static boolean isTerminal(AiTaskStatusEnum status) {
+        return status == AiTaskStatusEnum.COMPLETED
+                || status == AiTaskStatusEnum.FAILED
+                || status == AiTaskStatusEnum.CANCELLED
+                || status == AiTaskStatusEnum.TIMEOUT;
+    }
+
+    private void markClaimed(AiTask task, Instant now) {
+        task.setStatus(AiTaskStatusEnum.PROCESSING);
+        task.setLockedBy(nodeId);
+        task.setClaimToken(UUID.randomUUID().toString());
+        task.setStartedAt(now);
+        task.setCompletedAt(null);
+        task.setNextRetryAt(null);
+        task.setProgress(10);
+        task.setLastHeartbeatAt(now);
+    }
+
+    /**
+     * claimed: task đã chuyển sang PROCESSING cho node này; failed: task hết lượt retry.
+     */
+    public record ClaimResult(List<AiTask> claimed, List<AiTask> failed) {
+    }
+}
@@ -0,0 +1,131 @@
+package vn.hoangtung.jobfind.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import vn.hoangtung.jobfind.util.ai.AiFeatureUtils;
+import vn.hoangtung.jobfind.util.ai.CacheTagIndex;
+import vn.hoangtung.jobfind.util.ai.SemanticQueryIndex;
+
+/**
+ * Cache ngữ nghĩa cho ChatBot: câu hỏi gần nghĩa ("java job ha noi" / "việc java ở Hà Nội")
+ * dùng lại câu trả lời đã có nếu cùng user, cùng tập job ứng viên và cosine >= threshold.
+ *
+ * Embedding dùng model transformers local (không tốn quota Groq). Lỗi embedding chỉ làm
+ * cache bị bỏ qua, không ảnh hưởng luồng chat.
+ */
+@Service
+public class ChatSemanticCache {
+
+    private static final String METRIC_NAME = "ai.chat.semantic.cache";
+
+    private final EmbeddingModel embeddingModel;
+    private final boolean enabled;
+    private final double threshold;
+    private final SemanticQueryIndex index;
+    private final CacheTagIndex scopeTags;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    public ChatSemanticCache(
+            EmbeddingModel embeddingModel,
+            MeterRegistry meterRegistry,
+            @Value("${hoangtung.ai.chat.semantic-cache.enabled:true}") boolean enabled,
+            @Value("${hoangtung.ai.chat.semantic-cache.threshold:0.92}") double threshold,
+            @Value("${hoangtung.ai.chat.semantic-cache.max-entries:2000}") int maxEntries,
+            @Value("${hoangtung.ai.chat.semantic-cache.ttl-minutes:10}") long ttlMinutes) {
+        this.embeddingModel = embeddingModel;
+        this.enabled = enabled;
+        this.threshold = threshold;
+        this.index = new SemanticQueryIndex(maxEntries, Duration.ofMinutes(ttlMinutes), Clock.systemUTC());
+        this.scopeTags = new CacheTagIndex(Duration.ofMinutes(ttlMinutes * 2), Math.max(1000, maxEntries * 5L));
+        this.hitCounter = Counter.builder(METRIC_NAME + ".requests").tag("result", "hit")
+                .description("Số câu hỏi ChatBot dùng lại câu trả lời nhờ cache ngữ nghĩa")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder(METRIC_NAME + ".requests").tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_NAME + ".size", index, SemanticQueryIndex::size)
+                .description("Số câu hỏi đang nằm trong cache ngữ nghĩa")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Embed câu hỏi đã tiền xử lý và tìm câu hỏi gần nghĩa trong cùng scope.
+     * Probe trả về được dùng lại cho store() để không phải embed lần hai.
+     */
+    public Probe lookup(String scope, String processedQuery) {
+        if (!enabled || processedQuery == null || processedQuery.isBlank()) {
+            return new Probe(scope, processedQuery, null, null);
+        }
+
+        String normalizedQuery = AiFeatureUtils.normalizeForSearch(processedQuery);
+        float[] vector;
+        try {
+            vector = SemanticQueryIndex.normalize(embeddingModel.embed(normalizedQuery));
+        } catch (RuntimeException e) {
+            System.out.println(">>> [ChatBot] ⚠️ Không embed được câu hỏi cho semantic cache: " + e.getMessage());
+            return new Probe(scope, normalizedQuery, null, null);
+        }
+
+        Optional<SemanticQueryIndex.Match> match = index.findNearest(scope, vector, threshold);
+        if (match.isPresent()) {
+            hitCounter.increment();
+            System.out.printf(">>> [ChatBot] Semantic cache hit (%.3f): \"%s\" ~ \"%s\"%n",
+                    match.get().similarity(), normalizedQuery, match.get().query());
+            return new Probe(scope, normalizedQuery, vector, match.get().answer());
+        }
+        missCounter.increment();
+        return new Probe(scope, normalizedQuery, vector, null);
+    }
+
+    public void store(Probe probe, String answer) {
+        store(probe, answer, List.of());
+    }
+
+    /**
+     * Chỉ lưu câu trả lời thật từ LLM; câu trả lời fallback không nên được dùng lại.
+     * tags (vd: job:42) cho phép invalidateTags xóa đúng scope khi job thay đổi.
+     */
+    public void store(Probe probe, String answer, Collection<String> tags) {
+        if (!enabled || probe == null || probe.vector() == null || answer == null || answer.isBlank()) {
+            return;
+        }
+        index.add(probe.scope(), probe.query(), probe.vector(), answer);
+        scopeTags.tag(probe.scope(), tags);
+    }
+
+    public int invalidateTags(Collection<String> tags) {
+        int removed = 0;
+        for (String scope : scopeTags.drain(tags)) {
+            removed += index.removeScope(scope);
+        }
+        return removed;
+    }
+
+    public void clear() {
+        index.clear();
+        scopeTags.clear();
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public record Probe(String scope, String query, float[] vector, String cachedAnswer) {
+
+        public boolean hit() {
+            return cachedAnswer != null;
+        }
+    }
+}
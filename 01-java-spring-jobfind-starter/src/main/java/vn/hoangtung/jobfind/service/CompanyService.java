@@ -8,11 +8,13 @@ import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.domain.Page;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import vn.hoangtung.jobfind.domain.Company;
 import vn.hoangtung.jobfind.domain.User;
 import vn.hoangtung.jobfind.domain.response.ResultPaginationDTO;
 import vn.hoangtung.jobfind.repository.CompanyRepository;
+import vn.hoangtung.jobfind.repository.JobRepository;
 import vn.hoangtung.jobfind.repository.UserRepository;
 
 @Service
@@ -21,14 +23,20 @@ public class CompanyService {
 	private final CompanyRepository companyRepository;
 	private final UserRepository userRepository;
 	private final DataScopeService dataScopeService;
+	private final JobRepository jobRepository;
+	private final JobVectorSyncService jobVectorSyncService;
 
 	public CompanyService(
 			CompanyRepository companyRepository,
 			UserRepository userRepository,
-			DataScopeService dataScopeService) {
+			DataScopeService dataScopeService,
+			JobRepository jobRepository,
+			JobVectorSyncService jobVectorSyncService) {
 		this.companyRepository = companyRepository;
 		this.userRepository = userRepository;
 		this.dataScopeService = dataScopeService;
+		this.jobRepository = jobRepository;
+		this.jobVectorSyncService = jobVectorSyncService;
 	}
 
 	public Company handleCreateCompany(Company c) {
@@ -44,6 +52,7 @@ public class CompanyService {
 		return pageCompany.getContent();
 	}
 
+	@Transactional
 	public Company handleUpdateCompany(Company c) {
 		Optional<Company> companyOptional = this.companyRepository.findById(c.getId());
 
@@ -54,7 +63,10 @@ public class CompanyService {
 			currentCompany.setName(c.getName());
 			currentCompany.setDescription(c.getDescription());
 			currentCompany.setAddress(c.getAddress());
-			return this.companyRepository.save(currentCompany);
+			Company saved = this.companyRepository.save(currentCompany);
+			// vector của job chứa tên/mô tả/địa chỉ công ty
+			this.jobVectorSyncService.enqueueUpserts(this.jobRepository.findIdsByCompanyId(saved.getId()));
+			return saved;
 		}
 		return null;
 	}
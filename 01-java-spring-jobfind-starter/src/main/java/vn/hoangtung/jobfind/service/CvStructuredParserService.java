@@ -17,6 +17,8 @@ import org.springframework.stereotype.Service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import vn.hoangtung.jobfind.util.ai.AiFeatureUtils;
+import vn.hoangtung.jobfind.util.ai.CvTextScanner;
+import vn.hoangtung.jobfind.util.ai.CvTextScanner.CvTextScan;
 import vn.hoangtung.jobfind.util.ai.ParsedCv;
 import vn.hoangtung.jobfind.util.ai.ParsedCv.ContactInfo;
 import vn.hoangtung.jobfind.util.ai.ParsedCv.DocumentStats;
@@ -32,14 +34,9 @@ public class CvStructuredParserService {
     private static final String PARSER_VERSION = "cv-structured-parser-v1";
     private static final int MAX_SKILLS_IN_PROMPT = 180;
     private static final int MAX_ARRAY_ITEMS = 40;
-    private static final Pattern EMAIL_PATTERN = Pattern.compile("[A-Z0-9._%+-]+@[A-Z0-9.-]+\\.[A-Z]{2,}",
-            Pattern.CASE_INSENSITIVE);
-    private static final Pattern PHONE_PATTERN = Pattern.compile("(?<!\\d)(?:\\+?\\d[\\d .()/-]{7,}\\d)(?!\\d)");
     private static final Pattern YEAR_PATTERN = Pattern.compile("(?i)(\\d{1,2})\\+?\\s*(years?|nam)");
     private static final Pattern METRIC_PATTERN = Pattern.compile(
             "(?i)(\\d+%|\\d+\\+?\\s*(users?|requests?|projects?|ms|seconds?|million|trieu|ty|m))");
-    private static final Pattern LINK_PATTERN = Pattern.compile(
-            "(?i)\\b(?:https?://)?(?:www\\.)?(?:linkedin\\.com|github\\.com|gitlab\\.com|bitbucket\\.org)[^\\s,;)]*");
 
     private final AiGatewayService aiGatewayService;
 
@@ -196,12 +193,13 @@ public class CvStructuredParserService {
             return ParsedCv.empty(pageCount, wordCount);
         }
 
-        SectionSnapshot sections = splitSections(cvText);
-        List<String> links = extractLinks(cvText);
+        // Một lượt quét theo dòng cho section, bullet, contact và link; LLM chỉ bổ sung sau đó.
+        CvTextScan scan = CvTextScanner.scan(cvText);
+        List<String> links = scan.links();
         ContactInfo contact = new ContactInfo(
-                extractName(cvText),
-                firstMatch(EMAIL_PATTERN, cvText),
-                firstMatch(PHONE_PATTERN, cvText),
+                scan.name(),
+                scan.email(),
+                scan.phone(),
                 "",
                 links);
 
@@ -214,12 +212,12 @@ public class CvStructuredParserService {
                         match.matchedAlias()))
                 .toList();
 
-        String summary = sectionContent(sections.sections(), "summary");
+        String summary = scan.section("summary");
         if (summary.isBlank()) {
-            summary = firstParagraphAfterContact(cvText);
+            summary = scan.firstParagraph();
         }
 
-        String experienceText = sectionContent(sections.sections(), "experience");
+        String experienceText = scan.section("experience");
         List<WorkEntry> experience = experienceText.isBlank()
                 ? List.of()
                 : List.of(new WorkEntry(
@@ -228,37 +226,37 @@ public class CvStructuredParserService {
                         "",
                         "",
                         estimateMonths(experienceText),
-                        extractBullets(experienceText),
+                        CvTextScanner.bullets(experienceText),
                         detectedSkillsInText(experienceText, knownSkills),
                         hasMetrics(experienceText)));
 
-        String projectText = sectionContent(sections.sections(), "projects");
+        String projectText = scan.section("projects");
         List<ProjectEntry> projects = projectText.isBlank()
                 ? List.of()
                 : List.of(new ProjectEntry(
                         "",
                         "",
                         trimToMax(projectText, 500),
-                        extractBullets(projectText),
+                        CvTextScanner.bullets(projectText),
                         detectedSkillsInText(projectText, knownSkills),
                         hasMetrics(projectText)));
 
-        String educationText = sectionContent(sections.sections(), "education");
+        String educationText = scan.section("education");
         List<EducationEntry> education = educationText.isBlank()
                 ? List.of()
                 : List.of(new EducationEntry(firstMeaningfulLine(educationText), "", "", "", "", ""));
 
-        List<String> bullets = extractBullets(cvText);
+        List<String> bullets = scan.bullets();
         int avgBulletWords = bullets.isEmpty()
                 ? 0
                 : (int) Math.round(bullets.stream().mapToInt(AiFeatureUtils::wordCount).average().orElse(0d));
         DocumentStats stats = new DocumentStats(
                 pageCount,
                 wordCount,
-                sections.sectionOrder().size(),
+                scan.sectionOrder().size(),
                 bullets.size(),
                 avgBulletWords,
-                sections.sectionOrder());
+                scan.sectionOrder());
 
         return new ParsedCv(
                 contact,
@@ -268,8 +266,8 @@ public class CvStructuredParserService {
                 experience,
                 projects,
                 education,
-                linesFromSection(sections.sections(), "certifications"),
-                linesFromSection(sections.sections(), "languages"),
+                linesFromSection(scan, "certifications"),
+                linesFromSection(scan, "languages"),
                 links,
                 stats,
                 List.of("Used deterministic fallback parser."));
@@ -458,7 +456,7 @@ public class CvStructuredParserService {
             return false;
         }
 
-        SkillTaxonomy taxonomy = SkillTaxonomy.from(skillCatalogFor(skill, knownSkills));
+        SkillTaxonomy taxonomy = SkillTaxonomy.from(knownSkills).withExtraSkills(extraSkillsFor(skill));
         String canonicalSkill = taxonomy.canonicalName(skill.name());
         boolean matchedSkill = taxonomy.findMatches(cvText).stream()
                 .anyMatch(match -> taxonomy.matches(match.name(), canonicalSkill));
@@ -474,107 +472,11 @@ public class CvStructuredParserService {
         return false;
     }
 
-    private Collection<String> skillCatalogFor(SkillEvidence skill, Collection<String> knownSkills) {
-        LinkedHashSet<String> catalog = new LinkedHashSet<>();
-        if (knownSkills != null) {
-            knownSkills.stream()
-                    .filter(Objects::nonNull)
-                    .map(String::trim)
-                    .filter(value -> !value.isBlank())
-                    .forEach(catalog::add);
-        }
-        catalog.add(skill.name());
-        catalog.addAll(skill.aliases());
-        return catalog;
-    }
-
-    private SectionSnapshot splitSections(String cvText) {
-        Map<String, StringBuilder> sections = new LinkedHashMap<>();
-        List<String> order = new ArrayList<>();
-        String current = "header";
-        sections.put(current, new StringBuilder());
-
-        for (String line : cvText.split("\\R")) {
-            String section = normalizeSectionHeader(line);
-            if (!section.isBlank()) {
-                current = section;
-                sections.putIfAbsent(current, new StringBuilder());
-                if (!order.contains(current)) {
-                    order.add(current);
-                }
-                continue;
-            }
-            sections.get(current).append(line).append('\n');
-        }
-
-        Map<String, String> result = sections.entrySet().stream()
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        entry -> AiFeatureUtils.normalizeWhitespace(entry.getValue().toString()),
-                        (left, right) -> left,
-                        LinkedHashMap::new));
-        return new SectionSnapshot(result, order);
-    }
-
-    private String normalizeSectionHeader(String line) {
-        String normalized = AiFeatureUtils.normalizeForSearch(line);
-        if (normalized.isBlank() || normalized.length() > 40) {
-            return "";
-        }
-        if (matchesSection(normalized, "summary", "profile", "objective", "gioi thieu", "muc tieu")) {
-            return "summary";
-        }
-        if (matchesSection(normalized, "skills", "technical skills", "ky nang", "cong nghe")) {
-            return "skills";
-        }
-        if (matchesSection(normalized, "experience", "work experience", "work history", "kinh nghiem")) {
-            return "experience";
-        }
-        if (matchesSection(normalized, "projects", "project", "du an")) {
-            return "projects";
-        }
-        if (matchesSection(normalized, "education", "hoc van", "university")) {
-            return "education";
-        }
-        if (matchesSection(normalized, "certifications", "certification", "certificate", "chung chi")) {
-            return "certifications";
-        }
-        if (matchesSection(normalized, "languages", "language", "ngoai ngu")) {
-            return "languages";
-        }
-        return "";
-    }
-
-    private boolean matchesSection(String normalizedLine, String... candidates) {
-        for (String candidate : candidates) {
-            String normalizedCandidate = AiFeatureUtils.normalizeForSearch(candidate);
-            if (normalizedLine.equals(normalizedCandidate) || normalizedLine.equals(normalizedCandidate + "s")) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private List<String> extractBullets(String text) {
-        if (text == null || text.isBlank()) {
-            return List.of();
-        }
-        List<String> bullets = new ArrayList<>();
-        for (String line : text.split("\\R")) {
-            String trimmed = line.trim();
-            if (trimmed.startsWith("-") || trimmed.startsWith("*") || trimmed.startsWith("+")) {
-                bullets.add(trimToMax(trimmed.replaceFirst("^[-*+]\\s*", ""), 350));
-            }
-        }
-        if (bullets.isEmpty()) {
-            for (String sentence : text.split("(?<=[.!?])\\s+")) {
-                String trimmed = AiFeatureUtils.normalizeWhitespace(sentence);
-                if (AiFeatureUtils.wordCount(trimmed) >= 5) {
-                    bullets.add(trimToMax(trimmed, 350));
-                }
-            }
-        }
-        return bullets.stream().filter(value -> !value.isBlank()).limit(20).toList();
+    private Collection<String> extraSkillsFor(SkillEvidence skill) {
+        LinkedHashSet<String> extras = new LinkedHashSet<>();
+        extras.add(skill.name());
+        extras.addAll(skill.aliases());
+        return extras;
     }
 
     private List<String> detectedSkillsInText(String text, Collection<String> knownSkills) {
@@ -592,52 +494,12 @@ public class CvStructuredParserService {
         return maxYears * 12;
     }
 
-    private List<String> extractLinks(String cvText) {
-        Matcher matcher = LINK_PATTERN.matcher(cvText);
-        List<String> links = new ArrayList<>();
-        while (matcher.find()) {
-            links.add(matcher.group().trim());
-        }
-        return links.stream().distinct().toList();
-    }
-
-    private String extractName(String cvText) {
-        for (String line : cvText.split("\\R")) {
-            String trimmed = AiFeatureUtils.normalizeWhitespace(line);
-            if (trimmed.isBlank() || trimmed.length() > 80) {
-                continue;
-            }
-            String normalized = AiFeatureUtils.normalizeForSearch(trimmed);
-            if (normalized.contains("@") || normalized.contains("http") || PHONE_PATTERN.matcher(trimmed).find()) {
-                continue;
-            }
-            if (normalizeSectionHeader(trimmed).isBlank()) {
-                return trimmed;
-            }
-        }
-        return "";
-    }
-
-    private String firstParagraphAfterContact(String cvText) {
-        List<String> paragraphs = List.of(cvText.split("\\R\\s*\\R"));
-        return paragraphs.stream()
-                .map(AiFeatureUtils::normalizeWhitespace)
-                .filter(value -> AiFeatureUtils.wordCount(value) >= 8)
-                .findFirst()
-                .map(value -> trimToMax(value, 600))
-                .orElse("");
-    }
-
-    private String sectionContent(Map<String, String> sections, String name) {
-        return sections.getOrDefault(name, "");
-    }
-
-    private List<String> linesFromSection(Map<String, String> sections, String name) {
-        String content = sectionContent(sections, name);
+    private List<String> linesFromSection(CvTextScan scan, String name) {
+        String content = scan.section(name);
         if (content.isBlank()) {
             return List.of();
         }
-        return List.of(content.split("\\R")).stream()
+        return CvTextScanner.lines(content).stream()
                 .map(AiFeatureUtils::normalizeWhitespace)
                 .filter(value -> !value.isBlank())
                 .limit(20)
@@ -645,7 +507,7 @@ public class CvStructuredParserService {
     }
 
     private String firstMeaningfulLine(String text) {
-        return List.of(text.split("\\R")).stream()
+        return CvTextScanner.lines(text).stream()
                 .map(AiFeatureUtils::normalizeWhitespace)
                 .filter(value -> !value.isBlank())
                 .findFirst()
@@ -657,11 +519,6 @@ public class CvStructuredParserService {
         return text != null && METRIC_PATTERN.matcher(text).find();
     }
 
-    private String firstMatch(Pattern pattern, String text) {
-        Matcher matcher = pattern.matcher(text);
-        return matcher.find() ? matcher.group().trim() : "";
-    }
-
     private String text(JsonNode node, String field) {
         if (node == null || node.path(field).isMissingNode() || node.path(field).isNull()) {
             return "";
@@ -730,7 +587,4 @@ public class CvStructuredParserService {
                 .sorted(String.CASE_INSENSITIVE_ORDER)
                 .collect(Collectors.joining("|"));
     }
-
-    private record SectionSnapshot(Map<String, String> sections, List<String> sectionOrder) {
-    }
 }
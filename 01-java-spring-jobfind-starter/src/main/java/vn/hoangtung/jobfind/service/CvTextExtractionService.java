@@ -0,0 +1,265 @@
+package vn.hoangtung.jobfind.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.annotation.PreDestroy;
+import vn.hoangtung.jobfind.util.FileDigestUtil;
+import vn.hoangtung.jobfind.util.ai.AiFeatureUtils;
+
+/**
+ * Đọc text từ file PDF CV, mỗi file (theo SHA-256 nội dung) chỉ parse một lần.
+ *
+ * - PDF được mở qua RandomAccessRead trên file, không copy cả file vào byte[]
+ * - Text được lấy theo từng trang, dừng ngay khi phần đầu đã đủ maxChars sau normalizeWhitespace
+ *   (kết quả cắt maxChars giống hệt khi đọc toàn bộ file)
+ * - PDF nhiều trang được chia trang cho vài worker, mỗi worker mở PDDocument riêng vì PDDocument
+ *   không thread-safe
+ * - Kết quả cache theo hash, nên controller validate trước rồi task async đọc lại cùng file sẽ hit cache
+ */
+@Service
+public class CvTextExtractionService {
+
+    private static final int PARALLEL_MIN_PAGES = 4;
+
+    private final int parallelism;
+    private final ExecutorService pageExecutor;
+    private final Cache<String, CachedText> cache;
+
+    public CvTextExtractionService(
+            @Value("${hoangtung.ai.cv-extract.parallelism:2}") int parallelism,
+            @Value("${hoangtung.ai.cv-extract.cache-max-entries:200}") long maxEntries,
+            @Value("${hoangtung.ai.cv-extract.cache-ttl-minutes:30}") long ttlMinutes) {
+        this.parallelism = Math.max(1, parallelism);
+        this.pageExecutor = this.parallelism > 1
+                ? Executors.newFixedThreadPool(this.parallelism, pageThreadFactory())
+                : null;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(Math.max(1, maxEntries))
+                .expireAfterAccess(Duration.ofMinutes(Math.max(1, ttlMinutes)))
+                .build();
+    }
+
+    /**
+     * Ghi upload ra file tạm (vừa ghi vừa hash) rồi đọc như file thường; không gọi getBytes().
+     */
+    public PdfText extract(MultipartFile file, int maxChars) throws IOException {
+        Path tempFile = Files.createTempFile("cv-extract-", ".pdf");
+        try {
+            String contentHash;
+            try (InputStream input = file.getInputStream()) {
+                contentHash = FileDigestUtil.copyAndHash(input, tempFile);
+            }
+            return extractCached(tempFile, contentHash, maxChars);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Đọc text của PDF, trả về phần đầu đủ dài để normalizeWhitespace rồi cắt maxChars
+     * cho ra cùng kết quả như đọc toàn bộ. Integer.MAX_VALUE = đọc hết mọi trang.
+     */
+    public PdfText extract(Path pdfFile, int maxChars) throws IOException {
+        return extract(pdfFile, FileDigestUtil.sha256(pdfFile), maxChars);
+    }
+
+    /**
+     * Như extract(Path, int) nhưng dùng hash đã biết (ví dụ hash blob của FileService), không đọc lại file để hash.
+     */
+    public PdfText extract(Path pdfFile, String contentHash, int maxChars) throws IOException {
+        if (contentHash == null || contentHash.isBlank()) {
+            return extract(pdfFile, maxChars);
+        }
+        return extractCached(pdfFile, contentHash, maxChars);
+    }
+
+    public long cachedEntries() {
+        cache.cleanUp();
+        return cache.estimatedSize();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pageExecutor != null) {
+            pageExecutor.shutdownNow();
+        }
+    }
+
+    private PdfText extractCached(Path pdfFile, String contentHash, int maxChars) throws IOException {
+        CachedText cached = cache.getIfPresent(contentHash);
+        if (cached != null && cached.covers(maxChars)) {
+            return cached.text();
+        }
+
+        PdfText text = extractPages(pdfFile, contentHash, maxChars);
+        cache.put(contentHash, new CachedText(text, maxChars));
+        return text;
+    }
+
+    private PdfText extractPages(Path pdfFile, String contentHash, int maxChars) throws IOException {
+        try (PDDocument document = load(pdfFile)) {
+            int pageCount = document.getNumberOfPages();
+            if (pageExecutor == null || pageCount < PARALLEL_MIN_PAGES) {
+                PDFTextStripper stripper = new PDFTextStripper();
+                StringBuilder text = new StringBuilder();
+                int pagesRead = 0;
+                while (pagesRead < pageCount && !budgetReached(text, maxChars)) {
+                    text.append(pageText(stripper, document, ++pagesRead));
+                }
+                return new PdfText(text.toString(), pageCount, pagesRead, contentHash);
+            }
+            return extractPagesInParallel(pdfFile, document, contentHash, maxChars);
+        }
+    }
+
+    /**
+     * Worker i lấy các trang i, i + n, i + 2n... (worker 0 dùng document đã mở sẵn).
+     * Thread gọi ghép trang theo đúng thứ tự và bật cờ dừng khi đã đủ text.
+     */
+    private PdfText extractPagesInParallel(Path pdfFile, PDDocument document, String contentHash, int maxChars)
+            throws IOException {
+        int pageCount = document.getNumberOfPages();
+        int workers = Math.min(parallelism, pageCount);
+        List<CompletableFuture<String>> pages = new ArrayList<>(pageCount);
+        for (int i = 0; i < pageCount; i++) {
+            pages.add(new CompletableFuture<>());
+        }
+        AtomicBoolean stop = new AtomicBoolean();
+        List<Future<?>> tasks = new ArrayList<>(workers);
+        for (int worker = 0; worker < workers; worker++) {
+            int firstPage = worker;
+            PDDocument sharedDocument = worker == 0 ? document : null;
+            tasks.add(pageExecutor.submit(
+                    () -> extractStride(pdfFile, sharedDocument, firstPage, workers, pages, stop)));
+        }
+
+        StringBuilder text = new StringBuilder();
+        int pagesRead = 0;
+        try {
+            while (pagesRead < pageCount && !budgetReached(text, maxChars)) {
+                text.append(await(pages.get(pagesRead++)));
+            }
+        } finally {
+            stop.set(true);
+            // document chính chỉ được đóng sau khi worker 0 đã xong
+            for (Future<?> task : tasks) {
+                awaitQuietly(task);
+            }
+        }
+        return new PdfText(text.toString(), pageCount, pagesRead, contentHash);
+    }
+
+    private void extractStride(Path pdfFile, PDDocument sharedDocument, int firstPage, int step,
+            List<CompletableFuture<String>> pages, AtomicBoolean stop) {
+        int page = firstPage;
+        try (PDDocument ownDocument = sharedDocument == null ? load(pdfFile) : null) {
+            PDDocument document = sharedDocument == null ? ownDocument : sharedDocument;
+            PDFTextStripper stripper = new PDFTextStripper();
+            for (; page < pages.size() && !stop.get(); page += step) {
+                pages.get(page).complete(pageText(stripper, document, page + 1));
+            }
+        } catch (IOException | RuntimeException e) {
+            for (; page < pages.size(); page += step) {
+                pages.get(page).completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * normalizeWhitespace xử lý tuần tự từ trái sang phải, nên khi phần đầu đã dài hơn maxChars
+     * sau normalize thì maxChars ký tự đầu không còn phụ thuộc các trang phía sau.
+     */
+    static boolean budgetReached(CharSequence rawText, int maxChars) {
+        return rawText.length() > maxChars
+                && AiFeatureUtils.normalizeWhitespace(rawText.toString()).length() > maxChars;
+    }
+
+    private static String pageText(PDFTextStripper stripper, PDDocument document, int page) throws IOException {
+        stripper.setStartPage(page);
+        stripper.setEndPage(page);
+        return stripper.getText(document);
+    }
+
+    private static PDDocument load(Path pdfFile) throws IOException {
+        return Loader.loadPDF(new RandomAccessReadBufferedFile(pdfFile.toFile()));
+    }
+
+    private static String await(CompletableFuture<String> page) throws IOException {
+        try {
+            return page.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Bị ngắt khi đang đọc PDF");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static void awaitQuietly(Future<?> task) {
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // lỗi của từng trang đã được chuyển vào future của trang đó
+        }
+    }
+
+    private static ThreadFactory pageThreadFactory() {
+        AtomicInteger sequence = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "cv-pdf-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * text: text thô (chưa normalize) của pagesRead trang đầu; pageCount: tổng số trang của file.
+     */
+    public record PdfText(String text, int pageCount, int pagesRead, String contentHash) {
+
+        public boolean complete() {
+            return pagesRead >= pageCount;
+        }
+    }
+
+    private record CachedText(PdfText text, int maxChars) {
+
+        boolean covers(int requestedChars) {
+            return text.complete() || requestedChars <= maxChars;
+        }
+    }
+}
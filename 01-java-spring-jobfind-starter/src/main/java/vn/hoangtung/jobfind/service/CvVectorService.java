@@ -1,12 +1,16 @@
 package vn.hoangtung.jobfind.service;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -18,6 +22,9 @@ import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
 import vn.hoangtung.jobfind.domain.CvAnalysis;
 import vn.hoangtung.jobfind.domain.CvChunk;
 import vn.hoangtung.jobfind.domain.Job;
@@ -25,6 +32,7 @@ import vn.hoangtung.jobfind.domain.Resume;
 import vn.hoangtung.jobfind.domain.User;
 import vn.hoangtung.jobfind.repository.CvChunkRepository;
 import vn.hoangtung.jobfind.util.ai.AiFeatureUtils;
+import vn.hoangtung.jobfind.util.ai.Bm25Index;
 import vn.hoangtung.jobfind.util.ai.ParsedCv;
 import vn.hoangtung.jobfind.util.ai.ParsedCv.EducationEntry;
 import vn.hoangtung.jobfind.util.ai.ParsedCv.ProjectEntry;
@@ -47,14 +55,22 @@ public class CvVectorService {
     private static final Pattern PHONE_PATTERN = Pattern.compile("(?<!\\d)(?:\\+?\\d[\\d .()/-]{7,}\\d)(?!\\d)");
 
     private final VectorStore vectorStore;
+    private final VectorIndexWriter vectorIndexWriter;
     private final CvChunkRepository cvChunkRepository;
     private final AiGatewayService aiGatewayService;
+    // Index BM25 theo (resume, hash nội dung) cho fallback khi vector store lỗi; CV đổi thì hash đổi
+    private final Cache<ResumeChunkKey, ResumeLexicalIndex> resumeLexicalIndexes = Caffeine.newBuilder()
+            .maximumSize(200)
+            .expireAfterAccess(Duration.ofMinutes(30))
+            .build();
 
     public CvVectorService(
             VectorStore vectorStore,
+            VectorIndexWriter vectorIndexWriter,
             CvChunkRepository cvChunkRepository,
             AiGatewayService aiGatewayService) {
         this.vectorStore = vectorStore;
+        this.vectorIndexWriter = vectorIndexWriter;
         this.cvChunkRepository = cvChunkRepository;
         this.aiGatewayService = aiGatewayService;
     }
@@ -160,7 +176,7 @@ public class CvVectorService {
                     draft)));
         }
 
-        vectorStore.add(documents);
+        vectorIndexWriter.add(documents);
 
         List<CvChunk> chunks = new ArrayList<>();
         for (int i = 0; i < documents.size(); i++) {
@@ -205,7 +221,7 @@ public class CvVectorService {
                     draft)));
         }
 
-        vectorStore.add(documents);
+        vectorIndexWriter.add(documents);
 
         List<CvChunk> chunks = new ArrayList<>();
         for (int i = 0; i < documents.size(); i++) {
@@ -227,24 +243,25 @@ public class CvVectorService {
         if (resume == null || resume.getId() <= 0 || job == null) {
             return SemanticChunkMatch.unavailable();
         }
-        return searchResumeChunks(resume.getId(), buildJobSemanticQuery(job), topK);
+        return searchResumeChunks(resume, buildJobSemanticQuery(job), topK);
     }
 
     public List<String> findRelevantResumeChunkTexts(Resume resume, String query, int topK) {
         if (resume == null || resume.getId() <= 0 || query == null || query.isBlank()) {
             return List.of();
         }
-        return searchResumeChunks(resume.getId(), query, topK).documents().stream()
+        return searchResumeChunks(resume, query, topK).documents().stream()
                 .map(Document::getContent)
                 .filter(Objects::nonNull)
                 .map(this::shortenEvidence)
                 .toList();
     }
 
-    private SemanticChunkMatch searchResumeChunks(long resumeId, String query, int topK) {
+    private SemanticChunkMatch searchResumeChunks(Resume resume, String query, int topK) {
         if (query == null || query.isBlank()) {
             return SemanticChunkMatch.unavailable();
         }
+        long resumeId = resume.getId();
 
         try {
             List<Document> docs = vectorStore.similaritySearch(SearchRequest.query(query)
@@ -262,11 +279,71 @@ public class CvVectorService {
                     .toList();
             return new SemanticChunkMatch(score, true, evidence, docs);
         } catch (Exception e) {
-            System.out.println(">>> [CV Vector] Resume chunk search failed: " + e.getMessage());
+            System.out.println(">>> [CV Vector] Resume chunk search failed, dùng BM25 trên chunk trong DB: "
+                    + e.getMessage());
+            return searchResumeChunksLexically(resumeId, resume.getCvVectorContentHash(), query, topK);
+        }
+    }
+
+    /**
+     * Fallback khi vector store lỗi: chấm BM25 trên các chunk của resume đã lưu trong DB. Không
+     * có khoảng cách vector nên kết quả trả về với available=false, lexical=true: chunk vẫn dùng
+     * làm ngữ cảnh/evidence nhưng điểm (tỉ lệ term của truy vấn có trong 3 chunk đầu) không được
+     * tính như điểm semantic. Index BM25 của mỗi bản CV được giữ lại cho các lần gọi sau.
+     */
+    SemanticChunkMatch searchResumeChunksLexically(long resumeId, String contentHash, String query, int topK) {
+        try {
+            ResumeLexicalIndex lexicalIndex = resumeLexicalIndexes.get(
+                    new ResumeChunkKey(resumeId, contentHash),
+                    key -> buildResumeLexicalIndex(key.resumeId()));
+            List<CvChunk> chunks = lexicalIndex.chunks();
+            List<Bm25Index.Hit> hits = lexicalIndex.index().search(query, Math.max(1, topK));
+            if (hits.isEmpty()) {
+                return SemanticChunkMatch.unavailable();
+            }
+
+            List<Document> docs = new ArrayList<>();
+            for (Bm25Index.Hit hit : hits) {
+                CvChunk chunk = chunks.get((int) hit.id());
+                Map<String, Object> metadata = new LinkedHashMap<>();
+                metadata.put("doc_type", DOC_TYPE_CV);
+                metadata.put("resume_id", resumeId);
+                metadata.put("chunk_type", chunk.getChunkType() == null ? "CV_CHUNK" : chunk.getChunkType());
+                metadata.put("retrieval", "BM25");
+                docs.add(new Document(chunk.getVectorId(), chunk.getText(), metadata));
+            }
+
+            Set<String> queryTerms = new LinkedHashSet<>(Bm25Index.tokenize(query));
+            Set<String> coveredTerms = new HashSet<>();
+            docs.stream().limit(3).forEach(doc -> coveredTerms.addAll(Bm25Index.tokenize(doc.getContent())));
+            long covered = queryTerms.stream().filter(coveredTerms::contains).count();
+            int score = AiFeatureUtils.clampScore((int) Math.round(100d * covered / queryTerms.size()));
+
+            List<String> evidence = docs.stream()
+                    .limit(4)
+                    .map(this::evidenceFromDocument)
+                    .filter(value -> !value.isBlank())
+                    .toList();
+            return SemanticChunkMatch.lexical(score, evidence, docs);
+        } catch (Exception e) {
+            System.out.println(">>> [CV Vector] BM25 chunk fallback failed: " + e.getMessage());
             return SemanticChunkMatch.unavailable();
         }
     }
 
+    private ResumeLexicalIndex buildResumeLexicalIndex(long resumeId) {
+        List<CvChunk> chunks = cvChunkRepository.findByResumeId(resumeId).stream()
+                .filter(chunk -> chunk.getText() != null && !chunk.getText().isBlank())
+                .toList();
+        Map<Long, String> texts = new LinkedHashMap<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            texts.put((long) i, chunks.get(i).getText());
+        }
+        Bm25Index index = new Bm25Index();
+        index.replaceAll(texts);
+        return new ResumeLexicalIndex(chunks, index);
+    }
+
     static Filter.Expression docTypeFilterExpression(String docType) {
         FilterExpressionBuilder builder = new FilterExpressionBuilder();
         return builder.eq("doc_type", docType).build();
@@ -284,6 +361,7 @@ public class CvVectorService {
         List<CvChunk> chunks = cvChunkRepository.findByResumeId(resumeId);
         deleteVectors(chunks);
         cvChunkRepository.deleteByResumeId(resumeId);
+        resumeLexicalIndexes.asMap().keySet().removeIf(key -> key.resumeId() == resumeId);
     }
 
     private void deleteAnalysisVectors(long analysisId) {
@@ -580,14 +658,33 @@ public class CvVectorService {
     public record CvChunkDraft(String chunkType, int chunkIndex, String text, int wordCount) {
     }
 
-    public record SemanticChunkMatch(int score, boolean available, List<String> evidence, List<Document> documents) {
+    /**
+     * available: điểm đến từ vector search, dùng được như điểm semantic. lexical: chunk lấy bằng
+     * BM25 khi vector store lỗi, chỉ dùng làm evidence/ngữ cảnh.
+     */
+    public record SemanticChunkMatch(int score, boolean available, boolean lexical, List<String> evidence,
+            List<Document> documents) {
         public SemanticChunkMatch {
             evidence = evidence == null ? List.of() : evidence;
             documents = documents == null ? List.of() : documents;
         }
 
+        public SemanticChunkMatch(int score, boolean available, List<String> evidence, List<Document> documents) {
+            this(score, available, false, evidence, documents);
+        }
+
         public static SemanticChunkMatch unavailable() {
             return new SemanticChunkMatch(0, false, List.of(), List.of());
         }
+
+        public static SemanticChunkMatch lexical(int score, List<String> evidence, List<Document> documents) {
+            return new SemanticChunkMatch(score, false, true, evidence, documents);
+        }
+    }
+
+    private record ResumeChunkKey(long resumeId, String contentHash) {
+    }
+
+    private record ResumeLexicalIndex(List<CvChunk> chunks, Bm25Index index) {
     }
 }
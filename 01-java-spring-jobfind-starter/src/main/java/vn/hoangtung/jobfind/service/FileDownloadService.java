@@ -0,0 +1,209 @@
+package vn.hoangtung.jobfind.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import vn.hoangtung.jobfind.util.FileDigestUtil;
+
+/**
+ * Trả file upload về client với ETag mạnh (SHA-256 nội dung), 304 khi If-None-Match khớp,
+ * Range/206 cho một khoảng byte và Cache-Control. Thân response đi qua sendfile của Tomcat
+ * nếu connector hỗ trợ, nếu không thì FileChannel.transferTo, không qua InputStream trung gian.
+ */
+@Service
+public class FileDownloadService {
+
+    static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final FileService fileService;
+    private final CacheControl downloadCacheControl;
+    private final CacheControl storageCacheControl;
+    // Hash của file cũ (upload trước khi có file_blobs), khóa theo path + size + mtime
+    private final Cache<String, String> computedHashes;
+
+    public FileDownloadService(
+            FileService fileService,
+            @Value("${hoangtung.upload-file.cache-max-age-seconds:3600}") long maxAgeSeconds,
+            @Value("${hoangtung.upload-file.etag-cache-max-entries:5000}") long maxEtagEntries) {
+        this.fileService = fileService;
+        this.downloadCacheControl = CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds)).cachePrivate();
+        this.storageCacheControl = CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds)).cachePublic();
+        this.computedHashes = Caffeine.newBuilder()
+                .maximumSize(Math.max(1, maxEtagEntries))
+                .build();
+    }
+
+    public CacheControl storageCacheControl() {
+        return storageCacheControl;
+    }
+
+    /**
+     * SHA-256 của file: lấy từ blob của FileService nếu có, không thì tự hash một lần và cache.
+     */
+    public String etag(Path file) {
+        try {
+            Optional<String> stored = storedHash(file);
+            if (stored.isPresent()) {
+                return stored.get();
+            }
+            String key = file.toAbsolutePath() + "|" + Files.size(file) + "|" + Files.getLastModifiedTime(file).toMillis();
+            return computedHashes.get(key, ignored -> {
+                try {
+                    return FileDigestUtil.sha256(file);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            System.out.println(">>> [File] ⚠️ Không tính được ETag cho " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Ghi file ra response. Gọi khi file đã tồn tại; downloadName dùng cho Content-Disposition.
+     */
+    public void write(Path file, String downloadName, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        long length = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        String etag = etag(file);
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, downloadCacheControl.getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        // checkNotModified tự set ETag/Last-Modified và trả 304 (hoặc 412 với If-Match) khi khớp
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(downloadName, StandardCharsets.UTF_8)
+                .build()
+                .toString());
+
+        long start = 0;
+        long end = length - 1;
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && length > 0 && ifRangeMatches(request, etag, lastModified)) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+            // Chỉ hỗ trợ một khoảng; nhiều khoảng (multipart/byteranges) thì trả cả file, RFC 9110 cho phép
+            if (ranges.size() == 1) {
+                HttpRange range = ranges.get(0);
+                try {
+                    start = range.getRangeStart(length);
+                    end = range.getRangeEnd(length);
+                } catch (IllegalArgumentException e) {
+                    start = length;
+                }
+                if (start >= length || start > end) {
+                    response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.setContentLengthLong(0);
+                    return;
+                }
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if ("HEAD".equalsIgnoreCase(request.getMethod()) || count <= 0) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat tự gửi file bằng sendfile sau khi handler trả về (zero-copy kernel -> socket)
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+        transfer(file, start, count, response.getOutputStream());
+    }
+
+    private static void transfer(Path file, long start, long count, OutputStream output) throws IOException {
+        WritableByteChannel target = Channels.newChannel(output);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, target);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+                remaining -= written;
+            }
+        }
+        output.flush();
+    }
+
+    /**
+     * If-Range: chỉ áp dụng Range khi client đang giữ đúng phiên bản (ETag mạnh hoặc ngày sửa đổi).
+     */
+    private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null || ifRange.isBlank()) {
+            return true;
+        }
+        String value = ifRange.trim();
+        if (value.startsWith("\"")) {
+            return etag != null && value.equals("\"" + etag + "\"");
+        }
+        if (value.startsWith("W/")) {
+            return false;
+        }
+        try {
+            return request.getDateHeader(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private Optional<String> storedHash(Path file) {
+        Path parent = file.getParent();
+        if (parent == null || parent.getFileName() == null) {
+            return Optional.empty();
+        }
+        try {
+            return fileService.contentHash(file.getFileName().toString(), parent.getFileName().toString());
+        } catch (IllegalArgumentException e) {
+            // không phải folder upload hợp lệ (ví dụ blobs/): tự hash
+            return Optional.empty();
+        }
+    }
+}
@@ -1,31 +1,83 @@
 package vn.hoangtung.jobfind.service;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Optional;
 import java.util.Set;
 
+import jakarta.annotation.PostConstruct;
+
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.InputStreamResource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
 import org.springframework.web.multipart.MultipartFile;
 
+import vn.hoangtung.jobfind.domain.FileBlob;
+import vn.hoangtung.jobfind.domain.StoredFile;
+import vn.hoangtung.jobfind.repository.FileBlobRepository;
+import vn.hoangtung.jobfind.repository.StoredFileRepository;
+import vn.hoangtung.jobfind.util.FileDigestUtil;
+import vn.hoangtung.jobfind.util.PrivateDataPathUtil;
+import vn.hoangtung.jobfind.util.error.StorageException;
+
+/**
+ * Lưu file upload theo nội dung: mỗi SHA-256 chỉ có một blob trong hoangtung.upload-file.blob-path, đếm
+ * tham chiếu trong bảng file_blobs. Kho blob nằm ngoài upload root vì upload root được phục vụ public qua
+ * /storage/**: file chỉ tải được qua tên logic {folder}/{timestamp}-{name}, là hard link tới blob (copy
+ * nếu filesystem không hỗ trợ link hoặc khác volume), nên code đọc file theo đường dẫn cũ không phải đổi,
+ * còn cùng một CV upload nhiều lần chỉ chiếm dung lượng một lần.
+ */
 @Service
 public class FileService {
 
     private static final Set<String> ALLOWED_FOLDERS = Set.of("resume", "company", "avatar", "image", "images",
             "logo");
+    // Thư mục blob cũ trong upload root, chỉ dùng để chuyển blob ra ngoài
+    private static final String LEGACY_BLOB_FOLDER = "blobs";
+    private static final int HEADER_SIZE = 8;
+    private static final int UPLOAD_BUFFER_SIZE = 64 * 1024;
+
+    private final FileBlobRepository fileBlobRepository;
+    private final StoredFileRepository storedFileRepository;
+    // refCount đổi trong transaction có khóa dòng, kèm thao tác file blob, để nhiều node dùng chung an toàn
+    private final TransactionOperations transactionOperations;
 
     @Value("${hoangtung.upload-file.base-uri}")
     private String baseURI;
 
+    @Value("${hoangtung.upload-file.blob-path:data/blobs}")
+    private String blobPath;
+
+    private Path blobRoot;
+
+    public FileService(FileBlobRepository fileBlobRepository, StoredFileRepository storedFileRepository,
+            TransactionOperations transactionOperations) {
+        this.fileBlobRepository = fileBlobRepository;
+        this.storedFileRepository = storedFileRepository;
+        this.transactionOperations = transactionOperations;
+    }
+
+    @PostConstruct
+    public void open() {
+        try {
+            blobRoot = PrivateDataPathUtil.resolveOutsideUploadRoot(blobPath, baseURI);
+            PrivateDataPathUtil.moveLegacyFolder(baseURI, LEGACY_BLOB_FOLDER, blobRoot);
+        } catch (IOException e) {
+            throw new IllegalStateException("Không tạo được kho blob tại " + blobPath, e);
+        }
+    }
+
     public void createDirectory(String folder) throws URISyntaxException {
         try {
             Files.createDirectories(resolveFolder(folder));
@@ -34,17 +86,100 @@ public class FileService {
         }
     }
 
-    public String store(MultipartFile file, String folder) throws URISyntaxException, IOException {
-        String originalName = sanitizeFileName(file.getOriginalFilename());
+    public String store(MultipartFile file, String folder) throws URISyntaxException, IOException, StorageException {
+        try (InputStream inputStream = file.getInputStream()) {
+            return store(inputStream, file.getOriginalFilename(), folder, Long.MAX_VALUE, null);
+        }
+    }
+
+    /**
+     * Nhận file trong một lượt đọc duy nhất trên input: kiểm tra magic bytes ở HEADER_SIZE byte đầu,
+     * hash SHA-256, chặn vượt maxBytes và ghi thẳng ra file tạm cạnh blob (buffer cố định, không giữ
+     * cả file trong bộ nhớ). Đọc blocking nên client gửi nhanh hơn disk ghi sẽ bị TCP giữ lại.
+     */
+    public String store(InputStream input, String originalFileName, String folder, long maxBytes,
+            HeaderValidator headerValidator) throws URISyntaxException, IOException, StorageException {
+        String originalName = sanitizeFileName(originalFileName);
         String finalName = System.currentTimeMillis() + "-" + originalName;
         Path path = resolveFile(folder, finalName);
 
-        try (InputStream inputStream = file.getInputStream()) {
-            Files.copy(inputStream, path, StandardCopyOption.REPLACE_EXISTING);
+        Path tempFile = Files.createTempFile(blobRoot, "upload-", ".tmp");
+        try {
+            String sha256 = receive(input, tempFile, maxBytes, headerValidator);
+            FileBlob blob = acquireBlob(sha256, tempFile);
+            try {
+                linkOrCopy(blobPath(sha256), path);
+                StoredFile storedFile = new StoredFile();
+                storedFile.setFolder(validateFolder(folder));
+                storedFile.setFileName(finalName);
+                storedFile.setBlob(blob);
+                storedFileRepository.save(storedFile);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(path);
+                releaseBlob(blob.getSha256());
+                throw e;
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
         }
         return finalName;
     }
 
+    /**
+     * SHA-256 nội dung của file đã upload, dùng làm khóa cho các bước xử lý phía sau
+     * (đọc text CV, ...). File upload trước khi có bảng stored_files thì không có hash.
+     */
+    public Optional<String> contentHash(String fileName, String folder) {
+        return findStoredFile(fileName, folder).map(storedFile -> storedFile.getBlob().getSha256());
+    }
+
+    /**
+     * Bỏ tên logic của file và giảm refCount của blob; blob bị xóa khi không còn tên nào trỏ tới.
+     * Lỗi chỉ được log, không làm hỏng luồng nghiệp vụ gọi tới.
+     */
+    public void releaseSafely(String fileName, String folder) {
+        try {
+            Optional<StoredFile> storedFile = findStoredFile(fileName, folder);
+            if (storedFile.isEmpty()) {
+                return;
+            }
+            storedFileRepository.delete(storedFile.get());
+            Files.deleteIfExists(resolveFile(folder, fileName));
+            releaseBlob(storedFile.get().getBlob().getSha256());
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            System.out.println(">>> [File] ⚠️ Không giải phóng được file " + folder + "/" + fileName + ": "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * Đưa file vào kho blob mà không tạo tên logic nào (không phục vụ qua /storage/{folder}), dùng cho
+     * input của AI task để node nào claim task cũng đọc được. File nguồn bị chuyển vào blob hoặc giữ
+     * nguyên nếu blob đã có; bên gọi tự xóa file nguồn. Trả về SHA-256, gọi releaseBlobSafely khi xong.
+     */
+    public String storeBlob(Path file) throws URISyntaxException, IOException {
+        String sha256 = FileDigestUtil.sha256(file);
+        acquireBlob(sha256, file);
+        return sha256;
+    }
+
+    /** Đường dẫn của blob theo SHA-256 (đã kiểm tra định dạng hash). */
+    public Path blobFile(String sha256) throws URISyntaxException {
+        if (sha256 == null || !sha256.matches("[0-9a-f]{64}")) {
+            throw new IllegalArgumentException("Mã blob không hợp lệ");
+        }
+        return blobPath(sha256);
+    }
+
+    /** Giảm refCount của blob lấy bằng storeBlob; lỗi chỉ được log. */
+    public void releaseBlobSafely(String sha256) {
+        try {
+            releaseBlob(sha256);
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            System.out.println(">>> [File] ⚠️ Không giải phóng được blob " + sha256 + ": " + e.getMessage());
+        }
+    }
+
     public long getFileLength(String fileName, String folder) throws URISyntaxException {
         Path path = resolveFile(folder, fileName);
         if (!Files.exists(path) || Files.isDirectory(path)) {
@@ -57,10 +192,130 @@ public class FileService {
         }
     }
 
-    public InputStreamResource getResource(String fileName, String folder)
-            throws URISyntaxException, FileNotFoundException {
-        Path path = resolveFile(folder, fileName);
-        return new InputStreamResource(new FileInputStream(path.toFile()));
+    /**
+     * Kiểm tra magic bytes của file (tối đa HEADER_SIZE byte đầu) trước khi phần còn lại được ghi.
+     */
+    @FunctionalInterface
+    public interface HeaderValidator {
+        void validate(byte[] header, int length) throws StorageException;
+    }
+
+    public Path getFilePath(String fileName, String folder) throws URISyntaxException {
+        return resolveFile(folder, fileName);
+    }
+
+    private static String receive(InputStream input, Path target, long maxBytes, HeaderValidator headerValidator)
+            throws IOException, StorageException {
+        MessageDigest digest = FileDigestUtil.newSha256();
+        try (OutputStream output = Files.newOutputStream(target)) {
+            byte[] header = new byte[HEADER_SIZE];
+            int headerLength = input.readNBytes(header, 0, HEADER_SIZE);
+            if (headerLength == 0) {
+                throw new StorageException("File is empty. Please upload a file.");
+            }
+            if (headerValidator != null) {
+                headerValidator.validate(header, headerLength);
+            }
+            digest.update(header, 0, headerLength);
+            output.write(header, 0, headerLength);
+
+            long total = headerLength;
+            byte[] buffer = new byte[UPLOAD_BUFFER_SIZE];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                total += read;
+                if (total > maxBytes) {
+                    throw new StorageException("File is too large. Maximum size is " + formatSize(maxBytes) + ".");
+                }
+                digest.update(buffer, 0, read);
+                output.write(buffer, 0, read);
+            }
+            if (total > maxBytes) {
+                throw new StorageException("File is too large. Maximum size is " + formatSize(maxBytes) + ".");
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String formatSize(long bytes) {
+        long mb = 1024 * 1024;
+        return bytes % mb == 0 ? bytes / mb + "MB" : bytes + " bytes";
+    }
+
+    /**
+     * Tăng refCount (tạo dòng nếu chưa có) rồi đưa file vào blob khi dòng còn bị khóa: releaseBlob
+     * của node khác phải chờ, nên không xóa mất file vừa đưa vào. Lỗi ghi file thì rollback refCount.
+     */
+    private FileBlob acquireBlob(String sha256, Path uploadedFile) throws URISyntaxException, IOException {
+        Path blobPath = blobPath(sha256);
+        long size = Files.size(uploadedFile);
+        return inTransaction(() -> {
+            fileBlobRepository.insertOrIncrementRefCount(sha256, size, Instant.now());
+            if (!Files.exists(blobPath)) {
+                Files.createDirectories(blobPath.getParent());
+                Files.move(uploadedFile, blobPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return fileBlobRepository.findBySha256(sha256)
+                    .orElseThrow(() -> new IllegalStateException("Không tìm thấy blob " + sha256));
+        });
+    }
+
+    private void releaseBlob(String sha256) throws URISyntaxException, IOException {
+        Path blobPath = blobPath(sha256);
+        inTransaction(() -> {
+            FileBlob blob = fileBlobRepository.findBySha256ForUpdate(sha256).orElse(null);
+            if (blob == null) {
+                return null;
+            }
+            if (blob.getRefCount() > 1) {
+                blob.setRefCount(blob.getRefCount() - 1);
+                fileBlobRepository.save(blob);
+                return null;
+            }
+            fileBlobRepository.delete(blob);
+            Files.deleteIfExists(blobPath);
+            return null;
+        });
+    }
+
+    private <T> T inTransaction(BlobAction<T> action) throws IOException {
+        try {
+            return transactionOperations.execute(status -> {
+                try {
+                    return action.run();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    @FunctionalInterface
+    private interface BlobAction<T> {
+        T run() throws IOException;
+    }
+
+    private static void linkOrCopy(Path blobPath, Path target) throws IOException {
+        Files.deleteIfExists(target);
+        try {
+            Files.createLink(target, blobPath);
+        } catch (IOException | UnsupportedOperationException e) {
+            // filesystem không hỗ trợ hard link (hoặc khác volume): chấp nhận lưu thêm một bản
+            Files.copy(blobPath, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private Optional<StoredFile> findStoredFile(String fileName, String folder) {
+        if (fileName == null || fileName.isBlank()) {
+            return Optional.empty();
+        }
+        return storedFileRepository.findByFolderAndFileName(validateFolder(folder), sanitizeFileName(fileName));
+    }
+
+    private Path blobPath(String sha256) {
+        return blobRoot.resolve(sha256.substring(0, 2)).resolve(sha256);
     }
 
     private Path resolveFile(String folder, String fileName) throws URISyntaxException {
@@ -0,0 +1,103 @@
+package vn.hoangtung.jobfind.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import vn.hoangtung.jobfind.domain.Job;
+import vn.hoangtung.jobfind.repository.JobRepository;
+import vn.hoangtung.jobfind.repository.JobVectorOutboxRepository;
+import vn.hoangtung.jobfind.util.ai.JobFeatureIndex;
+
+/**
+ * Giữ {@link JobFeatureIndex} của các job đang tuyển cho chatbot. Index được nạp một lần rồi mỗi node
+ * tự đọc outbox (job_vector_outbox, kể cả event đã được node khác embed xong) theo createdAt để cập nhật,
+ * nên mỗi tin nhắn chat không phải load lại toàn bộ job từ DB và mọi node đều thấy thay đổi sau vài giây.
+ */
+@Service
+public class JobFeatureIndexService {
+
+    private final JobRepository jobRepository;
+    private final JobVectorOutboxRepository outboxRepository;
+    // Đọc lùi lại một khoảng để không sót event commit trễ hoặc lệch đồng hồ giữa các node
+    private final Duration pollOverlap;
+    private final JobFeatureIndex index = new JobFeatureIndex();
+    private volatile boolean loaded;
+    private Instant changesSince = Instant.MIN;
+
+    public JobFeatureIndexService(
+            JobRepository jobRepository,
+            JobVectorOutboxRepository outboxRepository,
+            @Value("${hoangtung.ai.job-index.poll-overlap-seconds:60}") long pollOverlapSeconds) {
+        this.jobRepository = jobRepository;
+        this.outboxRepository = outboxRepository;
+        this.pollOverlap = Duration.ofSeconds(Math.max(0, pollOverlapSeconds));
+    }
+
+    public JobFeatureIndex index() {
+        if (!loaded) {
+            reload();
+        }
+        return index;
+    }
+
+    public synchronized void reload() {
+        Instant startedAt = Instant.now();
+        replaceAll(jobRepository.findActiveJobsWithSkillsAndCompany());
+        changesSince = startedAt;
+    }
+
+    /** Nạp lại từ danh sách job đã đọc sẵn (vd khi đối soát toàn bộ), job không active bị bỏ qua. */
+    public synchronized void replaceAll(Collection<Job> jobs) {
+        index.replaceAll(jobs);
+        if (!loaded) {
+            changesSince = Instant.now();
+        }
+        loaded = true;
+    }
+
+    /**
+     * Áp dụng các job có event trong outbox từ lần đọc trước (trừ pollOverlap): đọc lại trạng thái job
+     * hiện tại từ DB, job không còn thì xóa khỏi index. Đọc lặp trong khoảng overlap là vô hại. Chưa nạp
+     * thì bỏ qua: lần nạp đầu tiên đọc DB sẽ thấy luôn các thay đổi này.
+     */
+    @Scheduled(fixedDelayString = "${hoangtung.ai.job-index.poll-interval-ms:5000}")
+    public synchronized void pollChanges() {
+        if (!loaded) {
+            return;
+        }
+        try {
+            Instant startedAt = Instant.now();
+            List<Long> jobIds = outboxRepository.findJobIdsChangedSince(changesSince.minus(pollOverlap));
+            if (!jobIds.isEmpty()) {
+                List<Job> jobs = jobRepository.findWithSkillsAndCompanyByIdIn(jobIds);
+                Set<Long> foundIds = jobs.stream().map(Job::getId).collect(Collectors.toSet());
+                List<Long> deletedIds = jobIds.stream().filter(id -> !foundIds.contains(id)).toList();
+                index.apply(jobs, deletedIds);
+            }
+            changesSince = startedAt;
+        } catch (Exception e) {
+            System.out.println(">>> [JobFeatureIndex] ⚠️ Đọc thay đổi job thất bại: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lưới an toàn cho thay đổi không đi qua outbox (vd sửa trực tiếp trong DB).
+     */
+    @Scheduled(fixedDelayString = "${hoangtung.ai.job-index.refresh-interval-ms:1800000}",
+            initialDelayString = "${hoangtung.ai.job-index.refresh-interval-ms:1800000}")
+    public void scheduledReload() {
+        try {
+            reload();
+        } catch (Exception e) {
+            System.out.println(">>> [JobFeatureIndex] ⚠️ Nạp lại index thất bại: " + e.getMessage());
+        }
+    }
+}
@@ -30,16 +30,19 @@ public class JobService {
     private final SkillRepository skillRepository;
     private final CompanyRepository companyRepository;
     private final DataScopeService dataScopeService;
+    private final JobVectorSyncService jobVectorSyncService;
 
     public JobService(
             JobRepository jobRepository,
             SkillRepository skillRepository,
             CompanyRepository companyRepository,
-            DataScopeService dataScopeService) {
+            DataScopeService dataScopeService,
+            JobVectorSyncService jobVectorSyncService) {
         this.jobRepository = jobRepository;
         this.skillRepository = skillRepository;
         this.companyRepository = companyRepository;
         this.dataScopeService = dataScopeService;
+        this.jobVectorSyncService = jobVectorSyncService;
     }
 
     public Optional<Job> fetchJobById(long id) {
@@ -53,6 +56,7 @@ public class JobService {
         return job;
     }
 
+    @Transactional
     public ResCreateJobDTO create(Job j) {
         User currentUser = this.dataScopeService.getCurrentUser().orElse(null);
         // check skills
@@ -85,6 +89,8 @@ public class JobService {
 
         // create job
         Job currentJob = this.jobRepository.save(j);
+        // ghi outbox trong cùng transaction, worker sẽ embed job lên vector store
+        this.jobVectorSyncService.enqueueUpsert(currentJob.getId());
 
         ResCreateJobDTO dto = new ResCreateJobDTO();
 
@@ -111,6 +117,7 @@ public class JobService {
         return dto;
     }
 
+    @Transactional
     public ResUpdateJobDTO update(Job j, Job jobInDB) {
         User currentUser = this.dataScopeService.getCurrentUser().orElse(null);
         ensureCanManageJob(jobInDB, currentUser);
@@ -155,6 +162,7 @@ public class JobService {
 
         // update job
         Job currentJob = this.jobRepository.save(jobInDB);
+        this.jobVectorSyncService.enqueueUpsert(currentJob.getId());
         // convert response
         ResUpdateJobDTO dto = new ResUpdateJobDTO();
 
@@ -181,11 +189,13 @@ public class JobService {
         return dto;
     }
 
+    @Transactional
     public void delete(long id) {
         Job job = this.jobRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Job not found"));
         ensureCanManageJob(job, this.dataScopeService.getCurrentUser().orElse(null));
         this.jobRepository.deleteById(id);
+        this.jobVectorSyncService.enqueueDelete(id);
     }
 
     public ResultPaginationDTO fetchAll(Specification<Job> spec, Pageable pageable) {
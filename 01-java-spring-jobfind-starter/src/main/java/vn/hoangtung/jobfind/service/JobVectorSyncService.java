@@ -0,0 +1,331 @@
+package vn.hoangtung.jobfind.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import vn.hoangtung.jobfind.domain.Job;
+import vn.hoangtung.jobfind.domain.JobVectorOutbox;
+import vn.hoangtung.jobfind.repository.JobRepository;
+import vn.hoangtung.jobfind.repository.JobVectorOutboxRepository;
+import vn.hoangtung.jobfind.util.ai.AiFeatureUtils;
+import vn.hoangtung.jobfind.util.ai.CacheTagIndex;
+import vn.hoangtung.jobfind.util.constant.JobVectorChangeEnum;
+
+/**
+ * Đồng bộ vector của job theo thay đổi thay vì embed lại toàn bộ catalogue:
+ * - JobService ghi outbox (UPSERT/DELETE) trong cùng transaction với thay đổi job; CompanyService và
+ *   SkillService ghi UPSERT cho các job của công ty/skill vừa sửa
+ * - Worker định kỳ claim outbox bằng lease (FOR UPDATE SKIP LOCKED) để khi chạy nhiều node mỗi event chỉ
+ *   được một node embed, gộp theo job (event cuối cùng thắng), chỉ embed job có hash nội dung đổi
+ * - Event xử lý xong được đánh processedAt và giữ thêm retention; index chatbot trong bộ nhớ của từng
+ *   node (JobFeatureIndexService) tự đọc outbox theo thời gian, không phụ thuộc node nào embed
+ * - Chỉ invalidate các cache ChatBot có dùng job bị đổi (tag job:{id})
+ * - Hash gồm cả loại vector store, và với store local còn kiểm tra vector có thật trong index, nên
+ *   đổi store hoặc mất snapshot thì lần đối soát lúc khởi động embed lại các job bị thiếu
+ */
+@Service
+public class JobVectorSyncService {
+
+    // Đổi khi format document thay đổi để mọi job được embed lại ở lần sync kế tiếp.
+    private static final String JOB_DOCUMENT_VERSION = "job-doc-v1";
+    // Hash cũ được tính cho Pinecone nên Pinecone không thêm gì vào hash; store khác thêm tên của nó.
+    private static final String LOCAL_STORE_KIND = "store:local";
+    private static final int OUTBOX_BATCH_SIZE = 100;
+    private static final int MAX_OUTBOX_ATTEMPTS = 5;
+
+    private final JobRepository jobRepository;
+    private final JobVectorOutboxRepository outboxRepository;
+    private final VectorStore vectorStore;
+    private final VectorIndexWriter vectorIndexWriter;
+    private final AiGatewayService aiGatewayService;
+    private final ChatSemanticCache chatSemanticCache;
+    private final JobFeatureIndexService jobFeatureIndexService;
+    private final TransactionOperations transactionOperations;
+    private final Duration lease;
+    private final Duration retention;
+    // Worker và /sync thủ công không chạy chồng lên nhau.
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    public JobVectorSyncService(
+            JobRepository jobRepository,
+            JobVectorOutboxRepository outboxRepository,
+            VectorStore vectorStore,
+            VectorIndexWriter vectorIndexWriter,
+            AiGatewayService aiGatewayService,
+            ChatSemanticCache chatSemanticCache,
+            JobFeatureIndexService jobFeatureIndexService,
+            TransactionOperations transactionOperations,
+            @Value("${hoangtung.ai.job-sync.lease-seconds:300}") long leaseSeconds,
+            @Value("${hoangtung.ai.job-sync.retention-seconds:600}") long retentionSeconds) {
+        this.jobRepository = jobRepository;
+        this.outboxRepository = outboxRepository;
+        this.vectorStore = vectorStore;
+        this.vectorIndexWriter = vectorIndexWriter;
+        this.aiGatewayService = aiGatewayService;
+        this.chatSemanticCache = chatSemanticCache;
+        this.jobFeatureIndexService = jobFeatureIndexService;
+        this.transactionOperations = transactionOperations;
+        this.lease = Duration.ofSeconds(Math.max(30, leaseSeconds));
+        this.retention = Duration.ofSeconds(Math.max(60, retentionSeconds));
+    }
+
+    public void enqueueUpsert(long jobId) {
+        enqueue(jobId, JobVectorChangeEnum.UPSERT);
+    }
+
+    /**
+     * Document của job gồm cả tên/mô tả/địa chỉ công ty và tên skill, nên CompanyService và
+     * SkillService gọi hàm này cho các job bị ảnh hưởng; job có nội dung không đổi bị bỏ qua theo hash.
+     */
+    public void enqueueUpserts(Collection<Long> jobIds) {
+        jobIds.forEach(this::enqueueUpsert);
+    }
+
+    public void enqueueDelete(long jobId) {
+        enqueue(jobId, JobVectorChangeEnum.DELETE);
+    }
+
+    @Scheduled(fixedDelayString = "${hoangtung.ai.job-sync.interval-ms:5000}")
+    public void processOutbox() {
+        if (!syncLock.tryLock()) {
+            return;
+        }
+        try {
+            Instant now = Instant.now();
+            outboxRepository.deleteProcessedBefore(now.minus(retention));
+            List<JobVectorOutbox> events = claim(now);
+            if (events.isEmpty()) {
+                return;
+            }
+
+            Map<Long, JobVectorChangeEnum> latestChanges = new LinkedHashMap<>();
+            for (JobVectorOutbox event : events) {
+                latestChanges.put(event.getJobId(), event.getChangeType());
+            }
+            Set<Long> upsertIds = latestChanges.entrySet().stream()
+                    .filter(entry -> entry.getValue() == JobVectorChangeEnum.UPSERT)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+            Set<Long> deleteIds = latestChanges.entrySet().stream()
+                    .filter(entry -> entry.getValue() == JobVectorChangeEnum.DELETE)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+
+            try {
+                List<Job> jobs = upsertIds.isEmpty() ? List.of() : jobRepository.findWithSkillsAndCompanyByIdIn(upsertIds);
+                // Job đã bị xóa sau khi ghi event UPSERT thì xử lý như DELETE.
+                Set<Long> foundIds = jobs.stream().map(Job::getId).collect(Collectors.toSet());
+                upsertIds.stream().filter(id -> !foundIds.contains(id)).forEach(deleteIds::add);
+
+                SyncResult result = syncJobs(jobs, deleteIds);
+                outboxRepository.markProcessed(events.stream().map(JobVectorOutbox::getId).toList(), Instant.now());
+                if (result.upserted() > 0 || result.deleted() > 0) {
+                    System.out.println(">>> [JobVectorSync] " + result.describe());
+                }
+            } catch (RuntimeException e) {
+                System.out.println(">>> [JobVectorSync] ⚠️ Đồng bộ outbox lỗi: " + e.getMessage());
+                markFailed(events, e);
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Đối soát một lần khi app đã sẵn sàng: phát hiện store vừa đổi (hash khác) hoặc index local bị mất.
+     * Không có gì thay đổi thì chỉ đọc và hash lại catalogue, không gọi embedding.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        try {
+            SyncResult result = reconcileAll();
+            if (result.upserted() > 0) {
+                System.out.println(">>> [JobVectorSync] Đối soát lúc khởi động: " + result.describe());
+            }
+        } catch (RuntimeException e) {
+            System.out.println(">>> [JobVectorSync] ⚠️ Đối soát lúc khởi động lỗi: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Đối soát toàn bộ job (endpoint /sync): vẫn đọc hết catalogue nhưng chỉ embed và upsert
+     * các job có hash nội dung khác lần đồng bộ trước hoặc không còn vector trong store local.
+     */
+    public SyncResult reconcileAll() {
+        syncLock.lock();
+        try {
+            List<Job> jobs = jobRepository.findAllWithSkillsAndCompany();
+            jobFeatureIndexService.replaceAll(jobs);
+            return syncJobs(jobs, List.of());
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    public Document buildJobDocument(Job job) {
+        String skillNames = AiFeatureUtils.jobSkillNames(job).stream()
+                .collect(Collectors.joining(", "));
+
+        String companyName = job.getCompany() != null ? job.getCompany().getName() : "Chưa xác định";
+        String companyDesc = job.getCompany() != null && job.getCompany().getDescription() != null
+                ? job.getCompany().getDescription()
+                : "";
+        String companyAddress = job.getCompany() != null && job.getCompany().getAddress() != null
+                ? job.getCompany().getAddress()
+                : "";
+        String level = job.getLevel() != null ? job.getLevel().toString() : "Không yêu cầu";
+
+        StringBuilder contentBuilder = new StringBuilder();
+        contentBuilder.append("=== THÔNG TIN CÔNG VIỆC ===\n");
+        contentBuilder.append("ID: ").append(job.getId()).append("\n");
+        contentBuilder.append("Vị trí: ").append(job.getName()).append("\n");
+        contentBuilder.append("Công ty: ").append(companyName).append("\n");
+        contentBuilder.append("Cấp độ: ").append(level).append("\n");
+        contentBuilder.append("Mức lương: ").append(String.format("%.0f", job.getSalary())).append(" VNĐ\n");
+        contentBuilder.append("Địa điểm: ").append(job.getLocation()).append("\n");
+        contentBuilder.append("Kỹ năng yêu cầu: ").append(skillNames.isBlank() ? "Chưa cập nhật" : skillNames).append("\n");
+        contentBuilder.append("Số lượng tuyển: ").append(job.getQuantity()).append(" người\n");
+        contentBuilder.append("Trạng thái: ").append(job.isActive() ? "Đang tuyển" : "Đã đóng").append("\n");
+
+        if (!companyDesc.isEmpty()) {
+            contentBuilder.append("\n=== VỀ CÔNG TY ===\n");
+            contentBuilder.append(companyDesc).append("\n");
+        }
+        if (!companyAddress.isEmpty()) {
+            contentBuilder.append("Địa chỉ công ty: ").append(companyAddress).append("\n");
+        }
+
+        if (job.getDescription() != null && !job.getDescription().isBlank()) {
+            contentBuilder.append("\n=== MÔ TẢ CÔNG VIỆC ===\n");
+            contentBuilder.append(job.getDescription());
+        }
+
+        Map<String, Object> metadata = Map.of(
+                "doc_type", CvVectorService.DOC_TYPE_JOB,
+                "source_type", "JOB",
+                "job_id", job.getId(),
+                "company_name", companyName,
+                "level", level,
+                "salary", job.getSalary(),
+                "location", job.getLocation() == null ? "" : job.getLocation(),
+                "active", job.isActive());
+
+        return new Document(String.valueOf(job.getId()), contentBuilder.toString(), metadata);
+    }
+
+    public String contentHash(Document document) {
+        String metadata = new TreeMap<>(document.getMetadata()).toString();
+        if (vectorStore instanceof LocalHnswVectorStore) {
+            return aiGatewayService.fingerprint(JOB_DOCUMENT_VERSION, LOCAL_STORE_KIND, document.getContent(), metadata);
+        }
+        return aiGatewayService.fingerprint(JOB_DOCUMENT_VERSION, document.getContent(), metadata);
+    }
+
+    // Pinecone không kiểm tra được rẻ từng vector; store local thì tra trực tiếp trong index
+    private boolean isIndexed(Document document) {
+        return !(vectorStore instanceof LocalHnswVectorStore localStore) || localStore.contains(document.getId());
+    }
+
+    private SyncResult syncJobs(Collection<Job> jobs, Collection<Long> deletedJobIds) {
+        List<Document> changedDocuments = new ArrayList<>();
+        Map<Long, String> changedHashes = new LinkedHashMap<>();
+        int skipped = 0;
+
+        for (Job job : jobs) {
+            Document document = buildJobDocument(job);
+            String hash = contentHash(document);
+            if (hash.equals(job.getVectorContentHash()) && isIndexed(document)) {
+                skipped++;
+                continue;
+            }
+            changedDocuments.add(document);
+            changedHashes.put(job.getId(), hash);
+        }
+
+        vectorIndexWriter.add(changedDocuments);
+        if (!deletedJobIds.isEmpty()) {
+            vectorStore.delete(deletedJobIds.stream().map(String::valueOf).toList());
+        }
+
+        Instant syncedAt = Instant.now();
+        changedHashes.forEach((jobId, hash) -> jobRepository.markVectorSynced(jobId, hash, syncedAt));
+
+        List<String> affectedTags = new ArrayList<>();
+        changedHashes.keySet().forEach(jobId -> affectedTags.add(CacheTagIndex.jobTag(jobId)));
+        deletedJobIds.forEach(jobId -> affectedTags.add(CacheTagIndex.jobTag(jobId)));
+        if (!affectedTags.isEmpty()) {
+            aiGatewayService.invalidateTags(affectedTags);
+            chatSemanticCache.invalidateTags(affectedTags);
+        }
+
+        return new SyncResult(changedDocuments.size(), skipped, deletedJobIds.size());
+    }
+
+    private void enqueue(long jobId, JobVectorChangeEnum changeType) {
+        JobVectorOutbox event = new JobVectorOutbox();
+        event.setJobId(jobId);
+        event.setChangeType(changeType);
+        outboxRepository.save(event);
+    }
+
+    /**
+     * Khóa và ghi lease trong một transaction ngắn rồi commit ngay: embedding chạy ngoài transaction,
+     * node khác bỏ qua các dòng đã có lease cho tới khi hết hạn (node giữ lease bị tắt giữa chừng).
+     */
+    private List<JobVectorOutbox> claim(Instant now) {
+        List<JobVectorOutbox> claimed = transactionOperations.execute(status -> {
+            List<JobVectorOutbox> events = outboxRepository.lockClaimable(now, OUTBOX_BATCH_SIZE);
+            Instant claimedUntil = now.plus(lease);
+            events.forEach(event -> event.setClaimedUntil(claimedUntil));
+            return outboxRepository.saveAll(events);
+        });
+        return claimed == null ? List.of() : claimed;
+    }
+
+    private void markFailed(List<JobVectorOutbox> events, RuntimeException error) {
+        Instant now = Instant.now();
+        int dropped = 0;
+        for (JobVectorOutbox event : events) {
+            event.setAttempts(event.getAttempts() + 1);
+            event.setLastError(error.getMessage());
+            event.setClaimedUntil(null);
+            if (event.getAttempts() >= MAX_OUTBOX_ATTEMPTS) {
+                // Bỏ qua sau nhiều lần lỗi; /sync thủ công sẽ đối soát lại theo hash.
+                event.setProcessedAt(now);
+                dropped++;
+            }
+        }
+        outboxRepository.saveAll(events);
+        if (dropped > 0) {
+            System.out.println(">>> [JobVectorSync] ⚠️ Bỏ " + dropped + " event sau "
+                    + MAX_OUTBOX_ATTEMPTS + " lần thử");
+        }
+    }
+
+    public record SyncResult(int upserted, int skipped, int deleted) {
+
+        public String describe() {
+            return "Đã embed lại " + upserted + " công việc thay đổi, bỏ qua " + skipped
+                    + " công việc không đổi, xóa " + deleted + " vector.";
+        }
+    }
+}
@@ -0,0 +1,478 @@
+package vn.hoangtung.jobfind.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import vn.hoangtung.jobfind.util.PrivateDataPathUtil;
+import vn.hoangtung.jobfind.util.ai.HnswIndex;
+import vn.hoangtung.jobfind.util.ai.SemanticQueryIndex;
+
+/**
+ * VectorStore chạy trong process (thay Pinecone khi hoangtung.ai.vectorstore.type=local):
+ * - Tìm kiếm bằng đồ thị HnswIndex, không round-trip mạng
+ * - Metadata doc_type, source_type, resume_id, cv_analysis_id, job_id có inverted index (BitSet) nên
+ *   filter của CvVectorService/AIService được tính bằng phép AND/OR trên bitset
+ * - Filter chọn ra ít node (vd: chunk của một resume) thì quét vét cạn thay vì đi đồ thị
+ * - Snapshot định kỳ ra file qua memory-mapped buffer, ghi file tạm rồi thay thế nguyên tử. Snapshot chứa
+ *   nguyên nội dung document (kể cả chunk CV) nên nằm ở hoangtung.ai.vectorstore.local.path, ngoài upload root
+ *
+ * Auto-config của Pinecone chỉ lùi khi đã có bean PineconeVectorStore nên vẫn tạo bean "vectorStore";
+ * @Primary để mọi chỗ inject VectorStore nhận store local thay vì bị resolve theo tên sang Pinecone.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "hoangtung.ai.vectorstore.type", havingValue = "local")
+public class LocalHnswVectorStore implements VectorStore {
+
+    private static final String SNAPSHOT_FILE_NAME = "hnsw.snapshot";
+    // Thư mục cũ trong upload root, chỉ dùng để chuyển snapshot ra ngoài
+    private static final String LEGACY_FOLDER = "vector-index";
+    private static final int SNAPSHOT_MAGIC = 0x4A464856;
+    private static final Set<String> INDEXED_KEYS = Set.of("doc_type", "source_type", "resume_id", "cv_analysis_id",
+            "job_id");
+    // Tập ứng viên sau filter nhỏ hơn ngưỡng này thì quét vét cạn (chính xác và vẫn dưới 1ms).
+    private static final int EXACT_SEARCH_LIMIT = 2048;
+    // Tỷ lệ node đã xóa vượt ngưỡng thì dựng lại đồ thị lúc snapshot.
+    private static final double REBUILD_DELETED_RATIO = 0.3;
+
+    private final EmbeddingModel embeddingModel;
+    private final ObjectMapper objectMapper;
+    private final String path;
+    private final String baseURI;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private HnswIndex index;
+    private final List<StoredDocument> documents = new ArrayList<>();
+    private final Map<String, Integer> nodeByDocumentId = new HashMap<>();
+    private final Map<String, Map<Object, BitSet>> metadataIndex = new HashMap<>();
+    private final BitSet liveNodes = new BitSet();
+    private Path snapshotPath;
+    private boolean dirty;
+
+    public LocalHnswVectorStore(
+            EmbeddingModel embeddingModel,
+            ObjectMapper objectMapper,
+            @Value("${hoangtung.ai.vectorstore.local.path:data/vector-index}") String path,
+            @Value("${hoangtung.upload-file.base-uri}") String baseURI,
+            @Value("${hoangtung.ai.vectorstore.local.m:16}") int m,
+            @Value("${hoangtung.ai.vectorstore.local.ef-construction:100}") int efConstruction,
+            @Value("${hoangtung.ai.vectorstore.local.ef-search:64}") int efSearch) {
+        this.embeddingModel = embeddingModel;
+        this.objectMapper = objectMapper;
+        this.path = path;
+        this.baseURI = baseURI;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+    }
+
+    @PostConstruct
+    public void open() {
+        lock.writeLock().lock();
+        try {
+            Path folderPath = PrivateDataPathUtil.resolveOutsideUploadRoot(path, baseURI);
+            snapshotPath = folderPath.resolve(SNAPSHOT_FILE_NAME);
+            PrivateDataPathUtil.moveLegacyFile(baseURI, LEGACY_FOLDER, SNAPSHOT_FILE_NAME, snapshotPath);
+            if (Files.exists(snapshotPath)) {
+                long startedAt = System.nanoTime();
+                loadSnapshot(snapshotPath);
+                System.out.println(">>> [LocalVectorStore] Nạp " + liveNodes.cardinality() + " vector trong "
+                        + Duration.ofNanos(System.nanoTime() - startedAt).toMillis() + "ms");
+            }
+        } catch (Exception e) {
+            // Snapshot hỏng thì bắt đầu index rỗng; JobVectorSyncService đối soát lúc khởi động sẽ embed lại job.
+            System.out.println(">>> [LocalVectorStore] ⚠️ Không nạp được snapshot: " + e.getMessage());
+            resetState();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        snapshotIfDirty();
+    }
+
+    @Override
+    public void add(List<Document> documentsToAdd) {
+        if (documentsToAdd == null || documentsToAdd.isEmpty()) {
+            return;
+        }
+        // Embed ngoài lock; BatchingEmbeddingModel trả lại vector đã tính sẵn nếu có.
+        List<float[]> vectors = new ArrayList<>(documentsToAdd.size());
+        for (Document document : documentsToAdd) {
+            float[] vector = SemanticQueryIndex.normalize(embeddingModel.embed(document));
+            if (vector == null) {
+                throw new IllegalStateException("Embedding rỗng cho document " + document.getId());
+            }
+            vectors.add(vector);
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < documentsToAdd.size(); i++) {
+                Document document = documentsToAdd.get(i);
+                if (index == null) {
+                    index = new HnswIndex(vectors.get(i).length, m, efConstruction);
+                }
+                removeDocument(document.getId());
+                int node = index.add(vectors.get(i));
+                StoredDocument stored = new StoredDocument(document.getId(), document.getContent(),
+                        new LinkedHashMap<>(document.getMetadata()));
+                documents.add(stored);
+                register(node, stored);
+            }
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Boolean> delete(List<String> idList) {
+        if (idList == null || idList.isEmpty()) {
+            return Optional.of(true);
+        }
+        lock.writeLock().lock();
+        try {
+            boolean removed = false;
+            for (String id : idList) {
+                removed |= removeDocument(id);
+            }
+            dirty |= removed;
+            return Optional.of(true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        if (request == null || request.getQuery() == null || request.getTopK() <= 0) {
+            return List.of();
+        }
+        float[] query = SemanticQueryIndex.normalize(embeddingModel.embed(request.getQuery()));
+
+        lock.readLock().lock();
+        try {
+            if (index == null || query == null || query.length != index.dimension()) {
+                return List.of();
+            }
+            BitSet candidates = request.hasFilterExpression()
+                    ? evaluate(request.getFilterExpression())
+                    : (BitSet) liveNodes.clone();
+            int candidateCount = candidates.cardinality();
+            if (candidateCount == 0) {
+                return List.of();
+            }
+
+            List<HnswIndex.Result> results = candidateCount <= EXACT_SEARCH_LIMIT
+                    ? index.exactSearch(query, request.getTopK(), candidates)
+                    : index.search(query, request.getTopK(), Math.max(efSearch, request.getTopK()), candidates::get);
+
+            List<Document> matches = new ArrayList<>(results.size());
+            for (HnswIndex.Result result : results) {
+                if (result.score() < request.getSimilarityThreshold()) {
+                    continue;
+                }
+                StoredDocument stored = documents.get(result.node());
+                Map<String, Object> metadata = new HashMap<>(stored.metadata());
+                // Giữ quy ước của Pinecone store: distance = 1 - cosine.
+                metadata.put("distance", (float) (1.0 - result.score()));
+                matches.add(new Document(stored.id(), stored.content(), metadata));
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Document còn trong index không (snapshot mất/hỏng thì index rỗng dù DB ghi job đã đồng bộ). */
+    public boolean contains(String documentId) {
+        lock.readLock().lock();
+        try {
+            Integer node = nodeByDocumentId.get(documentId);
+            return node != null && liveNodes.get(node);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveNodes.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${hoangtung.ai.vectorstore.local.snapshot-interval-ms:60000}")
+    public void snapshotIfDirty() {
+        lock.writeLock().lock();
+        try {
+            if (!dirty || snapshotPath == null || index == null) {
+                return;
+            }
+            if (index.size() > 0 && (double) (index.size() - index.liveSize()) / index.size() > REBUILD_DELETED_RATIO) {
+                rebuild();
+            }
+            writeSnapshot(snapshotPath);
+            dirty = false;
+        } catch (IOException | RuntimeException e) {
+            System.out.println(">>> [LocalVectorStore] ⚠️ Không ghi được snapshot: " + e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private boolean removeDocument(String id) {
+        Integer node = nodeByDocumentId.remove(id);
+        if (node == null) {
+            return false;
+        }
+        // Bitset metadata không cần dọn: mọi kết quả filter đều được AND với liveNodes.
+        index.markDeleted(node);
+        liveNodes.clear(node);
+        return true;
+    }
+
+    private void register(int node, StoredDocument stored) {
+        nodeByDocumentId.put(stored.id(), node);
+        liveNodes.set(node);
+        for (String key : INDEXED_KEYS) {
+            Object value = stored.metadata().get(key);
+            if (value != null) {
+                metadataIndex.computeIfAbsent(key, ignored -> new HashMap<>())
+                        .computeIfAbsent(normalizeValue(value), ignored -> new BitSet())
+                        .set(node);
+            }
+        }
+    }
+
+    /** Dựng lại đồ thị chỉ với node còn sống (loại bỏ tombstone). */
+    private void rebuild() {
+        HnswIndex rebuilt = new HnswIndex(index.dimension(), m, efConstruction);
+        List<StoredDocument> liveDocuments = new ArrayList<>();
+        for (int node = liveNodes.nextSetBit(0); node >= 0; node = liveNodes.nextSetBit(node + 1)) {
+            rebuilt.add(index.vector(node));
+            liveDocuments.add(documents.get(node));
+        }
+        resetState();
+        index = rebuilt;
+        for (int node = 0; node < liveDocuments.size(); node++) {
+            documents.add(liveDocuments.get(node));
+            register(node, liveDocuments.get(node));
+        }
+    }
+
+    private void resetState() {
+        index = null;
+        documents.clear();
+        nodeByDocumentId.clear();
+        metadataIndex.clear();
+        liveNodes.clear();
+    }
+
+    private BitSet evaluate(Filter.Operand operand) {
+        if (operand instanceof Filter.Group group) {
+            return evaluate(group.content());
+        }
+        if (!(operand instanceof Filter.Expression expression)) {
+            throw new IllegalArgumentException("Filter không hỗ trợ: " + operand);
+        }
+
+        switch (expression.type()) {
+            case AND -> {
+                BitSet result = evaluate(expression.left());
+                result.and(evaluate(expression.right()));
+                return result;
+            }
+            case OR -> {
+                BitSet result = evaluate(expression.left());
+                result.or(evaluate(expression.right()));
+                return result;
+            }
+            case NOT -> {
+                BitSet result = (BitSet) liveNodes.clone();
+                result.andNot(evaluate(expression.left()));
+                return result;
+            }
+            default -> {
+                return evaluateComparison(expression);
+            }
+        }
+    }
+
+    private BitSet evaluateComparison(Filter.Expression expression) {
+        String key = ((Filter.Key) expression.left()).key().replace("\"", "").replace("'", "");
+        Object value = ((Filter.Value) expression.right()).value();
+        Map<Object, BitSet> indexed = metadataIndex.get(key);
+        Filter.ExpressionType type = expression.type();
+
+        if (INDEXED_KEYS.contains(key)) {
+            switch (type) {
+                case EQ, IN -> {
+                    return indexedMatches(indexed, type == Filter.ExpressionType.IN ? (Collection<?>) value : List.of(value));
+                }
+                case NE, NIN -> {
+                    BitSet result = (BitSet) liveNodes.clone();
+                    result.andNot(indexedMatches(indexed,
+                            type == Filter.ExpressionType.NIN ? (Collection<?>) value : List.of(value)));
+                    return result;
+                }
+                default -> {
+                    // GT/LT trên key có index: quét metadata như key thường
+                }
+            }
+        }
+
+        BitSet result = new BitSet();
+        for (int node = liveNodes.nextSetBit(0); node >= 0; node = liveNodes.nextSetBit(node + 1)) {
+            if (matches(documents.get(node).metadata().get(key), type, value)) {
+                result.set(node);
+            }
+        }
+        return result;
+    }
+
+    private BitSet indexedMatches(Map<Object, BitSet> indexed, Collection<?> values) {
+        BitSet result = new BitSet();
+        if (indexed == null) {
+            return result;
+        }
+        for (Object value : values) {
+            BitSet nodes = indexed.get(normalizeValue(value));
+            if (nodes != null) {
+                result.or(nodes);
+            }
+        }
+        result.and(liveNodes);
+        return result;
+    }
+
+    private static boolean matches(Object actual, Filter.ExpressionType type, Object expected) {
+        return switch (type) {
+            case EQ -> actual != null && Objects.equals(normalizeValue(actual), normalizeValue(expected));
+            case NE -> actual == null || !Objects.equals(normalizeValue(actual), normalizeValue(expected));
+            case IN -> actual != null && ((Collection<?>) expected).stream()
+                    .anyMatch(item -> Objects.equals(normalizeValue(actual), normalizeValue(item)));
+            case NIN -> actual == null || ((Collection<?>) expected).stream()
+                    .noneMatch(item -> Objects.equals(normalizeValue(actual), normalizeValue(item)));
+            case GT -> compare(actual, expected) > 0;
+            case GTE -> compare(actual, expected) >= 0;
+            case LT -> actual != null && compare(actual, expected) < 0;
+            case LTE -> actual != null && compare(actual, expected) <= 0;
+            default -> throw new IllegalArgumentException("Filter không hỗ trợ: " + type);
+        };
+    }
+
+    private static int compare(Object actual, Object expected) {
+        if (actual == null) {
+            return -1;
+        }
+        if (actual instanceof Number left && expected instanceof Number right) {
+            return Double.compare(left.doubleValue(), right.doubleValue());
+        }
+        return String.valueOf(actual).compareTo(String.valueOf(expected));
+    }
+
+    /** Số nguyên về Long, số thực nguyên về Long (Pinecone/JSON có thể trả 12.0), còn lại giữ nguyên. */
+    private static Object normalizeValue(Object value) {
+        if (value instanceof Number number) {
+            double asDouble = number.doubleValue();
+            return asDouble == Math.rint(asDouble) ? (Object) number.longValue() : (Object) asDouble;
+        }
+        return value;
+    }
+
+    private void writeSnapshot(Path target) throws IOException {
+        List<StoredDocument> persisted = new ArrayList<>(documents.size());
+        for (int node = 0; node < documents.size(); node++) {
+            persisted.add(liveNodes.get(node) ? documents.get(node) : null);
+        }
+        byte[] documentBytes = objectMapper.writeValueAsBytes(persisted);
+        int indexBytes = index.snapshotBytes();
+        long totalBytes = 3L * Integer.BYTES + indexBytes + documentBytes.length;
+
+        Path temp = target.resolveSibling(SNAPSHOT_FILE_NAME + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, totalBytes);
+            buffer.putInt(SNAPSHOT_MAGIC).putInt(indexBytes);
+            index.writeSnapshot(buffer);
+            buffer.putInt(documentBytes.length).put(documentBytes);
+            buffer.force();
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void loadSnapshot(Path source) throws IOException {
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != SNAPSHOT_MAGIC) {
+                throw new IllegalStateException("Snapshot vector index không đúng định dạng");
+            }
+            int indexBytes = buffer.getInt();
+            ByteBuffer indexSection = buffer.slice(buffer.position(), indexBytes);
+            buffer.position(buffer.position() + indexBytes);
+            HnswIndex loaded = HnswIndex.readSnapshot(indexSection);
+
+            byte[] documentBytes = new byte[buffer.getInt()];
+            buffer.get(documentBytes);
+            List<StoredDocument> loadedDocuments = objectMapper.readValue(documentBytes,
+                    new TypeReference<List<StoredDocument>>() {
+                    });
+
+            resetState();
+            index = loaded;
+            for (int node = 0; node < loadedDocuments.size(); node++) {
+                StoredDocument stored = loadedDocuments.get(node);
+                documents.add(stored);
+                if (stored != null && !loaded.isDeleted(node)) {
+                    register(node, stored);
+                }
+            }
+        }
+    }
+
+    record StoredDocument(String id, String content, Map<String, Object> metadata) {
+    }
+}
@@ -46,16 +46,19 @@ public class ResumeService {
     private final UserRepository userRepository;
     private final JobRepository jobRepository;
     private final CvVectorService cvVectorService;
+    private final FileService fileService;
 
     public ResumeService(
             ResumeRepository resumeRepository,
             UserRepository userRepository,
             JobRepository jobRepository,
-            CvVectorService cvVectorService) {
+            CvVectorService cvVectorService,
+            FileService fileService) {
         this.resumeRepository = resumeRepository;
         this.userRepository = userRepository;
         this.jobRepository = jobRepository;
         this.cvVectorService = cvVectorService;
+        this.fileService = fileService;
     }
 
     public Optional<Resume> fetchById(long id) {
@@ -135,6 +138,7 @@ public class ResumeService {
         ensureCanManageResume(resume, currentUser);
         cvVectorService.deleteResumeVectorsSafely(id);
         this.resumeRepository.deleteById(id);
+        releaseResumeFile(resume);
     }
 
     public ResFetchResumeDTO getResumeForCurrentUser(long id) {
@@ -154,8 +158,18 @@ public class ResumeService {
     }
 
     public void delete(long id) {
+        Optional<Resume> resume = this.resumeRepository.findById(id);
         cvVectorService.deleteResumeVectorsSafely(id);
         this.resumeRepository.deleteById(id);
+        resume.ifPresent(this::releaseResumeFile);
+    }
+
+    // Một file CV có thể được dùng cho nhiều hồ sơ ứng tuyển, chỉ trả tham chiếu khi không còn hồ sơ nào dùng
+    private void releaseResumeFile(Resume resume) {
+        String url = resume.getUrl();
+        if (url != null && !url.isBlank() && !this.resumeRepository.existsByUrl(url)) {
+            fileService.releaseSafely(url, "resume");
+        }
     }
 
     public ResFetchResumeDTO getResume(Resume resume) {
@@ -5,19 +5,32 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import java.util.List;
 import java.util.Optional;
 import vn.hoangtung.jobfind.domain.Skill;
 import vn.hoangtung.jobfind.domain.response.ResultPaginationDTO;
+import vn.hoangtung.jobfind.repository.JobRepository;
 import vn.hoangtung.jobfind.repository.SkillRepository;
 
 @Service
 public class SkillService {
     private final SkillRepository skillRepository;
     private final DataScopeService dataScopeService;
+    private final SkillTaxonomyRegistry skillTaxonomyRegistry;
+    private final JobRepository jobRepository;
+    private final JobVectorSyncService jobVectorSyncService;
 
-    public SkillService(SkillRepository skillRepository, DataScopeService dataScopeService) {
+    public SkillService(SkillRepository skillRepository, DataScopeService dataScopeService,
+            SkillTaxonomyRegistry skillTaxonomyRegistry, JobRepository jobRepository,
+            JobVectorSyncService jobVectorSyncService) {
         this.skillRepository = skillRepository;
         this.dataScopeService = dataScopeService;
+        this.skillTaxonomyRegistry = skillTaxonomyRegistry;
+        this.jobRepository = jobRepository;
+        this.jobVectorSyncService = jobVectorSyncService;
     }
 
     public boolean isNameExist(String name) {
@@ -34,25 +47,36 @@ public class SkillService {
 
     public Skill createSkill(Skill s) {
         ensureCanWriteSkill();
-        return this.skillRepository.save(s);
+        Skill saved = this.skillRepository.save(s);
+        refreshTaxonomyAfterCommit();
+        return saved;
     }
 
+    @Transactional
     public Skill updateSkill(Skill s) {
         ensureCanWriteSkill();
-        return this.skillRepository.save(s);
+        Skill saved = this.skillRepository.save(s);
+        // vector của job chứa tên skill
+        this.jobVectorSyncService.enqueueUpserts(this.jobRepository.findIdsBySkillId(saved.getId()));
+        refreshTaxonomyAfterCommit();
+        return saved;
     }
 
+    @Transactional
     public void deleteSkill(long id) {
         ensureCanWriteSkill();
         // delete job (inside job_skill table)
         Optional<Skill> skillOptional = this.skillRepository.findById(id);
         Skill currentSkill = skillOptional.get();
+        List<Long> affectedJobIds = this.jobRepository.findIdsBySkillId(id);
         currentSkill.getJobs().forEach(job -> job.getSkills().remove(currentSkill));
+        this.jobVectorSyncService.enqueueUpserts(affectedJobIds);
 
         // delete subscriber (inside subscriber_skill table)
         currentSkill.getSubscribers().forEach(subs -> subs.getSkills().remove(currentSkill));
 
         this.skillRepository.delete(currentSkill);
+        refreshTaxonomyAfterCommit();
     }
 
     public ResultPaginationDTO fetchAll(Specification<Skill> spec, Pageable pageable) {
@@ -74,6 +98,23 @@ public class SkillService {
         return rs;
     }
 
+    /**
+     * Registry đọc skill bằng findAll(): chạy trong transaction chưa commit sẽ công bố trạng thái có thể
+     * bị rollback, nên chỉ refresh sau khi commit. Không có transaction (save tự commit) thì refresh ngay.
+     */
+    private void refreshTaxonomyAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            this.skillTaxonomyRegistry.refresh();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                skillTaxonomyRegistry.refresh();
+            }
+        });
+    }
+
     private void ensureCanWriteSkill() {
         this.dataScopeService.getCurrentUser().ifPresent(user -> {
             if (this.dataScopeService.isHrOnly(user)) {
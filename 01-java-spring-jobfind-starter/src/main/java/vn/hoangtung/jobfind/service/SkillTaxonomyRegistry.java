@@ -0,0 +1,70 @@
+package vn.hoangtung.jobfind.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import vn.hoangtung.jobfind.domain.Skill;
+import vn.hoangtung.jobfind.repository.SkillRepository;
+import vn.hoangtung.jobfind.util.ai.KnownSkillCatalog;
+import vn.hoangtung.jobfind.util.ai.SkillTaxonomy;
+
+/**
+ * Giữ một bản {@link KnownSkillCatalog} (skill DB + curated, kèm taxonomy/automaton) dùng chung
+ * cho chat, CV Doctor và interview. Hot path chỉ đọc reference, không query DB hay build lại
+ * taxonomy; {@link SkillService} gọi {@link #refresh()} sau khi transaction thêm/sửa/xóa skill commit
+ * để swap sang version mới.
+ */
+@Service
+public class SkillTaxonomyRegistry {
+
+    private final SkillRepository skillRepository;
+    private final AtomicReference<KnownSkillCatalog> current = new AtomicReference<>();
+    private final AtomicLong versions = new AtomicLong();
+
+    public SkillTaxonomyRegistry(SkillRepository skillRepository) {
+        this.skillRepository = skillRepository;
+    }
+
+    public KnownSkillCatalog knownSkills() {
+        KnownSkillCatalog catalog = current.get();
+        return catalog != null ? catalog : refresh();
+    }
+
+    public SkillTaxonomy taxonomy() {
+        return knownSkills().taxonomy();
+    }
+
+    public long version() {
+        return knownSkills().version();
+    }
+
+    /**
+     * Đọc lại skill từ DB, build catalog mới rồi swap nguyên tử. Request đang chạy vẫn dùng
+     * bản cũ cho tới khi xong. Synchronized để hai lần CRUD sát nhau không build song song
+     * và version luôn tăng theo thứ tự swap.
+     */
+    public synchronized KnownSkillCatalog refresh() {
+        KnownSkillCatalog catalog = KnownSkillCatalog.of(versions.incrementAndGet(),
+                skillRepository.findAll().stream().map(Skill::getName).toList());
+        current.set(catalog);
+        return catalog;
+    }
+
+    /**
+     * Chạy ngay lúc khởi động để warm catalog, sau đó là lưới an toàn cho skill được ghi thẳng
+     * vào DB (seed, instance khác) không đi qua SkillService.
+     */
+    @Scheduled(fixedDelayString = "${hoangtung.ai.skill-taxonomy.refresh-interval-ms:600000}")
+    public void scheduledRefresh() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            KnownSkillCatalog catalog = current.get();
+            System.out.println(">>> [SkillTaxonomy] ⚠️ Refresh thất bại, giữ version "
+                    + (catalog == null ? 0 : catalog.version()) + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package vn.hoangtung.jobfind.service;
+
+import java.util.List;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.stereotype.Service;
+
+import vn.hoangtung.jobfind.util.ai.BatchingEmbeddingModel;
+
+/**
+ * Điểm ghi duy nhất vào vector store: embed trước các document qua BatchingEmbeddingModel
+ * (gom batch với các request indexing khác đang chạy), rồi mới upsert lên VectorStore.
+ */
+@Service
+public class VectorIndexWriter {
+
+    private final VectorStore vectorStore;
+    private final EmbeddingModel embeddingModel;
+
+    public VectorIndexWriter(VectorStore vectorStore, EmbeddingModel embeddingModel) {
+        this.vectorStore = vectorStore;
+        this.embeddingModel = embeddingModel;
+    }
+
+    public void add(List<Document> documents) {
+        if (documents == null || documents.isEmpty()) {
+            return;
+        }
+        if (embeddingModel instanceof BatchingEmbeddingModel batchingModel) {
+            batchingModel.embedDocuments(documents);
+        }
+        vectorStore.add(documents);
+    }
+}
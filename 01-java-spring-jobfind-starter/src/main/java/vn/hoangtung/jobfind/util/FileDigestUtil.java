@@ -0,0 +1,54 @@
+package vn.hoangtung.jobfind.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 của file tính trong lúc stream, dùng chung cho lưu trữ theo nội dung và cache text CV.
+ */
+public final class FileDigestUtil {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private FileDigestUtil() {
+    }
+
+    public static String sha256(Path file) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            return copyAndHash(input, OutputStream.nullOutputStream());
+        }
+    }
+
+    /** Ghi input ra target (tạo mới/ghi đè) và trả về SHA-256 dạng hex của những byte đã ghi. */
+    public static String copyAndHash(InputStream input, Path target) throws IOException {
+        try (OutputStream output = Files.newOutputStream(target)) {
+            return copyAndHash(input, output);
+        }
+    }
+
+    private static String copyAndHash(InputStream input, OutputStream output) throws IOException {
+        MessageDigest digest = newSha256();
+        DigestInputStream digestInput = new DigestInputStream(input, digest);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = digestInput.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Thiếu SHA-256 trong runtime", e);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package vn.hoangtung.jobfind.util;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Thư mục dữ liệu nội bộ (cache AI, vector index, kho blob file upload) phải nằm ngoài hoangtung.upload-file.base-uri:
+ * toàn bộ thư mục upload được phục vụ public qua /storage/** nên file đặt trong đó ai cũng tải được.
+ */
+public final class PrivateDataPathUtil {
+
+    private PrivateDataPathUtil() {
+    }
+
+    /**
+     * Tạo (nếu chưa có) và trả về thư mục dữ liệu nội bộ; từ chối thư mục nằm trong upload root.
+     */
+    public static Path resolveOutsideUploadRoot(String path, String uploadBaseURI) throws IOException {
+        if (path == null || path.isBlank()) {
+            throw new IllegalArgumentException("Chưa cấu hình thư mục dữ liệu nội bộ");
+        }
+        Path dataPath = Paths.get(path.trim()).toAbsolutePath().normalize();
+        Path uploadRoot = uploadRoot(uploadBaseURI);
+        if (uploadRoot != null && dataPath.startsWith(uploadRoot)) {
+            throw new IllegalArgumentException("Thư mục " + dataPath
+                    + " nằm trong thư mục upload public (/storage/**), hãy cấu hình đường dẫn khác");
+        }
+        Files.createDirectories(dataPath);
+        return dataPath;
+    }
+
+    /**
+     * Bản cũ lưu file trong upload root (uploadBaseURI/legacyFolder/fileName): chuyển sang target nếu
+     * target chưa có, nếu không thì xóa, để file không còn tải được qua /storage/**.
+     */
+    public static void moveLegacyFile(String uploadBaseURI, String legacyFolder, String fileName, Path target)
+            throws IOException {
+        Path uploadRoot = uploadRoot(uploadBaseURI);
+        if (uploadRoot == null || legacyFolder == null || legacyFolder.isBlank()) {
+            return;
+        }
+        Path folder = uploadRoot.resolve(legacyFolder).normalize();
+        if (!folder.startsWith(uploadRoot) || folder.equals(uploadRoot)) {
+            return;
+        }
+        Path legacyFile = folder.resolve(fileName);
+        if (Files.exists(legacyFile)) {
+            if (Files.exists(target)) {
+                Files.delete(legacyFile);
+            } else {
+                Files.move(legacyFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            System.out.println(">>> [PrivateData] Đã chuyển " + legacyFile + " ra khỏi thư mục upload public");
+        }
+        try {
+            Files.deleteIfExists(folder);
+        } catch (DirectoryNotEmptyException ignored) {
+            // còn file khác của người dùng thì giữ nguyên thư mục
+        }
+    }
+
+    /**
+     * Như moveLegacyFile nhưng cho cả cây thư mục uploadBaseURI/legacyFolder: giữ nguyên đường dẫn tương đối
+     * khi chuyển sang targetFolder, file đã có ở đích thì xóa bản cũ; file tạm (*.tmp) bị xóa.
+     */
+    public static void moveLegacyFolder(String uploadBaseURI, String legacyFolder, Path targetFolder)
+            throws IOException {
+        Path uploadRoot = uploadRoot(uploadBaseURI);
+        if (uploadRoot == null || legacyFolder == null || legacyFolder.isBlank()) {
+            return;
+        }
+        Path folder = uploadRoot.resolve(legacyFolder).normalize();
+        if (!folder.startsWith(uploadRoot) || folder.equals(uploadRoot) || !Files.isDirectory(folder)) {
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(folder)) {
+            files = walk.filter(Files::isRegularFile).toList();
+        }
+        for (Path legacyFile : files) {
+            Path target = targetFolder.resolve(folder.relativize(legacyFile).toString()).normalize();
+            if (legacyFile.getFileName().toString().endsWith(".tmp") || Files.exists(target)
+                    || !target.startsWith(targetFolder)) {
+                Files.delete(legacyFile);
+            } else {
+                Files.createDirectories(target.getParent());
+                Files.move(legacyFile, target);
+            }
+        }
+        List<Path> folders;
+        try (Stream<Path> walk = Files.walk(folder)) {
+            folders = walk.filter(Files::isDirectory).sorted(Comparator.reverseOrder()).toList();
+        }
+        for (Path emptyFolder : folders) {
+            try {
+                Files.deleteIfExists(emptyFolder);
+            } catch (DirectoryNotEmptyException ignored) {
+                // có file mới ghi vào trong lúc chuyển thì giữ lại, lần khởi động sau chuyển tiếp
+            }
+        }
+        if (!files.isEmpty()) {
+            System.out.println(">>> [PrivateData] Đã chuyển " + files.size() + " file trong " + folder
+                    + " ra khỏi thư mục upload public");
+        }
+    }
+
+    private static Path uploadRoot(String uploadBaseURI) {
+        if (uploadBaseURI == null || uploadBaseURI.isBlank()) {
+            return null;
+        }
+        try {
+            return Paths.get(new URI(uploadBaseURI)).toAbsolutePath().normalize();
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("hoangtung.upload-file.base-uri không hợp lệ: " + uploadBaseURI, e);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import java.time.Duration;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Giới hạn số lời gọi LLM chạy song song theo kiểu AIMD (additive increase / multiplicative decrease):
+ * - mỗi lời gọi thành công nâng limit thêm 1/limit (~ +1 sau mỗi "vòng" limit lời gọi)
+ * - bị rate-limit / timeout thì hạ limit xuống còn một nửa
+ * Caller chờ tối đa maxWait để lấy slot, quá hạn thì nhận false và nên dùng fallback ngay.
+ * Dùng ReentrantLock/Condition thay cho synchronized + wait để virtual thread đang chờ slot
+ * không ghim carrier thread.
+ */
+public final class AdaptiveConcurrencyLimiter {
+
+    private static final double DECREASE_FACTOR = 0.5;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private double limit;
+    private int inFlight;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Giới hạn concurrency không hợp lệ");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    public boolean tryAcquire(Duration maxWait) throws InterruptedException {
+        long remainingNanos = maxWait == null ? 0 : maxWait.toNanos();
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= currentLimit()) {
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                remainingNanos = released.awaitNanos(remainingNanos);
+            }
+            inFlight++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Lời gọi thành công: trả slot và nới limit. */
+    public void onSuccess() {
+        lock.lock();
+        try {
+            int inFlightBeforeRelease = inFlight;
+            release();
+            // Chỉ tăng khi đã dùng quá nửa limit, tránh limit phình to lúc tải thấp.
+            if (inFlightBeforeRelease * 2 >= currentLimit()) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Upstream báo quá tải (429, timeout): trả slot và giảm limit. */
+    public void onDropped() {
+        lock.lock();
+        try {
+            release();
+            limit = Math.max(minLimit, limit * DECREASE_FACTOR);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Lời gọi lỗi không liên quan tới tải (vd: prompt sai): chỉ trả slot. */
+    public void onIgnored() {
+        lock.lock();
+        try {
+            release();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int currentLimit() {
+        lock.lock();
+        try {
+            return (int) Math.floor(limit);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        if (inFlight > 0) {
+            inFlight--;
+        }
+        released.signalAll();
+    }
+}
@@ -1,6 +1,5 @@
 package vn.hoangtung.jobfind.util.ai;
 
-import java.text.Normalizer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -9,7 +8,6 @@ import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -73,23 +71,43 @@ public final class AiFeatureUtils {
         if (text == null || text.isBlank()) {
             return "";
         }
-        String normalized = text.replace("\r\n", "\n").replace("\r", "\n");
-        normalized = normalized.replaceAll("(\\n){3,}", "\n\n");
-        normalized = normalized.replaceAll("[ \\t]+", " ");
-        return normalized.trim();
+        // Một lượt, tương đương: \r\n|\r -> \n, \n{3,} -> \n\n, [ \t]+ -> " ", rồi trim
+        int length = text.length();
+        StringBuilder builder = new StringBuilder(length);
+        int newlines = 0;
+        boolean space = false;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\r') {
+                if (i + 1 < length && text.charAt(i + 1) == '\n') {
+                    continue;
+                }
+                c = '\n';
+            }
+            if (c == ' ' || c == '\t') {
+                if (!space) {
+                    builder.append(' ');
+                }
+                space = true;
+                newlines = 0;
+                continue;
+            }
+            space = false;
+            if (c == '\n') {
+                if (++newlines <= 2) {
+                    builder.append('\n');
+                }
+                continue;
+            }
+            newlines = 0;
+            builder.append(c);
+        }
+        return builder.toString().trim();
     }
 
     public static String normalizeForSearch(String text) {
-        if (text == null || text.isBlank()) {
-            return "";
-        }
-        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD)
-                .replaceAll("\\p{M}", "")
-                .toLowerCase(Locale.ROOT);
-        normalized = normalized.replace('đ', 'd');
-        normalized = normalized.replaceAll("[^a-z0-9+.#/% ]", " ");
-        normalized = normalized.replaceAll("\\s+", " ").trim();
-        return normalized;
+        // bỏ dấu, lower-case, chỉ giữ [a-z0-9+.#/% ], gộp khoảng trắng — xem SearchTextNormalizer
+        return SearchTextNormalizer.normalize(text);
     }
 
     public static int clampScore(int value) {
@@ -97,8 +115,35 @@ public final class AiFeatureUtils {
     }
 
     public static int wordCount(String text) {
-        String normalized = normalizeWhitespace(text);
-        return normalized.isBlank() ? 0 : normalized.split("\\s+").length;
+        if (text == null) {
+            return 0;
+        }
+        // Bằng normalizeWhitespace(text).split("\\s+").length nhưng không tạo chuỗi trung gian:
+        // trim như String.trim, rồi đếm các đoạn không chứa ký tự \s (ASCII)
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int words = 0;
+        boolean inWord = false;
+        boolean blank = true;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f' || c == '\u000B') {
+                inWord = false;
+            } else if (!inWord) {
+                words++;
+                inWord = true;
+            }
+            if (blank && !Character.isWhitespace(c)) {
+                blank = false;
+            }
+        }
+        return blank ? 0 : words;
     }
 
     public static Set<String> buildKnownSkills(Collection<String> dbSkills) {
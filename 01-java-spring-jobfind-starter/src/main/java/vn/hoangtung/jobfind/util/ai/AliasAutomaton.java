@@ -0,0 +1,159 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Automaton Aho-Corasick trên text đã qua {@link AiFeatureUtils#normalizeForSearch(String)}.
+ * Build một lần cho cả bộ alias, sau đó quét text đúng một lượt và trả về mọi alias xuất hiện
+ * với ranh giới token {@code [a-z0-9+#]} giống regex cũ.
+ *
+ * Bảng chuyển trạng thái là DFA đầy đủ trên bảng chữ cái đã nén: text normalize chỉ còn
+ * a-z0-9+.#/% và dấu cách nên mỗi state chỉ cần 42 cột, ký tự khác quay về root.
+ */
+final class AliasAutomaton {
+
+    private static final String SYMBOLS = "abcdefghijklmnopqrstuvwxyz0123456789+.#/% ";
+    private static final int ALPHABET = SYMBOLS.length();
+    private static final int[] SYMBOL_OF = new int[128];
+
+    static {
+        Arrays.fill(SYMBOL_OF, -1);
+        for (int i = 0; i < SYMBOLS.length(); i++) {
+            SYMBOL_OF[SYMBOLS.charAt(i)] = i;
+        }
+    }
+
+    private final int[][] transitions;
+    // output[state] = id các pattern kết thúc tại state (kể cả qua suffix link), null nếu không có
+    private final int[][] outputs;
+    private final int[] patternLengths;
+
+    private AliasAutomaton(int[][] transitions, int[][] outputs, int[] patternLengths) {
+        this.transitions = transitions;
+        this.outputs = outputs;
+        this.patternLengths = patternLengths;
+    }
+
+    /**
+     * @param patterns alias đã normalize, chỉ số trong list chính là pattern id trả về khi match
+     */
+    static AliasAutomaton build(List<String> patterns) {
+        List<int[]> gotoTable = new ArrayList<>();
+        List<List<Integer>> outputLists = new ArrayList<>();
+        gotoTable.add(newRow());
+        outputLists.add(new ArrayList<>());
+
+        int[] lengths = new int[patterns.size()];
+        for (int id = 0; id < patterns.size(); id++) {
+            String pattern = patterns.get(id);
+            lengths[id] = pattern.length();
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int symbol = symbol(pattern.charAt(i));
+                if (symbol < 0) {
+                    // alias chứa ký tự không thể xuất hiện trong text đã normalize -> không bao giờ match
+                    state = -1;
+                    break;
+                }
+                int next = gotoTable.get(state)[symbol];
+                if (next < 0) {
+                    next = gotoTable.size();
+                    gotoTable.add(newRow());
+                    outputLists.add(new ArrayList<>());
+                    gotoTable.get(state)[symbol] = next;
+                }
+                state = next;
+            }
+            if (state > 0) {
+                outputLists.get(state).add(id);
+            }
+        }
+
+        int stateCount = gotoTable.size();
+        int[][] transitions = gotoTable.toArray(new int[0][]);
+        int[] fail = new int[stateCount];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < ALPHABET; symbol++) {
+            int next = transitions[0][symbol];
+            if (next < 0) {
+                transitions[0][symbol] = 0;
+            } else {
+                fail[next] = 0;
+                queue.add(next);
+            }
+        }
+        // BFS: gộp output theo suffix link và điền nốt các cạnh còn thiếu để thành DFA
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputLists.get(state).addAll(outputLists.get(fail[state]));
+            for (int symbol = 0; symbol < ALPHABET; symbol++) {
+                int next = transitions[state][symbol];
+                if (next < 0) {
+                    transitions[state][symbol] = transitions[fail[state]][symbol];
+                } else {
+                    fail[next] = transitions[fail[state]][symbol];
+                    queue.add(next);
+                }
+            }
+        }
+
+        int[][] outputs = new int[stateCount][];
+        for (int state = 0; state < stateCount; state++) {
+            List<Integer> ids = outputLists.get(state);
+            if (!ids.isEmpty()) {
+                outputs[state] = ids.stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+        return new AliasAutomaton(transitions, outputs, lengths);
+    }
+
+    /**
+     * Quét text một lượt, gọi {@code sink} cho mỗi pattern xuất hiện đúng ranh giới token.
+     * Cùng một pattern có thể được báo nhiều lần nếu xuất hiện nhiều chỗ.
+     */
+    void scan(String normalizedText, MatchSink sink) {
+        int state = 0;
+        int length = normalizedText.length();
+        for (int end = 0; end < length; end++) {
+            char c = normalizedText.charAt(end);
+            int symbol = symbol(c);
+            state = symbol < 0 ? 0 : transitions[state][symbol];
+            int[] ids = outputs[state];
+            if (ids == null) {
+                continue;
+            }
+            boolean rightBoundary = end + 1 >= length || !isTokenChar(normalizedText.charAt(end + 1));
+            if (!rightBoundary) {
+                continue;
+            }
+            for (int id : ids) {
+                int start = end + 1 - patternLengths[id];
+                if (start == 0 || !isTokenChar(normalizedText.charAt(start - 1))) {
+                    sink.accept(id);
+                }
+            }
+        }
+    }
+
+    private static boolean isTokenChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '+' || c == '#';
+    }
+
+    private static int symbol(char c) {
+        return c < SYMBOL_OF.length ? SYMBOL_OF[c] : -1;
+    }
+
+    private static int[] newRow() {
+        int[] row = new int[ALPHABET];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    @FunctionalInterface
+    interface MatchSink {
+        void accept(int patternId);
+    }
+}
@@ -0,0 +1,88 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+
+/**
+ * Bọc EmbeddingModel local (ONNX transformers) để embedding khi indexing đi qua EmbeddingBatcher.
+ *
+ * VectorStore (Pinecone) gọi embed(Document) lần lượt cho từng document, nên batching không thể
+ * xảy ra bên trong add(). Vì vậy caller embed trước cả danh sách qua embedDocuments() (được
+ * gom batch với các request khác), sau đó embed(Document) chỉ trả lại vector đã tính sẵn.
+ *
+ * Embedding câu hỏi (embed(String)) vẫn gọi thẳng model để không phải chờ deadline của batch.
+ */
+public class BatchingEmbeddingModel implements EmbeddingModel, AutoCloseable {
+
+    private final EmbeddingModel delegate;
+    private final EmbeddingBatcher batcher;
+
+    public BatchingEmbeddingModel(EmbeddingModel delegate, EmbeddingBatcher batcher) {
+        this.delegate = delegate;
+        this.batcher = batcher;
+    }
+
+    /** Embed theo batch và gắn vector vào từng document chưa có embedding. */
+    public void embedDocuments(List<Document> documents) {
+        List<Document> missing = documents.stream()
+                .filter(document -> document.getEmbedding() == null || document.getEmbedding().isEmpty())
+                .toList();
+        if (missing.isEmpty()) {
+            return;
+        }
+        List<List<Double>> embeddings = await(batcher.submitAll(missing.stream().map(Document::getContent).toList()));
+        for (int i = 0; i < missing.size(); i++) {
+            missing.get(i).setEmbedding(embeddings.get(i));
+        }
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        return delegate.call(request);
+    }
+
+    @Override
+    public List<Double> embed(String text) {
+        return delegate.embed(text);
+    }
+
+    @Override
+    public List<Double> embed(Document document) {
+        if (document.getEmbedding() != null && !document.getEmbedding().isEmpty()) {
+            return document.getEmbedding();
+        }
+        return delegate.embed(document);
+    }
+
+    @Override
+    public List<List<Double>> embed(List<String> texts) {
+        return await(batcher.submitAll(texts));
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    @Override
+    public void close() {
+        batcher.close();
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index BM25 trong bộ nhớ cho text đã normalize (job, chunk CV). Dùng song song với
+ * vector search: khi Pinecone lỗi vẫn tìm được ứng viên theo từ khóa thay vì quét tuyến tính,
+ * khi cả hai cùng có kết quả thì trộn bằng {@link #fuse(List, int)} (reciprocal rank fusion).
+ *
+ * Mỗi term giữ postings (slot tài liệu + tần suất). Xóa tài liệu chỉ đánh dấu slot và trừ
+ * document frequency; postings được dựng lại khi slot chết chiếm quá 1/3.
+ */
+public final class Bm25Index {
+
+    private static final double K1 = 1.2d;
+    private static final double B = 0.75d;
+    private static final int RRF_K = 60;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int[] NO_INTS = new int[0];
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private final Map<Long, Integer> slotById = new HashMap<>();
+    private int[][] postingSlots = new int[INITIAL_CAPACITY][];
+    private int[][] postingFreqs = new int[INITIAL_CAPACITY][];
+    private int[] postingSizes = new int[INITIAL_CAPACITY];
+    private int[] docFreqs = new int[INITIAL_CAPACITY];
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int[][] docTerms = new int[INITIAL_CAPACITY][];
+    private int[][] docTermFreqs = new int[INITIAL_CAPACITY][];
+    private boolean[] live = new boolean[INITIAL_CAPACITY];
+    private int slotCount;
+    private int liveCount;
+    private long totalLength;
+
+    /**
+     * Tách text thành token tìm kiếm: normalize như {@link AiFeatureUtils#normalizeForSearch},
+     * bỏ token 1 ký tự và token toàn chữ số.
+     */
+    public static List<String> tokenize(String text) {
+        String normalized = AiFeatureUtils.normalizeForSearch(text);
+        List<String> tokens = new ArrayList<>();
+        int start = 0;
+        // normalizeForSearch đã gộp khoảng trắng và trim, chỉ cần cắt theo ' '
+        for (int i = 0; i <= normalized.length(); i++) {
+            if (i == normalized.length() || normalized.charAt(i) == ' ') {
+                if (i - start >= 2 && !isDigits(normalized, start, i)) {
+                    tokens.add(normalized.substring(start, i));
+                }
+                start = i + 1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Reciprocal rank fusion: mỗi danh sách đóng góp 1 / (60 + hạng). Hòa điểm thì id xuất
+     * hiện trước (theo thứ tự danh sách truyền vào) đứng trước.
+     */
+    public static List<Long> fuse(List<List<Long>> rankings, int limit) {
+        Map<Long, Double> scores = new LinkedHashMap<>();
+        for (List<Long> ranking : rankings) {
+            if (ranking == null) {
+                continue;
+            }
+            LinkedHashSet<Long> distinct = new LinkedHashSet<>(ranking);
+            distinct.remove(null);
+            int rank = 1;
+            for (Long id : distinct) {
+                scores.merge(id, 1d / (RRF_K + rank), Double::sum);
+                rank++;
+            }
+        }
+        List<Map.Entry<Long, Double>> entries = new ArrayList<>(scores.entrySet());
+        // sort ổn định -> giữ thứ tự xuất hiện khi hòa điểm
+        entries.sort((left, right) -> Double.compare(right.getValue(), left.getValue()));
+        return entries.stream().limit(Math.max(0, limit)).map(Map.Entry::getKey).toList();
+    }
+
+    /** Thay toàn bộ nội dung index. */
+    public void replaceAll(Map<Long, String> documents) {
+        List<Document> tokenized = documents.entrySet().stream()
+                .map(entry -> Document.of(entry.getKey(), entry.getValue()))
+                .toList();
+        lock.writeLock().lock();
+        try {
+            termIds.clear();
+            slotById.clear();
+            Arrays.fill(postingSizes, 0);
+            Arrays.fill(docFreqs, 0);
+            Arrays.fill(postingSlots, null);
+            Arrays.fill(postingFreqs, null);
+            Arrays.fill(docTerms, 0, slotCount, null);
+            Arrays.fill(docTermFreqs, 0, slotCount, null);
+            Arrays.fill(live, 0, slotCount, false);
+            slotCount = 0;
+            liveCount = 0;
+            totalLength = 0;
+            for (Document document : tokenized) {
+                insert(document);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Thêm hoặc thay nội dung một tài liệu. */
+    public void put(long id, String text) {
+        apply(Map.of(id, text == null ? "" : text), List.of());
+    }
+
+    public void remove(long id) {
+        apply(Map.of(), List.of(id));
+    }
+
+    /** Xóa trước rồi upsert, tokenize nằm ngoài lock. */
+    public void apply(Map<Long, String> upserts, Collection<Long> deletedIds) {
+        List<Document> tokenized = upserts.entrySet().stream()
+                .map(entry -> Document.of(entry.getKey(), entry.getValue()))
+                .toList();
+        lock.writeLock().lock();
+        try {
+            for (Long id : deletedIds) {
+                if (id != null) {
+                    delete(id);
+                }
+            }
+            for (Document document : tokenized) {
+                delete(document.id());
+                insert(document);
+            }
+            if (slotCount - liveCount > Math.max(INITIAL_CAPACITY, slotCount / 3)) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Top tài liệu theo điểm BM25 giảm dần (hòa điểm: tài liệu thêm vào trước đứng trước).
+     * Chỉ trả tài liệu khớp ít nhất một term của câu truy vấn.
+     */
+    public List<Hit> search(String query, int limit) {
+        LinkedHashSet<String> queryTerms = new LinkedHashSet<>(tokenize(query));
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (liveCount == 0) {
+                return List.of();
+            }
+            double averageLength = Math.max(1d, (double) totalLength / liveCount);
+            double[] scores = new double[slotCount];
+            int[] touched = new int[slotCount];
+            int touchedCount = 0;
+            for (String term : queryTerms) {
+                Integer termId = termIds.get(term);
+                if (termId == null || docFreqs[termId] == 0) {
+                    continue;
+                }
+                double df = docFreqs[termId];
+                double idf = Math.log(1d + (liveCount - df + 0.5d) / (df + 0.5d));
+                int[] slots = postingSlots[termId];
+                int[] freqs = postingFreqs[termId];
+                for (int i = 0; i < postingSizes[termId]; i++) {
+                    int slot = slots[i];
+                    if (!live[slot]) {
+                        continue;
+                    }
+                    double tf = freqs[i];
+                    double norm = K1 * (1d - B + B * lengths[slot] / averageLength);
+                    if (scores[slot] == 0d) {
+                        touched[touchedCount++] = slot;
+                    }
+                    scores[slot] += idf * tf * (K1 + 1d) / (tf + norm);
+                }
+            }
+            return selectTop(scores, touched, touchedCount, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Chỉ lấy id theo thứ tự điểm, tiện để fuse với kết quả vector. */
+    public List<Long> searchIds(String query, int limit) {
+        return search(query, limit).stream().map(Hit::id).toList();
+    }
+
+    private List<Hit> selectTop(double[] scores, int[] touched, int touchedCount, int limit) {
+        // touched có thứ tự theo term, sort lại theo slot để hòa điểm ổn định
+        int[] slots = Arrays.copyOf(touched, touchedCount);
+        Arrays.sort(slots);
+        int[] selected = new int[Math.min(limit, slots.length)];
+        int size = 0;
+        for (int slot : slots) {
+            if (size == selected.length && scores[slot] <= scores[selected[size - 1]]) {
+                continue;
+            }
+            int insertAt = size == selected.length ? size - 1 : size++;
+            while (insertAt > 0 && scores[slot] > scores[selected[insertAt - 1]]) {
+                selected[insertAt] = selected[insertAt - 1];
+                insertAt--;
+            }
+            selected[insertAt] = slot;
+        }
+        List<Hit> hits = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            hits.add(new Hit(ids[selected[i]], scores[selected[i]]));
+        }
+        return List.copyOf(hits);
+    }
+
+    private void insert(Document document) {
+        ensureDocCapacity(slotCount + 1);
+        int slot = slotCount++;
+        int[] terms = new int[document.terms().length];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = internTerm(document.terms()[i]);
+        }
+        ids[slot] = document.id();
+        lengths[slot] = document.length();
+        docTerms[slot] = terms;
+        docTermFreqs[slot] = document.freqs();
+        live[slot] = true;
+        slotById.put(document.id(), slot);
+        liveCount++;
+        totalLength += document.length();
+        addPostings(slot);
+    }
+
+    private void delete(long id) {
+        Integer slot = slotById.remove(id);
+        if (slot == null) {
+            return;
+        }
+        live[slot] = false;
+        for (int termId : docTerms[slot]) {
+            docFreqs[termId]--;
+        }
+        liveCount--;
+        totalLength -= lengths[slot];
+    }
+
+    private void addPostings(int slot) {
+        int[] terms = docTerms[slot];
+        int[] freqs = docTermFreqs[slot];
+        for (int i = 0; i < terms.length; i++) {
+            int termId = terms[i];
+            int size = postingSizes[termId];
+            if (postingSlots[termId] == null) {
+                postingSlots[termId] = new int[4];
+                postingFreqs[termId] = new int[4];
+            } else if (size == postingSlots[termId].length) {
+                postingSlots[termId] = Arrays.copyOf(postingSlots[termId], size * 2);
+                postingFreqs[termId] = Arrays.copyOf(postingFreqs[termId], size * 2);
+            }
+            postingSlots[termId][size] = slot;
+            postingFreqs[termId][size] = freqs[i];
+            postingSizes[termId] = size + 1;
+            docFreqs[termId]++;
+        }
+    }
+
+    /** Dồn slot sống về đầu rồi dựng lại postings; term id giữ nguyên. */
+    private void compact() {
+        int target = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (!live[slot]) {
+                continue;
+            }
+            if (target != slot) {
+                ids[target] = ids[slot];
+                lengths[target] = lengths[slot];
+                docTerms[target] = docTerms[slot];
+                docTermFreqs[target] = docTermFreqs[slot];
+                live[target] = true;
+                slotById.put(ids[target], target);
+            }
+            target++;
+        }
+        Arrays.fill(docTerms, target, slotCount, null);
+        Arrays.fill(docTermFreqs, target, slotCount, null);
+        Arrays.fill(live, target, slotCount, false);
+        slotCount = target;
+
+        Arrays.fill(postingSizes, 0);
+        Arrays.fill(docFreqs, 0);
+        for (int slot = 0; slot < slotCount; slot++) {
+            addPostings(slot);
+        }
+    }
+
+    private int internTerm(String term) {
+        Integer existing = termIds.get(term);
+        if (existing != null) {
+            return existing;
+        }
+        int termId = termIds.size();
+        if (termId == postingSizes.length) {
+            int capacity = termId * 2;
+            postingSlots = Arrays.copyOf(postingSlots, capacity);
+            postingFreqs = Arrays.copyOf(postingFreqs, capacity);
+            postingSizes = Arrays.copyOf(postingSizes, capacity);
+            docFreqs = Arrays.copyOf(docFreqs, capacity);
+        }
+        termIds.put(term, termId);
+        return termId;
+    }
+
+    private void ensureDocCapacity(int required) {
+        if (required <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(required, ids.length * 2);
+        ids = Arrays.copyOf(ids, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        docTerms = Arrays.copyOf(docTerms, capacity);
+        docTermFreqs = Arrays.copyOf(docTermFreqs, capacity);
+        live = Arrays.copyOf(live, capacity);
+    }
+
+    private static boolean isDigits(String value, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Tài liệu đã tokenize: term phân biệt theo thứ tự xuất hiện kèm tần suất. */
+    private record Document(long id, String[] terms, int[] freqs, int length) {
+
+        private static Document of(Long id, String text) {
+            List<String> tokens = tokenize(text);
+            if (tokens.isEmpty()) {
+                return new Document(id, new String[0], NO_INTS, 0);
+            }
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            for (String token : tokens) {
+                counts.merge(token, 1, Integer::sum);
+            }
+            String[] terms = counts.keySet().toArray(String[]::new);
+            int[] freqs = counts.values().stream().mapToInt(Integer::intValue).toArray();
+            return new Document(id, terms, freqs, tokens.size());
+        }
+    }
+
+    public record Hit(long id, double score) {
+    }
+}
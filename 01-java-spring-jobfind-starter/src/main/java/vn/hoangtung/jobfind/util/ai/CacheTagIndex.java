@@ -0,0 +1,59 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * Chỉ mục ngược tag -> cache key (vd: "job:42" -> các prompt cache key có dùng job 42), để khi
+ * một job đổi chỉ xóa đúng các entry liên quan thay vì xóa toàn bộ cache.
+ * Tag không được dùng tới quá idleTtl tự hết hạn nên chỉ mục không phình mãi.
+ */
+public final class CacheTagIndex {
+
+    private final Cache<String, Set<String>> keysByTag;
+
+    public CacheTagIndex(Duration idleTtl, long maxTags) {
+        this.keysByTag = Caffeine.newBuilder()
+                .expireAfterAccess(idleTtl)
+                .maximumSize(maxTags)
+                .build();
+    }
+
+    public void tag(String cacheKey, Collection<String> tags) {
+        if (cacheKey == null || tags == null) {
+            return;
+        }
+        for (String tag : tags) {
+            keysByTag.asMap().computeIfAbsent(tag, ignored -> ConcurrentHashMap.newKeySet()).add(cacheKey);
+        }
+    }
+
+    /** Lấy và bỏ toàn bộ key gắn với các tag. */
+    public Set<String> drain(Collection<String> tags) {
+        Set<String> keys = new LinkedHashSet<>();
+        if (tags == null) {
+            return keys;
+        }
+        for (String tag : tags) {
+            Set<String> tagged = keysByTag.asMap().remove(tag);
+            if (tagged != null) {
+                keys.addAll(tagged);
+            }
+        }
+        return keys;
+    }
+
+    public void clear() {
+        keysByTag.invalidateAll();
+    }
+
+    public static String jobTag(long jobId) {
+        return "job:" + jobId;
+    }
+}
@@ -0,0 +1,94 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Circuit breaker 3 trạng thái cho upstream LLM:
+ * - CLOSED: cho qua, đếm lỗi liên tiếp; đủ ngưỡng thì OPEN
+ * - OPEN: từ chối ngay (caller dùng fallback) cho tới khi hết thời gian mở
+ * - HALF_OPEN: chỉ cho đúng 1 lời gọi thử; thành công thì CLOSED, thất bại thì OPEN lại
+ * 429 kèm Retry-After cũng chỉ là một lỗi liên tiếp (Groq trả Retry-After cho hầu hết 429), không tự mở
+ * breaker; khi breaker mở vì đủ ngưỡng, thời gian mở lấy theo Retry-After nếu dài hơn mặc định.
+ */
+public final class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final Clock clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private Instant openUntil = Instant.MIN;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(int failureThreshold, Duration openDuration, Clock clock) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openDuration = openDuration;
+        this.clock = clock;
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (clock.instant().isBefore(openUntil)) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    /**
+     * @param retryAfter thời gian upstream yêu cầu chờ (có thể null); chỉ kéo dài thời gian mở khi breaker mở.
+     */
+    public synchronized void onFailure(Duration retryAfter) {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            Duration wait = retryAfter != null && retryAfter.compareTo(openDuration) > 0 ? retryAfter : openDuration;
+            state = State.OPEN;
+            openUntil = clock.instant().plus(wait);
+            trialInFlight = false;
+        }
+    }
+
+    /**
+     * Lời gọi không đi tới upstream (vd: bị limiter từ chối) hoặc lỗi không do upstream (400, prompt sai)
+     * thì trả lại lượt thử half-open mà không tính là thất bại.
+     */
+    public synchronized void onAborted() {
+        trialInFlight = false;
+    }
+
+    public synchronized State state() {
+        if (state == State.OPEN && !clock.instant().isBefore(openUntil)) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public synchronized Duration remainingOpen() {
+        if (state != State.OPEN) {
+            return Duration.ZERO;
+        }
+        Duration remaining = Duration.between(clock.instant(), openUntil);
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+}
@@ -0,0 +1,379 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Quét CV theo dòng cho parser deterministic (fallback của CvStructuredParserService). Một lượt
+ * qua text là một state machine nhỏ: trạng thái gồm section hiện tại và đoạn văn đang gom, mỗi
+ * dòng được normalize đúng một lần rồi dùng chung cho nhận diện header, tên ứng viên, bullet,
+ * email/số điện thoại và link. Regex chỉ chạy trên dòng đã qua bộ lọc rẻ (có '@', đủ chữ số,
+ * có ".com"/".org").
+ *
+ * Kết quả giống cách cũ (split("\\R") nhiều lần, normalize lại header cho từng candidate): dòng
+ * được tách theo \R, đoạn văn tách theo dòng trống như split("\\R\\s*\\R").
+ */
+public final class CvTextScanner {
+
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("[A-Z0-9._%+-]+@[A-Z0-9.-]+\\.[A-Z]{2,}",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern PHONE_PATTERN = Pattern.compile("(?<!\\d)(?:\\+?\\d[\\d .()/-]{7,}\\d)(?!\\d)");
+    private static final Pattern LINK_PATTERN = Pattern.compile(
+            "(?i)\\b(?:https?://)?(?:www\\.)?(?:linkedin\\.com|github\\.com|gitlab\\.com|bitbucket\\.org)[^\\s,;)]*");
+
+    private static final int MAX_BULLETS = 20;
+    private static final int MAX_BULLET_CHARS = 350;
+    private static final int MAX_PARAGRAPH_CHARS = 600;
+    private static final int MAX_HEADER_CHARS = 40;
+    private static final int MAX_NAME_CHARS = 80;
+
+    // header đã normalize (kể cả dạng thêm "s") -> tên section; nhóm khai báo trước thắng
+    private static final Map<String, String> SECTION_HEADERS = new HashMap<>();
+
+    static {
+        registerSection("summary", "summary", "profile", "objective", "gioi thieu", "muc tieu");
+        registerSection("skills", "skills", "technical skills", "ky nang", "cong nghe");
+        registerSection("experience", "experience", "work experience", "work history", "kinh nghiem");
+        registerSection("projects", "projects", "project", "du an");
+        registerSection("education", "education", "hoc van", "university");
+        registerSection("certifications", "certifications", "certification", "certificate", "chung chi");
+        registerSection("languages", "languages", "language", "ngoai ngu");
+    }
+
+    private CvTextScanner() {
+    }
+
+    /**
+     * Quét toàn bộ CV (đã qua {@link AiFeatureUtils#normalizeWhitespace}).
+     */
+    public static CvTextScan scan(String text) {
+        if (text == null || text.isEmpty()) {
+            return new CvTextScan(Map.of("header", ""), List.of(), List.of(), "", "", "", List.of(), "");
+        }
+
+        Map<String, StringBuilder> sections = new LinkedHashMap<>();
+        List<String> order = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        sections.put("header", current);
+
+        List<String> bullets = new ArrayList<>();
+        int bulletLines = 0;
+        LinkedHashSet<String> links = new LinkedHashSet<>();
+        String name = null;
+        String email = "";
+        String phone = "";
+        String paragraph = null;
+        int paragraphStart = -1;
+        int paragraphEnd = -1;
+
+        int length = text.length();
+        int lineStart = 0;
+        while (lineStart <= length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && !isLineBreak(text.charAt(lineEnd))) {
+                lineEnd++;
+            }
+            int next = lineEnd + (lineEnd < length && text.charAt(lineEnd) == '\r'
+                    && lineEnd + 1 < length && text.charAt(lineEnd + 1) == '\n' ? 2 : 1);
+            if (lineEnd == length && lineStart == length && lineStart > 0) {
+                // split("\\R") không sinh dòng rỗng cuối cùng
+                break;
+            }
+            String line = text.substring(lineStart, lineEnd);
+
+            // đoạn văn: dòng chỉ có \s là ranh giới
+            if (isRegexBlank(line)) {
+                if (paragraph == null && paragraphStart >= 0) {
+                    paragraph = paragraphCandidate(text, paragraphStart, paragraphEnd);
+                }
+                paragraphStart = -1;
+            } else {
+                if (paragraphStart < 0) {
+                    paragraphStart = lineStart;
+                }
+                paragraphEnd = lineEnd;
+            }
+
+            String normalized = AiFeatureUtils.normalizeForSearch(line);
+            String section = headerSection(normalized);
+            if (section != null) {
+                current = sections.computeIfAbsent(section, key -> new StringBuilder());
+                if (!order.contains(section)) {
+                    order.add(section);
+                }
+            } else {
+                current.append(line).append('\n');
+            }
+
+            String bullet = bulletText(line);
+            if (bullet != null) {
+                bulletLines++;
+                if (!bullet.isBlank()) {
+                    bullets.add(bullet);
+                }
+            }
+
+            if (name == null) {
+                name = nameCandidate(line, normalized, section);
+            }
+            if (email.isEmpty() && line.indexOf('@') >= 0) {
+                email = firstMatch(EMAIL_PATTERN, line);
+            }
+            if (phone.isEmpty() && hasDigits(line, 2)) {
+                phone = firstMatch(PHONE_PATTERN, line);
+            }
+            if (mayContainLink(line)) {
+                Matcher matcher = LINK_PATTERN.matcher(line);
+                while (matcher.find()) {
+                    links.add(matcher.group().trim());
+                }
+            }
+
+            if (lineEnd == length) {
+                break;
+            }
+            lineStart = next;
+        }
+        if (paragraph == null && paragraphStart >= 0) {
+            paragraph = paragraphCandidate(text, paragraphStart, paragraphEnd);
+        }
+
+        Map<String, String> sectionTexts = new LinkedHashMap<>();
+        sections.forEach((key, value) -> sectionTexts.put(key, AiFeatureUtils.normalizeWhitespace(value.toString())));
+        return new CvTextScan(
+                sectionTexts,
+                List.copyOf(order),
+                bulletLines == 0 ? sentenceBullets(text) : bullets.stream().limit(MAX_BULLETS).toList(),
+                name == null ? "" : name,
+                email,
+                phone,
+                List.copyOf(links),
+                paragraph == null ? "" : paragraph);
+    }
+
+    /** Tên section nếu dòng là header ("SKILLS", "Kinh nghiệm"...), ngược lại chuỗi rỗng. */
+    public static String sectionHeader(String line) {
+        String section = headerSection(AiFeatureUtils.normalizeForSearch(line));
+        return section == null ? "" : section;
+    }
+
+    /** Các dòng như split("\\R"): bỏ các dòng rỗng ở cuối. */
+    public static List<String> lines(String text) {
+        if (text == null || text.isEmpty()) {
+            return List.of("");
+        }
+        List<String> lines = new ArrayList<>();
+        int length = text.length();
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && !isLineBreak(text.charAt(lineEnd))) {
+                lineEnd++;
+            }
+            lines.add(text.substring(lineStart, lineEnd));
+            lineStart = lineEnd + (lineEnd + 1 < length && text.charAt(lineEnd) == '\r'
+                    && text.charAt(lineEnd + 1) == '\n' ? 2 : 1);
+        }
+        int size = lines.size();
+        while (size > 0 && lines.get(size - 1).isEmpty()) {
+            size--;
+        }
+        return List.copyOf(lines.subList(0, size));
+    }
+
+    /**
+     * Bullet của một đoạn: các dòng bắt đầu bằng -, *, +; không có thì lấy các câu từ 5 từ trở
+     * lên. Tối đa 20 bullet, mỗi bullet tối đa 350 ký tự.
+     */
+    public static List<String> bullets(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<String> bullets = new ArrayList<>();
+        // dòng chỉ có "-" vẫn tính là bullet (không tách câu) dù bị lọc vì rỗng, như cách cũ
+        int bulletLines = 0;
+        int length = text.length();
+        int lineStart = 0;
+        while (lineStart < length) {
+            int lineEnd = lineStart;
+            while (lineEnd < length && !isLineBreak(text.charAt(lineEnd))) {
+                lineEnd++;
+            }
+            String bullet = bulletText(text.substring(lineStart, lineEnd));
+            if (bullet != null) {
+                bulletLines++;
+                if (!bullet.isBlank()) {
+                    bullets.add(bullet);
+                }
+            }
+            lineStart = lineEnd + (lineEnd + 1 < length && text.charAt(lineEnd) == '\r'
+                    && text.charAt(lineEnd + 1) == '\n' ? 2 : 1);
+        }
+        return bulletLines == 0 ? sentenceBullets(text) : bullets.stream().limit(MAX_BULLETS).toList();
+    }
+
+    private static void registerSection(String section, String... headers) {
+        for (String header : headers) {
+            String normalized = AiFeatureUtils.normalizeForSearch(header);
+            SECTION_HEADERS.putIfAbsent(normalized, section);
+            SECTION_HEADERS.putIfAbsent(normalized + "s", section);
+        }
+    }
+
+    private static String headerSection(String normalizedLine) {
+        if (normalizedLine.isEmpty() || normalizedLine.length() > MAX_HEADER_CHARS) {
+            return null;
+        }
+        return SECTION_HEADERS.get(normalizedLine);
+    }
+
+    private static String nameCandidate(String line, String normalized, String section) {
+        String trimmed = AiFeatureUtils.normalizeWhitespace(line);
+        if (trimmed.isBlank() || trimmed.length() > MAX_NAME_CHARS || section != null) {
+            return null;
+        }
+        if (normalized.contains("http") || PHONE_PATTERN.matcher(trimmed).find()) {
+            return null;
+        }
+        return trimmed;
+    }
+
+    private static String bulletText(String line) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty()) {
+            return null;
+        }
+        char marker = trimmed.charAt(0);
+        if (marker != '-' && marker != '*' && marker != '+') {
+            return null;
+        }
+        int start = 1;
+        while (start < trimmed.length() && isRegexSpace(trimmed.charAt(start))) {
+            start++;
+        }
+        return trimToMax(trimmed.substring(start), MAX_BULLET_CHARS);
+    }
+
+    /** Tách câu như split("(?<=[.!?])\\s+"), giữ câu có từ 5 từ trở lên. */
+    private static List<String> sentenceBullets(String text) {
+        List<String> bullets = new ArrayList<>();
+        int length = text.length();
+        int start = 0;
+        int i = 0;
+        while (i < length && bullets.size() < MAX_BULLETS) {
+            if (i > 0 && isRegexSpace(text.charAt(i)) && isSentenceEnd(text.charAt(i - 1))) {
+                addSentence(bullets, text.substring(start, i));
+                while (i < length && isRegexSpace(text.charAt(i))) {
+                    i++;
+                }
+                start = i;
+                continue;
+            }
+            i++;
+        }
+        if (start < length && bullets.size() < MAX_BULLETS) {
+            addSentence(bullets, text.substring(start));
+        }
+        return List.copyOf(bullets);
+    }
+
+    private static void addSentence(List<String> bullets, String sentence) {
+        String trimmed = AiFeatureUtils.normalizeWhitespace(sentence);
+        if (AiFeatureUtils.wordCount(trimmed) >= 5) {
+            String bullet = trimToMax(trimmed, MAX_BULLET_CHARS);
+            if (!bullet.isBlank()) {
+                bullets.add(bullet);
+            }
+        }
+    }
+
+    private static String paragraphCandidate(String text, int start, int end) {
+        String paragraph = AiFeatureUtils.normalizeWhitespace(text.substring(start, end));
+        return AiFeatureUtils.wordCount(paragraph) >= 8 ? trimToMax(paragraph, MAX_PARAGRAPH_CHARS) : null;
+    }
+
+    private static String firstMatch(Pattern pattern, String text) {
+        Matcher matcher = pattern.matcher(text);
+        return matcher.find() ? matcher.group().trim() : "";
+    }
+
+    private static boolean hasDigits(String line, int minimum) {
+        int digits = 0;
+        for (int i = 0; i < line.length() && digits < minimum; i++) {
+            char c = line.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+            }
+        }
+        return digits >= minimum;
+    }
+
+    private static boolean mayContainLink(String line) {
+        for (int i = line.indexOf('.'); i >= 0; i = line.indexOf('.', i + 1)) {
+            if (line.regionMatches(true, i, ".com", 0, 4) || line.regionMatches(true, i, ".org", 0, 4)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Ký tự kết thúc dòng theo \R (cặp \r\n được xử lý ở nơi gọi). */
+    private static boolean isLineBreak(char c) {
+        return c == '\n' || c == '\r' || c == '\u000B' || c == '\f' || c == '\u0085' || c == '\u2028'
+                || c == '\u2029';
+    }
+
+    /** \s mặc định của regex Java (ASCII). */
+    private static boolean isRegexSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isRegexBlank(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            if (!isRegexSpace(line.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSentenceEnd(char c) {
+        return c == '.' || c == '!' || c == '?';
+    }
+
+    private static String trimToMax(String value, int maxLength) {
+        if (value == null || value.length() <= maxLength) {
+            return value == null ? "" : value;
+        }
+        return value.substring(0, maxLength).trim();
+    }
+
+    /**
+     * @param sections       nội dung từng section (kể cả "header" trước section đầu tiên), đã
+     *                       normalize khoảng trắng
+     * @param sectionOrder   thứ tự xuất hiện của các section nhận diện được
+     * @param bullets        bullet của cả CV
+     * @param name           dòng đầu tiên trông giống tên (không phải header, link, số điện thoại)
+     * @param firstParagraph đoạn văn đầu tiên có từ 8 từ, dùng làm summary dự phòng
+     */
+    public record CvTextScan(
+            Map<String, String> sections,
+            List<String> sectionOrder,
+            List<String> bullets,
+            String name,
+            String email,
+            String phone,
+            List<String> links,
+            String firstParagraph) {
+
+        public String section(String name) {
+            return sections.getOrDefault(name, "");
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Gom các đoạn văn bản cần embed từ nhiều request indexing chạy song song thành batch.
+ *
+ * - Worker chờ tới khi đủ batchSize đoạn hoặc hết maxDelay kể từ đoạn đầu tiên của batch
+ * - Các đoạn đang chờ được sắp theo độ dài trước khi chia batch để giảm padding của tokenizer
+ * - Mỗi caller nhận future riêng; một batch lỗi chỉ làm fail các future trong batch đó
+ *
+ * Model ONNX chạy trên CPU nên chỉ dùng một worker: song song hóa đã nằm trong từng lần chạy batch.
+ */
+public final class EmbeddingBatcher implements AutoCloseable {
+
+    // Gom tối đa vài batch mỗi vòng để sắp theo độ dài có ý nghĩa mà không giữ request quá lâu.
+    private static final int DRAIN_BATCHES_PER_ROUND = 4;
+
+    private final Function<List<String>, List<List<Double>>> embedder;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final LinkedBlockingQueue<PendingText> queue = new LinkedBlockingQueue<>();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    public EmbeddingBatcher(Function<List<String>, List<List<Double>>> embedder, int batchSize, Duration maxDelay) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize phải >= 1");
+        }
+        this.embedder = embedder;
+        this.batchSize = batchSize;
+        this.maxDelayNanos = Math.max(0, maxDelay.toNanos());
+        this.worker = new Thread(this::runLoop, "embedding-batcher");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public CompletableFuture<List<Double>> submit(String text) {
+        PendingText pending = new PendingText(text == null ? "" : text, new CompletableFuture<>());
+        if (!running) {
+            pending.future().completeExceptionally(new IllegalStateException("EmbeddingBatcher đã đóng"));
+            return pending.future();
+        }
+        queue.add(pending);
+        return pending.future();
+    }
+
+    /** Embed nhiều đoạn; kết quả giữ nguyên thứ tự đầu vào. */
+    public CompletableFuture<List<List<Double>>> submitAll(List<String> texts) {
+        List<CompletableFuture<List<Double>>> futures = texts.stream().map(this::submit).toList();
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> futures.stream().map(CompletableFuture::join).toList());
+    }
+
+    public int pending() {
+        return queue.size();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        worker.interrupt();
+        List<PendingText> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.forEach(pending -> pending.future()
+                .completeExceptionally(new IllegalStateException("EmbeddingBatcher đã đóng")));
+    }
+
+    private void runLoop() {
+        while (running) {
+            List<PendingText> round;
+            try {
+                round = collectRound();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            round.sort(Comparator.comparingInt(pending -> pending.text().length()));
+            for (int start = 0; start < round.size(); start += batchSize) {
+                runBatch(round.subList(start, Math.min(round.size(), start + batchSize)));
+            }
+        }
+    }
+
+    private List<PendingText> collectRound() throws InterruptedException {
+        List<PendingText> round = new ArrayList<>();
+        round.add(queue.take());
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (round.size() < batchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            PendingText next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            round.add(next);
+        }
+        queue.drainTo(round, batchSize * DRAIN_BATCHES_PER_ROUND - round.size());
+        return round;
+    }
+
+    private void runBatch(List<PendingText> batch) {
+        try {
+            List<List<Double>> embeddings = embedder.apply(batch.stream().map(PendingText::text).toList());
+            if (embeddings == null || embeddings.size() != batch.size()) {
+                throw new IllegalStateException("Embedding model trả về sai số lượng vector");
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future().complete(embeddings.get(i));
+            }
+        } catch (RuntimeException e) {
+            batch.forEach(pending -> pending.future().completeExceptionally(e));
+        }
+    }
+
+    private record PendingText(String text, CompletableFuture<List<Double>> future) {
+    }
+}
@@ -0,0 +1,127 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chọn task nào được chạy khi node có chỗ trống:
+ *
+ * 1. Lớp ưu tiên (0 = cao nhất) theo loại task; task chờ lâu được nâng một lớp sau mỗi agingStep
+ *    để lớp thấp không bị đói hoàn toàn
+ * 2. Trong cùng lớp: weighted fair queuing theo user (start-time fair queuing). Mỗi user có finish tag,
+ *    task được chọn làm finish tag tăng thêm chi phí của loại task (thời gian xử lý trung bình đo được),
+ *    nên user gửi nhiều CV_ANALYZE nặng sẽ nhường lượt cho user khác
+ * 3. Giới hạn số task chạy đồng thời theo loại; loại đã đủ thì bỏ qua, task vẫn nằm trong hàng đợi
+ *
+ * Trạng thái công bằng nằm trong bộ nhớ của từng node, nên giữa nhiều node chỉ công bằng gần đúng.
+ */
+public final class FairShareScheduler {
+
+    private static final double COST_SMOOTHING = 0.2;
+
+    private final Map<String, Integer> typeLimits;
+    private final int defaultLimit;
+    private final Duration agingStep;
+    private final double defaultCostMillis;
+    private final Map<String, Double> costMillis = new HashMap<>();
+    private final Map<String, Double> userFinishTags = new HashMap<>();
+    private double virtualTime;
+
+    public FairShareScheduler(Map<String, Integer> typeLimits, Duration agingStep, double defaultCostMillis) {
+        this(typeLimits, Integer.MAX_VALUE, agingStep, defaultCostMillis);
+    }
+
+    /**
+     * @param defaultLimit giới hạn cho loại không có trong typeLimits (cùng quy ước với TaskTypeBulkhead)
+     */
+    public FairShareScheduler(Map<String, Integer> typeLimits, int defaultLimit, Duration agingStep,
+            double defaultCostMillis) {
+        this.typeLimits = Map.copyOf(typeLimits);
+        this.defaultLimit = Math.max(1, defaultLimit);
+        this.agingStep = agingStep.isZero() || agingStep.isNegative() ? Duration.ofSeconds(30) : agingStep;
+        this.defaultCostMillis = Math.max(1, defaultCostMillis);
+    }
+
+    /**
+     * Chọn tối đa slots ứng viên theo thứ tự chạy. runningByType: số task đang chạy trên node theo loại.
+     */
+    public synchronized List<Candidate> select(List<Candidate> candidates, int slots,
+            Map<String, Integer> runningByType, Instant now) {
+        List<Candidate> remaining = new ArrayList<>(candidates);
+        Map<String, Integer> running = new HashMap<>(runningByType);
+        List<Candidate> chosen = new ArrayList<>(Math.min(slots, candidates.size()));
+
+        while (chosen.size() < slots) {
+            Candidate best = null;
+            int bestClass = Integer.MAX_VALUE;
+            double bestStart = Double.MAX_VALUE;
+            for (Candidate candidate : remaining) {
+                if (running.getOrDefault(candidate.type(), 0) >= limit(candidate.type())) {
+                    continue;
+                }
+                int effectiveClass = effectiveClass(candidate, now);
+                double start = startTag(candidate.userKey());
+                if (effectiveClass < bestClass
+                        || (effectiveClass == bestClass && start < bestStart)
+                        || (effectiveClass == bestClass && start == bestStart && candidate.id() < best.id())) {
+                    best = candidate;
+                    bestClass = effectiveClass;
+                    bestStart = start;
+                }
+            }
+            if (best == null) {
+                break;
+            }
+            remaining.remove(best);
+            chosen.add(best);
+            running.merge(best.type(), 1, Integer::sum);
+            virtualTime = bestStart;
+            userFinishTags.put(best.userKey(), bestStart + cost(best.type()));
+        }
+
+        // User có finish tag <= virtual time coi như không còn nợ lượt, bỏ khỏi map để map không phình
+        userFinishTags.values().removeIf(finish -> finish <= virtualTime);
+        return chosen;
+    }
+
+    /** Loại task còn chỗ chạy trên node này không (dùng khi start ngay lúc submit). */
+    public boolean hasCapacity(String type, Map<String, Integer> runningByType) {
+        return runningByType.getOrDefault(type, 0) < limit(type);
+    }
+
+    /** Cập nhật chi phí trung bình (EWMA) của loại task từ thời gian xử lý thực tế. */
+    public synchronized void recordServiceTime(String type, long millis) {
+        double sample = Math.max(1, millis);
+        costMillis.merge(type, sample, (previous, ignored) -> previous + COST_SMOOTHING * (sample - previous));
+    }
+
+    public synchronized double cost(String type) {
+        return costMillis.getOrDefault(type, defaultCostMillis);
+    }
+
+    public int limit(String type) {
+        return typeLimits.getOrDefault(type, defaultLimit);
+    }
+
+    int effectiveClass(Candidate candidate, Instant now) {
+        if (candidate.queuedSince() == null || !candidate.queuedSince().isBefore(now)) {
+            return candidate.priorityClass();
+        }
+        long promotions = Duration.between(candidate.queuedSince(), now).toMillis() / agingStep.toMillis();
+        return (int) Math.max(0, candidate.priorityClass() - promotions);
+    }
+
+    private double startTag(String userKey) {
+        return Math.max(virtualTime, userFinishTags.getOrDefault(userKey, 0d));
+    }
+
+    /**
+     * priorityClass: 0 là ưu tiên cao nhất; queuedSince: thời điểm task bắt đầu chờ.
+     */
+    public record Candidate(long id, String type, String userKey, int priorityClass, Instant queuedSince) {
+    }
+}
@@ -0,0 +1,99 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hashed timing wheel (kiểu Netty/Kafka): mỗi key có một thời điểm hết hạn, được đặt vào ô
+ * tick % wheelSize. Mỗi lần advance chỉ duyệt các ô của những tick vừa trôi qua, nên chi phí tỉ lệ
+ * với số timer đến hạn chứ không phải tổng số timer. Timer xa hơn một vòng vẫn nằm trong ô và
+ * được bỏ qua cho đến khi tick tuyệt đối của nó tới.
+ *
+ * Độ chính xác bằng tickDuration. Schedule lại cùng key thì thay thế timer cũ. Không tự chạy:
+ * bên dùng gọi advance(now) định kỳ từ một thread riêng.
+ */
+public final class HashedTimingWheel<K> {
+
+    private final long tickMillis;
+    private final int mask;
+    private final List<Map<K, Long>> buckets;
+    // key -> tick tuyệt đối đến hạn, để cancel/thay thế O(1)
+    private final Map<K, Long> deadlines = new HashMap<>();
+    private long currentTick;
+
+    /**
+     * wheelSize được làm tròn lên lũy thừa của 2; start là thời điểm tick 0 đã được xử lý.
+     */
+    public HashedTimingWheel(Duration tickDuration, int wheelSize, Instant start) {
+        if (tickDuration.toMillis() <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Cấu hình timing wheel không hợp lệ");
+        }
+        this.tickMillis = tickDuration.toMillis();
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.mask = size - 1;
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(new LinkedHashMap<>());
+        }
+        this.currentTick = Math.floorDiv(start.toEpochMilli(), tickMillis);
+    }
+
+    /**
+     * Đặt (hoặc thay) timer của key. Thời điểm đã qua thì hết hạn ở lần advance kế tiếp.
+     */
+    public synchronized void schedule(K key, Instant deadline) {
+        cancel(key);
+        long tick = Math.max(Math.floorDiv(deadline.toEpochMilli() + tickMillis - 1, tickMillis), currentTick + 1);
+        deadlines.put(key, tick);
+        buckets.get((int) (tick & mask)).put(key, tick);
+    }
+
+    public synchronized boolean cancel(K key) {
+        Long tick = deadlines.remove(key);
+        if (tick == null) {
+            return false;
+        }
+        buckets.get((int) (tick & mask)).remove(key);
+        return true;
+    }
+
+    /**
+     * Đẩy wheel tới now và trả về các key đến hạn (theo thứ tự tick); key trả về đã bị xóa khỏi wheel.
+     */
+    public synchronized List<K> advance(Instant now) {
+        long nowTick = Math.floorDiv(now.toEpochMilli(), tickMillis);
+        if (nowTick <= currentTick) {
+            return List.of();
+        }
+        List<K> expired = new ArrayList<>();
+        // Trễ hơn một vòng (GC dài, máy ngủ) thì mỗi ô chỉ cần duyệt một lần
+        long lastTick = Math.min(nowTick, currentTick + mask + 1);
+        for (long tick = currentTick + 1; tick <= lastTick; tick++) {
+            Iterator<Map.Entry<K, Long>> iterator = buckets.get((int) (tick & mask)).entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<K, Long> entry = iterator.next();
+                if (entry.getValue() <= nowTick) {
+                    iterator.remove();
+                    deadlines.remove(entry.getKey());
+                    expired.add(entry.getKey());
+                }
+            }
+        }
+        currentTick = nowTick;
+        return expired;
+    }
+
+    public synchronized boolean contains(K key) {
+        return deadlines.containsKey(key);
+    }
+
+    public synchronized int size() {
+        return deadlines.size();
+    }
+}
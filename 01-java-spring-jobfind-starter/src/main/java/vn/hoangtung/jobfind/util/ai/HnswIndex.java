@@ -0,0 +1,393 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.IntPredicate;
+
+/**
+ * Đồ thị HNSW (Hierarchical Navigable Small World) cho tìm kiếm láng giềng gần theo cosine.
+ *
+ * - Vector được chuẩn hóa L2 trước khi thêm, nên cosine = tích vô hướng
+ * - Vector nằm off-heap (direct buffer) để GC không phải quét; danh sách cạnh nằm trên heap
+ * - Xóa bằng tombstone: node bị xóa vẫn dùng để đi qua đồ thị nhưng không bao giờ được trả về
+ * - Tìm kiếm có bộ lọc: đi đồ thị như bình thường, chỉ node qua được filter mới vào tập kết quả
+ *
+ * Class không tự đồng bộ: caller giữ write lock khi add/markDeleted và read lock khi search.
+ */
+public final class HnswIndex {
+
+    private static final int SNAPSHOT_MAGIC = 0x484E5357;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int[] NO_LINKS = new int[0];
+    private static final Comparator<Result> BY_SCORE = Comparator.comparingDouble(Result::score);
+
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random = new Random(42);
+
+    private FloatBuffer vectors;
+    private int[] levels;
+    private int[][][] links;
+    private final BitSet deleted = new BitSet();
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    public HnswIndex(int dimension, int m, int efConstruction) {
+        if (dimension < 1 || m < 2 || efConstruction < 1) {
+            throw new IllegalArgumentException("Tham số HNSW không hợp lệ");
+        }
+        this.dimension = dimension;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1.0 / Math.log(m);
+        allocate(64);
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int liveSize() {
+        return size - deleted.cardinality();
+    }
+
+    public boolean isDeleted(int node) {
+        return deleted.get(node);
+    }
+
+    public void markDeleted(int node) {
+        if (node >= 0 && node < size) {
+            deleted.set(node);
+        }
+    }
+
+    /** Thêm vector (đã chuẩn hóa) và trả về id node mới. */
+    public int add(float[] vector) {
+        checkDimension(vector);
+        ensureCapacity(size + 1);
+        int node = size++;
+        vectors.put(node * dimension, vector);
+
+        int level = (int) Math.floor(-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+        levels[node] = level;
+        links[node] = new int[level + 1][];
+        Arrays.fill(links[node], NO_LINKS);
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        int current = entryPoint;
+        for (int layer = maxLevel; layer > level; layer--) {
+            current = greedyClosest(vector, current, layer);
+        }
+
+        IntPredicate notDeleted = candidate -> !deleted.get(candidate);
+        for (int layer = Math.min(level, maxLevel); layer >= 0; layer--) {
+            List<Result> candidates = searchLayer(vector, current, efConstruction, layer, notDeleted);
+            if (candidates.isEmpty()) {
+                continue;
+            }
+            int[] selected = selectNeighbors(candidates, maxLinks(layer));
+            links[node][layer] = selected;
+            for (int neighbor : selected) {
+                connect(neighbor, node, layer);
+            }
+            current = candidates.get(0).node();
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+        return node;
+    }
+
+    /** Tìm k node gần nhất thỏa accept; ef càng lớn recall càng cao nhưng chậm hơn. */
+    public List<Result> search(float[] query, int k, int ef, IntPredicate accept) {
+        checkDimension(query);
+        if (entryPoint < 0 || k <= 0) {
+            return List.of();
+        }
+        int current = entryPoint;
+        for (int layer = maxLevel; layer > 0; layer--) {
+            current = greedyClosest(query, current, layer);
+        }
+        IntPredicate effective = node -> !deleted.get(node) && (accept == null || accept.test(node));
+        List<Result> results = searchLayer(query, current, Math.max(ef, k), 0, effective);
+        return results.size() > k ? List.copyOf(results.subList(0, k)) : results;
+    }
+
+    /** Quét vét cạn trên một tập node nhỏ (vd: các chunk của một resume). */
+    public List<Result> exactSearch(float[] query, int k, BitSet candidates) {
+        checkDimension(query);
+        PriorityQueue<Result> best = new PriorityQueue<>(BY_SCORE);
+        for (int node = candidates.nextSetBit(0); node >= 0 && node < size; node = candidates.nextSetBit(node + 1)) {
+            if (deleted.get(node)) {
+                continue;
+            }
+            double score = similarity(query, node);
+            if (best.size() < k) {
+                best.add(new Result(node, score));
+            } else if (score > best.peek().score()) {
+                best.poll();
+                best.add(new Result(node, score));
+            }
+        }
+        List<Result> sorted = new ArrayList<>(best);
+        sorted.sort(BY_SCORE.reversed());
+        return sorted;
+    }
+
+    public float[] vector(int node) {
+        float[] copy = new float[dimension];
+        vectors.get(node * dimension, copy);
+        return copy;
+    }
+
+    public double similarity(float[] query, int node) {
+        int offset = node * dimension;
+        double sum = 0;
+        for (int i = 0; i < dimension; i++) {
+            sum += query[i] * vectors.get(offset + i);
+        }
+        return sum;
+    }
+
+    public int snapshotBytes() {
+        long bytes = 8L * Integer.BYTES;
+        for (int node = 0; node < size; node++) {
+            bytes += 1 + Integer.BYTES;
+            for (int[] layerLinks : links[node]) {
+                bytes += Integer.BYTES + (long) layerLinks.length * Integer.BYTES;
+            }
+        }
+        bytes += (long) size * dimension * Float.BYTES;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Snapshot HNSW quá lớn");
+        }
+        return (int) bytes;
+    }
+
+    public void writeSnapshot(ByteBuffer out) {
+        out.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION)
+                .putInt(dimension).putInt(m).putInt(efConstruction)
+                .putInt(size).putInt(entryPoint).putInt(maxLevel);
+        for (int node = 0; node < size; node++) {
+            out.put((byte) (deleted.get(node) ? 1 : 0));
+            out.putInt(levels[node]);
+            for (int[] layerLinks : links[node]) {
+                out.putInt(layerLinks.length);
+                for (int neighbor : layerLinks) {
+                    out.putInt(neighbor);
+                }
+            }
+        }
+        for (int i = 0; i < size * dimension; i++) {
+            out.putFloat(vectors.get(i));
+        }
+    }
+
+    public static HnswIndex readSnapshot(ByteBuffer in) {
+        if (in.getInt() != SNAPSHOT_MAGIC || in.getInt() != SNAPSHOT_VERSION) {
+            throw new IllegalStateException("Snapshot HNSW không đúng định dạng");
+        }
+        HnswIndex index = new HnswIndex(in.getInt(), in.getInt(), in.getInt());
+        int count = in.getInt();
+        index.ensureCapacity(count);
+        index.size = count;
+        index.entryPoint = in.getInt();
+        index.maxLevel = in.getInt();
+        for (int node = 0; node < count; node++) {
+            if (in.get() == 1) {
+                index.deleted.set(node);
+            }
+            int level = in.getInt();
+            index.levels[node] = level;
+            index.links[node] = new int[level + 1][];
+            for (int layer = 0; layer <= level; layer++) {
+                int[] layerLinks = new int[in.getInt()];
+                for (int i = 0; i < layerLinks.length; i++) {
+                    layerLinks[i] = in.getInt();
+                }
+                index.links[node][layer] = layerLinks;
+            }
+        }
+        for (int i = 0; i < count * index.dimension; i++) {
+            index.vectors.put(i, in.getFloat());
+        }
+        return index;
+    }
+
+    private int greedyClosest(float[] query, int start, int layer) {
+        int current = start;
+        double currentScore = similarity(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbor : linksAt(current, layer)) {
+                double score = similarity(query, neighbor);
+                if (score > currentScore) {
+                    currentScore = score;
+                    current = neighbor;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /** Beam search trên một tầng; trả về tối đa ef kết quả (chỉ node qua accept), sắp giảm dần theo score. */
+    private List<Result> searchLayer(float[] query, int start, int ef, int layer, IntPredicate accept) {
+        BitSet visited = new BitSet(size);
+        PriorityQueue<Result> candidates = new PriorityQueue<>(BY_SCORE.reversed());
+        PriorityQueue<Result> results = new PriorityQueue<>(BY_SCORE);
+
+        Result first = new Result(start, similarity(query, start));
+        visited.set(start);
+        candidates.add(first);
+        if (accept.test(start)) {
+            results.add(first);
+        }
+
+        while (!candidates.isEmpty()) {
+            Result current = candidates.poll();
+            if (results.size() >= ef && current.score() < results.peek().score()) {
+                break;
+            }
+            for (int neighbor : linksAt(current.node(), layer)) {
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                double score = similarity(query, neighbor);
+                if (results.size() < ef || score > results.peek().score()) {
+                    Result next = new Result(neighbor, score);
+                    candidates.add(next);
+                    if (accept.test(neighbor)) {
+                        results.add(next);
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Result> sorted = new ArrayList<>(results);
+        sorted.sort(BY_SCORE.reversed());
+        return sorted;
+    }
+
+    /** Heuristic chọn cạnh của bài báo HNSW: ưu tiên láng giềng đa dạng hướng, thiếu thì bù bằng node gần nhất. */
+    private int[] selectNeighbors(List<Result> candidatesByScoreDesc, int maxLinks) {
+        List<Result> selected = new ArrayList<>();
+        List<Result> pruned = new ArrayList<>();
+        for (Result candidate : candidatesByScoreDesc) {
+            if (selected.size() >= maxLinks) {
+                break;
+            }
+            boolean diverse = true;
+            for (Result kept : selected) {
+                if (nodeSimilarity(candidate.node(), kept.node()) > candidate.score()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            (diverse ? selected : pruned).add(candidate);
+        }
+        for (int i = 0; i < pruned.size() && selected.size() < maxLinks; i++) {
+            selected.add(pruned.get(i));
+        }
+        return selected.stream().mapToInt(Result::node).toArray();
+    }
+
+    private void connect(int node, int newNeighbor, int layer) {
+        int[] existing = linksAt(node, layer);
+        int maxLinks = maxLinks(layer);
+        if (existing.length < maxLinks) {
+            int[] grown = Arrays.copyOf(existing, existing.length + 1);
+            grown[existing.length] = newNeighbor;
+            links[node][layer] = grown;
+            return;
+        }
+
+        List<Result> candidates = new ArrayList<>(existing.length + 1);
+        for (int neighbor : existing) {
+            candidates.add(new Result(neighbor, nodeSimilarity(node, neighbor)));
+        }
+        candidates.add(new Result(newNeighbor, nodeSimilarity(node, newNeighbor)));
+        candidates.sort(BY_SCORE.reversed());
+        links[node][layer] = selectNeighbors(candidates, maxLinks);
+    }
+
+    private int[] linksAt(int node, int layer) {
+        int[][] nodeLinks = links[node];
+        return layer < nodeLinks.length ? nodeLinks[layer] : NO_LINKS;
+    }
+
+    private int maxLinks(int layer) {
+        return layer == 0 ? maxM0 : m;
+    }
+
+    private double nodeSimilarity(int left, int right) {
+        int leftOffset = left * dimension;
+        int rightOffset = right * dimension;
+        double sum = 0;
+        for (int i = 0; i < dimension; i++) {
+            sum += vectors.get(leftOffset + i) * vectors.get(rightOffset + i);
+        }
+        return sum;
+    }
+
+    private void checkDimension(float[] vector) {
+        if (vector == null || vector.length != dimension) {
+            throw new IllegalArgumentException("Vector phải có " + dimension + " chiều");
+        }
+    }
+
+    private void allocate(int capacity) {
+        vectors = ByteBuffer.allocateDirect(capacity * dimension * Float.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        levels = new int[capacity];
+        links = new int[capacity][][];
+    }
+
+    private void ensureCapacity(int required) {
+        int capacity = levels.length;
+        if (required <= capacity) {
+            return;
+        }
+        int newCapacity = Math.max(required, capacity * 2);
+        FloatBuffer oldVectors = vectors;
+        int[] oldLevels = levels;
+        int[][][] oldLinks = links;
+        allocate(newCapacity);
+        vectors.put(0, oldVectors, 0, size * dimension);
+        System.arraycopy(oldLevels, 0, levels, 0, size);
+        System.arraycopy(oldLinks, 0, links, 0, size);
+    }
+
+    public record Result(int node, double score) {
+    }
+}
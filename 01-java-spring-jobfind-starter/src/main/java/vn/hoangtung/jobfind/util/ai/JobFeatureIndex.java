@@ -0,0 +1,563 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import vn.hoangtung.jobfind.domain.Job;
+import vn.hoangtung.jobfind.util.ai.AiFeatureUtils.ChatIntent;
+import vn.hoangtung.jobfind.util.ai.AiFeatureUtils.RankedJob;
+
+/**
+ * Chỉ mục đặc trưng của các job đang tuyển cho chatbot, tính sẵn một lần khi job thay đổi:
+ *
+ * - Skill đã normalize -> id, mỗi job giữ bitset skill dạng long[]
+ * - Địa điểm / công ty -> id, mỗi request chỉ so khớp một lần cho mỗi giá trị khác nhau
+ * - Lương và text tìm kiếm (tên + mô tả + địa điểm + công ty) đã normalize
+ *
+ * Chấm điểm cho kết quả giống hệt {@link AiFeatureUtils#rankJobs} và
+ * {@link AiFeatureUtils#matchesHardConstraints}, nhưng chỉ dựng {@link RankedJob} (kèm lý do)
+ * cho top-K thay vì sort cả danh sách. Slot giữ thứ tự thêm vào, job bị xóa để lại lỗ và được
+ * dồn lại khi lỗ chiếm quá 1/3.
+ *
+ * Kèm một {@link Bm25Index} trên tên, cấp bậc, skill, mô tả, địa điểm và công ty để lấy ứng
+ * viên theo từ khóa khi vector search không có kết quả.
+ */
+public final class JobFeatureIndex {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Bm25Index lexicalIndex = new Bm25Index();
+
+    private final Map<String, Integer> skillIds = new HashMap<>();
+    private final Map<String, Integer> locationIds = new HashMap<>();
+    private final List<String> locationNames = new ArrayList<>();
+    private final Map<String, Integer> companyIds = new HashMap<>();
+    private final List<String> companyNames = new ArrayList<>();
+    private final Map<Long, Integer> slotById = new HashMap<>();
+    // raw location -> số job đang dùng; giữ thứ tự xuất hiện đầu tiên như danh sách job từ DB
+    private final Map<String, Integer> rawLocationCounts = new LinkedHashMap<>();
+
+    private Job[] jobs = new Job[INITIAL_CAPACITY];
+    private double[] salaries = new double[INITIAL_CAPACITY];
+    private int[] locationOf = new int[INITIAL_CAPACITY];
+    private int[] companyOf = new int[INITIAL_CAPACITY];
+    private long[][] skillWords = new long[INITIAL_CAPACITY][];
+    private String[] texts = new String[INITIAL_CAPACITY];
+    private int slotCount;
+    private int liveCount;
+
+    /** Thay toàn bộ nội dung index; job không active bị bỏ qua. */
+    public void replaceAll(Collection<Job> activeJobs) {
+        List<Features> features = activeJobs.stream()
+                .filter(job -> job != null && job.isActive())
+                .map(JobFeatureIndex::extract)
+                .toList();
+        lock.writeLock().lock();
+        try {
+            skillIds.clear();
+            locationIds.clear();
+            locationNames.clear();
+            companyIds.clear();
+            companyNames.clear();
+            slotById.clear();
+            rawLocationCounts.clear();
+            Arrays.fill(jobs, 0, slotCount, null);
+            Arrays.fill(skillWords, 0, slotCount, null);
+            Arrays.fill(texts, 0, slotCount, null);
+            slotCount = 0;
+            liveCount = 0;
+            for (Features item : features) {
+                put(item);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        lexicalIndex.replaceAll(lexicalTexts(features));
+    }
+
+    /** Áp dụng thay đổi từ outbox: job hết active được xử lý như xóa. */
+    public void apply(Collection<Job> upserts, Collection<Long> deletedJobIds) {
+        List<Features> features = upserts.stream()
+                .filter(job -> job != null && job.isActive())
+                .map(JobFeatureIndex::extract)
+                .toList();
+        lock.writeLock().lock();
+        try {
+            for (Job job : upserts) {
+                if (job != null && !job.isActive()) {
+                    remove(job.getId());
+                }
+            }
+            for (Long jobId : deletedJobIds) {
+                if (jobId != null) {
+                    remove(jobId);
+                }
+            }
+            for (Features item : features) {
+                put(item);
+            }
+            if (slotCount - liveCount > Math.max(INITIAL_CAPACITY, slotCount / 3)) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        List<Long> removedIds = new ArrayList<>(deletedJobIds);
+        for (Job job : upserts) {
+            if (job != null && !job.isActive()) {
+                removedIds.add(job.getId());
+            }
+        }
+        lexicalIndex.apply(lexicalTexts(features), removedIds);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /** Địa điểm (chuỗi gốc) của các job đang tuyển, thay cho việc duyệt lại toàn bộ job. */
+    public Set<String> knownLocations() {
+        lock.readLock().lock();
+        try {
+            return new LinkedHashSet<>(rawLocationCounts.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Vài skill đầu tiên theo thứ tự job, dùng cho gợi ý khi không có kết quả. */
+    public List<String> sampleSkillNames(int limit) {
+        lock.readLock().lock();
+        try {
+            List<String> names = new ArrayList<>(limit);
+            for (int slot = 0; slot < slotCount && names.size() < limit; slot++) {
+                if (jobs[slot] == null) {
+                    continue;
+                }
+                for (String name : AiFeatureUtils.jobSkillNames(jobs[slot])) {
+                    if (names.size() >= limit) {
+                        break;
+                    }
+                    names.add(name);
+                }
+            }
+            return names;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Id job theo điểm BM25 của câu hỏi, dùng làm ứng viên khi vector search lỗi hoặc để trộn
+     * với kết quả vector bằng {@link Bm25Index#fuse(List, int)}.
+     */
+    public List<Long> lexicalCandidateIds(String query, int limit) {
+        return lexicalIndex.searchIds(query, limit);
+    }
+
+    /**
+     * Chấm điểm ứng viên theo intent.
+     *
+     * @param candidateJobIds thứ tự ứng viên (vd từ vector search); null hoặc không id nào còn
+     *                        trong index thì chấm toàn bộ job, giống fallback cũ
+     * @param limit           số kết quả tối đa cho mỗi danh sách trả về
+     */
+    public Ranking rank(ChatIntent intent, List<Long> candidateJobIds, Set<String> userSkills, int limit) {
+        lock.readLock().lock();
+        try {
+            int[] candidates = resolveCandidates(candidateJobIds);
+            QueryContext context = new QueryContext(intent, userSkills);
+
+            int[] scores = new int[candidates.length];
+            boolean[] hard = new boolean[candidates.length];
+            for (int i = 0; i < candidates.length; i++) {
+                scores[i] = score(candidates[i], context, null);
+                hard[i] = matchesHardConstraints(candidates[i], context);
+            }
+
+            int[] top = selectTop(candidates, scores, null, limit);
+            int[] exact = selectTop(candidates, scores, hard, limit);
+            return new Ranking(materialize(candidates, top, context), materialize(candidates, exact, context));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int[] resolveCandidates(List<Long> candidateJobIds) {
+        if (candidateJobIds != null && !candidateJobIds.isEmpty()) {
+            LinkedHashSet<Integer> slots = new LinkedHashSet<>();
+            for (Long jobId : candidateJobIds) {
+                Integer slot = jobId == null ? null : slotById.get(jobId);
+                if (slot != null) {
+                    slots.add(slot);
+                }
+            }
+            if (!slots.isEmpty()) {
+                return slots.stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+        int[] all = new int[liveCount];
+        int size = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (jobs[slot] != null) {
+                all[size++] = slot;
+            }
+        }
+        return all;
+    }
+
+    private int score(int slot, QueryContext context, List<String> reasons) {
+        Job job = jobs[slot];
+        int score = 0;
+
+        // index chỉ chứa job active
+        score += 8;
+        addReason(reasons, "Tin đang tuyển");
+
+        if (context.locationMatches != null) {
+            if (context.locationMatches[locationOf[slot]]) {
+                score += 28;
+                addReason(reasons, "Đúng địa điểm " + job.getLocation());
+            } else {
+                score -= 18;
+            }
+        }
+
+        if (context.minSalary != null) {
+            if (salaries[slot] >= context.minSalary) {
+                score += 18;
+                addReason(reasons, "Đáp ứng mức lương tối thiểu");
+            } else {
+                score -= 25;
+            }
+        }
+
+        if (context.requestedSkillIds.length > 0) {
+            int skillMatches = countRequestedSkills(slot, context);
+            if (skillMatches > 0) {
+                score += 20 + skillMatches * 10;
+                addReason(reasons, "Khớp " + skillMatches + " kỹ năng chính");
+            } else {
+                score -= 20;
+            }
+        }
+
+        int keywordMatches = 0;
+        String text = texts[slot];
+        for (String keyword : context.keywords) {
+            if (text.contains(keyword)) {
+                keywordMatches++;
+            }
+        }
+        if (keywordMatches > 0) {
+            score += Math.min(18, keywordMatches * 4);
+            addReason(reasons, "Khớp từ khóa tìm kiếm");
+        }
+
+        int profileOverlap = 0;
+        long[] words = skillWords[slot];
+        for (int i = 0; i < Math.min(words.length, context.userSkillWords.length); i++) {
+            profileOverlap += Long.bitCount(words[i] & context.userSkillWords[i]);
+        }
+        if (profileOverlap > 0) {
+            score += Math.min(12, profileOverlap * 3);
+            addReason(reasons, "Phù hợp hồ sơ kỹ năng của người dùng");
+        }
+
+        if (companyOf[slot] >= 0 && context.companyMentioned(companyOf[slot])) {
+            score += 12;
+            addReason(reasons, "Đúng công ty được nhắc tới");
+        }
+        return score;
+    }
+
+    private boolean matchesHardConstraints(int slot, QueryContext context) {
+        if (context.minSalary != null && salaries[slot] < context.minSalary) {
+            return false;
+        }
+        if (context.locationMatches != null && !context.locationMatches[locationOf[slot]]) {
+            return false;
+        }
+        return context.requestedSkillIds.length == 0 || countRequestedSkills(slot, context) > 0;
+    }
+
+    private int countRequestedSkills(int slot, QueryContext context) {
+        long[] words = skillWords[slot];
+        int matches = 0;
+        // đếm theo từng skill được hỏi (kể cả trùng sau normalize) như rankJobs
+        for (int skillId : context.requestedSkillIds) {
+            if (skillId >= 0 && hasBit(words, skillId)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    /** Chọn tối đa limit vị trí theo điểm giảm dần, lương giảm dần, rồi thứ tự ứng viên. */
+    private int[] selectTop(int[] candidates, int[] scores, boolean[] filter, int limit) {
+        int[] selected = new int[Math.min(limit, candidates.length)];
+        int size = 0;
+        for (int position = 0; position < candidates.length; position++) {
+            if (filter != null && !filter[position]) {
+                continue;
+            }
+            if (size == selected.length && !ranksBefore(position, selected[size - 1], candidates, scores)) {
+                continue;
+            }
+            int insertAt = size == selected.length ? size - 1 : size++;
+            while (insertAt > 0 && ranksBefore(position, selected[insertAt - 1], candidates, scores)) {
+                selected[insertAt] = selected[insertAt - 1];
+                insertAt--;
+            }
+            selected[insertAt] = position;
+        }
+        return Arrays.copyOf(selected, size);
+    }
+
+    private boolean ranksBefore(int left, int right, int[] candidates, int[] scores) {
+        if (scores[left] != scores[right]) {
+            return scores[left] > scores[right];
+        }
+        int bySalary = Double.compare(salaries[candidates[left]], salaries[candidates[right]]);
+        if (bySalary != 0) {
+            return bySalary > 0;
+        }
+        return left < right;
+    }
+
+    private List<RankedJob> materialize(int[] candidates, int[] positions, QueryContext context) {
+        List<RankedJob> ranked = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            int slot = candidates[position];
+            List<String> reasons = new ArrayList<>();
+            int score = score(slot, context, reasons);
+            ranked.add(new RankedJob(jobs[slot], score, reasons));
+        }
+        return List.copyOf(ranked);
+    }
+
+    private void put(Features features) {
+        Integer existing = slotById.get(features.job().getId());
+        int slot;
+        if (existing != null) {
+            slot = existing;
+            releaseLocation(jobs[slot]);
+        } else {
+            ensureCapacity(slotCount + 1);
+            slot = slotCount++;
+            slotById.put(features.job().getId(), slot);
+            liveCount++;
+        }
+
+        jobs[slot] = features.job();
+        salaries[slot] = features.job().getSalary();
+        locationOf[slot] = intern(features.location(), locationIds, locationNames);
+        companyOf[slot] = features.company() == null ? -1 : intern(features.company(), companyIds, companyNames);
+        texts[slot] = features.text();
+
+        int[] ids = features.skills().stream()
+                .mapToInt(skill -> skillIds.computeIfAbsent(skill, key -> skillIds.size()))
+                .toArray();
+        long[] words = new long[Math.max(1, (Arrays.stream(ids).max().orElse(0) >> 6) + 1)];
+        for (int id : ids) {
+            words[id >> 6] |= 1L << id;
+        }
+        skillWords[slot] = words;
+        rawLocationCounts.merge(rawLocation(features.job()), 1, Integer::sum);
+    }
+
+    private void remove(long jobId) {
+        Integer slot = slotById.remove(jobId);
+        if (slot == null) {
+            return;
+        }
+        releaseLocation(jobs[slot]);
+        jobs[slot] = null;
+        skillWords[slot] = null;
+        texts[slot] = null;
+        liveCount--;
+    }
+
+    private void releaseLocation(Job job) {
+        rawLocationCounts.computeIfPresent(rawLocation(job), (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private void compact() {
+        int target = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (jobs[slot] == null) {
+                continue;
+            }
+            if (target != slot) {
+                jobs[target] = jobs[slot];
+                salaries[target] = salaries[slot];
+                locationOf[target] = locationOf[slot];
+                companyOf[target] = companyOf[slot];
+                skillWords[target] = skillWords[slot];
+                texts[target] = texts[slot];
+                slotById.put(jobs[target].getId(), target);
+            }
+            target++;
+        }
+        Arrays.fill(jobs, target, slotCount, null);
+        Arrays.fill(skillWords, target, slotCount, null);
+        Arrays.fill(texts, target, slotCount, null);
+        slotCount = target;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= jobs.length) {
+            return;
+        }
+        int capacity = Math.max(required, jobs.length * 2);
+        jobs = Arrays.copyOf(jobs, capacity);
+        salaries = Arrays.copyOf(salaries, capacity);
+        locationOf = Arrays.copyOf(locationOf, capacity);
+        companyOf = Arrays.copyOf(companyOf, capacity);
+        skillWords = Arrays.copyOf(skillWords, capacity);
+        texts = Arrays.copyOf(texts, capacity);
+    }
+
+    private static int intern(String value, Map<String, Integer> ids, List<String> names) {
+        return ids.computeIfAbsent(value, key -> {
+            names.add(key);
+            return names.size() - 1;
+        });
+    }
+
+    private static boolean hasBit(long[] words, int id) {
+        int word = id >> 6;
+        return word < words.length && (words[word] & (1L << id)) != 0;
+    }
+
+    private static void addReason(List<String> reasons, String reason) {
+        if (reasons != null) {
+            reasons.add(reason);
+        }
+    }
+
+    private static String rawLocation(Job job) {
+        return job.getLocation() == null ? "" : job.getLocation();
+    }
+
+    /** Phần tốn kém (normalize) tính ngoài lock. */
+    private static Features extract(Job job) {
+        LinkedHashSet<String> skills = new LinkedHashSet<>();
+        for (String skill : AiFeatureUtils.jobSkillNames(job)) {
+            skills.add(AiFeatureUtils.normalizeForSearch(skill));
+        }
+        String companyName = job.getCompany() != null ? job.getCompany().getName() : null;
+        // cùng công thức jobText trong rankJobs
+        String text = AiFeatureUtils.normalizeForSearch(job.getName() + " "
+                + safe(job.getDescription()) + " "
+                + safe(job.getLocation()) + " "
+                + safe(companyName == null ? "" : companyName));
+        return new Features(
+                job,
+                skills,
+                AiFeatureUtils.normalizeForSearch(job.getLocation()),
+                job.getCompany() == null ? null : AiFeatureUtils.normalizeForSearch(companyName),
+                text);
+    }
+
+    private static Map<Long, String> lexicalTexts(List<Features> features) {
+        Map<Long, String> texts = new LinkedHashMap<>();
+        for (Features item : features) {
+            Job job = item.job();
+            texts.put(job.getId(), String.join(" ",
+                    safe(job.getName()),
+                    job.getLevel() == null ? "" : job.getLevel().name(),
+                    String.join(" ", AiFeatureUtils.jobSkillNames(job)),
+                    safe(job.getDescription()),
+                    safe(job.getLocation()),
+                    job.getCompany() == null ? "" : safe(job.getCompany().getName())));
+        }
+        return texts;
+    }
+
+    private static String safe(String value) {
+        return value == null ? "" : value;
+    }
+
+    private record Features(Job job, Set<String> skills, String location, String company, String text) {
+    }
+
+    /** Những gì phụ thuộc vào câu hỏi được tính một lần cho cả lượt chấm điểm. */
+    private final class QueryContext {
+        private final boolean[] locationMatches;
+        private final String normalizedQuery;
+        // 0 = chưa xét, 1 = có nhắc tới, 2 = không; tính lazy vì số công ty có thể lớn hơn số ứng viên
+        private final byte[] companyMentions;
+        private final Integer minSalary;
+        private final int[] requestedSkillIds;
+        private final long[] userSkillWords;
+        private final String[] keywords;
+
+        private QueryContext(ChatIntent intent, Set<String> userSkills) {
+            if (intent.location() != null) {
+                String expected = AiFeatureUtils.normalizeForSearch(intent.location());
+                locationMatches = new boolean[locationNames.size()];
+                for (int id = 0; id < locationNames.size(); id++) {
+                    String location = locationNames.get(id);
+                    locationMatches[id] = location.contains(expected) || expected.contains(location);
+                }
+            } else {
+                locationMatches = null;
+            }
+
+            normalizedQuery = intent.normalizedQuery();
+            companyMentions = new byte[companyNames.size()];
+
+            minSalary = intent.minSalary();
+            requestedSkillIds = intent.requestedSkills().stream()
+                    .map(AiFeatureUtils::normalizeForSearch)
+                    .mapToInt(skill -> skillIds.getOrDefault(skill, -1))
+                    .toArray();
+
+            long[] words = new long[(skillIds.size() >> 6) + 1];
+            if (userSkills != null) {
+                for (String skill : userSkills) {
+                    Integer id = skillIds.get(AiFeatureUtils.normalizeForSearch(skill));
+                    if (id != null) {
+                        words[id >> 6] |= 1L << id;
+                    }
+                }
+            }
+            userSkillWords = words;
+            keywords = intent.keywords().toArray(String[]::new);
+        }
+
+        private boolean companyMentioned(int companyId) {
+            if (companyMentions[companyId] == 0) {
+                companyMentions[companyId] = normalizedQuery.contains(companyNames.get(companyId)) ? (byte) 1 : (byte) 2;
+            }
+            return companyMentions[companyId] == 1;
+        }
+    }
+
+    /**
+     * @param top          top-K theo điểm (fallback khi không có job thỏa ràng buộc cứng)
+     * @param exactMatches top-K trong số job thỏa mọi ràng buộc cứng
+     */
+    public record Ranking(List<RankedJob> top, List<RankedJob> exactMatches) {
+    }
+}
@@ -0,0 +1,55 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Tập skill đã biết (curated + DB) kèm sẵn {@link SkillTaxonomy} build từ chính tập đó.
+ * Vẫn là một {@code Set<String>} bất biến nên đi qua được mọi chỗ nhận {@code knownSkills},
+ * còn {@link SkillTaxonomy#from(Collection)} nhận ra nó và trả taxonomy có sẵn thay vì build lại.
+ */
+public final class KnownSkillCatalog extends AbstractSet<String> {
+
+    private final long version;
+    private final Set<String> skills;
+    private final SkillTaxonomy taxonomy;
+
+    private KnownSkillCatalog(long version, Set<String> skills, SkillTaxonomy taxonomy) {
+        this.version = version;
+        this.skills = skills;
+        this.taxonomy = taxonomy;
+    }
+
+    public static KnownSkillCatalog of(long version, Collection<String> dbSkills) {
+        Set<String> skills = Collections.unmodifiableSet(
+                new LinkedHashSet<>(AiFeatureUtils.buildKnownSkills(dbSkills)));
+        return new KnownSkillCatalog(version, skills, SkillTaxonomy.build(skills));
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public SkillTaxonomy taxonomy() {
+        return taxonomy;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return skills.iterator();
+    }
+
+    @Override
+    public int size() {
+        return skills.size();
+    }
+
+    @Override
+    public boolean contains(Object value) {
+        return skills.contains(value);
+    }
+}
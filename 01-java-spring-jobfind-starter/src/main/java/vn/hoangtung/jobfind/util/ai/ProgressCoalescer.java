@@ -0,0 +1,52 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gom các lần cập nhật progress của AI task trong một cửa sổ ngắn: mỗi task chỉ giữ bản mới nhất
+ * (progress không giảm trong cùng một lần claim), bên dùng drain() định kỳ rồi ghi cả lô một lần.
+ *
+ * Claim mới (token khác) thay hẳn bản đang chờ của claim cũ, vì ghi của claim cũ sẽ bị DB từ chối.
+ */
+public final class ProgressCoalescer {
+
+    private final Map<Long, ProgressUpdate> pending = new LinkedHashMap<>();
+
+    /** Ghi nhận progress; đã có bản chờ của cùng claim thì gộp vào bản đó. */
+    public synchronized void offer(long taskId, String claimToken, int progress, Instant at) {
+        ProgressUpdate previous = pending.get(taskId);
+        if (previous == null || !previous.claimToken().equals(claimToken)) {
+            pending.put(taskId, new ProgressUpdate(taskId, claimToken, progress, at));
+            return;
+        }
+        pending.put(taskId, new ProgressUpdate(taskId, claimToken, Math.max(previous.progress(), progress), at));
+    }
+
+    /** Bỏ bản chờ của task, dùng trước khi ghi trạng thái kết thúc để progress cũ không đè lên. */
+    public synchronized void discard(long taskId) {
+        pending.remove(taskId);
+    }
+
+    /** Lấy toàn bộ bản chờ theo thứ tự taskId (khóa dòng theo thứ tự cố định khi ghi lô). */
+    public synchronized List<ProgressUpdate> drain() {
+        if (pending.isEmpty()) {
+            return List.of();
+        }
+        List<ProgressUpdate> updates = new ArrayList<>(pending.values());
+        pending.clear();
+        updates.sort(Comparator.comparingLong(ProgressUpdate::taskId));
+        return updates;
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    public record ProgressUpdate(long taskId, String claimToken, int progress, Instant at) {
+    }
+}
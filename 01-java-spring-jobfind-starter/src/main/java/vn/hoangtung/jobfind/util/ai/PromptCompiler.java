@@ -0,0 +1,126 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Đóng gói các khối dữ liệu của prompt vào một ngân sách token cố định.
+ *
+ * Phần cố định (template, chỉ dẫn) được trừ trước; các section được cấp token theo priority
+ * giảm dần, mỗi section không vượt maxTokens của nó. Section không đủ chỗ bị cắt tại ranh giới từ
+ * và gắn marker, section không còn chỗ thì chỉ còn thẻ rỗng. Kết quả giữ nguyên định dạng
+ * &lt;LABEL&gt;...&lt;/LABEL&gt; như AiGatewayService.boundedBlock.
+ */
+public final class PromptCompiler {
+
+    public static final String TRUNCATED_MARKER = "\n\n[... nội dung đã được cắt bớt ...]";
+    private static final Pattern CONTROL_CHARS = Pattern.compile("[\\p{Cntrl}&&[^\n\t]]");
+    private static final int MARKER_TOKENS = TokenEstimator.count(TRUNCATED_MARKER);
+
+    private final int budgetTokens;
+    private final List<String> fixedParts = new ArrayList<>();
+    private final List<Section> sections = new ArrayList<>();
+
+    private PromptCompiler(int budgetTokens) {
+        this.budgetTokens = budgetTokens;
+    }
+
+    public static PromptCompiler budget(int budgetTokens) {
+        return new PromptCompiler(budgetTokens);
+    }
+
+    /** Văn bản luôn có trong prompt (template, chỉ dẫn): chỉ tính token, không bao giờ bị cắt. */
+    public PromptCompiler fixed(String text) {
+        fixedParts.add(text == null ? "" : text);
+        return this;
+    }
+
+    public PromptCompiler section(String label, String content, int priority, int maxTokens) {
+        sections.add(new Section(label, sanitize(content), priority, maxTokens, sections.size()));
+        return this;
+    }
+
+    public CompiledPrompt compile() {
+        int fixedTokens = fixedParts.stream().mapToInt(TokenEstimator::count).sum();
+        int remaining = budgetTokens - fixedTokens;
+        for (Section section : sections) {
+            remaining -= TokenEstimator.count(wrap(section.label(), ""));
+        }
+
+        List<Section> byPriority = new ArrayList<>(sections);
+        byPriority.sort(Comparator.comparingInt(Section::priority).reversed()
+                .thenComparingInt(Section::order));
+
+        Map<String, String> blocks = new LinkedHashMap<>();
+        Map<String, Integer> sectionTokens = new LinkedHashMap<>();
+        List<String> truncated = new ArrayList<>();
+        String[] rendered = new String[sections.size()];
+        int usedTokens = 0;
+
+        for (Section section : byPriority) {
+            int allowance = Math.max(0, Math.min(remaining, section.maxTokens()));
+            String content = section.content();
+            int needed = TokenEstimator.count(content);
+            if (needed > allowance) {
+                content = allowance > MARKER_TOKENS
+                        ? TokenEstimator.truncate(content, allowance - MARKER_TOKENS) + TRUNCATED_MARKER
+                        : "";
+                if (!section.content().isEmpty()) {
+                    truncated.add(section.label());
+                }
+            }
+            int spent = TokenEstimator.count(content);
+            remaining -= spent;
+            usedTokens += spent;
+            rendered[section.order()] = wrap(section.label(), content);
+            sectionTokens.put(section.label(), spent);
+        }
+
+        for (Section section : sections) {
+            blocks.put(section.label(), rendered[section.order()]);
+        }
+        int tagTokens = sections.stream().mapToInt(section -> TokenEstimator.count(wrap(section.label(), ""))).sum();
+        return new CompiledPrompt(blocks, fixedTokens + tagTokens + usedTokens, budgetTokens, sectionTokens,
+                List.copyOf(truncated));
+    }
+
+    /** Làm sạch dữ liệu không tin cậy trước khi đưa vào prompt (giữ nguyên quy tắc cũ của gateway). */
+    public static String sanitize(String rawContent) {
+        if (rawContent == null || rawContent.isBlank()) {
+            return "";
+        }
+        String normalized = rawContent
+                .replace("\u0000", "")
+                .replace("```", "'''")
+                .replace("\r\n", "\n")
+                .replace("\r", "\n");
+        return CONTROL_CHARS.matcher(normalized).replaceAll(" ").trim();
+    }
+
+    private static String wrap(String label, String content) {
+        return "<" + label + ">\n" + content + "\n</" + label + ">";
+    }
+
+    private record Section(String label, String content, int priority, int maxTokens, int order) {
+    }
+
+    public record CompiledPrompt(
+            Map<String, String> blocks,
+            int estimatedTokens,
+            int budgetTokens,
+            Map<String, Integer> sectionTokens,
+            List<String> truncatedSections) {
+
+        public String block(String label) {
+            String block = blocks.get(label);
+            if (block == null) {
+                throw new IllegalArgumentException("Prompt không có section " + label);
+            }
+            return block;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Cài đặt một lượt của {@link AiFeatureUtils#normalizeForSearch(String)}. Kết quả giống hệt
+ * pipeline cũ: NFD, bỏ dấu (\p{M}), lower-case ROOT, đ -> d, ký tự ngoài [a-z0-9+.#/% ] thành
+ * dấu cách, gộp khoảng trắng, trim.
+ *
+ * Pipeline cũ xử lý từng ký tự độc lập (mọi ký tự BMP gập thành 0 hoặc 1 ký tự output, dấu
+ * cách được gộp sau), nên ta tra bảng {@code FOLD} theo từng char rồi tự gộp dấu cách khi ghi
+ * ra buffer thread-local: chỉ cấp phát đúng String kết quả.
+ */
+final class SearchTextNormalizer {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}");
+    private static final Pattern NON_SEARCH_CHARS = Pattern.compile("[^a-z0-9+.#/% ]");
+
+    // 0 = chưa tính, DROP = ký tự bị bỏ hẳn (dấu), SLOW = gập ra nhiều ký tự, còn lại là ký tự output
+    private static final char UNKNOWN = 0;
+    private static final char DROP = 1;
+    private static final char SLOW = 2;
+    private static final char[] FOLD = new char[Character.MAX_VALUE + 1];
+
+    private static final int MAX_RETAINED_BUFFER = 64 * 1024;
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[1024]);
+
+    static {
+        // Latin cơ bản/mở rộng, dấu kết hợp và khối tiếng Việt (Latin Extended Additional) tính sẵn,
+        // phần còn lại của BMP tính lazy ở lần gặp đầu tiên
+        for (char c = 0; c < 0x0370; c++) {
+            FOLD[c] = computeFold(c);
+        }
+        for (char c = 0x1E00; c < 0x1F00; c++) {
+            FOLD[c] = computeFold(c);
+        }
+    }
+
+    private SearchTextNormalizer() {
+    }
+
+    static String normalize(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        int length = text.length();
+        char[] out = BUFFER.get();
+        if (out.length < length) {
+            out = new char[Math.max(length, out.length * 2)];
+        }
+
+        int size = 0;
+        boolean pendingSpace = false;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            char folded = FOLD[c];
+            if (folded == UNKNOWN) {
+                folded = computeFold(c);
+                // ghi đè cùng giá trị từ nhiều thread là vô hại
+                FOLD[c] = folded;
+            }
+
+            boolean surrogatePair = Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(text.charAt(i + 1));
+            if (folded == SLOW || surrogatePair) {
+                String expanded = foldSlow(text.substring(i, surrogatePair ? i + 2 : i + 1));
+                i += surrogatePair ? 1 : 0;
+                int required = size + expanded.length() + (length - i) + 1;
+                if (out.length < required) {
+                    out = Arrays.copyOf(out, required * 2);
+                }
+                for (int j = 0; j < expanded.length(); j++) {
+                    char value = expanded.charAt(j);
+                    if (value == ' ') {
+                        pendingSpace = size > 0;
+                    } else {
+                        if (pendingSpace) {
+                            out[size++] = ' ';
+                            pendingSpace = false;
+                        }
+                        out[size++] = value;
+                    }
+                }
+                continue;
+            }
+
+            if (folded == DROP) {
+                continue;
+            }
+            if (folded == ' ') {
+                pendingSpace = size > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                out[size++] = ' ';
+                pendingSpace = false;
+            }
+            out[size++] = folded;
+        }
+
+        if (out.length <= MAX_RETAINED_BUFFER) {
+            BUFFER.set(out);
+        }
+        return size == 0 ? "" : new String(out, 0, size);
+    }
+
+    private static char computeFold(char c) {
+        if (Character.isSurrogate(c)) {
+            // surrogate lẻ loi giữ nguyên qua NFD rồi bị lọc thành dấu cách; cặp hợp lệ đi slow path
+            return ' ';
+        }
+        String folded = foldSlow(String.valueOf(c));
+        if (folded.isEmpty()) {
+            return DROP;
+        }
+        if (folded.isBlank()) {
+            return ' ';
+        }
+        return folded.length() == 1 ? folded.charAt(0) : SLOW;
+    }
+
+    /**
+     * Pipeline gốc cho một đoạn ngắn (một code point), chưa gộp/trim khoảng trắng.
+     */
+    private static String foldSlow(String value) {
+        String folded = Normalizer.normalize(value, Normalizer.Form.NFD);
+        folded = MARKS.matcher(folded).replaceAll("").toLowerCase(Locale.ROOT).replace('đ', 'd');
+        return NON_SEARCH_CHARS.matcher(folded).replaceAll(" ");
+    }
+}
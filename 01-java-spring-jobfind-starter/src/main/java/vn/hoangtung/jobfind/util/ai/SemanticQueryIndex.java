@@ -0,0 +1,150 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Chỉ mục vector trong bộ nhớ cho các câu hỏi gần đây, chia theo scope (user + tập job ứng viên).
+ *
+ * - Vector được chuẩn hóa L2 khi thêm vào nên cosine = tích vô hướng
+ * - Chỉ so sánh trong cùng scope, mỗi scope thường chỉ vài entry nên quét tuyến tính là đủ nhanh
+ * - Entry cũ nhất bị loại khi vượt maxEntries hoặc hết TTL (FIFO toàn cục)
+ */
+public final class SemanticQueryIndex {
+
+    private final int maxEntries;
+    private final Duration ttl;
+    private final Clock clock;
+    // Thứ tự chèn toàn cục để loại entry cũ nhất; entry cũ nhất toàn cục cũng là entry cũ nhất trong scope của nó.
+    private final ArrayDeque<Entry> insertionOrder = new ArrayDeque<>();
+    private final Map<String, ArrayDeque<Entry>> entriesByScope = new HashMap<>();
+
+    public SemanticQueryIndex(int maxEntries, Duration ttl, Clock clock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries phải >= 1");
+        }
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    /** Tìm entry cùng scope có cosine lớn nhất và >= threshold. */
+    public synchronized Optional<Match> findNearest(String scope, float[] normalizedVector, double threshold) {
+        evictExpired();
+        ArrayDeque<Entry> candidates = entriesByScope.get(scope);
+        if (candidates == null || normalizedVector == null) {
+            return Optional.empty();
+        }
+
+        Entry best = null;
+        double bestScore = -1;
+        for (Entry entry : candidates) {
+            if (entry.vector().length != normalizedVector.length) {
+                continue;
+            }
+            double score = dot(entry.vector(), normalizedVector);
+            if (score > bestScore) {
+                bestScore = score;
+                best = entry;
+            }
+        }
+        return best != null && bestScore >= threshold
+                ? Optional.of(new Match(best.query(), best.answer(), bestScore))
+                : Optional.empty();
+    }
+
+    public synchronized void add(String scope, String query, float[] normalizedVector, String answer) {
+        if (normalizedVector == null || answer == null) {
+            return;
+        }
+        evictExpired();
+        while (insertionOrder.size() >= maxEntries) {
+            removeOldest();
+        }
+        Entry entry = new Entry(scope, query, normalizedVector, answer, clock.instant());
+        insertionOrder.addLast(entry);
+        entriesByScope.computeIfAbsent(scope, key -> new ArrayDeque<>()).addLast(entry);
+    }
+
+    public synchronized int removeScope(String scope) {
+        ArrayDeque<Entry> removed = entriesByScope.remove(scope);
+        if (removed == null) {
+            return 0;
+        }
+        insertionOrder.removeIf(entry -> entry.scope().equals(scope));
+        return removed.size();
+    }
+
+    public synchronized void clear() {
+        insertionOrder.clear();
+        entriesByScope.clear();
+    }
+
+    public synchronized int size() {
+        evictExpired();
+        return insertionOrder.size();
+    }
+
+    /** Chuẩn hóa L2 embedding trả về từ EmbeddingModel; vector rỗng hoặc toàn 0 trả về null. */
+    public static float[] normalize(List<Double> embedding) {
+        if (embedding == null || embedding.isEmpty()) {
+            return null;
+        }
+        double norm = 0;
+        for (Double value : embedding) {
+            double v = value == null ? 0 : value;
+            norm += v * v;
+        }
+        if (norm == 0) {
+            return null;
+        }
+        double scale = 1.0 / Math.sqrt(norm);
+        float[] vector = new float[embedding.size()];
+        for (int i = 0; i < vector.length; i++) {
+            Double value = embedding.get(i);
+            vector[i] = (float) ((value == null ? 0 : value) * scale);
+        }
+        return vector;
+    }
+
+    private void evictExpired() {
+        Instant cutoff = clock.instant().minus(ttl);
+        while (!insertionOrder.isEmpty() && insertionOrder.peekFirst().createdAt().isBefore(cutoff)) {
+            removeOldest();
+        }
+    }
+
+    private void removeOldest() {
+        Entry oldest = insertionOrder.pollFirst();
+        if (oldest == null) {
+            return;
+        }
+        ArrayDeque<Entry> scoped = entriesByScope.get(oldest.scope());
+        if (scoped != null) {
+            scoped.removeFirstOccurrence(oldest);
+            if (scoped.isEmpty()) {
+                entriesByScope.remove(oldest.scope());
+            }
+        }
+    }
+
+    private static double dot(float[] left, float[] right) {
+        double sum = 0;
+        for (int i = 0; i < left.length; i++) {
+            sum += left[i] * right[i];
+        }
+        return sum;
+    }
+
+    private record Entry(String scope, String query, float[] vector, String answer, Instant createdAt) {
+    }
+
+    public record Match(String query, String answer, double similarity) {
+    }
+}
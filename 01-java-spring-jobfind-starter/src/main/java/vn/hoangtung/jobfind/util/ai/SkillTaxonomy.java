@@ -1,5 +1,6 @@
 package vn.hoangtung.jobfind.util.ai;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -10,7 +11,6 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.regex.Pattern;
 
 public final class SkillTaxonomy {
 
@@ -81,8 +81,13 @@ public final class SkillTaxonomy {
             seed("UI/UX", "design", "ui ux", "ux/ui", "ux ui"),
             seed("Business Analyst", "product", "ba", "business analysis"));
 
+    // alias -> seed đầu tiên chứa alias đó, tránh duyệt lại cả danh sách curated cho mỗi skill DB
+    private static final Map<String, SkillSeed> CURATED_BY_ALIAS = curatedAliasIndex();
+
     private final Map<String, SkillEntry> entriesByCanonical;
     private final Map<String, SkillEntry> entriesByAlias;
+    // build lazy: nhiều chỗ chỉ dùng canonicalName/categoryOf, không cần automaton
+    private volatile AliasMatcher aliasMatcher;
 
     private SkillTaxonomy(Map<String, SkillEntry> entriesByCanonical) {
         this.entriesByCanonical = Collections.unmodifiableMap(new LinkedHashMap<>(entriesByCanonical));
@@ -96,51 +101,78 @@ public final class SkillTaxonomy {
     }
 
     public static SkillTaxonomy from(Collection<String> knownSkills) {
+        if (knownSkills instanceof KnownSkillCatalog catalog) {
+            // catalog từ SkillTaxonomyRegistry đã có taxonomy + automaton build sẵn
+            return catalog.taxonomy();
+        }
+        return build(knownSkills);
+    }
+
+    static SkillTaxonomy build(Collection<String> knownSkills) {
         Map<String, SkillEntry> entries = new LinkedHashMap<>();
         for (SkillSeed seed : CURATED_SKILLS) {
             addOrMerge(entries, seed.name(), seed.category(), seed.aliases());
         }
-        if (knownSkills != null) {
-            for (String rawSkill : knownSkills) {
-                if (rawSkill == null || rawSkill.isBlank()) {
-                    continue;
-                }
-                SkillSeed curated = findCuratedSeed(rawSkill).orElse(null);
-                if (curated != null) {
-                    addOrMerge(entries, curated.name(), curated.category(), curated.aliases());
-                } else {
-                    addOrMerge(entries, rawSkill.trim(), inferCategory(rawSkill), generatedAliases(rawSkill));
-                }
-            }
+        addKnownSkills(entries, knownSkills);
+        return new SkillTaxonomy(entries);
+    }
+
+    /**
+     * Tương đương {@code from(knownSkills + extraSkills)} nhưng dùng lại taxonomy hiện tại:
+     * nếu mọi skill thêm vào đều đã là alias quen thì trả luôn {@code this} (giữ automaton đã build),
+     * ngược lại chỉ copy entry rồi merge phần mới.
+     */
+    public SkillTaxonomy withExtraSkills(Collection<String> extraSkills) {
+        if (extraSkills == null || extraSkills.stream()
+                .filter(value -> value != null && !value.isBlank())
+                .allMatch(value -> entriesByAlias.containsKey(AiFeatureUtils.normalizeForSearch(value)))) {
+            return this;
         }
+        Map<String, SkillEntry> entries = new LinkedHashMap<>(entriesByCanonical);
+        addKnownSkills(entries, extraSkills);
         return new SkillTaxonomy(entries);
     }
 
+    private static void addKnownSkills(Map<String, SkillEntry> entries, Collection<String> knownSkills) {
+        if (knownSkills == null) {
+            return;
+        }
+        for (String rawSkill : knownSkills) {
+            if (rawSkill == null || rawSkill.isBlank()) {
+                continue;
+            }
+            SkillSeed curated = findCuratedSeed(rawSkill).orElse(null);
+            if (curated != null) {
+                addOrMerge(entries, curated.name(), curated.category(), curated.aliases());
+            } else {
+                addOrMerge(entries, rawSkill.trim(), inferCategory(rawSkill), generatedAliases(rawSkill));
+            }
+        }
+    }
+
     public List<SkillMatch> findMatches(String text) {
         String normalizedText = AiFeatureUtils.normalizeForSearch(text);
         if (normalizedText.isBlank()) {
             return List.of();
         }
 
-        List<AliasCandidate> aliases = entriesByCanonical.values().stream()
-                .flatMap(entry -> entry.normalizedAliases().stream()
-                        .map(alias -> new AliasCandidate(entry, alias)))
-                .sorted(Comparator.comparingInt((AliasCandidate item) -> item.alias().length()).reversed())
-                .toList();
+        AliasMatcher matcher = aliasMatcher();
+        BitSet matchedCandidates = new BitSet(matcher.candidates().size());
+        matcher.automaton().scan(normalizedText, matchedCandidates::set);
 
+        // candidate đã xếp alias dài trước nên duyệt bit tăng dần = longest-match-wins cho từng skill
         Map<String, SkillMatch> matches = new LinkedHashMap<>();
-        for (AliasCandidate candidate : aliases) {
-            if (matches.containsKey(candidate.entry().normalizedName())) {
+        for (int id = matchedCandidates.nextSetBit(0); id >= 0; id = matchedCandidates.nextSetBit(id + 1)) {
+            AliasCandidate candidate = matcher.candidates().get(id);
+            SkillEntry entry = candidate.entry();
+            if (matches.containsKey(entry.normalizedName())) {
                 continue;
             }
-            if (containsAlias(normalizedText, candidate.alias())) {
-                SkillEntry entry = candidate.entry();
-                matches.put(entry.normalizedName(), new SkillMatch(
-                        entry.name(),
-                        entry.category(),
-                        candidate.alias(),
-                        entry.displayAliases()));
-            }
+            matches.put(entry.normalizedName(), new SkillMatch(
+                    entry.name(),
+                    entry.category(),
+                    candidate.alias(),
+                    entry.displayAliases()));
         }
         return List.copyOf(matches.values());
     }
@@ -211,10 +243,7 @@ public final class SkillTaxonomy {
     }
 
     private static Optional<SkillSeed> findCuratedSeed(String rawSkill) {
-        String normalized = AiFeatureUtils.normalizeForSearch(rawSkill);
-        return CURATED_SKILLS.stream()
-                .filter(seed -> seed.allAliases().contains(normalized))
-                .findFirst();
+        return Optional.ofNullable(CURATED_BY_ALIAS.get(AiFeatureUtils.normalizeForSearch(rawSkill)));
     }
 
     private static List<String> generatedAliases(String rawSkill) {
@@ -233,12 +262,20 @@ public final class SkillTaxonomy {
         return aliases.stream().filter(value -> !value.isBlank()).toList();
     }
 
-    private static boolean containsAlias(String normalizedText, String normalizedAlias) {
-        if (normalizedAlias.length() < 2) {
-            return false;
+    private AliasMatcher aliasMatcher() {
+        AliasMatcher matcher = aliasMatcher;
+        if (matcher == null) {
+            List<AliasCandidate> candidates = entriesByCanonical.values().stream()
+                    .flatMap(entry -> entry.normalizedAliases().stream()
+                            .filter(alias -> alias.length() >= 2)
+                            .map(alias -> new AliasCandidate(entry, alias)))
+                    .sorted(Comparator.comparingInt((AliasCandidate item) -> item.alias().length()).reversed())
+                    .toList();
+            matcher = new AliasMatcher(candidates,
+                    AliasAutomaton.build(candidates.stream().map(AliasCandidate::alias).toList()));
+            aliasMatcher = matcher;
         }
-        String boundary = "(?<![a-z0-9+#])" + Pattern.quote(normalizedAlias) + "(?![a-z0-9+#])";
-        return Pattern.compile(boundary).matcher(normalizedText).find();
+        return matcher;
     }
 
     private static String displayName(String rawSkill) {
@@ -297,6 +334,9 @@ public final class SkillTaxonomy {
     private record AliasCandidate(SkillEntry entry, String alias) {
     }
 
+    private record AliasMatcher(List<AliasCandidate> candidates, AliasAutomaton automaton) {
+    }
+
     private record SkillEntry(String name, String category, Set<String> normalizedAliases) {
         private String normalizedName() {
             return AiFeatureUtils.normalizeForSearch(name);
@@ -320,6 +360,16 @@ public final class SkillTaxonomy {
         }
     }
 
+    private static Map<String, SkillSeed> curatedAliasIndex() {
+        Map<String, SkillSeed> index = new LinkedHashMap<>();
+        for (SkillSeed seed : CURATED_SKILLS) {
+            for (String alias : seed.allAliases()) {
+                index.putIfAbsent(alias, seed);
+            }
+        }
+        return Collections.unmodifiableMap(index);
+    }
+
     private static SkillSeed seed(String name, String category, String... aliases) {
         LinkedHashSet<String> normalizedAliases = new LinkedHashSet<>();
         for (String alias : aliases) {
@@ -0,0 +1,158 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Giới hạn số tác vụ AI chạy đồng thời theo từng loại (CV_ANALYZE, CHAT...) bằng Semaphore.
+ *
+ * Dùng cùng executor virtual thread: mỗi task có thread riêng nên thread pool không còn là giới hạn,
+ * task chờ permit chỉ là một virtual thread bị park. maxPending chặn tổng số task đang chờ + chạy
+ * để burst quá lớn vẫn bị từ chối sớm như queue đầy của thread pool cũ.
+ */
+public final class TaskTypeBulkhead {
+
+    private final Map<String, Integer> limits;
+    private final int defaultLimit;
+    private final int maxPending;
+    private final Map<String, Semaphore> semaphores = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    public TaskTypeBulkhead(Map<String, Integer> limits, int defaultLimit, int maxPending) {
+        if (defaultLimit < 1 || maxPending < 1) {
+            throw new IllegalArgumentException("Giới hạn bulkhead không hợp lệ");
+        }
+        this.limits = Map.copyOf(limits);
+        this.defaultLimit = defaultLimit;
+        this.maxPending = maxPending;
+    }
+
+    /** Không giới hạn: dùng khi thread pool cố định đã tự giới hạn concurrency. */
+    public static TaskTypeBulkhead unlimited() {
+        return new TaskTypeBulkhead(Map.of(), Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Đọc cấu hình dạng "CV_ANALYZE:8,CHAT:32"; phần tử sai định dạng bị bỏ qua.
+     */
+    public static Map<String, Integer> parseLimits(String spec) {
+        if (spec == null || spec.isBlank()) {
+            return Map.of();
+        }
+        Map<String, Integer> limits = new LinkedHashMap<>();
+        for (String entry : spec.split(",")) {
+            int separator = entry.indexOf(':');
+            if (separator <= 0) {
+                continue;
+            }
+            String key = entry.substring(0, separator).trim();
+            try {
+                int limit = Integer.parseInt(entry.substring(separator + 1).trim());
+                if (!key.isEmpty() && limit > 0) {
+                    limits.put(key, limit);
+                }
+            } catch (NumberFormatException ignored) {
+                // bỏ qua giá trị sai, dùng defaultLimit cho loại đó
+            }
+        }
+        return Collections.unmodifiableMap(limits);
+    }
+
+    /** Nhận thêm một task vào hàng chờ; false khi đã đủ maxPending task chờ + chạy. */
+    public boolean tryAdmit() {
+        while (true) {
+            int current = pending.get();
+            if (current >= maxPending) {
+                return false;
+            }
+            if (pending.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /** Task đã được tryAdmit kết thúc (thành công, lỗi hoặc bị hủy). */
+    public void leave() {
+        pending.decrementAndGet();
+    }
+
+    /**
+     * Chờ permit của loại task (không giới hạn thời gian, hủy bằng interrupt) rồi chạy action.
+     */
+    public void run(String type, Runnable action) throws InterruptedException {
+        Semaphore semaphore = semaphore(type);
+        if (semaphore == null) {
+            action.run();
+            return;
+        }
+        semaphore.acquire();
+        try {
+            action.run();
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    /**
+     * Như run nhưng chỉ chờ tối đa maxWait; hết hạn thì trả Permit(acquired=false) và không chạy action.
+     */
+    public <T> Permit<T> tryCall(String type, Duration maxWait, Supplier<T> action) throws InterruptedException {
+        Semaphore semaphore = semaphore(type);
+        if (semaphore == null) {
+            return new Permit<>(true, action.get());
+        }
+        if (!semaphore.tryAcquire(Math.max(0, maxWait.toNanos()), TimeUnit.NANOSECONDS)) {
+            return new Permit<>(false, null);
+        }
+        try {
+            return new Permit<>(true, action.get());
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    public int limit(String type) {
+        return limits.getOrDefault(type, defaultLimit);
+    }
+
+    /**
+     * Số task có thể chạy cùng lúc khi gộp các loại đã cho (không vượt maxPending);
+     * Integer.MAX_VALUE nếu bulkhead không giới hạn.
+     */
+    public int capacity(Collection<String> types) {
+        long total = 0;
+        for (String type : types) {
+            total += limit(type);
+        }
+        return (int) Math.min(Math.min(total, maxPending), Integer.MAX_VALUE);
+    }
+
+    public int pending() {
+        return pending.get();
+    }
+
+    public int inFlight(String type) {
+        Semaphore semaphore = semaphore(type);
+        return semaphore == null ? 0 : limit(type) - semaphore.availablePermits();
+    }
+
+    private Semaphore semaphore(String type) {
+        int limit = limit(type);
+        if (limit == Integer.MAX_VALUE) {
+            return null;
+        }
+        return semaphores.computeIfAbsent(type, ignored -> new Semaphore(limit, true));
+    }
+
+    /** acquired=false: hết thời gian chờ permit, action không được chạy. */
+    public record Permit<T>(boolean acquired, T value) {
+    }
+}
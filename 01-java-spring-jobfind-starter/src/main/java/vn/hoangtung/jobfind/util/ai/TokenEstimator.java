@@ -0,0 +1,114 @@
+package vn.hoangtung.jobfind.util.ai;
+
+/**
+ * Ước lượng số token của prompt theo cách tách từ của các BPE tokenizer (Llama 3 / tiktoken):
+ * - chữ cái liền nhau là một từ, khoảng trắng đứng trước được gộp vào từ
+ * - từ ASCII ngắn ~1 token, dài hơn ~4 ký tự/token
+ * - từ có dấu (tiếng Việt) tính theo số byte UTF-8 (~4 byte/token) vì BPE cắt theo byte
+ * - số tách nhóm tối đa 3 chữ số, dấu câu ~2 ký tự/token, mỗi cụm xuống dòng 1 token
+ *
+ * Không thay thế tokenizer thật của model nhưng ổn định hơn nhiều so với đếm ký tự; độ lệch so
+ * với usage thật do Groq trả về được theo dõi qua metric ai.tokens.prompt vs ai.tokens.prompt.estimated.
+ */
+public final class TokenEstimator {
+
+    private TokenEstimator() {
+    }
+
+    public static int count(CharSequence text) {
+        return text == null ? 0 : scan(text, Integer.MAX_VALUE).tokens();
+    }
+
+    /**
+     * Cắt text về tiền tố dài nhất có tối đa maxTokens token, cắt tại ranh giới từ.
+     */
+    public static String truncate(String text, int maxTokens) {
+        if (text == null || maxTokens <= 0) {
+            return "";
+        }
+        ScanResult result = scan(text, maxTokens);
+        return result.end() >= text.length() ? text : text.substring(0, result.end()).stripTrailing();
+    }
+
+    private static ScanResult scan(CharSequence text, int maxTokens) {
+        int length = text.length();
+        int tokens = 0;
+        int index = 0;
+        while (index < length) {
+            int start = index;
+            int codePoint = Character.codePointAt(text, index);
+            int segmentTokens;
+
+            if (Character.isLetter(codePoint) || Character.getType(codePoint) == Character.NON_SPACING_MARK) {
+                int asciiChars = 0;
+                int utf8Bytes = 0;
+                while (index < length) {
+                    int current = Character.codePointAt(text, index);
+                    if (!Character.isLetter(current) && Character.getType(current) != Character.NON_SPACING_MARK) {
+                        break;
+                    }
+                    if (current < 0x80) {
+                        asciiChars++;
+                    }
+                    utf8Bytes += utf8Length(current);
+                    index += Character.charCount(current);
+                }
+                segmentTokens = wordTokens(asciiChars, utf8Bytes);
+            } else if (Character.isDigit(codePoint)) {
+                int digits = 0;
+                while (index < length && Character.isDigit(Character.codePointAt(text, index))) {
+                    digits++;
+                    index += Character.charCount(Character.codePointAt(text, index));
+                }
+                segmentTokens = (digits + 2) / 3;
+            } else if (Character.isWhitespace(codePoint)) {
+                int spaces = 0;
+                boolean newline = false;
+                while (index < length && Character.isWhitespace(text.charAt(index))) {
+                    newline |= text.charAt(index) == '\n';
+                    spaces++;
+                    index++;
+                }
+                // Một dấu cách đơn được gộp vào từ phía sau nên không tốn token riêng.
+                segmentTokens = newline || spaces > 1 ? 1 : 0;
+            } else {
+                int symbols = 0;
+                while (index < length) {
+                    int current = Character.codePointAt(text, index);
+                    if (Character.isLetterOrDigit(current) || Character.isWhitespace(current)) {
+                        break;
+                    }
+                    symbols++;
+                    index += Character.charCount(current);
+                }
+                segmentTokens = (symbols + 1) / 2;
+            }
+
+            if (tokens + segmentTokens > maxTokens) {
+                return new ScanResult(tokens, start);
+            }
+            tokens += segmentTokens;
+        }
+        return new ScanResult(tokens, length);
+    }
+
+    private static int wordTokens(int asciiChars, int utf8Bytes) {
+        if (utf8Bytes == asciiChars) {
+            return asciiChars <= 6 ? 1 : 1 + (asciiChars - 6 + 3) / 4;
+        }
+        return Math.max(1, (utf8Bytes + 3) / 4);
+    }
+
+    private static int utf8Length(int codePoint) {
+        if (codePoint < 0x80) {
+            return 1;
+        }
+        if (codePoint < 0x800) {
+            return 2;
+        }
+        return codePoint < 0x10000 ? 3 : 4;
+    }
+
+    private record ScanResult(int tokens, int end) {
+    }
+}
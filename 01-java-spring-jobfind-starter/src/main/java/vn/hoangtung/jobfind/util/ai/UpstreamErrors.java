@@ -0,0 +1,128 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientResponseException;
+
+/**
+ * Phân loại lỗi trả về từ LLM upstream (Groq/OpenAI) và tính thời gian chờ trước khi thử lại.
+ */
+public final class UpstreamErrors {
+
+    // Groq trả thông điệp dạng "Please try again in 7.66s" hoặc "try again in 1m2.5s".
+    private static final Pattern TRY_AGAIN_PATTERN = Pattern.compile(
+            "try again in (?:(\\d+)m)?(\\d+(?:\\.\\d+)?)(ms|s)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern OVERLOAD_MESSAGE_PATTERN = Pattern.compile(
+            "\\b(429|503)\\b|rate.?limit|too many requests|overloaded|timeout|timed out",
+            Pattern.CASE_INSENSITIVE);
+
+    private UpstreamErrors() {
+    }
+
+    /** Upstream quá tải (429/503/timeout): nên giảm concurrency thay vì coi là lỗi thường. */
+    public static boolean isOverloaded(Throwable error) {
+        for (Throwable current = error; current != null; current = nextCause(current)) {
+            if (current instanceof RestClientResponseException response) {
+                int status = response.getStatusCode().value();
+                if (status == 429 || status == 503) {
+                    return true;
+                }
+            }
+            if (current.getClass().getSimpleName().contains("Timeout")) {
+                return true;
+            }
+            String message = current.getMessage();
+            if (message != null && OVERLOAD_MESSAGE_PATTERN.matcher(message).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Upstream quá tải hoặc không phản hồi (429/5xx/timeout/lỗi kết nối): chỉ những lỗi này mới tính
+     * vào circuit breaker. Lỗi 4xx khác (prompt sai, request không hợp lệ) là lỗi của lời gọi, không phải của upstream.
+     */
+    public static boolean isUnavailable(Throwable error) {
+        if (isOverloaded(error)) {
+            return true;
+        }
+        for (Throwable current = error; current != null; current = nextCause(current)) {
+            if (current instanceof RestClientResponseException response
+                    && response.getStatusCode().is5xxServerError()) {
+                return true;
+            }
+            if (current instanceof ResourceAccessException || current instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Đọc Retry-After từ header HTTP hoặc từ thông điệp lỗi; không có thì trả null. */
+    public static Duration retryAfter(Throwable error) {
+        for (Throwable current = error; current != null; current = nextCause(current)) {
+            if (current instanceof RestClientResponseException response && response.getResponseHeaders() != null) {
+                Duration fromHeader = parseRetryAfterHeader(response.getResponseHeaders().getFirst("Retry-After"));
+                if (fromHeader != null) {
+                    return fromHeader;
+                }
+            }
+            String message = current.getMessage();
+            if (message != null) {
+                Matcher matcher = TRY_AGAIN_PATTERN.matcher(message);
+                if (matcher.find()) {
+                    double minutes = matcher.group(1) == null ? 0 : Double.parseDouble(matcher.group(1));
+                    double amount = Double.parseDouble(matcher.group(2));
+                    double millis = "ms".equalsIgnoreCase(matcher.group(3)) ? amount : amount * 1000;
+                    return Duration.ofMillis((long) Math.ceil(minutes * 60_000 + millis));
+                }
+            }
+        }
+        return null;
+    }
+
+    static Duration parseRetryAfterHeader(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String trimmed = value.trim();
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(trimmed)));
+        } catch (NumberFormatException ignored) {
+            // Retry-After cũng có thể là HTTP-date
+        }
+        try {
+            ZonedDateTime at = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME.withLocale(Locale.US));
+            Duration wait = Duration.between(ZonedDateTime.now(at.getZone()), at);
+            return wait.isNegative() ? Duration.ZERO : wait;
+        } catch (RuntimeException ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * Exponential backoff với full jitter: ngẫu nhiên trong [0, min(cap, base * 2^(attempt-1))].
+     * Nếu upstream yêu cầu Retry-After thì chờ ít nhất bằng giá trị đó.
+     */
+    public static Duration backoff(int attempt, Duration base, Duration cap, Duration retryAfter) {
+        long exponent = Math.min(20, Math.max(0, attempt - 1));
+        long ceilingMillis = Math.min(cap.toMillis(), base.toMillis() * (1L << exponent));
+        long jittered = ThreadLocalRandom.current().nextLong(ceilingMillis + 1);
+        long retryAfterMillis = retryAfter == null ? 0 : retryAfter.toMillis();
+        return Duration.ofMillis(Math.max(jittered, retryAfterMillis));
+    }
+
+    private static Throwable nextCause(Throwable current) {
+        Throwable cause = current.getCause();
+        return cause == current ? null : cause;
+    }
+}
@@ -0,0 +1,7 @@
+package vn.hoangtung.jobfind.util.constant;
+
+public enum AiTaskPriorityEnum {
+    INTERACTIVE,
+    STANDARD,
+    BATCH
+}
@@ -0,0 +1,6 @@
+package vn.hoangtung.jobfind.util.constant;
+
+public enum JobVectorChangeEnum {
+    UPSERT,
+    DELETE
+}
@@ -0,0 +1,29 @@
+package vn.hoangtung.jobfind.util.error;
+
+import java.time.Duration;
+
+/**
+ * AI upstream đang bị ngắt (circuit breaker mở) hoặc quá tải: caller nên dùng fallback ngay
+ * thay vì chờ hay thử lại. Lọt tới controller thì GlobalException trả 503 kèm Retry-After.
+ */
+public class AiUnavailableException extends RuntimeException {
+
+    private static final Duration DEFAULT_RETRY_AFTER = Duration.ofSeconds(5);
+
+    private final Duration retryAfter;
+
+    public AiUnavailableException(String message) {
+        this(message, DEFAULT_RETRY_AFTER);
+    }
+
+    public AiUnavailableException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter == null || retryAfter.isNegative() || retryAfter.isZero()
+                ? DEFAULT_RETRY_AFTER
+                : retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -4,6 +4,7 @@ import java.util.List;
 import java.util.stream.Collectors;
 import java.lang.Exception;
 import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.orm.ObjectOptimisticLockingFailureException;
@@ -15,6 +16,7 @@ import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.servlet.resource.NoResourceFoundException;
 
 import vn.hoangtung.jobfind.domain.response.RestResponse;
@@ -116,6 +118,34 @@ public class GlobalException {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(res);
     }
 
+    // multipart vượt spring.servlet.multipart.max-file-size bị Spring chặn trước controller:
+    // trả cùng 400 và thông điệp như kiểm tra kích thước trong FileController
+    @ExceptionHandler(value = {
+            MaxUploadSizeExceededException.class,
+    })
+    public ResponseEntity<RestResponse<Object>> handleMaxUploadSizeException(Exception ex) {
+        RestResponse<Object> res = new RestResponse<Object>();
+        res.setStatusCode(HttpStatus.BAD_REQUEST.value());
+        res.setMessage("File is too large. Maximum size is 10MB.");
+        res.setError("Exception upload file...");
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(res);
+    }
+
+    @ExceptionHandler(value = {
+            AiUnavailableException.class,
+    })
+    public ResponseEntity<RestResponse<Object>> handleAiUnavailableException(AiUnavailableException ex) {
+        RestResponse<Object> res = new RestResponse<Object>();
+        res.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE.value());
+        res.setError("Service Unavailable");
+        res.setMessage(ex.getMessage());
+        // Retry-After tính bằng giây, làm tròn lên để client không thử lại sớm hơn lúc breaker đóng
+        long retryAfterSeconds = Math.max(1, (ex.getRetryAfter().toMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(res);
+    }
+
     @ExceptionHandler(value = {
             PermissionException.class,
     })
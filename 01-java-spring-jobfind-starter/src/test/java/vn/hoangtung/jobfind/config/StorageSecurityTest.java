@@ -0,0 +1,102 @@
+package vn.hoangtung.jobfind.config;
+
+import static org.mockito.Mockito.mock;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.junit.jupiter.web.SpringJUnitWebConfig;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import vn.hoangtung.jobfind.service.FileDownloadService;
+import vn.hoangtung.jobfind.service.FileService;
+
+@SpringJUnitWebConfig(StorageSecurityTest.TestConfig.class)
+class StorageSecurityTest {
+
+    private static final Path UPLOAD_ROOT = createUploadRoot();
+    private static final String BLOB_NAME = "ab" + "0".repeat(62);
+
+    @Autowired
+    private WebApplicationContext context;
+
+    private MockMvc mockMvc;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("hoangtung.upload-file.base-uri", () -> UPLOAD_ROOT.toUri().toString());
+        registry.add("hoangtung.jwt.base64-secret",
+                () -> "MDEyMzQ1Njc4OWFiY2RlZjAxMjM0NTY3ODlhYmNkZWYwMTIzNDU2Nzg5YWJjZGVmMDEyMzQ1Njc4OWFiY2RlZg==");
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.createDirectories(UPLOAD_ROOT.resolve("company"));
+        Files.writeString(UPLOAD_ROOT.resolve("company").resolve("logo.png"), "logo");
+        // blob còn sót trong upload root (bản cũ lưu blob ở {base}/blobs)
+        Files.createDirectories(UPLOAD_ROOT.resolve("blobs").resolve("ab"));
+        Files.writeString(UPLOAD_ROOT.resolve("blobs").resolve("ab").resolve(BLOB_NAME), "%PDF private cv");
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+    }
+
+    @Test
+    void publicFileIsServedThroughItsLogicalLink() throws Exception {
+        mockMvc.perform(get("/storage/company/logo.png"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("logo"));
+    }
+
+    @Test
+    void blobStoreIsNeverServed() throws Exception {
+        mockMvc.perform(get("/storage/blobs/ab/" + BLOB_NAME))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/storage/blobs/ab/" + BLOB_NAME).with(user("hr@jobfind.vn")))
+                .andExpect(status().isForbidden());
+    }
+
+    private static Path createUploadRoot() {
+        try {
+            return Files.createTempDirectory("jobfind-storage-test");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Configuration
+    @EnableWebMvc
+    @EnableWebSecurity
+    @Import({ SecurityConfig.class, StaticResourcesWebConfiguration.class, CustomAuthenticationEntryPoint.class })
+    static class TestConfig {
+
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+
+        @Bean
+        FileDownloadService fileDownloadService() {
+            return new FileDownloadService(mock(FileService.class), 3600, 100);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package vn.hoangtung.jobfind.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import vn.hoangtung.jobfind.domain.FileBlob;
+
+// H2 ở MODE=MySQL (src/test/resources) để chạy đúng câu insert ... on duplicate key update
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class FileBlobRepositoryTest {
+
+    private static final String SHA256 = "ab".repeat(32);
+
+    @Autowired
+    private FileBlobRepository fileBlobRepository;
+
+    @Test
+    void insertOrIncrementRefCount_shouldKeepOneRowPerSha256() {
+        Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        fileBlobRepository.insertOrIncrementRefCount(SHA256, 42, now);
+        fileBlobRepository.insertOrIncrementRefCount(SHA256, 42, now.plusSeconds(1));
+
+        assertEquals(1, fileBlobRepository.count());
+        FileBlob blob = fileBlobRepository.findBySha256ForUpdate(SHA256).orElseThrow();
+        assertEquals(2, blob.getRefCount());
+        assertEquals(42, blob.getSize());
+        assertTrue(blob.getUpdatedAt().isAfter(blob.getCreatedAt()));
+    }
+}
@@ -0,0 +1,68 @@
+package vn.hoangtung.jobfind.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import jakarta.persistence.EntityManager;
+import vn.hoangtung.jobfind.domain.JobVectorOutbox;
+import vn.hoangtung.jobfind.util.constant.JobVectorChangeEnum;
+
+// H2 ở MODE=MySQL (src/test/resources) để chạy đúng câu native ... for update skip locked
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class JobVectorOutboxRepositoryTest {
+
+    @Autowired
+    private JobVectorOutboxRepository outboxRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void lockClaimable_shouldSkipLeasedAndProcessedEvents() {
+        Instant now = Instant.now();
+        JobVectorOutbox free = save(1, null, null);
+        JobVectorOutbox leaseExpired = save(2, now.minusSeconds(5), null);
+        save(3, now.plusSeconds(300), null);
+        save(4, null, now.minusSeconds(10));
+
+        List<JobVectorOutbox> claimed = outboxRepository.lockClaimable(now, 10);
+
+        assertEquals(List.of(free.getId(), leaseExpired.getId()), claimed.stream().map(JobVectorOutbox::getId).toList());
+    }
+
+    @Test
+    void processedEventsStayVisibleToIndexPollingUntilRetentionPurge() {
+        Instant now = Instant.now();
+        JobVectorOutbox event = save(7, now.plusSeconds(300), null);
+
+        outboxRepository.markProcessed(List.of(event.getId()), now.minusSeconds(700));
+        entityManager.clear();
+
+        JobVectorOutbox processed = outboxRepository.findById(event.getId()).orElseThrow();
+        assertTrue(processed.getProcessedAt() != null && processed.getClaimedUntil() == null);
+        assertEquals(List.of(7L), outboxRepository.findJobIdsChangedSince(now.minusSeconds(60)));
+        assertTrue(outboxRepository.lockClaimable(now, 10).isEmpty());
+
+        assertEquals(1, outboxRepository.deleteProcessedBefore(now.minusSeconds(600)));
+        assertFalse(outboxRepository.existsById(event.getId()));
+    }
+
+    private JobVectorOutbox save(long jobId, Instant claimedUntil, Instant processedAt) {
+        JobVectorOutbox event = new JobVectorOutbox();
+        event.setJobId(jobId);
+        event.setChangeType(JobVectorChangeEnum.UPSERT);
+        event.setClaimedUntil(claimedUntil);
+        event.setProcessedAt(processedAt);
+        return outboxRepository.saveAndFlush(event);
+    }
+}
@@ -0,0 +1,348 @@
+package vn.hoangtung.jobfind.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.StreamingChatModel;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import vn.hoangtung.jobfind.util.ai.CircuitBreaker;
+import vn.hoangtung.jobfind.util.error.AiUnavailableException;
+
+class AiGatewayServiceTest {
+
+    @Test
+    void callText_shouldServeRepeatedPromptFromCache() {
+        ChatModel chatModel = mock(ChatModel.class);
+        when(chatModel.call(any(Prompt.class))).thenReturn(response("xin chao"));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AiGatewayService gateway = newGateway(chatModel, meterRegistry, 1_000_000);
+
+        assertEquals("xin chao", gateway.callText("prompt", "Test", "key-1", Duration.ofMinutes(5)));
+        assertEquals("xin chao", gateway.callText("prompt", "Test", "key-1", Duration.ofMinutes(5)));
+
+        verify(chatModel, times(1)).call(any(Prompt.class));
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "ai.prompt.cache")
+                .tag("result", "hit").functionCounter().count());
+        assertTrue(meterRegistry.get("ai.prompt.cache.bytes").gauge().value() > 0);
+    }
+
+    @Test
+    void callText_shouldKeepWeightedSizeWithinByteBudget() {
+        ChatModel chatModel = mock(ChatModel.class);
+        when(chatModel.call(any(Prompt.class))).thenReturn(response("x".repeat(2_000)));
+        long budget = 20_000;
+        AiGatewayService gateway = newGateway(chatModel, new SimpleMeterRegistry(), budget);
+
+        for (int i = 0; i < 50; i++) {
+            gateway.callText("prompt " + i, "Test", "key-" + i, Duration.ofMinutes(5));
+        }
+
+        assertTrue(gateway.cachedBytes() <= budget);
+        assertTrue(gateway.snapshotCache().size() < 50);
+    }
+
+    @Test
+    void clearCache_shouldDropAllEntries() {
+        ChatModel chatModel = mock(ChatModel.class);
+        when(chatModel.call(any(Prompt.class))).thenReturn(response("ok"));
+        AiGatewayService gateway = newGateway(chatModel, new SimpleMeterRegistry(), 1_000_000);
+
+        gateway.callText("prompt", "Test", "key-1", Duration.ZERO);
+        gateway.clearCache();
+
+        assertEquals(0, gateway.cachedBytes());
+        assertTrue(gateway.snapshotCache().isEmpty());
+    }
+
+    @Test
+    void callText_shouldCoalesceConcurrentIdenticalCallsIntoOneModelCall() throws Exception {
+        ChatModel chatModel = mock(ChatModel.class);
+        CountDownLatch release = new CountDownLatch(1);
+        when(chatModel.call(any(Prompt.class))).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return response("shared");
+        });
+        AiGatewayService gateway = newGateway(chatModel, new SimpleMeterRegistry(), 1_000_000);
+
+        int callers = 16;
+        List<Future<String>> results = runConcurrently(callers,
+                () -> gateway.callText("prompt", "Test", "same-key", Duration.ofMinutes(5)));
+        awaitInFlight(gateway, callers);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals("shared", result.get(5, TimeUnit.SECONDS));
+        }
+        verify(chatModel, times(1)).call(any(Prompt.class));
+        assertEquals(0, gateway.inFlightCount());
+    }
+
+    @Test
+    void callText_shouldFanOutLeaderFailureToWaitingCallers() throws Exception {
+        ChatModel chatModel = mock(ChatModel.class);
+        CountDownLatch release = new CountDownLatch(1);
+        when(chatModel.call(any(Prompt.class))).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            throw new IllegalStateException("groq down");
+        });
+        AiGatewayService gateway = newGateway(chatModel, new SimpleMeterRegistry(), 1_000_000);
+
+        int callers = 8;
+        List<Future<String>> results = runConcurrently(callers,
+                () -> gateway.callText("prompt", "Test", "failing-key", Duration.ofMinutes(5)));
+        awaitInFlight(gateway, callers);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            ExecutionException error = assertThrows(ExecutionException.class,
+                    () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(RuntimeException.class, error.getCause());
+            assertTrue(error.getCause().getMessage().contains("groq down"));
+        }
+        // Leader thử lại MAX_RETRIES lần, các caller còn lại không tự gọi model.
+        verify(chatModel, times(2)).call(any(Prompt.class));
+        assertTrue(gateway.snapshotCache().isEmpty());
+    }
+
+    @Test
+    void cancelInFlight_shouldReleaseWaitingCallers() throws Exception {
+        ChatModel chatModel = mock(ChatModel.class);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(chatModel.call(any(Prompt.class))).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return response("late");
+        });
+        AiGatewayService gateway = newGateway(chatModel, new SimpleMeterRegistry(), 1_000_000);
+
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> leader = pool.submit(
+                    () -> gateway.callText("prompt", "Test", "cancel-key", Duration.ofMinutes(5)));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<String> follower = pool.submit(
+                    () -> gateway.callText("prompt", "Test", "cancel-key", Duration.ofMinutes(5)));
+            awaitInFlight(gateway, 2);
+
+            assertTrue(gateway.cancelInFlight("cancel-key"));
+            ExecutionException error = assertThrows(ExecutionException.class,
+                    () -> follower.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(CancellationException.class, error.getCause());
+
+            release.countDown();
+            assertEquals("late", leader.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static List<Future<String>> runConcurrently(int callers, Callable<String> call) {
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        CountDownLatch ready = new CountDownLatch(callers);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            results.add(pool.submit(() -> {
+                ready.countDown();
+                ready.await(5, TimeUnit.SECONDS);
+                return call.call();
+            }));
+        }
+        pool.shutdown();
+        return results;
+    }
+
+    private static void awaitInFlight(AiGatewayService gateway, int callers) throws InterruptedException {
+        // Chờ tất cả thread đã vào callText (leader giữ slot, follower đang đợi future) trước khi nhả model.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (gateway.inFlightCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        Thread.sleep(Math.min(200, 10L * callers));
+    }
+
+    @Test
+    void callText_shouldWarmColdNodeFromDiskCache(@TempDir Path dataDir) {
+        AiResponseDiskCache firstDisk = new AiResponseDiskCache(true, dataDir.resolve("ai-cache").toString(),
+                dataDir.resolve("uploads").toUri().toString());
+        firstDisk.open();
+        ChatModel firstModel = mock(ChatModel.class);
+        when(firstModel.call(any(Prompt.class))).thenReturn(response("phan tich CV"));
+        new AiGatewayService(firstModel, new ObjectMapper(), new SimpleMeterRegistry(), firstDisk, 1_000_000)
+                .callText("prompt", "Test", "cv-hash", Duration.ofHours(1));
+        firstDisk.close();
+
+        // Node mới sau redeploy: RAM trống, chỉ còn file log trên volume dữ liệu.
+        AiResponseDiskCache secondDisk = new AiResponseDiskCache(true, dataDir.resolve("ai-cache").toString(),
+                dataDir.resolve("uploads").toUri().toString());
+        secondDisk.open();
+        ChatModel secondModel = mock(ChatModel.class);
+        AiGatewayService restarted = new AiGatewayService(secondModel, new ObjectMapper(), new SimpleMeterRegistry(),
+                secondDisk, 1_000_000);
+
+        assertEquals("phan tich CV", restarted.callText("prompt", "Test", "cv-hash", Duration.ofHours(1)));
+        verify(secondModel, never()).call(any(Prompt.class));
+        secondDisk.close();
+    }
+
+    @Test
+    void withTokenListener_shouldForwardTokensAndReturnFullResponse() {
+        ChatModel chatModel = mock(ChatModel.class, withSettings().extraInterfaces(StreamingChatModel.class));
+        when(((StreamingChatModel) chatModel).stream(any(Prompt.class)))
+                .thenReturn(Flux.just(response("{\"score\""), response(": 80"), response("}")));
+        AiGatewayService gateway = newGateway(chatModel, new SimpleMeterRegistry(), 1_000_000);
+        List<String> tokens = new CopyOnWriteArrayList<>();
+
+        String result = gateway.withTokenListener((context, delta) -> tokens.add(delta),
+                () -> gateway.callText("prompt", "CV-Doctor", "stream-key", Duration.ofMinutes(5)));
+
+        assertEquals("{\"score\": 80}", result);
+        assertEquals(List.of("{\"score\"", ": 80", "}"), tokens);
+        assertEquals(80, gateway.readJsonTreeFromResponse(result).path("score").asInt());
+        verify(chatModel, never()).call(any(Prompt.class));
+
+        // Lần sau lấy từ cache và được đẩy nguyên khối cho listener.
+        List<String> replayed = new ArrayList<>();
+        gateway.withTokenListener((context, delta) -> replayed.add(delta),
+                () -> gateway.callText("prompt", "CV-Doctor", "stream-key", Duration.ofMinutes(5)));
+        assertEquals(List.of(result), replayed);
+    }
+
+    @Test
+    void withTokenListener_shouldSignalResetBeforeRetry() {
+        ChatModel chatModel = mock(ChatModel.class, withSettings().extraInterfaces(StreamingChatModel.class));
+        when(((StreamingChatModel) chatModel).stream(any(Prompt.class)))
+                .thenReturn(Flux.concat(Flux.just(response("nửa")), Flux.error(new IllegalStateException("reset"))))
+                .thenReturn(Flux.just(response("đầy đủ")));
+        AiGatewayService gateway = newGateway(chatModel, new SimpleMeterRegistry(), 1_000_000);
+        List<String> events = new ArrayList<>();
+
+        AiGatewayService.TokenListener listener = new AiGatewayService.TokenListener() {
+            @Override
+            public void onToken(String context, String delta) {
+                events.add(delta);
+            }
+
+            @Override
+            public void onReset(String context) {
+                events.add("<reset>");
+            }
+        };
+        String result = gateway.withTokenListener(listener,
+                () -> gateway.callText("prompt", "ChatBot", null, Duration.ZERO));
+
+        assertEquals("đầy đủ", result);
+        assertEquals(List.of("nửa", "<reset>", "đầy đủ"), events);
+    }
+
+    @Test
+    void callText_shouldRecordTokenUsagePerCallType() {
+        ChatModel chatModel = mock(ChatModel.class);
+        when(chatModel.call(any(Prompt.class))).thenReturn(response("ok"));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AiGatewayService gateway = newGateway(chatModel, meterRegistry, 1_000_000);
+
+        gateway.callText("Chấm CV này giúp tôi", "CV-Doctor", null, Duration.ZERO);
+        gateway.callText("Câu hỏi khác", "CV-Doctor", null, Duration.ZERO);
+
+        DistributionSummary prompt = meterRegistry.get("ai.tokens.prompt").tag("call_type", "CV-Doctor")
+                .summary();
+        assertEquals(2, prompt.count());
+        assertTrue(prompt.totalAmount() > 0);
+        assertEquals(2, meterRegistry.get("ai.tokens.completion").tag("call_type", "CV-Doctor").summary().count());
+    }
+
+    @Test
+    void callText_shouldFailFastWhileCircuitIsOpen() {
+        ChatModel chatModel = mock(ChatModel.class);
+        when(chatModel.call(any(Prompt.class)))
+                .thenThrow(new RuntimeException("[429] Rate limit reached. Please try again in 45s"));
+        AiGatewayService gateway = newGateway(chatModel, new SimpleMeterRegistry(), 1_000_000);
+
+        // Retry-After 45s dài hơn ngưỡng chờ đồng bộ -> không thử lại; một 429 chưa đủ mở breaker.
+        assertThrows(RuntimeException.class, () -> gateway.callText("prompt 0", "ChatBot", null, Duration.ZERO));
+        assertEquals(CircuitBreaker.State.CLOSED, gateway.circuitState());
+        for (int i = 1; i < 5; i++) {
+            String prompt = "prompt " + i;
+            assertThrows(RuntimeException.class, () -> gateway.callText(prompt, "ChatBot", null, Duration.ZERO));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, gateway.circuitState());
+
+        AiUnavailableException unavailable = assertThrows(AiUnavailableException.class,
+                () -> gateway.callText("prompt khác", "ChatBot", null, Duration.ZERO));
+        assertTrue(unavailable.getRetryAfter().compareTo(Duration.ofSeconds(30)) > 0);
+        verify(chatModel, times(5)).call(any(Prompt.class));
+    }
+
+    @Test
+    void callText_shouldRetryAfterShortRetryAfterInsteadOfFailingFast() {
+        ChatModel chatModel = mock(ChatModel.class);
+        when(chatModel.call(any(Prompt.class)))
+                .thenThrow(new RuntimeException("[429] Rate limit reached. Please try again in 0.2s"))
+                .thenReturn(response("ok"));
+        AiGatewayService gateway = newGateway(chatModel, new SimpleMeterRegistry(), 1_000_000);
+
+        assertEquals("ok", gateway.callText("prompt", "ChatBot", null, Duration.ZERO));
+        assertEquals(CircuitBreaker.State.CLOSED, gateway.circuitState());
+        verify(chatModel, times(2)).call(any(Prompt.class));
+    }
+
+    @Test
+    void callText_shouldKeepCircuitClosedOnNonUpstreamErrors() {
+        ChatModel chatModel = mock(ChatModel.class);
+        when(chatModel.call(any(Prompt.class))).thenThrow(new RuntimeException("invalid prompt"));
+        AiGatewayService gateway = newGateway(chatModel, new SimpleMeterRegistry(), 1_000_000);
+
+        // 3 lần x 2 lượt thử = 6 lỗi, vượt ngưỡng breaker nhưng không phải lỗi của upstream.
+        for (int i = 0; i < 3; i++) {
+            String prompt = "prompt " + i;
+            assertThrows(RuntimeException.class, () -> gateway.callText(prompt, "ChatBot", null, Duration.ZERO));
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, gateway.circuitState());
+        verify(chatModel, times(6)).call(any(Prompt.class));
+    }
+
+    private static AiGatewayService newGateway(ChatModel chatModel, MeterRegistry meterRegistry, long maxBytes) {
+        AiResponseDiskCache disabledDiskCache = new AiResponseDiskCache(false, "data/ai-cache", "file:/tmp/");
+        return new AiGatewayService(chatModel, new ObjectMapper(), meterRegistry, disabledDiskCache, maxBytes);
+    }
+
+    private static ChatResponse response(String text) {
+        return new ChatResponse(List.of(new Generation(text)));
+    }
+}
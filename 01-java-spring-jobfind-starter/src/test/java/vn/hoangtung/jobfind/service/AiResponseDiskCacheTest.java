@@ -0,0 +1,121 @@
+package vn.hoangtung.jobfind.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AiResponseDiskCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void get_shouldSurviveReopenAndKeepLatestValue() {
+        AiResponseDiskCache cache = openCache();
+        cache.put("key-1", "cũ", Instant.now(), Duration.ofHours(1));
+        cache.put("key-1", "mới", Instant.now(), Duration.ofHours(1));
+        cache.put("key-2", "xoá", Instant.now(), Duration.ofHours(1));
+        cache.remove("key-2");
+        cache.close();
+
+        AiResponseDiskCache reopened = openCache();
+        assertEquals("mới", reopened.get("key-1").orElseThrow().response());
+        assertTrue(reopened.get("key-2").isEmpty());
+        assertEquals(1, reopened.size());
+        reopened.close();
+    }
+
+    @Test
+    void compact_shouldDropExpiredAndOverwrittenRecords() {
+        AiResponseDiskCache cache = openCache();
+        Instant longAgo = Instant.now().minus(Duration.ofHours(2));
+        cache.put("expired", "x".repeat(1_000), longAgo, Duration.ofHours(1));
+        for (int i = 0; i < 20; i++) {
+            cache.put("live", "phiên bản " + i, Instant.now(), Duration.ofHours(1));
+        }
+        cache.put("forever", "không hết hạn", Instant.now(), Duration.ZERO);
+        long before = cache.fileBytes();
+
+        cache.compact();
+
+        assertTrue(cache.fileBytes() < before);
+        assertTrue(cache.get("expired").isEmpty());
+        assertEquals("phiên bản 19", cache.get("live").orElseThrow().response());
+        assertEquals("không hết hạn", cache.get("forever").orElseThrow().response());
+        cache.close();
+    }
+
+    @Test
+    void open_shouldTruncateTornTailRecord() throws Exception {
+        AiResponseDiskCache cache = openCache();
+        cache.put("key-1", "ok", Instant.now(), Duration.ofHours(1));
+        cache.close();
+
+        Path log = tempDir.resolve("ai-cache").resolve("prompt-cache.log");
+        long validSize = Files.size(log);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 0, 0, 0, 50, 1, 2, 3 }));
+        }
+
+        AiResponseDiskCache reopened = openCache();
+        assertEquals("ok", reopened.get("key-1").orElseThrow().response());
+        assertEquals(validSize, reopened.fileBytes());
+        reopened.close();
+    }
+
+    @Test
+    void clear_shouldRemoveEverything() {
+        AiResponseDiskCache cache = openCache();
+        cache.put("key-1", "ok", Instant.now(), Duration.ofHours(1));
+
+        cache.clear();
+
+        assertTrue(cache.get("key-1").isEmpty());
+        assertEquals(0, cache.fileBytes());
+        cache.close();
+    }
+
+    @Test
+    void open_shouldRefuseFolderInsidePublicUploadRoot() {
+        Path uploadRoot = tempDir.resolve("uploads");
+        AiResponseDiskCache cache = new AiResponseDiskCache(true, uploadRoot.resolve("ai-cache").toString(),
+                uploadRoot.toUri().toString());
+        cache.open();
+
+        assertFalse(cache.isAvailable());
+        assertFalse(Files.exists(uploadRoot.resolve("ai-cache")));
+    }
+
+    @Test
+    void open_shouldMoveLegacyLogOutOfUploadRoot() throws Exception {
+        Path legacyFolder = Files.createDirectories(tempDir.resolve("uploads").resolve("ai-cache"));
+        AiResponseDiskCache legacy = new AiResponseDiskCache(true, legacyFolder.toString(), "file:/nonexistent/");
+        legacy.open();
+        legacy.put("key-1", "ok", Instant.now(), Duration.ofHours(1));
+        legacy.close();
+
+        AiResponseDiskCache cache = openCache();
+
+        assertEquals("ok", cache.get("key-1").orElseThrow().response());
+        assertFalse(Files.exists(legacyFolder));
+        cache.close();
+    }
+
+    private AiResponseDiskCache openCache() {
+        AiResponseDiskCache cache = new AiResponseDiskCache(true, tempDir.resolve("ai-cache").toString(),
+                tempDir.resolve("uploads").toUri().toString());
+        cache.open();
+        return cache;
+    }
+}
@@ -0,0 +1,100 @@
+package vn.hoangtung.jobfind.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.hoangtung.jobfind.domain.AiTask;
+import vn.hoangtung.jobfind.repository.AiTaskRepository;
+import vn.hoangtung.jobfind.util.constant.AiTaskStatusEnum;
+import vn.hoangtung.jobfind.util.constant.AiTaskTypeEnum;
+
+/**
+ * Chạy claimBatch trên DB thật (H2 MODE=MySQL, src/test/resources) để kiểm tra câu SQL native
+ * row_number() và FOR UPDATE SKIP LOCKED mà AiTaskQueueServiceTest (repository mock) không chạm tới.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class AiTaskQueueServiceJpaTest {
+
+    @Autowired
+    private AiTaskRepository aiTaskRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private AiTaskQueueService queue;
+
+    @BeforeEach
+    void setUp() {
+        queue = new AiTaskQueueService(aiTaskRepository, jdbcTemplate, new SimpleMeterRegistry(), "node-a", 60, 100,
+                "CV_ANALYZE:1", 16, 30, 64);
+    }
+
+    @Test
+    void claimBatch_shouldClaimRunnableTasksWithinTypeLimits() {
+        AiTask firstCv = save(AiTaskTypeEnum.CV_ANALYZE, AiTaskStatusEnum.PENDING);
+        AiTask secondCv = save(AiTaskTypeEnum.CV_ANALYZE, AiTaskStatusEnum.PENDING);
+        AiTask chat = save(AiTaskTypeEnum.CHAT, AiTaskStatusEnum.PENDING);
+        AiTask notDue = save(AiTaskTypeEnum.CHAT, AiTaskStatusEnum.RETRYING);
+        notDue.setNextRetryAt(Instant.now().plusSeconds(300));
+        aiTaskRepository.saveAndFlush(notDue);
+
+        AiTaskQueueService.ClaimResult result = queue.claimBatch(5, Map.of());
+
+        // CHAT ưu tiên hơn CV_ANALYZE; CV_ANALYZE giới hạn 1 task; RETRYING chưa đến hạn giữ nguyên
+        assertEquals(List.of(chat.getId(), firstCv.getId()), result.claimed().stream().map(AiTask::getId).toList());
+        assertTrue(result.failed().isEmpty());
+        AiTask claimed = aiTaskRepository.findById(chat.getId()).orElseThrow();
+        assertEquals(AiTaskStatusEnum.PROCESSING, claimed.getStatus());
+        assertEquals("node-a", claimed.getLockedBy());
+        assertEquals(AiTaskStatusEnum.PENDING, aiTaskRepository.findById(secondCv.getId()).orElseThrow().getStatus());
+        assertEquals(AiTaskStatusEnum.RETRYING, aiTaskRepository.findById(notDue.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void claimBatch_shouldTakeOverExpiredLeasesAndFailExhaustedTasks() {
+        AiTask stale = save(AiTaskTypeEnum.CHAT, AiTaskStatusEnum.PROCESSING);
+        stale.setLockedBy("node-b");
+        stale.setLastHeartbeatAt(Instant.now().minusSeconds(600));
+        aiTaskRepository.saveAndFlush(stale);
+        AiTask exhausted = save(AiTaskTypeEnum.CHAT, AiTaskStatusEnum.PROCESSING);
+        exhausted.setLockedBy("node-b");
+        exhausted.setLastHeartbeatAt(Instant.now().minusSeconds(600));
+        exhausted.setRetryCount(exhausted.getMaxRetries());
+        aiTaskRepository.saveAndFlush(exhausted);
+        AiTask alive = save(AiTaskTypeEnum.CHAT, AiTaskStatusEnum.PROCESSING);
+        alive.setLockedBy("node-b");
+        alive.setLastHeartbeatAt(Instant.now());
+        aiTaskRepository.saveAndFlush(alive);
+
+        AiTaskQueueService.ClaimResult result = queue.claimBatch(5, Map.of());
+
+        assertEquals(List.of(stale.getId()), result.claimed().stream().map(AiTask::getId).toList());
+        assertEquals(List.of(exhausted.getId()), result.failed().stream().map(AiTask::getId).toList());
+        AiTask takenOver = aiTaskRepository.findById(stale.getId()).orElseThrow();
+        assertEquals("node-a", takenOver.getLockedBy());
+        assertEquals(1, takenOver.getRetryCount());
+        assertEquals(AiTaskStatusEnum.FAILED, aiTaskRepository.findById(exhausted.getId()).orElseThrow().getStatus());
+        assertEquals("node-b", aiTaskRepository.findById(alive.getId()).orElseThrow().getLockedBy());
+    }
+
+    private AiTask save(AiTaskTypeEnum type, AiTaskStatusEnum status) {
+        AiTask task = new AiTask();
+        task.setTaskType(type);
+        task.setStatus(status);
+        task.setInputData("{}");
+        return aiTaskRepository.saveAndFlush(task);
+    }
+}
@@ -0,0 +1,223 @@
+package vn.hoangtung.jobfind.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.hoangtung.jobfind.domain.AiTask;
+import vn.hoangtung.jobfind.repository.AiTaskRepository;
+import vn.hoangtung.jobfind.util.ai.ProgressCoalescer.ProgressUpdate;
+import vn.hoangtung.jobfind.util.constant.AiTaskStatusEnum;
+import vn.hoangtung.jobfind.util.constant.AiTaskTypeEnum;
+
+/**
+ * Kiểm thử logic claim/lease của hàng đợi AI task; câu SQL SKIP LOCKED được giả lập bằng Mockito.
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class AiTaskQueueServiceTest {
+
+    @Mock
+    private AiTaskRepository aiTaskRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private AiTaskQueueService queue;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        queue = new AiTaskQueueService(aiTaskRepository, jdbcTemplate, meterRegistry, "node-a", 60, 3, "CV_ANALYZE:1", 16, 30, 64);
+        when(aiTaskRepository.save(any(AiTask.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void claimBatch_shouldClaimPendingAndRetryAndFailExhaustedLease() {
+        AiTask pending = task(1, AiTaskStatusEnum.PENDING, 0);
+        AiTask retrying = task(2, AiTaskStatusEnum.RETRYING, 0);
+        AiTask stolen = task(3, AiTaskStatusEnum.PROCESSING, 2);
+        stolen.setLockedBy("node-b");
+        stolen.setClaimToken("old-token");
+        givenClaimable(pending, retrying, stolen);
+
+        AiTaskQueueService.ClaimResult result = queue.claimBatch(5, Map.of());
+
+        assertEquals(List.of(pending, retrying), result.claimed());
+        assertEquals(List.of(stolen), result.failed());
+        assertEquals(AiTaskStatusEnum.PROCESSING, pending.getStatus());
+        assertEquals("node-a", pending.getLockedBy());
+        assertNotNull(pending.getClaimToken());
+        assertNotEquals(pending.getClaimToken(), retrying.getClaimToken());
+        assertEquals(0, pending.getRetryCount());
+        assertEquals(1, retrying.getRetryCount());
+        assertNull(retrying.getNextRetryAt());
+        assertEquals(AiTaskStatusEnum.FAILED, stolen.getStatus());
+        assertNull(stolen.getClaimToken());
+        assertNotNull(stolen.getCompletedAt());
+    }
+
+    @Test
+    void claimBatch_shouldRetryExpiredLeaseWhenRetriesRemain() {
+        AiTask stolen = task(4, AiTaskStatusEnum.PROCESSING, 0);
+        stolen.setClaimToken("old-token");
+        givenClaimable(stolen);
+
+        AiTaskQueueService.ClaimResult result = queue.claimBatch(1, Map.of());
+
+        assertEquals(List.of(stolen), result.claimed());
+        assertEquals(1, stolen.getRetryCount());
+        assertNotEquals("old-token", stolen.getClaimToken());
+        // worker cũ không còn ghi được vào task
+        when(aiTaskRepository.findByIdForUpdate(4)).thenReturn(Optional.of(stolen));
+        assertTrue(queue.updateIfOwned(4, "old-token", owned -> owned.setProgress(50)).isEmpty());
+        assertEquals(10, stolen.getProgress());
+    }
+
+    @Test
+    void claimBatch_shouldPreferInteractiveTasksAndRespectTypeLimit() {
+        AiTask cvFirst = task(10, AiTaskStatusEnum.PENDING, 0);
+        cvFirst.setTaskType(AiTaskTypeEnum.CV_ANALYZE);
+        AiTask cvSecond = task(11, AiTaskStatusEnum.PENDING, 0);
+        cvSecond.setTaskType(AiTaskTypeEnum.CV_ANALYZE);
+        AiTask chat = task(12, AiTaskStatusEnum.PENDING, 0);
+        givenClaimable(cvFirst, cvSecond, chat);
+
+        AiTaskQueueService.ClaimResult result = queue.claimBatch(3, Map.of());
+
+        // CHAT chạy trước dù vào hàng đợi sau; CV_ANALYZE giới hạn 1 nên task CV thứ hai vẫn PENDING
+        assertEquals(List.of(chat, cvFirst), result.claimed());
+        assertEquals(AiTaskStatusEnum.PENDING, cvSecond.getStatus());
+        assertTrue(queue.claimBatch(3, Map.of("CV_ANALYZE", 1)).claimed().stream()
+                .noneMatch(task -> task.getTaskType() == AiTaskTypeEnum.CV_ANALYZE));
+        assertFalse(queue.hasCapacity(AiTaskTypeEnum.CV_ANALYZE, Map.of("CV_ANALYZE", 1)));
+        assertEquals(2, meterRegistry.get("ai.task.queue.wait").timers().size());
+
+        queue.recordServiceTime(AiTaskTypeEnum.CHAT, Duration.ofMillis(1200));
+        assertEquals(1, meterRegistry.get("ai.task.service.time").tag("priority", "INTERACTIVE").timer().count());
+    }
+
+    @Test
+    void claimDueRetry_shouldClaimOnlyDueRetryWithCapacity() {
+        AiTask notDue = task(20, AiTaskStatusEnum.RETRYING, 0);
+        notDue.setNextRetryAt(Instant.now().plusSeconds(30));
+        AiTask due = task(21, AiTaskStatusEnum.RETRYING, 1);
+        AiTask cv = task(22, AiTaskStatusEnum.RETRYING, 0);
+        cv.setTaskType(AiTaskTypeEnum.CV_ANALYZE);
+        when(aiTaskRepository.findByIdForUpdate(20)).thenReturn(Optional.of(notDue));
+        when(aiTaskRepository.findByIdForUpdate(21)).thenReturn(Optional.of(due));
+        when(aiTaskRepository.findByIdForUpdate(22)).thenReturn(Optional.of(cv));
+
+        assertTrue(queue.claimDueRetry(20, Map.of()).isEmpty());
+        assertTrue(queue.claimDueRetry(22, Map.of("CV_ANALYZE", 1)).isEmpty());
+        AiTask claimed = queue.claimDueRetry(21, Map.of()).orElseThrow();
+        assertEquals(AiTaskStatusEnum.PROCESSING, claimed.getStatus());
+        assertEquals(2, claimed.getRetryCount());
+        assertTrue(queue.claimDueRetry(21, Map.of()).isEmpty());
+    }
+
+    @Test
+    void updateIfOwned_shouldFinishClaimWhenTokenMatches() {
+        AiTask task = task(5, AiTaskStatusEnum.PENDING, 0);
+        when(aiTaskRepository.findByIdForUpdate(5)).thenReturn(Optional.of(task));
+
+        String token = queue.claimPending(5).orElseThrow().getClaimToken();
+        assertTrue(queue.claimPending(5).isEmpty());
+
+        Optional<AiTask> completed = queue.updateIfOwned(5, token, owned -> {
+            owned.setStatus(AiTaskStatusEnum.COMPLETED);
+            owned.setProgress(100);
+        });
+        assertTrue(completed.isPresent());
+        assertNull(task.getClaimToken());
+        assertTrue(queue.updateIfOwned(5, token, owned -> owned.setProgress(1)).isEmpty());
+        assertTrue(queue.updateIfActive(5, active -> true,
+                active -> active.setStatus(AiTaskStatusEnum.CANCELLED)).isEmpty());
+        assertEquals(AiTaskStatusEnum.COMPLETED, task.getStatus());
+    }
+
+    @Test
+    void releaseAndBacklog_shouldReturnTaskToQueue() {
+        AiTask task = task(6, AiTaskStatusEnum.PENDING, 0);
+        when(aiTaskRepository.findByIdForUpdate(6)).thenReturn(Optional.of(task));
+        String token = queue.claimPending(6).orElseThrow().getClaimToken();
+
+        assertTrue(queue.release(6, token).isPresent());
+        assertEquals(AiTaskStatusEnum.PENDING, task.getStatus());
+        assertNull(task.getStartedAt());
+
+        when(aiTaskRepository.countByStatusIn(any())).thenReturn(2L);
+        assertFalse(queue.isBacklogFull());
+        when(aiTaskRepository.countByStatusIn(any())).thenReturn(3L);
+        assertTrue(queue.isBacklogFull());
+
+        when(aiTaskRepository.renewLease(anyLong(), any(), any())).thenReturn(0);
+        assertFalse(queue.renewLease(6, token));
+    }
+
+    @Test
+    void flushProgress_shouldWriteOneBatchAndReturnRejectedUpdates() {
+        List<ProgressUpdate> updates = List.of(
+                new ProgressUpdate(7, "token-7", 30, Instant.now()),
+                new ProgressUpdate(8, "stale-token", 90, Instant.now()));
+        when(jdbcTemplate.batchUpdate(anyString(), any(BatchPreparedStatementSetter.class)))
+                .thenReturn(new int[] { 1, 0 });
+
+        // task 8 đã mất claim nên câu UPDATE không khớp dòng nào
+        assertEquals(List.of(updates.get(1)), queue.flushProgress(updates));
+        assertTrue(queue.flushProgress(List.of()).isEmpty());
+        assertEquals(1, meterRegistry.get("ai.task.progress.batch.size").summary().count());
+    }
+
+    private void givenClaimable(AiTask... tasks) {
+        List<AiTask> rows = List.of(tasks);
+        when(aiTaskRepository.findClaimableIds(any(Instant.class), any(Instant.class), anyInt()))
+                .thenReturn(rows.stream().map(AiTask::getId).toList());
+        when(aiTaskRepository.lockClaimableByIds(any(), any(Instant.class), any(Instant.class)))
+                .thenAnswer(invocation -> rows.stream()
+                        // giống điều kiện SQL: task node-a vừa claim (lease còn mới) hoặc đã kết thúc thì không khóa lại
+                        .filter(task -> !AiTaskQueueService.isTerminal(task.getStatus()))
+                        .filter(task -> task.getStatus() != AiTaskStatusEnum.PROCESSING
+                                || !"node-a".equals(task.getLockedBy()))
+                        .toList());
+    }
+
+    private static AiTask task(long id, AiTaskStatusEnum status, int retryCount) {
+        AiTask task = new AiTask();
+        task.setId(id);
+        task.setTaskType(AiTaskTypeEnum.CHAT);
+        task.setStatus(status);
+        task.setRetryCount(retryCount);
+        task.setMaxRetries(2);
+        task.setProgress(status == AiTaskStatusEnum.PROCESSING ? 40 : 0);
+        task.setNextRetryAt(status == AiTaskStatusEnum.RETRYING ? Instant.now().minusSeconds(1) : null);
+        task.setCreatedAt(Instant.now().minusSeconds(2));
+        return task;
+    }
+}
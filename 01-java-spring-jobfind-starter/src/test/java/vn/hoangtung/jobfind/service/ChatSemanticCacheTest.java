@@ -0,0 +1,120 @@
+package vn.hoangtung.jobfind.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import vn.hoangtung.jobfind.util.ai.SemanticQueryIndex;
+
+class ChatSemanticCacheTest {
+
+    @Test
+    void lookup_shouldReuseAnswerForParaphrasedQuestionInSameScope() {
+        EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+        when(embeddingModel.embed("java job ha noi")).thenReturn(List.of(1.0, 0.0, 0.1));
+        when(embeddingModel.embed("viec java o ha noi")).thenReturn(List.of(0.98, 0.02, 0.12));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ChatSemanticCache cache = newCache(embeddingModel, meterRegistry);
+
+        ChatSemanticCache.Probe first = cache.lookup("scope-1", "java job ha noi");
+        assertFalse(first.hit());
+        cache.store(first, "Có 3 việc Java ở Hà Nội");
+
+        ChatSemanticCache.Probe second = cache.lookup("scope-1", "Việc Java ở Hà Nội");
+        assertTrue(second.hit());
+        assertEquals("Có 3 việc Java ở Hà Nội", second.cachedAnswer());
+        assertEquals(1.0, meterRegistry.get("ai.chat.semantic.cache.requests").tag("result", "hit")
+                .counter().count());
+    }
+
+    @Test
+    void lookup_shouldMissWhenJobSetDiffersOrQuestionIsUnrelated() {
+        EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+        when(embeddingModel.embed("java job ha noi")).thenReturn(List.of(1.0, 0.0, 0.0));
+        when(embeddingModel.embed("react remote")).thenReturn(List.of(0.0, 1.0, 0.0));
+        ChatSemanticCache cache = newCache(embeddingModel, new SimpleMeterRegistry());
+
+        cache.store(cache.lookup("scope-1", "java job ha noi"), "answer");
+
+        assertFalse(cache.lookup("scope-2", "java job ha noi").hit());
+        assertFalse(cache.lookup("scope-1", "react remote").hit());
+    }
+
+    @Test
+    void lookup_shouldDegradeGracefullyWhenEmbeddingFails() {
+        EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+        when(embeddingModel.embed(anyString())).thenThrow(new IllegalStateException("onnx down"));
+        ChatSemanticCache cache = newCache(embeddingModel, new SimpleMeterRegistry());
+
+        ChatSemanticCache.Probe probe = cache.lookup("scope-1", "java");
+        cache.store(probe, "answer");
+
+        assertFalse(probe.hit());
+        assertEquals(0, cache.size());
+        verify(embeddingModel, times(1)).embed(anyString());
+    }
+
+    @Test
+    void index_shouldEvictOldestAndExpiredEntries() {
+        MutableClock clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+        SemanticQueryIndex index = new SemanticQueryIndex(2, Duration.ofMinutes(10), clock);
+        float[] vector = SemanticQueryIndex.normalize(List.of(1.0, 0.0));
+
+        index.add("a", "q1", vector, "first");
+        index.add("b", "q2", vector, "second");
+        index.add("a", "q3", vector, "third");
+
+        assertEquals(2, index.size());
+        assertEquals("third", index.findNearest("a", vector, 0.9).orElseThrow().answer());
+
+        clock.advance(Duration.ofMinutes(11));
+        assertEquals(0, index.size());
+        assertTrue(index.findNearest("b", vector, 0.9).isEmpty());
+    }
+
+    private static ChatSemanticCache newCache(EmbeddingModel embeddingModel, SimpleMeterRegistry meterRegistry) {
+        return new ChatSemanticCache(embeddingModel, meterRegistry, true, 0.95, 100, 10);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
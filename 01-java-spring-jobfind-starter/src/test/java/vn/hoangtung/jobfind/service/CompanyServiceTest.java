@@ -0,0 +1,45 @@
+package vn.hoangtung.jobfind.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import vn.hoangtung.jobfind.domain.Company;
+import vn.hoangtung.jobfind.repository.CompanyRepository;
+import vn.hoangtung.jobfind.repository.JobRepository;
+import vn.hoangtung.jobfind.repository.UserRepository;
+
+class CompanyServiceTest {
+
+    @Test
+    void handleUpdateCompany_shouldReembedJobsOfCompany() {
+        CompanyRepository companyRepository = mock(CompanyRepository.class);
+        DataScopeService dataScopeService = mock(DataScopeService.class);
+        JobRepository jobRepository = mock(JobRepository.class);
+        JobVectorSyncService jobVectorSyncService = mock(JobVectorSyncService.class);
+        CompanyService service = new CompanyService(companyRepository, mock(UserRepository.class), dataScopeService,
+                jobRepository, jobVectorSyncService);
+
+        Company current = new Company();
+        current.setId(5);
+        current.setName("Acme");
+        when(companyRepository.findById(5L)).thenReturn(Optional.of(current));
+        when(companyRepository.save(any(Company.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(dataScopeService.getCurrentUser()).thenReturn(Optional.empty());
+        when(jobRepository.findIdsByCompanyId(5L)).thenReturn(List.of(11L, 12L));
+
+        Company update = new Company();
+        update.setId(5);
+        update.setName("Acme Vietnam");
+        service.handleUpdateCompany(update);
+
+        // document của job chứa tên công ty nên job của công ty phải được embed lại
+        verify(jobVectorSyncService).enqueueUpserts(List.of(11L, 12L));
+    }
+}
@@ -0,0 +1,130 @@
+package vn.hoangtung.jobfind.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import vn.hoangtung.jobfind.util.ai.AiFeatureUtils;
+
+class CvTextExtractionServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private CvTextExtractionService service;
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void extract_shouldMatchFullTextWhenReadingAllPagesInParallel() throws IOException {
+        Path pdf = writePdf("cv.pdf", 9, 35);
+        service = new CvTextExtractionService(3, 10, 30);
+
+        CvTextExtractionService.PdfText text = service.extract(pdf, Integer.MAX_VALUE);
+
+        assertEquals(fullText(pdf), text.text());
+        assertEquals(9, text.pageCount());
+        assertTrue(text.complete());
+    }
+
+    @Test
+    void extract_shouldStopEarlyWithSameTruncatedPrefix() throws IOException {
+        Path pdf = writePdf("cv.pdf", 8, 35);
+        String expected = AiFeatureUtils.normalizeWhitespace(fullText(pdf)).substring(0, 1500);
+
+        for (int parallelism : new int[] { 1, 3 }) {
+            CvTextExtractionService extractor = new CvTextExtractionService(parallelism, 10, 30);
+            try {
+                CvTextExtractionService.PdfText text = extractor.extract(pdf, 1500);
+
+                assertTrue(text.pagesRead() < text.pageCount(), "parallelism=" + parallelism);
+                assertEquals(8, text.pageCount());
+                assertEquals(expected, AiFeatureUtils.normalizeWhitespace(text.text()).substring(0, 1500));
+            } finally {
+                extractor.shutdown();
+            }
+        }
+    }
+
+    @Test
+    void extract_shouldReuseCachedTextForSameContent() throws IOException {
+        Path pdf = writePdf("cv.pdf", 6, 35);
+        Path copy = Files.copy(pdf, tempDir.resolve("copy.pdf"));
+        service = new CvTextExtractionService(2, 10, 30);
+
+        CvTextExtractionService.PdfText first = service.extract(pdf, 1000);
+        assertSame(first, service.extract(copy, 800));
+        assertSame(first, service.extract(new MockMultipartFile("file", "cv.pdf", "application/pdf",
+                Files.readAllBytes(pdf)), 1000));
+
+        // ngân sách lớn hơn phần đã đọc thì phải đọc lại, bản đầy đủ dùng được cho mọi ngân sách
+        CvTextExtractionService.PdfText full = service.extract(pdf, Integer.MAX_VALUE);
+        assertNotSame(first, full);
+        assertTrue(full.complete());
+        assertSame(full, service.extract(copy, 5000));
+        assertEquals(1, service.cachedEntries());
+    }
+
+    @Test
+    void extract_shouldReadResumeFixture() throws Exception {
+        Path pdf = Path.of(getClass().getResource("/CV -  INTERN - HoangCongTung.pdf").toURI());
+        service = new CvTextExtractionService(2, 10, 30);
+
+        CvTextExtractionService.PdfText text = service.extract(pdf, 8000);
+
+        assertEquals(fullText(pdf), text.text());
+        assertEquals(1, text.pageCount());
+    }
+
+    private Path writePdf(String name, int pages, int linesPerPage) throws IOException {
+        Path target = tempDir.resolve(name);
+        try (PDDocument document = new PDDocument()) {
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (int page = 0; page < pages; page++) {
+                PDPage pdfPage = new PDPage();
+                document.addPage(pdfPage);
+                try (PDPageContentStream content = new PDPageContentStream(document, pdfPage)) {
+                    content.beginText();
+                    content.setFont(font, 11);
+                    content.setLeading(14);
+                    content.newLineAtOffset(50, 740);
+                    for (int line = 0; line < linesPerPage; line++) {
+                        content.showText("Page " + page + " line " + line + " Java Spring Boot backend experience");
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(target.toFile());
+        }
+        return target;
+    }
+
+    private static String fullText(Path pdf) throws IOException {
+        try (PDDocument document = Loader.loadPDF(pdf.toFile())) {
+            return new PDFTextStripper().getText(document);
+        }
+    }
+}
@@ -1,16 +1,25 @@
 package vn.hoangtung.jobfind.service;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 import java.util.List;
 
 import org.junit.jupiter.api.Test;
+import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
 import org.springframework.ai.vectorstore.filter.Filter;
 
+import vn.hoangtung.jobfind.domain.CvChunk;
+import vn.hoangtung.jobfind.domain.Job;
+import vn.hoangtung.jobfind.domain.Resume;
 import vn.hoangtung.jobfind.repository.CvChunkRepository;
 import vn.hoangtung.jobfind.util.ai.ParsedCv;
 import vn.hoangtung.jobfind.util.ai.ParsedCv.ContactInfo;
@@ -26,6 +35,7 @@ class CvVectorServiceTest {
     void chunkCv_shouldCreateStructuredChunksAndMaskSensitiveContactData() {
         CvVectorService service = new CvVectorService(
                 mock(VectorStore.class),
+                mock(VectorIndexWriter.class),
                 mock(CvChunkRepository.class),
                 mock(AiGatewayService.class));
 
@@ -81,4 +91,63 @@ class CvVectorServiceTest {
         assertTrue(docTypeFilter.toString().contains("doc_type"));
         assertTrue(resumeFilter.toString().contains("resume_id"));
     }
+
+    @Test
+    void findRelevantResumeChunkTexts_shouldFallBackToBm25WhenVectorStoreFails() {
+        VectorStore vectorStore = mock(VectorStore.class);
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenThrow(new RuntimeException("pinecone down"));
+        CvChunkRepository cvChunkRepository = mock(CvChunkRepository.class);
+        when(cvChunkRepository.findByResumeId(7L)).thenReturn(List.of(
+                chunk("CV_PROFILE", "Backend developer yêu thích hệ thống phân tán."),
+                chunk("CV_SKILLS", "Kỹ năng: Kotlin, Spring Boot, PostgreSQL, Docker."),
+                chunk("CV_PROJECT", "Dự án React dashboard cho khách hàng.")));
+        CvVectorService service = new CvVectorService(
+                vectorStore,
+                mock(VectorIndexWriter.class),
+                cvChunkRepository,
+                mock(AiGatewayService.class));
+        Resume resume = new Resume();
+        resume.setId(7L);
+
+        List<String> texts = service.findRelevantResumeChunkTexts(resume, "Spring Boot Docker", 2);
+
+        assertEquals(List.of("Kỹ năng: Kotlin, Spring Boot, PostgreSQL, Docker."), texts);
+    }
+
+    @Test
+    void lexicalFallback_shouldNotReportSemanticScoreAndReuseIndex() {
+        VectorStore vectorStore = mock(VectorStore.class);
+        when(vectorStore.similaritySearch(any(SearchRequest.class))).thenThrow(new RuntimeException("pinecone down"));
+        CvChunkRepository cvChunkRepository = mock(CvChunkRepository.class);
+        when(cvChunkRepository.findByResumeId(7L)).thenReturn(List.of(
+                chunk("CV_SKILLS", "Kỹ năng: Java, Spring Boot, MySQL."),
+                chunk("CV_PROJECT", "Dự án React dashboard cho khách hàng.")));
+        CvVectorService service = new CvVectorService(
+                vectorStore,
+                mock(VectorIndexWriter.class),
+                cvChunkRepository,
+                mock(AiGatewayService.class));
+        Resume resume = new Resume();
+        resume.setId(7L);
+        resume.setCvVectorContentHash("hash-1");
+        Job job = new Job();
+        job.setName("Java Spring Boot Developer");
+
+        CvVectorService.SemanticChunkMatch match = service.findRelevantResumeChunks(resume, job, 3);
+        service.findRelevantResumeChunkTexts(resume, "Spring Boot", 2);
+
+        // điểm BM25 không phải cosine nên không được coi là semantic score
+        assertFalse(match.available());
+        assertTrue(match.lexical());
+        assertFalse(match.documents().isEmpty());
+        verify(cvChunkRepository, times(1)).findByResumeId(7L);
+    }
+
+    private static CvChunk chunk(String type, String text) {
+        CvChunk chunk = new CvChunk();
+        chunk.setVectorId("resume-7-" + type);
+        chunk.setChunkType(type);
+        chunk.setText(text);
+        return chunk;
+    }
 }
@@ -0,0 +1,127 @@
+package vn.hoangtung.jobfind.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import vn.hoangtung.jobfind.util.FileDigestUtil;
+
+class FileDownloadServiceTest {
+
+    private static final byte[] CONTENT = "%PDF-1.7 resume content 0123456789".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path tempDir;
+
+    private Path file;
+    private FileService fileService;
+    private FileDownloadService downloadService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Path folder = Files.createDirectories(tempDir.resolve("resume"));
+        file = Files.write(folder.resolve("1-cv.pdf"), CONTENT);
+        fileService = mock(FileService.class);
+        when(fileService.contentHash(anyString(), anyString())).thenReturn(Optional.empty());
+        downloadService = new FileDownloadService(fileService, 600, 100);
+    }
+
+    @Test
+    void write_shouldSendWholeFileWithStrongEtagAndCacheHeaders() throws Exception {
+        MockHttpServletResponse response = download(new MockHttpServletRequest("GET", "/api/v1/files"));
+
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(CONTENT, response.getContentAsByteArray());
+        assertEquals(CONTENT.length, response.getContentLengthLong());
+        assertEquals("\"" + FileDigestUtil.sha256(file) + "\"", response.getHeader(HttpHeaders.ETAG));
+        assertEquals("max-age=600, private", response.getHeader(HttpHeaders.CACHE_CONTROL));
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertTrue(response.getHeader(HttpHeaders.CONTENT_DISPOSITION).contains("1-cv.pdf"));
+    }
+
+    @Test
+    void write_shouldAnswerNotModifiedForMatchingIfNoneMatch() throws Exception {
+        when(fileService.contentHash("1-cv.pdf", "resume")).thenReturn(Optional.of("abc123"));
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/files");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"abc123\"");
+
+        MockHttpServletResponse response = download(request);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals("\"abc123\"", response.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void write_shouldServeSingleRangeAndRespectIfRange() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/files");
+        request.addHeader(HttpHeaders.RANGE, "bytes=4-11");
+
+        MockHttpServletResponse response = download(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 4-11/" + CONTENT.length, response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(Arrays.copyOfRange(CONTENT, 4, 12), response.getContentAsByteArray());
+
+        MockHttpServletRequest suffix = new MockHttpServletRequest("GET", "/api/v1/files");
+        suffix.addHeader(HttpHeaders.RANGE, "bytes=-5");
+        assertArrayEquals(Arrays.copyOfRange(CONTENT, CONTENT.length - 5, CONTENT.length),
+                download(suffix).getContentAsByteArray());
+
+        // If-Range với ETag cũ: bỏ qua Range, trả cả file
+        MockHttpServletRequest stale = new MockHttpServletRequest("GET", "/api/v1/files");
+        stale.addHeader(HttpHeaders.RANGE, "bytes=4-11");
+        stale.addHeader(HttpHeaders.IF_RANGE, "\"old\"");
+        MockHttpServletResponse full = download(stale);
+        assertEquals(200, full.getStatus());
+        assertArrayEquals(CONTENT, full.getContentAsByteArray());
+    }
+
+    @Test
+    void write_shouldRejectUnsatisfiableRangeAndUseSendfileWhenSupported() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/files");
+        request.addHeader(HttpHeaders.RANGE, "bytes=1000-2000");
+        MockHttpServletResponse response = download(request);
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */" + CONTENT.length, response.getHeader(HttpHeaders.CONTENT_RANGE));
+
+        MockHttpServletRequest sendfile = new MockHttpServletRequest("GET", "/api/v1/files");
+        sendfile.setAttribute(FileDownloadService.SENDFILE_SUPPORT, Boolean.TRUE);
+        sendfile.addHeader(HttpHeaders.RANGE, "bytes=2-");
+        MockHttpServletResponse sent = download(sendfile);
+        assertEquals(206, sent.getStatus());
+        assertEquals(0, sent.getContentAsByteArray().length);
+        assertEquals(file.toAbsolutePath().toString(), sendfile.getAttribute(FileDownloadService.SENDFILE_FILENAME));
+        assertEquals(2L, sendfile.getAttribute(FileDownloadService.SENDFILE_START));
+        assertEquals((long) CONTENT.length, sendfile.getAttribute(FileDownloadService.SENDFILE_END));
+
+        MockHttpServletRequest head = new MockHttpServletRequest("HEAD", "/api/v1/files");
+        MockHttpServletResponse headResponse = download(head);
+        assertEquals(CONTENT.length, headResponse.getContentLengthLong());
+        assertEquals(0, headResponse.getContentAsByteArray().length);
+        assertNull(head.getAttribute(FileDownloadService.SENDFILE_FILENAME));
+    }
+
+    private MockHttpServletResponse download(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        downloadService.write(file, "1-cv.pdf", request, response);
+        return response;
+    }
+}
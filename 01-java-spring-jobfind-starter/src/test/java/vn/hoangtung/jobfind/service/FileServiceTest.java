@@ -1,18 +1,41 @@
 package vn.hoangtung.jobfind.service;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionOperations;
+
+import vn.hoangtung.jobfind.domain.FileBlob;
+import vn.hoangtung.jobfind.domain.StoredFile;
+import vn.hoangtung.jobfind.repository.FileBlobRepository;
+import vn.hoangtung.jobfind.repository.StoredFileRepository;
+import vn.hoangtung.jobfind.util.FileDigestUtil;
+import vn.hoangtung.jobfind.util.error.StorageException;
 
 class FileServiceTest {
 
@@ -20,11 +43,90 @@ class FileServiceTest {
     Path tempDir;
 
     private FileService fileService;
+    private Path uploadRoot;
+    // Bảng file_blobs / stored_files giả lập bằng map
+    private final Map<String, FileBlob> blobs = new HashMap<>();
+    private final Map<String, StoredFile> storedFiles = new HashMap<>();
 
     @BeforeEach
     void setUp() {
-        fileService = new FileService();
-        ReflectionTestUtils.setField(fileService, "baseURI", tempDir.toUri().toString());
+        FileBlobRepository fileBlobRepository = mock(FileBlobRepository.class);
+        when(fileBlobRepository.findBySha256(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(blobs.get(invocation.<String>getArgument(0))));
+        when(fileBlobRepository.findBySha256ForUpdate(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(blobs.get(invocation.<String>getArgument(0))));
+        when(fileBlobRepository.insertOrIncrementRefCount(anyString(), anyLong(), any(Instant.class)))
+                .thenAnswer(invocation -> {
+                    FileBlob blob = blobs.computeIfAbsent(invocation.getArgument(0), sha256 -> {
+                        FileBlob created = new FileBlob();
+                        created.setSha256(sha256);
+                        created.setSize(invocation.getArgument(1));
+                        return created;
+                    });
+                    blob.setRefCount(blob.getRefCount() + 1);
+                    return 1;
+                });
+        when(fileBlobRepository.save(any(FileBlob.class))).thenAnswer(invocation -> {
+            FileBlob blob = invocation.getArgument(0);
+            blobs.put(blob.getSha256(), blob);
+            return blob;
+        });
+        doAnswer(invocation -> blobs.remove(invocation.<FileBlob>getArgument(0).getSha256()))
+                .when(fileBlobRepository).delete(any(FileBlob.class));
+
+        StoredFileRepository storedFileRepository = mock(StoredFileRepository.class);
+        when(storedFileRepository.findByFolderAndFileName(anyString(), anyString())).thenAnswer(invocation -> Optional
+                .ofNullable(storedFiles.get(invocation.getArgument(0) + "/" + invocation.getArgument(1))));
+        when(storedFileRepository.save(any(StoredFile.class))).thenAnswer(invocation -> {
+            StoredFile storedFile = invocation.getArgument(0);
+            storedFiles.put(storedFile.getFolder() + "/" + storedFile.getFileName(), storedFile);
+            return storedFile;
+        });
+        doAnswer(invocation -> {
+            StoredFile storedFile = invocation.getArgument(0);
+            return storedFiles.remove(storedFile.getFolder() + "/" + storedFile.getFileName());
+        }).when(storedFileRepository).delete(any(StoredFile.class));
+
+        fileService = new FileService(fileBlobRepository, storedFileRepository,
+                TransactionOperations.withoutTransaction());
+        uploadRoot = tempDir.resolve("upload");
+        ReflectionTestUtils.setField(fileService, "baseURI", uploadRoot.toUri().toString());
+        ReflectionTestUtils.setField(fileService, "blobPath", tempDir.resolve("blobs").toString());
+        fileService.open();
+    }
+
+    @Test
+    void openKeepsBlobStoreOutsidePublicUploadRoot() throws Exception {
+        // blob cũ nằm trong upload root (ai cũng tải được qua /storage/blobs/**) được chuyển ra ngoài
+        Path legacyBlob = uploadRoot.resolve("blobs").resolve("ab").resolve("ab" + "0".repeat(62));
+        Files.createDirectories(legacyBlob.getParent());
+        Files.writeString(legacyBlob, "%PDF-1.7 old cv");
+        Files.writeString(uploadRoot.resolve("blobs").resolve("upload-1.tmp"), "partial");
+
+        fileService.open();
+
+        assertFalse(Files.exists(uploadRoot.resolve("blobs")));
+        assertEquals("%PDF-1.7 old cv", Files.readString(fileService.blobFile("ab" + "0".repeat(62))));
+
+        ReflectionTestUtils.setField(fileService, "blobPath", uploadRoot.resolve("blobs").toString());
+        assertThrows(IllegalArgumentException.class, () -> fileService.open());
+    }
+
+    @Test
+    void storeBlobKeepsSharedCopyUntilReleased() throws Exception {
+        Path upload = Files.writeString(tempDir.resolve("cv-upload.pdf"), "%PDF-1.7 cv");
+        String sha256 = fileService.storeBlob(upload);
+        assertFalse(fileService.blobFile(sha256).startsWith(uploadRoot));
+
+        // node khác đọc theo hash, không phụ thuộc file tạm của node nhận upload
+        Path blob = fileService.blobFile(sha256);
+        assertEquals("%PDF-1.7 cv", Files.readString(blob));
+        assertFalse(Files.exists(upload));
+        assertThrows(IllegalArgumentException.class, () -> fileService.blobFile("../../etc/passwd"));
+
+        fileService.releaseBlobSafely(sha256);
+        assertFalse(Files.exists(blob));
+        assertTrue(blobs.isEmpty());
     }
 
     @Test
@@ -51,6 +153,92 @@ class FileServiceTest {
 
         assertFalse(storedName.contains("\\"));
         assertFalse(storedName.contains("/"));
-        assertTrue(Files.exists(tempDir.resolve("resume").resolve(storedName)));
+        assertTrue(Files.exists(uploadRoot.resolve("resume").resolve(storedName)));
+    }
+
+    @Test
+    void storeKeepsOneBlobPerContentAndReleasesItWithLastReference() throws Exception {
+        fileService.createDirectory("resume");
+        byte[] content = "%PDF same cv".getBytes(StandardCharsets.UTF_8);
+
+        String first = fileService.store(new MockMultipartFile("file", "cv.pdf", "application/pdf", content), "resume");
+        Thread.sleep(2);
+        String second = fileService.store(new MockMultipartFile("file", "cv.pdf", "application/pdf", content), "resume");
+
+        assertNotEquals(first, second);
+        String sha256 = FileDigestUtil.sha256(uploadRoot.resolve("resume").resolve(first));
+        assertEquals(Optional.of(sha256), fileService.contentHash(first, "resume"));
+        assertEquals(Optional.of(sha256), fileService.contentHash(second, "resume"));
+        assertEquals(1, blobs.size());
+        assertEquals(2, blobs.get(sha256).getRefCount());
+        assertEquals(1, blobFileCount());
+        assertArrayEquals(content, Files.readAllBytes(uploadRoot.resolve("resume").resolve(second)));
+        assertEquals(content.length, fileService.getFileLength(second, "resume"));
+
+        fileService.releaseSafely(first, "resume");
+        assertFalse(Files.exists(uploadRoot.resolve("resume").resolve(first)));
+        assertEquals(1, blobs.get(sha256).getRefCount());
+        assertArrayEquals(content, Files.readAllBytes(uploadRoot.resolve("resume").resolve(second)));
+
+        fileService.releaseSafely(second, "resume");
+        assertTrue(blobs.isEmpty());
+        assertTrue(storedFiles.isEmpty());
+        assertEquals(0, blobFileCount());
+    }
+
+    @Test
+    void storeStreamValidatesHeaderAndSizeInOnePass() throws Exception {
+        fileService.createDirectory("resume");
+        byte[] content = new byte[300_000];
+        new java.util.Random(3).nextBytes(content);
+        content[0] = '%';
+        content[1] = 'P';
+        content[2] = 'D';
+        content[3] = 'F';
+        FileService.HeaderValidator pdfOnly = (header, length) -> {
+            if (length < 4 || header[0] != '%' || header[1] != 'P') {
+                throw new StorageException("Invalid PDF file signature.");
+            }
+        };
+
+        // input trả về từng mẩu nhỏ như socket chậm
+        String stored = fileService.store(new TrickleInputStream(content), "cv.pdf", "resume", 1_000_000, pdfOnly);
+        assertArrayEquals(content, Files.readAllBytes(uploadRoot.resolve("resume").resolve(stored)));
+        assertEquals(Optional.of(FileDigestUtil.sha256(uploadRoot.resolve("resume").resolve(stored))),
+                fileService.contentHash(stored, "resume"));
+
+        StorageException tooLarge = assertThrows(StorageException.class, () -> fileService.store(
+                new TrickleInputStream(content), "big.pdf", "resume", 100_000, pdfOnly));
+        assertEquals("File is too large. Maximum size is 100000 bytes.", tooLarge.getMessage());
+        assertThrows(StorageException.class, () -> fileService.store(
+                new ByteArrayInputStream("<html>".getBytes(StandardCharsets.UTF_8)), "cv.pdf", "resume", 100, pdfOnly));
+        assertThrows(StorageException.class, () -> fileService.store(
+                new ByteArrayInputStream(new byte[0]), "cv.pdf", "resume", 100, null));
+
+        // chỉ còn blob của lần upload hợp lệ, không sót file tạm
+        assertEquals(1, blobs.size());
+        assertEquals(1, blobFileCount());
+        try (Stream<Path> files = Files.list(uploadRoot.resolve("resume"))) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    /** Trả về tối đa 1000 byte mỗi lần read, giống dữ liệu đến dần qua mạng. */
+    private static final class TrickleInputStream extends ByteArrayInputStream {
+
+        TrickleInputStream(byte[] content) {
+            super(content);
+        }
+
+        @Override
+        public synchronized int read(byte[] buffer, int offset, int length) {
+            return super.read(buffer, offset, Math.min(length, 1000));
+        }
+    }
+
+    private long blobFileCount() throws Exception {
+        try (Stream<Path> files = Files.walk(tempDir.resolve("blobs"))) {
+            return files.filter(Files::isRegularFile).count();
+        }
     }
 }
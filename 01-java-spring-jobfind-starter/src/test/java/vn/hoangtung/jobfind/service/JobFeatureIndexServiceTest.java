@@ -0,0 +1,59 @@
+package vn.hoangtung.jobfind.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import vn.hoangtung.jobfind.domain.Job;
+import vn.hoangtung.jobfind.repository.JobRepository;
+import vn.hoangtung.jobfind.repository.JobVectorOutboxRepository;
+
+class JobFeatureIndexServiceTest {
+
+    private final JobRepository jobRepository = mock(JobRepository.class);
+    private final JobVectorOutboxRepository outboxRepository = mock(JobVectorOutboxRepository.class);
+    private final JobFeatureIndexService service = new JobFeatureIndexService(jobRepository, outboxRepository, 60);
+
+    @Test
+    void pollChanges_shouldApplyEventsEmbeddedByAnotherNode() {
+        Job closing = job(1, "Java Developer", true);
+        when(jobRepository.findActiveJobsWithSkillsAndCompany()).thenReturn(List.of(closing));
+        assertEquals(1, service.index().size());
+
+        // Node khác đã claim và embed các event này; node này chỉ đọc outbox để cập nhật index
+        when(outboxRepository.findJobIdsChangedSince(any(Instant.class))).thenReturn(List.of(1L, 2L, 3L));
+        when(jobRepository.findWithSkillsAndCompanyByIdIn(anyCollection())).thenReturn(List.of(
+                job(1, "Java Developer", false),
+                job(2, "React Developer", true)));
+
+        service.pollChanges();
+
+        assertEquals(1, service.index().size());
+        assertEquals(List.of(2L), service.index().lexicalCandidateIds("react", 10));
+    }
+
+    @Test
+    void pollChanges_shouldWaitForFirstLoad() {
+        service.pollChanges();
+
+        verify(outboxRepository, never()).findJobIdsChangedSince(any(Instant.class));
+    }
+
+    private static Job job(long id, String name, boolean active) {
+        Job job = new Job();
+        job.setId(id);
+        job.setName(name);
+        job.setLocation("Ha Noi");
+        job.setActive(active);
+        return job;
+    }
+}
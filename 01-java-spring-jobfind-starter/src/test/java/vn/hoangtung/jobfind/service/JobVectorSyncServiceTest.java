@@ -0,0 +1,156 @@
+package vn.hoangtung.jobfind.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.transaction.support.TransactionOperations;
+
+import vn.hoangtung.jobfind.domain.Job;
+import vn.hoangtung.jobfind.domain.JobVectorOutbox;
+import vn.hoangtung.jobfind.repository.JobRepository;
+import vn.hoangtung.jobfind.repository.JobVectorOutboxRepository;
+import vn.hoangtung.jobfind.util.constant.JobVectorChangeEnum;
+
+class JobVectorSyncServiceTest {
+
+    private final JobRepository jobRepository = mock(JobRepository.class);
+    private final JobVectorOutboxRepository outboxRepository = mock(JobVectorOutboxRepository.class);
+    private final VectorStore vectorStore = mock(VectorStore.class);
+    private final VectorIndexWriter vectorIndexWriter = mock(VectorIndexWriter.class);
+    private final AiGatewayService aiGatewayService = mock(AiGatewayService.class);
+    private final ChatSemanticCache chatSemanticCache = mock(ChatSemanticCache.class);
+    private final JobFeatureIndexService jobFeatureIndexService = mock(JobFeatureIndexService.class);
+    private final JobVectorSyncService service = newService(vectorStore);
+    private long lastEventId;
+
+    JobVectorSyncServiceTest() {
+        when(outboxRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(aiGatewayService.fingerprint(any(String[].class))).thenAnswer(invocation -> {
+            Object[] values = invocation.getArguments();
+            return Integer.toHexString(String.join("|", List.of(values).stream().map(String::valueOf).toList())
+                    .hashCode());
+        });
+    }
+
+    @Test
+    void processOutbox_shouldEmbedOnlyChangedJobsAndInvalidateTheirCacheTags() {
+        Job unchanged = job(1, "Java Developer");
+        unchanged.setVectorContentHash(service.contentHash(service.buildJobDocument(unchanged)));
+        Job changed = job(2, "React Developer");
+        changed.setVectorContentHash("stale");
+
+        List<JobVectorOutbox> events = List.of(
+                event(1, JobVectorChangeEnum.UPSERT),
+                event(2, JobVectorChangeEnum.UPSERT),
+                event(3, JobVectorChangeEnum.UPSERT),
+                event(3, JobVectorChangeEnum.DELETE));
+        when(outboxRepository.lockClaimable(any(Instant.class), anyInt())).thenReturn(events);
+        when(jobRepository.findWithSkillsAndCompanyByIdIn(anyCollection())).thenReturn(List.of(unchanged, changed));
+
+        service.processOutbox();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Document>> upserted = ArgumentCaptor.forClass(List.class);
+        verify(vectorIndexWriter).add(upserted.capture());
+        assertEquals(List.of("2"), upserted.getValue().stream().map(Document::getId).toList());
+        verify(vectorStore).delete(List.of("3"));
+        verify(jobRepository).markVectorSynced(eq(2L), any(), any());
+        verify(jobRepository, never()).markVectorSynced(eq(1L), any(), any());
+        verify(aiGatewayService).invalidateTags(List.of("job:2", "job:3"));
+        verify(chatSemanticCache).invalidateTags(List.of("job:2", "job:3"));
+        // Lease được ghi trước khi embed để node khác bỏ qua các event này
+        events.forEach(event -> assertTrue(event.getClaimedUntil().isAfter(Instant.now().plusSeconds(60))));
+        verify(outboxRepository).markProcessed(eq(List.of(1L, 2L, 3L, 4L)), any(Instant.class));
+        verify(outboxRepository, never()).deleteAllInBatch(anyList());
+    }
+
+    @Test
+    void processOutbox_shouldKeepEventsForRetryWhenVectorStoreFails() {
+        Job changed = job(5, "Backend Developer");
+        when(outboxRepository.lockClaimable(any(Instant.class), anyInt()))
+                .thenReturn(new ArrayList<>(List.of(event(5, JobVectorChangeEnum.UPSERT))));
+        when(jobRepository.findWithSkillsAndCompanyByIdIn(anyCollection())).thenReturn(List.of(changed));
+        doThrow(new IllegalStateException("pinecone down")).when(vectorIndexWriter).add(anyList());
+
+        service.processOutbox();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<JobVectorOutbox>> saved = ArgumentCaptor.forClass(List.class);
+        verify(outboxRepository, times(2)).saveAll(saved.capture());
+        JobVectorOutbox retried = saved.getAllValues().get(1).get(0);
+        assertEquals(1, retried.getAttempts());
+        // Trả lease để lần chạy sau (của bất kỳ node nào) thử lại ngay
+        assertNull(retried.getClaimedUntil());
+        assertNull(retried.getProcessedAt());
+        verify(outboxRepository, never()).markProcessed(anyCollection(), any());
+        verify(jobRepository, never()).markVectorSynced(anyLong(), any(), any());
+    }
+
+    @Test
+    void reconcileAll_shouldReembedJobsMissingFromLocalStore() {
+        LocalHnswVectorStore localStore = mock(LocalHnswVectorStore.class);
+        JobVectorSyncService localService = newService(localStore);
+        Job indexed = job(1, "Java Developer");
+        indexed.setVectorContentHash(localService.contentHash(localService.buildJobDocument(indexed)));
+        // Snapshot bị mất: hash trong DB vẫn khớp nhưng vector không còn trong index
+        Job lost = job(2, "React Developer");
+        lost.setVectorContentHash(localService.contentHash(localService.buildJobDocument(lost)));
+        // Hash ghi lúc còn dùng Pinecone không khớp với store local
+        Job fromPinecone = job(3, "Tester");
+        fromPinecone.setVectorContentHash(service.contentHash(service.buildJobDocument(fromPinecone)));
+        when(localStore.contains("1")).thenReturn(true);
+        when(localStore.contains("3")).thenReturn(true);
+        when(jobRepository.findAllWithSkillsAndCompany()).thenReturn(List.of(indexed, lost, fromPinecone));
+
+        JobVectorSyncService.SyncResult result = localService.reconcileAll();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Document>> upserted = ArgumentCaptor.forClass(List.class);
+        verify(vectorIndexWriter).add(upserted.capture());
+        assertEquals(List.of("2", "3"), upserted.getValue().stream().map(Document::getId).toList());
+        assertEquals(1, result.skipped());
+    }
+
+    private JobVectorSyncService newService(VectorStore store) {
+        return new JobVectorSyncService(jobRepository, outboxRepository, store, vectorIndexWriter, aiGatewayService,
+                chatSemanticCache, jobFeatureIndexService, TransactionOperations.withoutTransaction(), 300, 600);
+    }
+
+    private static Job job(long id, String name) {
+        Job job = new Job();
+        job.setId(id);
+        job.setName(name);
+        job.setLocation("Ha Noi");
+        job.setActive(true);
+        return job;
+    }
+
+    private JobVectorOutbox event(long jobId, JobVectorChangeEnum changeType) {
+        JobVectorOutbox event = new JobVectorOutbox();
+        event.setId(++lastEventId);
+        event.setJobId(jobId);
+        event.setChangeType(changeType);
+        return event;
+    }
+}
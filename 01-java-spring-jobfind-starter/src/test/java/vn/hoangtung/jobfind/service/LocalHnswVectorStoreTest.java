@@ -0,0 +1,133 @@
+package vn.hoangtung.jobfind.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class LocalHnswVectorStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void similaritySearch_shouldApplyDocTypeAndResumeFilters() {
+        LocalHnswVectorStore store = newStore(fakeEmbeddingModel());
+        store.add(List.of(
+                new Document("job-1", "java backend", Map.of("doc_type", "JOB", "job_id", 1L)),
+                new Document("cv-7-0", "java backend", Map.of("doc_type", "CV", "resume_id", 7L)),
+                new Document("cv-8-0", "java backend", Map.of("doc_type", "CV", "resume_id", 8L))));
+
+        List<Document> jobs = store.similaritySearch(SearchRequest.query("java").withTopK(5)
+                .withFilterExpression(CvVectorService.docTypeFilterExpression("JOB")));
+        List<Document> resumeChunks = store.similaritySearch(SearchRequest.query("java").withTopK(5)
+                .withFilterExpression(CvVectorService.resumeChunkFilterExpression(7)));
+
+        assertEquals(List.of("job-1"), jobs.stream().map(Document::getId).toList());
+        assertEquals(List.of("cv-7-0"), resumeChunks.stream().map(Document::getId).toList());
+        assertTrue(((Number) jobs.get(0).getMetadata().get("distance")).doubleValue() < 0.01);
+    }
+
+    @Test
+    void snapshot_shouldRestoreDocumentsAfterRestart() {
+        EmbeddingModel embeddingModel = fakeEmbeddingModel();
+        LocalHnswVectorStore store = newStore(embeddingModel);
+        store.add(List.of(
+                new Document("1", "java backend", Map.of("doc_type", "JOB", "job_id", 1L)),
+                new Document("2", "react frontend", Map.of("doc_type", "JOB", "job_id", 2L))));
+        store.delete(List.of("2"));
+        store.close();
+
+        LocalHnswVectorStore restarted = newStore(embeddingModel);
+
+        assertEquals(1, restarted.size());
+        List<Document> results = restarted.similaritySearch(SearchRequest.query("java").withTopK(3)
+                .withFilterExpression(CvVectorService.docTypeFilterExpression("JOB")));
+        assertEquals(List.of("1"), results.stream().map(Document::getId).toList());
+        assertEquals(1L, ((Number) results.get(0).getMetadata().get("job_id")).longValue());
+    }
+
+    @Test
+    void localType_shouldBeInjectedInsteadOfPineconeBean() {
+        // "vectorStore" là tên bean auto-config Pinecone vẫn tạo khi type=local
+        new ApplicationContextRunner()
+                .withPropertyValues(
+                        "hoangtung.ai.vectorstore.type=local",
+                        "hoangtung.ai.vectorstore.local.path=" + tempDir.resolve("vector-index"),
+                        "hoangtung.upload-file.base-uri=" + tempDir.resolve("uploads").toUri())
+                .withUserConfiguration(PineconeStandInConfig.class, LocalHnswVectorStore.class, VectorStoreConsumer.class)
+                .run(context -> {
+                    assertInstanceOf(LocalHnswVectorStore.class, context.getBean(VectorStore.class));
+                    assertSame(context.getBean(LocalHnswVectorStore.class),
+                            context.getBean(VectorStoreConsumer.class).vectorStore);
+                });
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    static class PineconeStandInConfig {
+
+        @Bean
+        VectorStore vectorStore() {
+            return mock(VectorStore.class);
+        }
+
+        @Bean
+        EmbeddingModel embeddingModel() {
+            return fakeEmbeddingModel();
+        }
+
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+    }
+
+    // Giống AIService/CvVectorService: tham số constructor tên vectorStore
+    static class VectorStoreConsumer {
+
+        final VectorStore vectorStore;
+
+        VectorStoreConsumer(VectorStore vectorStore) {
+            this.vectorStore = vectorStore;
+        }
+    }
+
+    private LocalHnswVectorStore newStore(EmbeddingModel embeddingModel) {
+        LocalHnswVectorStore store = new LocalHnswVectorStore(embeddingModel, new ObjectMapper(),
+                tempDir.resolve("vector-index").toString(), tempDir.resolve("uploads").toUri().toString(), 8, 50, 32);
+        store.open();
+        return store;
+    }
+
+    private static EmbeddingModel fakeEmbeddingModel() {
+        EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+        when(embeddingModel.embed(anyString())).thenAnswer(invocation -> vectorFor(invocation.getArgument(0)));
+        when(embeddingModel.embed(any(Document.class)))
+                .thenAnswer(invocation -> vectorFor(((Document) invocation.getArgument(0)).getContent()));
+        return embeddingModel;
+    }
+
+    private static List<Double> vectorFor(String text) {
+        return text.contains("java") ? List.of(1.0, 0.0, 0.0) : List.of(0.0, 1.0, 0.0);
+    }
+}
@@ -55,6 +55,8 @@ class ResumeServiceTest {
     private JobRepository jobRepository;
     @Mock
     private CvVectorService cvVectorService;
+    @Mock
+    private FileService fileService;
 
     @InjectMocks
     private ResumeService resumeService;
@@ -0,0 +1,78 @@
+package vn.hoangtung.jobfind.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import vn.hoangtung.jobfind.domain.Skill;
+import vn.hoangtung.jobfind.repository.JobRepository;
+import vn.hoangtung.jobfind.repository.SkillRepository;
+
+class SkillServiceTest {
+
+    private final SkillRepository skillRepository = mock(SkillRepository.class);
+    private final DataScopeService dataScopeService = mock(DataScopeService.class);
+    private final SkillTaxonomyRegistry skillTaxonomyRegistry = mock(SkillTaxonomyRegistry.class);
+    private final JobRepository jobRepository = mock(JobRepository.class);
+    private final SkillService service = new SkillService(skillRepository, dataScopeService, skillTaxonomyRegistry,
+            jobRepository, mock(JobVectorSyncService.class));
+
+    SkillServiceTest() {
+        when(dataScopeService.getCurrentUser()).thenReturn(Optional.empty());
+        when(skillRepository.save(any(Skill.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(jobRepository.findIdsBySkillId(7L)).thenReturn(List.of());
+    }
+
+    @AfterEach
+    void clearSynchronization() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void updateSkill_shouldRefreshTaxonomyOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        service.updateSkill(skill(7, "Spring Boot"));
+        verify(skillTaxonomyRegistry, never()).refresh();
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(skillTaxonomyRegistry).refresh();
+    }
+
+    @Test
+    void updateSkill_shouldNotPublishRolledBackChanges() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        service.updateSkill(skill(7, "Spring Boot"));
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        verify(skillTaxonomyRegistry, never()).refresh();
+    }
+
+    @Test
+    void createSkill_shouldRefreshImmediatelyWithoutTransaction() {
+        service.createSkill(skill(8, "Kotlin"));
+
+        verify(skillTaxonomyRegistry).refresh();
+    }
+
+    private static Skill skill(long id, String name) {
+        Skill skill = new Skill();
+        skill.setId(id);
+        skill.setName(name);
+        return skill;
+    }
+}
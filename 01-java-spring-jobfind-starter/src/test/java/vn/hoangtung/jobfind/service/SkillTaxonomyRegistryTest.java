@@ -0,0 +1,59 @@
+package vn.hoangtung.jobfind.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import vn.hoangtung.jobfind.domain.Skill;
+import vn.hoangtung.jobfind.repository.SkillRepository;
+import vn.hoangtung.jobfind.util.ai.AiFeatureUtils;
+import vn.hoangtung.jobfind.util.ai.KnownSkillCatalog;
+import vn.hoangtung.jobfind.util.ai.SkillTaxonomy;
+
+class SkillTaxonomyRegistryTest {
+
+    private final SkillRepository skillRepository = mock(SkillRepository.class);
+    private final SkillTaxonomyRegistry registry = new SkillTaxonomyRegistry(skillRepository);
+
+    @Test
+    void knownSkills_shouldLoadOnceAndReuseBuiltTaxonomy() {
+        when(skillRepository.findAll()).thenReturn(List.of(skill("Quarkus")));
+
+        KnownSkillCatalog first = registry.knownSkills();
+        KnownSkillCatalog second = registry.knownSkills();
+
+        assertSame(first, second);
+        assertSame(first.taxonomy(), SkillTaxonomy.from(second));
+        assertTrue(AiFeatureUtils.extractKnownSkills("Backend với Quarkus và Java", first).contains("Quarkus"));
+        verify(skillRepository, times(1)).findAll();
+    }
+
+    @Test
+    void refresh_shouldSwapInNewVersionWithCreatedSkill() {
+        when(skillRepository.findAll()).thenReturn(List.of(skill("Quarkus")));
+        KnownSkillCatalog before = registry.knownSkills();
+
+        when(skillRepository.findAll()).thenReturn(List.of(skill("Quarkus"), skill("Micronaut")));
+        KnownSkillCatalog after = registry.refresh();
+
+        assertEquals(before.version() + 1, after.version());
+        assertSame(after, registry.knownSkills());
+        assertFalse(before.contains("Micronaut"));
+        assertTrue(registry.taxonomy().extractSkillNames("Dự án Micronaut").contains("Micronaut"));
+    }
+
+    private static Skill skill(String name) {
+        Skill skill = new Skill();
+        skill.setName(name);
+        return skill;
+    }
+}
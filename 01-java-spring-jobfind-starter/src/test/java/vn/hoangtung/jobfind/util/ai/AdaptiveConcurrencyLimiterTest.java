@@ -0,0 +1,80 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void tryAcquire_shouldRejectWhenLimitReached() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 8);
+
+        assertTrue(limiter.tryAcquire(Duration.ZERO));
+        assertTrue(limiter.tryAcquire(Duration.ZERO));
+        assertFalse(limiter.tryAcquire(Duration.ofMillis(20)));
+
+        limiter.onIgnored();
+        assertTrue(limiter.tryAcquire(Duration.ZERO));
+    }
+
+    @Test
+    void tryAcquire_shouldWakeWaiterWhenSlotReleased() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 1, 4);
+        assertTrue(limiter.tryAcquire(Duration.ZERO));
+
+        CompletableFuture<Boolean> waiter = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                waiter.complete(limiter.tryAcquire(Duration.ofSeconds(5)));
+            } catch (InterruptedException e) {
+                waiter.completeExceptionally(e);
+            }
+        });
+        thread.start();
+        Thread.sleep(50);
+        limiter.onIgnored();
+
+        assertTrue(waiter.get(2, TimeUnit.SECONDS));
+        thread.join();
+        assertEquals(1, limiter.inFlight());
+    }
+
+    @Test
+    void shouldHalveOnDropAndGrowAdditivelyOnSuccess() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 1, 16);
+
+        limiter.tryAcquire(Duration.ZERO);
+        limiter.onDropped();
+        assertEquals(4, limiter.currentLimit());
+
+        // Chạy bão hoà limit nhiều vòng: limit tăng dần, không nhảy vọt.
+        for (int round = 0; round < 4; round++) {
+            int limit = limiter.currentLimit();
+            for (int i = 0; i < limit; i++) {
+                assertTrue(limiter.tryAcquire(Duration.ZERO));
+            }
+            for (int i = 0; i < limit; i++) {
+                limiter.onSuccess();
+            }
+        }
+        assertTrue(limiter.currentLimit() > 4 && limiter.currentLimit() <= 8);
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    void onDropped_shouldNotGoBelowMinimum() throws InterruptedException {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 4);
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire(Duration.ZERO);
+            limiter.onDropped();
+        }
+        assertEquals(1, limiter.currentLimit());
+    }
+}
@@ -5,6 +5,7 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import org.junit.jupiter.api.Test;
@@ -25,6 +26,27 @@ import vn.hoangtung.jobfind.util.constant.LevelEnum;
 
 class AiFeatureUtilsTest {
 
+    @Test
+    void normalizeWhitespaceAndWordCount_shouldMatchRegexImplementation() {
+        String alphabet = "ab \t\n\r\u000B\f\u0001\u00A0\u2003\u2028.";
+        Random random = new Random(3);
+        for (int round = 0; round < 5000; round++) {
+            StringBuilder builder = new StringBuilder();
+            int length = random.nextInt(16);
+            for (int i = 0; i < length; i++) {
+                builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String text = builder.toString();
+
+            String expected = text.isBlank() ? "" : text.replace("\r\n", "\n").replace("\r", "\n")
+                    .replaceAll("(\\n){3,}", "\n\n")
+                    .replaceAll("[ \\t]+", " ")
+                    .trim();
+            assertEquals(expected, AiFeatureUtils.normalizeWhitespace(text));
+            assertEquals(expected.isBlank() ? 0 : expected.split("\\s+").length, AiFeatureUtils.wordCount(text));
+        }
+    }
+
     @Test
     void parseChatIntent_shouldExtractSkillSalaryAndLocation() {
         ChatIntent intent = AiFeatureUtils.parseChatIntent(
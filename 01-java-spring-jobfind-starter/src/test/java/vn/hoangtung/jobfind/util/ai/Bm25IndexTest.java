@@ -0,0 +1,142 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class Bm25IndexTest {
+
+    private static final List<String> WORDS = List.of("java", "spring", "boot", "react", "docker", "kotlin",
+            "backend", "frontend", "hà", "nội", "đà", "nẵng", "phát", "triển", "hệ", "thống", "api", "sql");
+
+    @Test
+    void tokenize_shouldNormalizeAndDropShortAndNumericTokens() {
+        assertEquals(List.of("lap", "trinh", "vien", "java", "c#", "node.js", "nam", "20tr"),
+                Bm25Index.tokenize("Lập trình viên Java, C# & Node.js - 3 năm 2024 a 20tr"));
+        assertEquals(List.of(), Bm25Index.tokenize(null));
+    }
+
+    @Test
+    void search_shouldMatchReferenceBm25AfterUpdatesAndCompaction() {
+        Random random = new Random(7);
+        Map<Long, String> documents = new LinkedHashMap<>();
+        for (long id = 1; id <= 200; id++) {
+            documents.put(id, randomText(random));
+        }
+        Bm25Index index = new Bm25Index();
+        index.replaceAll(documents);
+        assertSameAsReference(index, documents, random);
+
+        // đủ nhiều lượt xóa/sửa để kích hoạt compact
+        for (int round = 0; round < 10; round++) {
+            Map<Long, String> upserts = new LinkedHashMap<>();
+            List<Long> deleted = new ArrayList<>();
+            for (int i = 0; i < 15; i++) {
+                long id = 1 + random.nextInt(260);
+                if (random.nextInt(3) == 0) {
+                    deleted.add(id);
+                    documents.remove(id);
+                    upserts.remove(id);
+                } else {
+                    String text = randomText(random);
+                    upserts.put(id, text);
+                    deleted.remove(Long.valueOf(id));
+                }
+            }
+            index.apply(upserts, deleted);
+            // apply xóa trước rồi upsert
+            documents.putAll(upserts);
+            assertEquals(documents.size(), index.size());
+            assertSameAsReference(index, documents, random);
+        }
+    }
+
+    @Test
+    void search_shouldPreferRareTermsAndIgnoreUnknownQueries() {
+        Bm25Index index = new Bm25Index();
+        index.put(1, "Java Developer Java Spring");
+        index.put(2, "Java Tester");
+        index.put(3, "Kotlin Developer");
+
+        assertEquals(List.of(3L), index.searchIds("kotlin", 5));
+        assertEquals(List.of(1L, 2L), index.searchIds("java", 5));
+        assertEquals(List.of(), index.searchIds("golang rust", 5));
+
+        index.remove(3);
+        assertEquals(List.of(), index.searchIds("kotlin", 5));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void fuse_shouldRewardIdsRankedByBothLists() {
+        List<Long> vector = List.of(10L, 20L, 30L);
+        List<Long> lexical = List.of(30L, 40L);
+
+        assertEquals(List.of(30L, 10L, 20L, 40L), Bm25Index.fuse(List.of(vector, lexical), 10));
+        assertEquals(List.of(10L, 20L), Bm25Index.fuse(List.of(vector, List.of()), 2));
+        assertTrue(Bm25Index.fuse(List.of(List.of(), List.of()), 5).isEmpty());
+    }
+
+    private static void assertSameAsReference(Bm25Index index, Map<Long, String> documents, Random random) {
+        for (int query = 0; query < 20; query++) {
+            String text = WORDS.get(random.nextInt(WORDS.size())) + " " + WORDS.get(random.nextInt(WORDS.size()));
+            Map<Long, Double> expected = referenceScores(documents, text);
+            List<Double> expectedTop = expected.values().stream()
+                    .sorted(Comparator.reverseOrder())
+                    .limit(8)
+                    .toList();
+
+            List<Bm25Index.Hit> actual = index.search(text, 8);
+            assertEquals(expectedTop.size(), actual.size(), text);
+            for (int i = 0; i < actual.size(); i++) {
+                Bm25Index.Hit hit = actual.get(i);
+                assertEquals(expectedTop.get(i), hit.score(), 1e-9, text);
+                assertEquals(expected.get(hit.id()), hit.score(), 1e-9, text);
+            }
+        }
+    }
+
+    /** BM25 tính thẳng trên toàn bộ tài liệu, không dùng postings. */
+    private static Map<Long, Double> referenceScores(Map<Long, String> documents, String query) {
+        Map<Long, List<String>> tokens = new LinkedHashMap<>();
+        documents.forEach((id, text) -> tokens.put(id, Bm25Index.tokenize(text)));
+        double averageLength = Math.max(1d, tokens.values().stream().mapToInt(List::size).average().orElse(0));
+        int n = tokens.size();
+
+        Map<Long, Double> scores = new HashMap<>();
+        for (String term : new LinkedHashSet<>(Bm25Index.tokenize(query))) {
+            long df = tokens.values().stream().filter(list -> list.contains(term)).count();
+            if (df == 0) {
+                continue;
+            }
+            double idf = Math.log(1d + (n - df + 0.5d) / (df + 0.5d));
+            tokens.forEach((id, list) -> {
+                long tf = list.stream().filter(term::equals).count();
+                if (tf > 0) {
+                    double norm = 1.2d * (1d - 0.75d + 0.75d * list.size() / averageLength);
+                    scores.merge(id, idf * tf * 2.2d / (tf + norm), Double::sum);
+                }
+            });
+        }
+        return scores;
+    }
+
+    private static String randomText(Random random) {
+        StringBuilder builder = new StringBuilder();
+        int length = 3 + random.nextInt(12);
+        for (int i = 0; i < length; i++) {
+            builder.append(WORDS.get(random.nextInt(WORDS.size()))).append(' ');
+        }
+        return builder.toString();
+    }
+}
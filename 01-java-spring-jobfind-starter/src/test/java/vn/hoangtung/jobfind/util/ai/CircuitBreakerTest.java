@@ -0,0 +1,104 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+
+    private final MutableClock clock = new MutableClock();
+
+    @Test
+    void shouldOpenAfterThresholdAndAllowSingleHalfOpenTrial() {
+        CircuitBreaker breaker = new CircuitBreaker(3, Duration.ofSeconds(30), clock);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure(null);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+
+        clock.advance(Duration.ofSeconds(31));
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire(), "Chỉ một lời gọi thử trong trạng thái half-open");
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    void shouldReopenWhenHalfOpenTrialFails() {
+        CircuitBreaker breaker = new CircuitBreaker(1, Duration.ofSeconds(10), clock);
+        breaker.tryAcquire();
+        breaker.onFailure(null);
+        clock.advance(Duration.ofSeconds(11));
+
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure(null);
+
+        assertFalse(breaker.tryAcquire());
+        assertEquals(Duration.ofSeconds(10), breaker.remainingOpen());
+    }
+
+    @Test
+    void retryAfterShouldCountAsFailureWithoutOpeningAlone() {
+        CircuitBreaker breaker = new CircuitBreaker(3, Duration.ofSeconds(10), clock);
+        for (int i = 0; i < 2; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.onFailure(Duration.ofSeconds(2));
+        }
+        // 429 lẻ tẻ không chặn toàn bộ lời gọi AI
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onFailure(Duration.ofSeconds(2));
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertEquals(Duration.ofSeconds(10), breaker.remainingOpen());
+    }
+
+    @Test
+    void shouldHonourLongerRetryAfterOnceOpen() {
+        CircuitBreaker breaker = new CircuitBreaker(2, Duration.ofSeconds(10), clock);
+        breaker.tryAcquire();
+        breaker.onFailure(Duration.ofSeconds(45));
+        assertTrue(breaker.tryAcquire());
+        breaker.onFailure(Duration.ofSeconds(45));
+
+        clock.advance(Duration.ofSeconds(20));
+        assertFalse(breaker.tryAcquire());
+        clock.advance(Duration.ofSeconds(26));
+        assertTrue(breaker.tryAcquire());
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+class CvTextScannerTest {
+
+    private static final List<String> LINES = List.of(
+            "Nguyễn Văn A",
+            "Email: a.nguyen@example.com",
+            "Phone: +84 900 000 000",
+            "GitHub: github.com/nguyenvana, LinkedIn: https://www.linkedin.com/in/nva",
+            "SKILLS",
+            "Kỹ năng",
+            "Technical Skills",
+            "Java, Spring Boot, PostgreSQL, Docker",
+            "EXPERIENCE",
+            "Kinh nghiệm làm việc",
+            "- Built REST APIs with Spring Boot for 2 million users.",
+            "* Reduced response time by 30%.",
+            "+   Led a team of 5 engineers on payment services.",
+            "-",
+            "Backend developer with 3 years of experience building distributed systems at scale.",
+            "PROJECTS",
+            "Dự án",
+            "Job portal: recruitment platform. Implemented JWT authentication! Did it scale? Yes it did well.",
+            "EDUCATION",
+            "Học vấn",
+            "Hanoi University of Science and Technology",
+            "Certifications",
+            "AWS Cloud Practitioner",
+            "Languages",
+            "English - IELTS 7.0",
+            "http://portfolio.dev",
+            "   ",
+            "",
+            "Summary",
+            "Passionate engineer who loves clean code and mentoring juniors in Vietnam.");
+
+    @Test
+    void scan_shouldMatchLegacyRegexImplementation() {
+        Random random = new Random(11);
+        for (int round = 0; round < 300; round++) {
+            StringBuilder builder = new StringBuilder();
+            int lineCount = 1 + random.nextInt(25);
+            for (int i = 0; i < lineCount; i++) {
+                builder.append(LINES.get(random.nextInt(LINES.size())));
+                builder.append(random.nextInt(6) == 0 ? "\n\n" : "\n");
+            }
+            String text = AiFeatureUtils.normalizeWhitespace(builder.toString());
+            CvTextScanner.CvTextScan scan = CvTextScanner.scan(text);
+
+            assertEquals(legacySections(text), scan.sections(), text);
+            assertEquals(legacySectionOrder(text), scan.sectionOrder(), text);
+            assertEquals(legacyBullets(text), scan.bullets(), text);
+            assertEquals(legacyName(text), scan.name(), text);
+            assertEquals(legacyFirstMatch(LEGACY_EMAIL, text), scan.email(), text);
+            assertEquals(legacyFirstMatch(LEGACY_PHONE, text), scan.phone(), text);
+            assertEquals(legacyLinks(text), scan.links(), text);
+            assertEquals(legacyFirstParagraph(text), scan.firstParagraph(), text);
+            for (String section : scan.sectionOrder()) {
+                assertEquals(legacyBullets(scan.section(section)), CvTextScanner.bullets(scan.section(section)), text);
+                assertEquals(List.of(scan.section(section).split("\\R")), CvTextScanner.lines(scan.section(section)));
+            }
+        }
+    }
+
+    @Test
+    void bullets_shouldSplitSentencesWhenThereAreNoBulletLines() {
+        assertEquals(List.of("Designed the billing pipeline end to end.", "Migrated legacy jobs to Kubernetes clusters!"),
+                CvTextScanner.bullets("Designed the billing pipeline end to end.  Short one. "
+                        + "Migrated legacy jobs to Kubernetes clusters!"));
+        assertEquals("experience", CvTextScanner.sectionHeader("  Kinh Nghiệm  "));
+        assertEquals("", CvTextScanner.sectionHeader("Java developer"));
+    }
+
+    // ===== Cài đặt cũ trong CvStructuredParserService, giữ làm chuẩn so sánh =====
+
+    private static final Pattern LEGACY_EMAIL = Pattern.compile("[A-Z0-9._%+-]+@[A-Z0-9.-]+\\.[A-Z]{2,}",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern LEGACY_PHONE = Pattern.compile("(?<!\\d)(?:\\+?\\d[\\d .()/-]{7,}\\d)(?!\\d)");
+    private static final Pattern LEGACY_LINK = Pattern.compile(
+            "(?i)\\b(?:https?://)?(?:www\\.)?(?:linkedin\\.com|github\\.com|gitlab\\.com|bitbucket\\.org)[^\\s,;)]*");
+
+    private static Map<String, String> legacySections(String cvText) {
+        Map<String, StringBuilder> sections = new LinkedHashMap<>();
+        String current = "header";
+        sections.put(current, new StringBuilder());
+        for (String line : cvText.split("\\R")) {
+            String section = legacyHeader(line);
+            if (!section.isBlank()) {
+                current = section;
+                sections.putIfAbsent(current, new StringBuilder());
+                continue;
+            }
+            sections.get(current).append(line).append('\n');
+        }
+        return sections.entrySet().stream().collect(Collectors.toMap(
+                Map.Entry::getKey,
+                entry -> AiFeatureUtils.normalizeWhitespace(entry.getValue().toString()),
+                (left, right) -> left,
+                LinkedHashMap::new));
+    }
+
+    private static List<String> legacySectionOrder(String cvText) {
+        List<String> order = new ArrayList<>();
+        for (String line : cvText.split("\\R")) {
+            String section = legacyHeader(line);
+            if (!section.isBlank() && !order.contains(section)) {
+                order.add(section);
+            }
+        }
+        return order;
+    }
+
+    private static String legacyHeader(String line) {
+        String normalized = AiFeatureUtils.normalizeForSearch(line);
+        if (normalized.isBlank() || normalized.length() > 40) {
+            return "";
+        }
+        Map<String, List<String>> groups = new LinkedHashMap<>();
+        groups.put("summary", List.of("summary", "profile", "objective", "gioi thieu", "muc tieu"));
+        groups.put("skills", List.of("skills", "technical skills", "ky nang", "cong nghe"));
+        groups.put("experience", List.of("experience", "work experience", "work history", "kinh nghiem"));
+        groups.put("projects", List.of("projects", "project", "du an"));
+        groups.put("education", List.of("education", "hoc van", "university"));
+        groups.put("certifications", List.of("certifications", "certification", "certificate", "chung chi"));
+        groups.put("languages", List.of("languages", "language", "ngoai ngu"));
+        for (Map.Entry<String, List<String>> group : groups.entrySet()) {
+            for (String candidate : group.getValue()) {
+                String normalizedCandidate = AiFeatureUtils.normalizeForSearch(candidate);
+                if (normalized.equals(normalizedCandidate) || normalized.equals(normalizedCandidate + "s")) {
+                    return group.getKey();
+                }
+            }
+        }
+        return "";
+    }
+
+    private static List<String> legacyBullets(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        List<String> bullets = new ArrayList<>();
+        for (String line : text.split("\\R")) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("-") || trimmed.startsWith("*") || trimmed.startsWith("+")) {
+                bullets.add(trimToMax(trimmed.replaceFirst("^[-*+]\\s*", ""), 350));
+            }
+        }
+        if (bullets.isEmpty()) {
+            for (String sentence : text.split("(?<=[.!?])\\s+")) {
+                String trimmed = AiFeatureUtils.normalizeWhitespace(sentence);
+                if (AiFeatureUtils.wordCount(trimmed) >= 5) {
+                    bullets.add(trimToMax(trimmed, 350));
+                }
+            }
+        }
+        return bullets.stream().filter(value -> !value.isBlank()).limit(20).toList();
+    }
+
+    private static List<String> legacyLinks(String cvText) {
+        Matcher matcher = LEGACY_LINK.matcher(cvText);
+        List<String> links = new ArrayList<>();
+        while (matcher.find()) {
+            links.add(matcher.group().trim());
+        }
+        return links.stream().distinct().toList();
+    }
+
+    private static String legacyName(String cvText) {
+        for (String line : cvText.split("\\R")) {
+            String trimmed = AiFeatureUtils.normalizeWhitespace(line);
+            if (trimmed.isBlank() || trimmed.length() > 80) {
+                continue;
+            }
+            String normalized = AiFeatureUtils.normalizeForSearch(trimmed);
+            if (normalized.contains("@") || normalized.contains("http") || LEGACY_PHONE.matcher(trimmed).find()) {
+                continue;
+            }
+            if (legacyHeader(trimmed).isBlank()) {
+                return trimmed;
+            }
+        }
+        return "";
+    }
+
+    private static String legacyFirstParagraph(String cvText) {
+        return List.of(cvText.split("\\R\\s*\\R")).stream()
+                .map(AiFeatureUtils::normalizeWhitespace)
+                .filter(value -> AiFeatureUtils.wordCount(value) >= 8)
+                .findFirst()
+                .map(value -> trimToMax(value, 600))
+                .orElse("");
+    }
+
+    private static String legacyFirstMatch(Pattern pattern, String text) {
+        Matcher matcher = pattern.matcher(text);
+        return matcher.find() ? matcher.group().trim() : "";
+    }
+
+    private static String trimToMax(String value, int maxLength) {
+        if (value == null || value.length() <= maxLength) {
+            return value == null ? "" : value;
+        }
+        return value.substring(0, maxLength).trim();
+    }
+}
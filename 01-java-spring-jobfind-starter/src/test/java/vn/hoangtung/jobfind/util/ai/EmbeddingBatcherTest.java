@@ -0,0 +1,82 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+class EmbeddingBatcherTest {
+
+    @Test
+    void submit_shouldGroupConcurrentRequestsIntoBatches() throws Exception {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        try (EmbeddingBatcher batcher = new EmbeddingBatcher(texts -> {
+            batchSizes.add(texts.size());
+            return texts.stream().map(text -> List.of((double) text.length())).toList();
+        }, 4, Duration.ofMillis(200))) {
+            CompletableFuture<List<List<Double>>> first = batcher.submitAll(List.of("a", "bbb"));
+            CompletableFuture<List<Double>> second = batcher.submit("cc");
+
+            assertEquals(List.of(List.of(1.0), List.of(3.0)), first.get(2, TimeUnit.SECONDS));
+            assertEquals(List.of(2.0), second.get(2, TimeUnit.SECONDS));
+            assertEquals(List.of(3), batchSizes);
+        }
+    }
+
+    @Test
+    void submit_shouldSplitLargeRoundsByBatchSize() throws Exception {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        try (EmbeddingBatcher batcher = new EmbeddingBatcher(texts -> {
+            batchSizes.add(texts.size());
+            return texts.stream().map(text -> List.of(1.0)).toList();
+        }, 2, Duration.ofMillis(100))) {
+            List<List<Double>> result = batcher.submitAll(List.of("a", "b", "c", "d", "e"))
+                    .get(2, TimeUnit.SECONDS);
+
+            assertEquals(5, result.size());
+            assertTrue(batchSizes.stream().allMatch(size -> size <= 2));
+            assertEquals(5, batchSizes.stream().mapToInt(Integer::intValue).sum());
+        }
+    }
+
+    @Test
+    void submit_shouldFailOnlyTheFailedBatch() {
+        try (EmbeddingBatcher batcher = new EmbeddingBatcher(texts -> {
+            throw new IllegalStateException("onnx crashed");
+        }, 8, Duration.ofMillis(10))) {
+            ExecutionException error = assertThrows(ExecutionException.class,
+                    () -> batcher.submit("x").get(2, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, error.getCause());
+        }
+    }
+
+    @Test
+    void batchingModel_shouldReusePrecomputedEmbeddingsForVectorStore() {
+        EmbeddingModel delegate = mock(EmbeddingModel.class);
+        try (BatchingEmbeddingModel model = new BatchingEmbeddingModel(delegate, new EmbeddingBatcher(
+                texts -> texts.stream().map(text -> List.of(0.5, 0.5)).toList(), 16, Duration.ofMillis(5)))) {
+            Document document = new Document("chunk-1", "Java Spring Boot", Map.of());
+
+            model.embedDocuments(List.of(document));
+
+            assertEquals(List.of(0.5, 0.5), model.embed(document));
+            verify(delegate, never()).embed(any(Document.class));
+        }
+    }
+}
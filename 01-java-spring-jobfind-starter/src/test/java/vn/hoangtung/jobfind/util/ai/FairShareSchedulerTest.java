@@ -0,0 +1,105 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+class FairShareSchedulerTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    @Test
+    void select_shouldRunHigherPriorityClassFirst() {
+        FairShareScheduler scheduler = new FairShareScheduler(Map.of(), Duration.ofSeconds(30), 1000);
+        List<FairShareScheduler.Candidate> candidates = List.of(
+                candidate(1, "CV_ANALYZE", "u1", 2, 0),
+                candidate(2, "CV_ANALYZE", "u1", 2, 0),
+                candidate(3, "CHAT", "u2", 0, 0));
+
+        assertEquals(List.of(3L, 1L), ids(scheduler.select(candidates, 2, Map.of(), NOW)));
+    }
+
+    @Test
+    void select_shouldInterleaveUsersWithinSameClass() {
+        FairShareScheduler scheduler = new FairShareScheduler(Map.of(), Duration.ofSeconds(30), 1000);
+        List<FairShareScheduler.Candidate> candidates = new ArrayList<>();
+        for (int i = 1; i <= 6; i++) {
+            candidates.add(candidate(i, "CHAT", "heavy", 0, 0));
+        }
+        candidates.add(candidate(7, "CHAT", "light", 0, 0));
+
+        List<Long> order = new ArrayList<>();
+        for (int round = 0; round < 4; round++) {
+            List<FairShareScheduler.Candidate> picked = scheduler.select(candidates, 1, Map.of(), NOW);
+            candidates.removeAll(picked);
+            order.addAll(ids(picked));
+        }
+
+        // user "light" chỉ chờ một lượt dù "heavy" gửi trước 6 task
+        assertEquals(List.of(1L, 7L, 2L, 3L), order);
+    }
+
+    @Test
+    void select_shouldChargeExpensiveTypesMore() {
+        FairShareScheduler scheduler = new FairShareScheduler(Map.of(), Duration.ofSeconds(30), 1000);
+        scheduler.recordServiceTime("CV_MATCH", 8000);
+        scheduler.recordServiceTime("CHAT", 1000);
+        List<FairShareScheduler.Candidate> candidates = new ArrayList<>(List.of(
+                candidate(1, "CV_MATCH", "cv-user", 1, 0),
+                candidate(2, "CV_MATCH", "cv-user", 1, 0),
+                candidate(3, "CHAT", "chat-user", 1, 0),
+                candidate(4, "CHAT", "chat-user", 1, 0),
+                candidate(5, "CHAT", "chat-user", 1, 0)));
+
+        List<FairShareScheduler.Candidate> picked = scheduler.select(candidates, 4, Map.of(), NOW);
+
+        // sau một task CV_MATCH (chi phí 8s) user cv-user nhường cho các CHAT (1s) của user kia
+        assertEquals(List.of(1L, 3L, 4L, 5L), ids(picked));
+    }
+
+    @Test
+    void select_shouldRespectTypeLimitsAndPromoteAgedTasks() {
+        FairShareScheduler scheduler = new FairShareScheduler(Map.of("CV_ANALYZE", 2), Duration.ofSeconds(30), 1000);
+        List<FairShareScheduler.Candidate> candidates = List.of(
+                candidate(1, "CV_ANALYZE", "u1", 2, 0),
+                candidate(2, "CV_ANALYZE", "u2", 2, 0),
+                candidate(3, "CV_ANALYZE", "u3", 2, 0));
+
+        assertEquals(List.of(1L), ids(scheduler.select(candidates, 3, Map.of("CV_ANALYZE", 1), NOW)));
+        assertTrue(scheduler.select(candidates, 3, Map.of("CV_ANALYZE", 2), NOW).isEmpty());
+
+        FairShareScheduler fresh = new FairShareScheduler(Map.of(), Duration.ofSeconds(30), 1000);
+        FairShareScheduler.Candidate aged = candidate(2, "CV_ANALYZE", "u2", 2, 65);
+        List<FairShareScheduler.Candidate> mixed = List.of(candidate(1, "INTERVIEW_START", "u1", 1, 0), aged);
+
+        // CV chờ 65s được nâng 2 lớp nên chạy trước task lớp STANDARD mới vào
+        assertEquals(0, fresh.effectiveClass(aged, NOW));
+        assertEquals(List.of(2L), ids(fresh.select(mixed, 1, Map.of(), NOW)));
+    }
+
+    @Test
+    void limit_shouldFallBackToDefaultLimitLikeBulkhead() {
+        FairShareScheduler scheduler = new FairShareScheduler(Map.of("CV_ANALYZE", 4), 16, Duration.ofSeconds(30), 1000);
+
+        assertEquals(4, scheduler.limit("CV_ANALYZE"));
+        assertEquals(16, scheduler.limit("INTERVIEW_ANSWER"));
+        assertTrue(scheduler.select(List.of(candidate(1, "INTERVIEW_ANSWER", "u1", 1, 0)), 1,
+                Map.of("INTERVIEW_ANSWER", 16), NOW).isEmpty());
+    }
+
+    private static FairShareScheduler.Candidate candidate(long id, String type, String user, int priorityClass,
+            long waitedSeconds) {
+        return new FairShareScheduler.Candidate(id, type, user, priorityClass, NOW.minusSeconds(waitedSeconds));
+    }
+
+    private static List<Long> ids(List<FairShareScheduler.Candidate> candidates) {
+        return candidates.stream().map(FairShareScheduler.Candidate::id).toList();
+    }
+}
@@ -0,0 +1,78 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class HashedTimingWheelTest {
+
+    private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+
+    @Test
+    void advance_shouldExpireOnlyDueKeysWithinOneTick() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(Duration.ofMillis(100), 8, START);
+        wheel.schedule("a", START.plusMillis(250));
+        wheel.schedule("b", START.plusMillis(1000));
+
+        assertTrue(wheel.advance(START.plusMillis(199)).isEmpty());
+        assertTrue(wheel.advance(START.plusMillis(299)).isEmpty());
+        assertEquals(List.of("a"), wheel.advance(START.plusMillis(300)));
+        assertEquals(1, wheel.size());
+        assertEquals(List.of("b"), wheel.advance(START.plusMillis(1000)));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void advance_shouldKeepTimersSeveralRoundsAway() {
+        // 8 ô x 100ms = 800ms mỗi vòng; timer 2.5s nằm cùng ô với tick 500ms nhưng phải chờ thêm 2 vòng
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(Duration.ofMillis(100), 8, START);
+        wheel.schedule("far", START.plusMillis(2500));
+        wheel.schedule("near", START.plusMillis(500));
+
+        assertEquals(List.of("near"), wheel.advance(START.plusMillis(500)));
+        for (long millis = 600; millis < 2500; millis += 100) {
+            assertTrue(wheel.advance(START.plusMillis(millis)).isEmpty(), "t=" + millis);
+        }
+        assertEquals(List.of("far"), wheel.advance(START.plusMillis(2500)));
+    }
+
+    @Test
+    void advance_shouldCatchUpAfterLongPause() {
+        HashedTimingWheel<Integer> wheel = new HashedTimingWheel<>(Duration.ofMillis(100), 8, START);
+        for (int i = 1; i <= 20; i++) {
+            wheel.schedule(i, START.plusMillis(i * 100L));
+        }
+        wheel.schedule(99, START.plusSeconds(60));
+
+        // bỏ lỡ hơn một vòng: vẫn ra đủ 20 timer đã đến hạn, timer 60s chưa hết hạn
+        List<Integer> expired = wheel.advance(START.plusMillis(5000));
+        assertEquals(20, expired.size());
+        assertTrue(wheel.contains(99));
+        assertEquals(List.of(99), wheel.advance(START.plusSeconds(60)));
+    }
+
+    @Test
+    void scheduleAndCancel_shouldReplaceExistingTimer() {
+        HashedTimingWheel<String> wheel = new HashedTimingWheel<>(Duration.ofMillis(100), 8, START);
+        wheel.schedule("task", START.plusMillis(200));
+        wheel.schedule("task", START.plusMillis(900));
+
+        assertTrue(wheel.advance(START.plusMillis(800)).isEmpty());
+        assertEquals(List.of("task"), wheel.advance(START.plusMillis(900)));
+
+        wheel.schedule("cancelled", START.plusMillis(1000));
+        assertTrue(wheel.cancel("cancelled"));
+        assertFalse(wheel.cancel("cancelled"));
+        assertTrue(wheel.advance(START.plusMillis(1200)).isEmpty());
+
+        // thời điểm đã qua thì hết hạn ở tick kế tiếp
+        wheel.schedule("late", START);
+        assertEquals(List.of("late"), wheel.advance(START.plusMillis(1300)));
+    }
+}
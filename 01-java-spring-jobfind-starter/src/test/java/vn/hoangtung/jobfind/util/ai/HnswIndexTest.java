@@ -0,0 +1,91 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+class HnswIndexTest {
+
+    private static final int DIMENSION = 32;
+
+    @Test
+    void search_shouldMatchExactNeighboursWithHighRecall() {
+        Random random = new Random(7);
+        HnswIndex index = new HnswIndex(DIMENSION, 16, 100);
+        BitSet all = new BitSet();
+        for (int i = 0; i < 3000; i++) {
+            all.set(index.add(randomUnitVector(random)));
+        }
+
+        int hits = 0;
+        int total = 0;
+        for (int q = 0; q < 50; q++) {
+            float[] query = randomUnitVector(random);
+            Set<Integer> expected = nodes(index.exactSearch(query, 10, all));
+            Set<Integer> actual = nodes(index.search(query, 10, 64, node -> true));
+            expected.retainAll(actual);
+            hits += expected.size();
+            total += 10;
+        }
+        assertTrue(hits >= total * 0.9, "recall@10 = " + (double) hits / total);
+    }
+
+    @Test
+    void search_shouldSkipDeletedAndFilteredNodes() {
+        HnswIndex index = new HnswIndex(2, 4, 20);
+        int first = index.add(new float[] { 1f, 0f });
+        int second = index.add(new float[] { 0.8f, 0.6f });
+        int third = index.add(new float[] { 0f, 1f });
+
+        index.markDeleted(first);
+
+        List<HnswIndex.Result> results = index.search(new float[] { 1f, 0f }, 3, 10, node -> node != third);
+        assertEquals(List.of(second), results.stream().map(HnswIndex.Result::node).toList());
+        assertEquals(2, index.liveSize());
+    }
+
+    @Test
+    void snapshot_shouldRoundTripGraphAndVectors() {
+        Random random = new Random(11);
+        HnswIndex index = new HnswIndex(DIMENSION, 8, 50);
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            vectors.add(randomUnitVector(random));
+            index.add(vectors.get(i));
+        }
+        index.markDeleted(5);
+
+        ByteBuffer buffer = ByteBuffer.allocate(index.snapshotBytes());
+        index.writeSnapshot(buffer);
+        buffer.flip();
+        HnswIndex restored = HnswIndex.readSnapshot(buffer);
+
+        assertEquals(index.size(), restored.size());
+        assertTrue(restored.isDeleted(5));
+        assertFalse(restored.isDeleted(6));
+        float[] query = vectors.get(42);
+        assertEquals(index.search(query, 5, 32, node -> true), restored.search(query, 5, 32, node -> true));
+    }
+
+    private static Set<Integer> nodes(List<HnswIndex.Result> results) {
+        return results.stream().map(HnswIndex.Result::node).collect(Collectors.toSet());
+    }
+
+    private static float[] randomUnitVector(Random random) {
+        List<Double> values = new ArrayList<>(DIMENSION);
+        for (int i = 0; i < DIMENSION; i++) {
+            values.add(random.nextGaussian());
+        }
+        return SemanticQueryIndex.normalize(values);
+    }
+}
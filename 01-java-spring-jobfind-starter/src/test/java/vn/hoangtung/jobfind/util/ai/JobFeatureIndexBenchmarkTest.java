@@ -0,0 +1,176 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import vn.hoangtung.jobfind.domain.Company;
+import vn.hoangtung.jobfind.domain.Job;
+import vn.hoangtung.jobfind.domain.Skill;
+import vn.hoangtung.jobfind.util.ai.AiFeatureUtils.ChatIntent;
+import vn.hoangtung.jobfind.util.ai.AiFeatureUtils.RankedJob;
+
+/**
+ * So sánh {@link JobFeatureIndex#rank} với đường cũ {@link AiFeatureUtils#rankJobs} +
+ * {@link AiFeatureUtils#matchesHardConstraints} trên catalogue giả 10k/100k/1M job (5 skill mỗi job,
+ * 2k công ty). Không chạy trong ./gradlew test; chạy riêng bằng ./gradlew benchmark
+ * (-Pbenchmark.sizes=10000,100000 để đổi kích thước). Kết quả in ra stdout, là median của các lần đo
+ * sau warm-up, nên chỉ dùng để so sánh tương đối trên cùng máy.
+ */
+@Tag("benchmark")
+class JobFeatureIndexBenchmarkTest {
+
+    private static final int SKILLS_PER_JOB = 5;
+    private static final int COMPANY_COUNT = 2_000;
+    private static final int VECTOR_CANDIDATES = 12;
+    private static final int TOP_K = 5;
+    private static final List<String> LOCATIONS = List.of("Hà Nội", "TP Hồ Chí Minh", "Đà Nẵng", "Hải Phòng",
+            "Cần Thơ", "Remote");
+    private static final List<String> TITLES = List.of("Backend Engineer", "Frontend Developer",
+            "Fullstack Developer", "Data Engineer", "Mobile Developer", "DevOps Engineer");
+    private static final List<String> BASE_SKILLS = List.of("Java", "Spring Boot", "React", "Node.js", "Docker",
+            "PostgreSQL", "Kotlin", "C#", "AWS", "Python", "Go", "Kubernetes", "MySQL", "Vue", "Angular");
+    private static final List<String> QUERIES = List.of(
+            "tìm việc java backend ở hà nội lương từ 20 triệu",
+            "react frontend tại đà nẵng",
+            "công việc phù hợp với tôi");
+    private static final Set<String> USER_SKILLS = Set.of("Docker", "Java", "Go", "skill-17");
+
+    @Test
+    void rank_shouldOutperformRankJobsOnLargeCatalogues() {
+        for (int size : sizes()) {
+            run(size);
+        }
+    }
+
+    private static void run(int size) {
+        Random random = new Random(size);
+        List<Skill> skillPool = skillPool();
+        List<Company> companyPool = companyPool();
+        List<Job> jobs = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            jobs.add(randomJob(i, random, skillPool, companyPool));
+        }
+        long buildStartedAt = System.nanoTime();
+        JobFeatureIndex index = new JobFeatureIndex();
+        index.replaceAll(jobs);
+        double buildMillis = (System.nanoTime() - buildStartedAt) / 1e6;
+
+        Set<String> knownSkills = new LinkedHashSet<>();
+        skillPool.forEach(skill -> knownSkills.add(skill.getName()));
+        // Đường cũ tốn O(n) cho mỗi lần gọi nên giảm số vòng đo khi catalogue lớn
+        int indexRuns = Math.max(5, 2_000_000 / size);
+        int baselineRuns = Math.max(3, 200_000 / size);
+
+        System.out.println(">>> [Benchmark] " + size + " job, dựng index " + format(buildMillis));
+        for (String query : QUERIES) {
+            ChatIntent intent = AiFeatureUtils.parseChatIntent(query, LOCATIONS, knownSkills);
+            List<Job> candidates = jobs.subList(size / 2, size / 2 + VECTOR_CANDIDATES);
+            List<Long> candidateIds = candidates.stream().map(Job::getId).toList();
+
+            // Cùng kết quả thì mới so sánh thời gian
+            List<RankedJob> expectedTop = baseline(intent, jobs).top();
+            assertEquals(expectedTop, index.rank(intent, List.of(), USER_SKILLS, TOP_K).top(), query);
+
+            double fullIndex = medianMillis(indexRuns, () -> index.rank(intent, List.of(), USER_SKILLS, TOP_K));
+            double fullBaseline = medianMillis(baselineRuns, () -> baseline(intent, jobs));
+            double candidateIndex = medianMillis(indexRuns, () -> index.rank(intent, candidateIds, USER_SKILLS, TOP_K));
+            double candidateBaseline = medianMillis(indexRuns, () -> baseline(intent, candidates));
+            System.out.println(">>> [Benchmark]   \"" + query + "\": quét toàn bộ " + format(fullIndex)
+                    + " (rankJobs " + format(fullBaseline) + "), " + VECTOR_CANDIDATES + " ứng viên vector "
+                    + format(candidateIndex) + " (rankJobs " + format(candidateBaseline) + ")");
+        }
+    }
+
+    // Đường cũ của AIService.chat: chấm và sort toàn bộ danh sách rồi lọc ràng buộc cứng
+    private static JobFeatureIndex.Ranking baseline(ChatIntent intent, List<Job> jobs) {
+        List<RankedJob> ranked = AiFeatureUtils.rankJobs(intent, jobs, USER_SKILLS);
+        List<RankedJob> exact = ranked.stream()
+                .filter(item -> AiFeatureUtils.matchesHardConstraints(intent, item.job()))
+                .limit(TOP_K)
+                .toList();
+        return new JobFeatureIndex.Ranking(ranked.stream().limit(TOP_K).toList(), exact);
+    }
+
+    private static double medianMillis(int runs, Supplier<JobFeatureIndex.Ranking> action) {
+        // warm-up để JIT biên dịch trước khi đo
+        for (int i = 0; i < Math.min(runs, 3); i++) {
+            action.get();
+        }
+        long[] samples = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long startedAt = System.nanoTime();
+            action.get();
+            samples[i] = System.nanoTime() - startedAt;
+        }
+        Arrays.sort(samples);
+        return samples[runs / 2] / 1e6;
+    }
+
+    private static String format(double millis) {
+        return millis >= 1 ? String.format("%.1f ms", millis) : String.format("%.0f µs", millis * 1000);
+    }
+
+    private static int[] sizes() {
+        String spec = System.getProperty("benchmark.sizes", "10000,100000,1000000");
+        return Arrays.stream(spec.split(",")).map(String::trim).filter(value -> !value.isEmpty())
+                .mapToInt(Integer::parseInt).toArray();
+    }
+
+    private static List<Skill> skillPool() {
+        List<Skill> skills = new ArrayList<>();
+        for (String name : BASE_SKILLS) {
+            skills.add(skill(name));
+        }
+        for (int i = 0; i < 200; i++) {
+            skills.add(skill("skill-" + i));
+        }
+        return skills;
+    }
+
+    private static List<Company> companyPool() {
+        List<Company> companies = new ArrayList<>(COMPANY_COUNT);
+        for (int i = 0; i < COMPANY_COUNT; i++) {
+            Company company = new Company();
+            company.setName("Công ty " + i);
+            companies.add(company);
+        }
+        return companies;
+    }
+
+    // Skill và công ty dùng chung instance để catalogue 1M job vừa heap của task benchmark
+    private static Job randomJob(long id, Random random, List<Skill> skillPool, List<Company> companyPool) {
+        Job job = new Job();
+        job.setId(id);
+        job.setName(TITLES.get(random.nextInt(TITLES.size())));
+        job.setLocation(LOCATIONS.get(random.nextInt(LOCATIONS.size())));
+        job.setSalary((10 + random.nextInt(8) * 5) * 1_000_000d);
+        job.setActive(true);
+        job.setDescription(random.nextBoolean() ? "Phát triển hệ thống java, docker" : "Làm sản phẩm cho người dùng");
+        List<Skill> skills = new ArrayList<>(SKILLS_PER_JOB);
+        while (skills.size() < SKILLS_PER_JOB) {
+            Skill skill = skillPool.get(random.nextInt(skillPool.size()));
+            if (!skills.contains(skill)) {
+                skills.add(skill);
+            }
+        }
+        job.setSkills(skills);
+        job.setCompany(companyPool.get(random.nextInt(companyPool.size())));
+        return job;
+    }
+
+    private static Skill skill(String name) {
+        Skill skill = new Skill();
+        skill.setName(name);
+        return skill;
+    }
+}
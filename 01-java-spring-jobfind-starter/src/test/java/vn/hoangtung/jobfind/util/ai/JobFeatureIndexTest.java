@@ -0,0 +1,151 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import vn.hoangtung.jobfind.domain.Company;
+import vn.hoangtung.jobfind.domain.Job;
+import vn.hoangtung.jobfind.domain.Skill;
+import vn.hoangtung.jobfind.util.ai.AiFeatureUtils.ChatIntent;
+import vn.hoangtung.jobfind.util.ai.AiFeatureUtils.RankedJob;
+
+class JobFeatureIndexTest {
+
+    private static final List<String> SKILLS = List.of("Java", "Spring Boot", "React", "Node.js", "Docker",
+            "PostgreSQL", "Kotlin", "C#", "AWS", "Python");
+    private static final List<String> LOCATIONS = List.of("Hà Nội", "TP Hồ Chí Minh", "Đà Nẵng", "Remote");
+    private static final List<String> COMPANIES = List.of("FPT Software", "VNG", "Tiki", "MoMo");
+    private static final List<String> QUERIES = List.of(
+            "tìm việc java backend ở hà nội lương từ 20 triệu",
+            "react frontend tại đà nẵng",
+            "việc làm ở vng cho docker kotlin",
+            "python data remote 30 triệu",
+            "công việc phù hợp với tôi");
+
+    @Test
+    void rank_shouldMatchRankJobsAndHardConstraints() {
+        Random random = new Random(42);
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 1; i <= 300; i++) {
+            jobs.add(randomJob(i, random));
+        }
+        JobFeatureIndex index = new JobFeatureIndex();
+        index.replaceAll(jobs);
+        Set<String> knownSkills = new LinkedHashSet<>(SKILLS);
+
+        for (String query : QUERIES) {
+            ChatIntent intent = AiFeatureUtils.parseChatIntent(query, LOCATIONS, knownSkills);
+            Set<String> userSkills = Set.of("Docker", "Java", "Go");
+
+            List<Job> candidates = new ArrayList<>(jobs.subList(0, 40));
+            Collections.shuffle(candidates, random);
+            assertSameRanking(intent, candidates, userSkills,
+                    index.rank(intent, candidates.stream().map(Job::getId).toList(), userSkills, 5));
+
+            // không có ứng viên từ vector search -> chấm toàn bộ job
+            assertSameRanking(intent, jobs, userSkills, index.rank(intent, List.of(), userSkills, 5));
+        }
+    }
+
+    @Test
+    void apply_shouldUpdateMoveAndRemoveJobs() {
+        Job java = job(1, "Java Developer", "Hà Nội", 30_000_000, "Java");
+        Job react = job(2, "React Developer", "Đà Nẵng", 25_000_000, "React");
+        JobFeatureIndex index = new JobFeatureIndex();
+        index.replaceAll(List.of(java, react));
+        assertEquals(Set.of("Hà Nội", "Đà Nẵng"), index.knownLocations());
+
+        Job movedReact = job(2, "React Developer", "Hà Nội", 25_000_000, "React", "Node.js");
+        Job closedJava = job(1, "Java Developer", "Hà Nội", 30_000_000, "Java");
+        closedJava.setActive(false);
+        Job kotlin = job(3, "Kotlin Developer", "Remote", 40_000_000, "Kotlin");
+        index.apply(List.of(movedReact, closedJava, kotlin), List.of());
+
+        assertEquals(2, index.size());
+        assertEquals(Set.of("Hà Nội", "Remote"), index.knownLocations());
+        ChatIntent intent = AiFeatureUtils.parseChatIntent("node.js ở hà nội", List.of("Hà Nội", "Remote"),
+                Set.of("Node.js", "Kotlin"));
+        JobFeatureIndex.Ranking ranking = index.rank(intent, null, Set.of(), 5);
+        assertEquals(List.of(2L), ranking.exactMatches().stream().map(item -> item.job().getId()).toList());
+
+        index.apply(List.of(), List.of(2L, 3L));
+        assertTrue(index.isEmpty());
+        assertEquals(Set.of(), index.knownLocations());
+    }
+
+    @Test
+    void lexicalCandidateIds_shouldFollowUpdates() {
+        Job java = job(1, "Java Developer", "Hà Nội", 30_000_000, "Java", "Spring Boot");
+        Job react = job(2, "React Developer", "Đà Nẵng", 25_000_000, "React");
+        JobFeatureIndex index = new JobFeatureIndex();
+        index.replaceAll(List.of(java, react));
+
+        assertEquals(List.of(1L), index.lexicalCandidateIds("tìm việc spring boot", 5));
+        assertEquals(List.of(2L), index.lexicalCandidateIds("react ở đà nẵng", 5));
+
+        Job closedJava = job(1, "Java Developer", "Hà Nội", 30_000_000, "Java", "Spring Boot");
+        closedJava.setActive(false);
+        Job kotlin = job(3, "Kotlin Developer", "Remote", 40_000_000, "Kotlin", "Spring Boot");
+        index.apply(List.of(closedJava, kotlin), List.of(2L));
+
+        assertEquals(List.of(3L), index.lexicalCandidateIds("spring boot developer", 5));
+        assertEquals(List.of(), index.lexicalCandidateIds("react", 5));
+    }
+
+    private static void assertSameRanking(ChatIntent intent, List<Job> candidates, Set<String> userSkills,
+            JobFeatureIndex.Ranking ranking) {
+        List<RankedJob> expected = AiFeatureUtils.rankJobs(intent, candidates, userSkills);
+        List<RankedJob> expectedExact = expected.stream()
+                .filter(item -> AiFeatureUtils.matchesHardConstraints(intent, item.job()))
+                .limit(5)
+                .toList();
+        assertEquals(expected.stream().limit(5).toList(), ranking.top(), intent.originalQuery());
+        assertEquals(expectedExact, ranking.exactMatches(), intent.originalQuery());
+    }
+
+    private static Job randomJob(long id, Random random) {
+        List<String> skills = new ArrayList<>();
+        for (String skill : SKILLS) {
+            if (random.nextInt(4) == 0) {
+                skills.add(skill);
+            }
+        }
+        Job job = job(id, random.nextBoolean() ? "Backend Engineer" : "Frontend Developer",
+                LOCATIONS.get(random.nextInt(LOCATIONS.size())),
+                (10 + random.nextInt(6) * 5) * 1_000_000d,
+                skills.toArray(String[]::new));
+        job.setDescription(random.nextBoolean() ? "Phát triển hệ thống java, docker" : "Làm sản phẩm cho người dùng");
+        if (random.nextInt(5) > 0) {
+            Company company = new Company();
+            company.setName(COMPANIES.get(random.nextInt(COMPANIES.size())));
+            job.setCompany(company);
+        }
+        return job;
+    }
+
+    private static Job job(long id, String name, String location, double salary, String... skills) {
+        Job job = new Job();
+        job.setId(id);
+        job.setName(name);
+        job.setLocation(location);
+        job.setSalary(salary);
+        job.setActive(true);
+        List<Skill> skillEntities = new ArrayList<>();
+        for (String skillName : skills) {
+            Skill skill = new Skill();
+            skill.setName(skillName);
+            skillEntities.add(skill);
+        }
+        job.setSkills(skillEntities);
+        return job;
+    }
+}
@@ -0,0 +1,44 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import vn.hoangtung.jobfind.util.ai.ProgressCoalescer.ProgressUpdate;
+
+class ProgressCoalescerTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    @Test
+    void drain_shouldKeepOneLatestUpdatePerTask() {
+        ProgressCoalescer coalescer = new ProgressCoalescer();
+        coalescer.offer(2, "t2", 30, NOW);
+        coalescer.offer(1, "t1", 30, NOW);
+        coalescer.offer(1, "t1", 90, NOW.plusMillis(50));
+        // cập nhật đến trễ với progress thấp hơn không kéo lùi progress
+        coalescer.offer(1, "t1", 60, NOW.plusMillis(80));
+        assertEquals(2, coalescer.size());
+
+        assertEquals(List.of(
+                new ProgressUpdate(1, "t1", 90, NOW.plusMillis(80)),
+                new ProgressUpdate(2, "t2", 30, NOW)), coalescer.drain());
+        assertTrue(coalescer.drain().isEmpty());
+    }
+
+    @Test
+    void offer_shouldReplacePendingUpdateOfPreviousClaim() {
+        ProgressCoalescer coalescer = new ProgressCoalescer();
+        coalescer.offer(5, "old-claim", 90, NOW);
+        coalescer.offer(5, "new-claim", 30, NOW.plusMillis(10));
+        coalescer.offer(6, "t6", 30, NOW);
+        coalescer.discard(6);
+
+        assertEquals(List.of(new ProgressUpdate(5, "new-claim", 30, NOW.plusMillis(10))), coalescer.drain());
+        assertEquals(0, coalescer.size());
+    }
+}
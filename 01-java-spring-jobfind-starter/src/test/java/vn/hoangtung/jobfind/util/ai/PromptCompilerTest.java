@@ -0,0 +1,64 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import vn.hoangtung.jobfind.util.ai.PromptCompiler.CompiledPrompt;
+
+class PromptCompilerTest {
+
+    @Test
+    void tokenEstimator_shouldChargeVietnameseByUtf8Bytes() {
+        assertEquals(0, TokenEstimator.count(""));
+        assertEquals(3, TokenEstimator.count("Java Spring Boot"));
+        assertEquals(2, TokenEstimator.count("2026"));
+        // Cùng số ký tự nhưng tiếng Việt có dấu tốn nhiều token hơn không dấu.
+        assertTrue(TokenEstimator.count("người dùng những kỹ năng") > TokenEstimator.count("nguoi dung nhung ky nang"));
+    }
+
+    @Test
+    void tokenEstimator_truncateShouldCutAtWordBoundaryWithinBudget() {
+        String text = "Backend developer với 3 năm kinh nghiệm Spring Boot và PostgreSQL";
+
+        String truncated = TokenEstimator.truncate(text, 6);
+
+        assertTrue(TokenEstimator.count(truncated) <= 6);
+        assertTrue(text.startsWith(truncated));
+        assertTrue(truncated.endsWith("developer") || truncated.endsWith("với") || truncated.endsWith("3"));
+    }
+
+    @Test
+    void compile_shouldFillBudgetByPriorityAndKeepDeclarationOrder() {
+        String longCv = "kinh nghiệm làm việc với microservices ".repeat(400);
+
+        CompiledPrompt compiled = PromptCompiler.budget(600)
+                .fixed("Bạn là CV-Doctor. %s %s %s")
+                .section("CV_SIGNALS", "detectedSkills=Java, Spring Boot", 3, 100)
+                .section("CV_TEXT", longCv, 1, 2000)
+                .section("CV_STRUCTURED_DATA", "{\"skills\":[\"Java\"]}", 2, 300)
+                .compile();
+
+        assertTrue(compiled.estimatedTokens() <= 600);
+        assertEquals(List.of("CV_SIGNALS", "CV_TEXT", "CV_STRUCTURED_DATA"), List.copyOf(compiled.blocks().keySet()));
+        assertEquals(List.of("CV_TEXT"), compiled.truncatedSections());
+        assertTrue(compiled.block("CV_SIGNALS").contains("detectedSkills=Java, Spring Boot"));
+        assertTrue(compiled.block("CV_STRUCTURED_DATA").contains("\"skills\""));
+        assertTrue(compiled.block("CV_TEXT").startsWith("<CV_TEXT>\nkinh nghiệm"));
+        assertTrue(compiled.block("CV_TEXT").contains("[... nội dung đã được cắt bớt ...]"));
+    }
+
+    @Test
+    void compile_shouldRespectPerSectionCapAndSanitizeContent() {
+        CompiledPrompt compiled = PromptCompiler.budget(10_000)
+                .section("USER_QUERY", "tìm job ```java``` \u0007 lương cao ".repeat(100), 1, 40)
+                .compile();
+
+        String block = compiled.block("USER_QUERY");
+        assertTrue(compiled.sectionTokens().get("USER_QUERY") <= 40);
+        assertTrue(!block.contains("```") && !block.contains("\u0007"));
+    }
+}
@@ -0,0 +1,86 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.text.Normalizer;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class SearchTextNormalizerTest {
+
+    private static final List<String> CORPUS = List.of(
+            "Nguyễn Văn Đức — Kỹ sư phần mềm (Backend) tại Hà Nội, 5+ năm kinh nghiệm.",
+            "Thành thạo Java/Spring Boot, C#, C++, .NET; triển khai CI/CD trên AWS, giảm 40% chi phí.",
+            "Ứng tuyển vị trí Trưởng nhóm — lương 25 triệu, ưu tiên ĐẠI HỌC BÁCH KHOA TP.HCM",
+            "Senior Software Engineer @ ACME Corp. Built REST APIs serving 2M+ users/day; led a team of 6.",
+            "Skills:\tReact.js,  Node.js,\nPostgreSQL\r\nKubernetes (k8s) & Docker",
+            "Email: duc.nguyen@gmail.com | GitHub: github.com/ducnv | LinkedIn: linkedin.com/in/ducnv",
+            "Ｆｕｌｌ-width ＡＢＣ, İstanbul, Kelvin K, Ångström Å, ﬁ ligature, Σίσυφος, 한국어, 日本語",
+            "é ạ̀ ớ đĐ combining at end́");
+
+    private static final int[] INTERESTING_CODE_POINTS = {
+            ' ', '\t', '\n', ' ', ' ', '　', '.', '#', '+', '/', '%', '-', '_', '@',
+            'đ', 'Đ', 'ơ', 'ư', 'ă', 'â', 'ê', 'ô', 'ạ', 'ỹ', 'Ỵ', '́', '̀', '̣', '̃',
+            'İ', 'K', 'Å', 'Σ', 'ﬁ', '가', '힣', 'Ａ', 'ŉ',
+            0x1D165, 0x1D400, 0x1F600, 0x2F800, 0xD800, 0xDC00 };
+
+    @Test
+    void normalize_shouldMatchLegacyPipelineOnCorpus() {
+        for (String text : CORPUS) {
+            assertEquals(legacyNormalize(text), SearchTextNormalizer.normalize(text), text);
+        }
+        assertEquals("", SearchTextNormalizer.normalize(null));
+        assertEquals("", SearchTextNormalizer.normalize(" \t\n "));
+    }
+
+    @Test
+    void normalize_shouldMatchLegacyPipelineOnRandomMixedText() {
+        Random random = new Random(20260101);
+        for (int round = 0; round < 5000; round++) {
+            StringBuilder text = new StringBuilder();
+            int parts = 1 + random.nextInt(12);
+            for (int i = 0; i < parts; i++) {
+                switch (random.nextInt(4)) {
+                    case 0 -> {
+                        String source = CORPUS.get(random.nextInt(CORPUS.size()));
+                        int start = random.nextInt(source.length());
+                        text.append(source, start, Math.min(source.length(), start + 1 + random.nextInt(20)));
+                    }
+                    case 1 -> text.appendCodePoint(
+                            INTERESTING_CODE_POINTS[random.nextInt(INTERESTING_CODE_POINTS.length)]);
+                    case 2 -> text.append((char) random.nextInt(0x3000));
+                    default -> text.appendCodePoint(random.nextInt(Character.MAX_CODE_POINT + 1));
+                }
+            }
+            String value = text.toString();
+            assertEquals(legacyNormalize(value), SearchTextNormalizer.normalize(value), value);
+        }
+    }
+
+    @Test
+    void normalize_shouldMatchLegacyPipelineOnEveryBmpChar() {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            String value = "x" + (char) c + "y";
+            assertEquals(legacyNormalize(value), SearchTextNormalizer.normalize(value), Integer.toHexString(c));
+        }
+    }
+
+    /**
+     * Cài đặt cũ của AiFeatureUtils.normalizeForSearch, giữ lại làm chuẩn so sánh.
+     */
+    private static String legacyNormalize(String text) {
+        if (text == null || text.isBlank()) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT);
+        normalized = normalized.replace('đ', 'd');
+        normalized = normalized.replaceAll("[^a-z0-9+.#/% ]", " ");
+        normalized = normalized.replaceAll("\\s+", " ").trim();
+        return normalized;
+    }
+}
@@ -0,0 +1,72 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+class SkillTaxonomyTest {
+
+    @Test
+    void findMatches_shouldPreferLongestAliasAndKeepTokenBoundaries() {
+        SkillTaxonomy taxonomy = SkillTaxonomy.from(List.of("Java", "Spring Boot", "React", "C#", "Go"));
+
+        List<SkillTaxonomy.SkillMatch> matches = taxonomy.findMatches(
+                "Dự án dùng Spring Boot framework, React Native, C# và javascript; going to learn golang");
+
+        assertEquals(List.of("Spring Boot", "React Native", "JavaScript", "Spring", "Go", "React", "C#"),
+                matches.stream().map(SkillTaxonomy.SkillMatch::name).toList());
+        assertEquals(List.of("spring boot framework", "react native", "javascript", "spring", "golang", "react", "c#"),
+                matches.stream().map(SkillTaxonomy.SkillMatch::matchedAlias).toList());
+    }
+
+    @Test
+    void withExtraSkills_shouldReuseTaxonomyForKnownAliasesAndAddUnknownOnes() {
+        SkillTaxonomy taxonomy = SkillTaxonomy.from(List.of("Java", "Kubernetes"));
+
+        assertSame(taxonomy, taxonomy.withExtraSkills(List.of("K8s", "java")));
+
+        SkillTaxonomy extended = taxonomy.withExtraSkills(List.of("Quarkus"));
+        assertEquals(Set.of("Quarkus", "Java"), extended.extractSkillNames("Java + Quarkus"));
+        assertEquals(Set.of("Java"), taxonomy.extractSkillNames("Java + Quarkus"));
+    }
+
+    @Test
+    void aliasAutomaton_shouldAgreeWithBoundaryRegexOnRandomText() {
+        List<String> patterns = List.of("java", "javascript", "c#", "c++", "node js", "js", "react.js", "ci/cd",
+                "go", "spring boot", "boot");
+        AliasAutomaton automaton = AliasAutomaton.build(patterns);
+        List<String> vocabulary = new ArrayList<>(patterns);
+        vocabulary.addAll(List.of("x", "a", "#", "+", ".", "/", "%", "1", "reactjs"));
+        Random random = new Random(3);
+
+        for (int round = 0; round < 500; round++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 12; i++) {
+                text.append(vocabulary.get(random.nextInt(vocabulary.size())));
+                if (random.nextBoolean()) {
+                    text.append(' ');
+                }
+            }
+            String value = text.toString();
+
+            TreeSet<Integer> actual = new TreeSet<>();
+            automaton.scan(value, actual::add);
+            TreeSet<Integer> expected = new TreeSet<>();
+            for (int id = 0; id < patterns.size(); id++) {
+                String regex = "(?<![a-z0-9+#])" + Pattern.quote(patterns.get(id)) + "(?![a-z0-9+#])";
+                if (Pattern.compile(regex).matcher(value).find()) {
+                    expected.add(id);
+                }
+            }
+            assertEquals(expected, actual, value);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class TaskTypeBulkheadTest {
+
+    @Test
+    void parseLimits_shouldSkipMalformedEntries() {
+        Map<String, Integer> limits = TaskTypeBulkhead.parseLimits(" CV_ANALYZE:8, CHAT : 32 ,bad,X:abc,:4,Y:0");
+
+        assertEquals(Map.of("CV_ANALYZE", 8, "CHAT", 32), limits);
+        assertTrue(TaskTypeBulkhead.parseLimits("").isEmpty());
+        assertTrue(TaskTypeBulkhead.parseLimits(null).isEmpty());
+    }
+
+    @Test
+    void run_shouldNeverExceedLimitPerType() throws Exception {
+        TaskTypeBulkhead bulkhead = new TaskTypeBulkhead(Map.of("CV_ANALYZE", 2), 4, 100);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    bulkhead.run("CV_ANALYZE", () -> {
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        sleep(15);
+                        running.decrementAndGet();
+                    });
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(2, maxRunning.get());
+        assertEquals(0, bulkhead.inFlight("CV_ANALYZE"));
+        assertEquals(4, bulkhead.limit("CHAT"));
+    }
+
+    @Test
+    void tryAdmit_shouldRejectWhenPendingIsFull() {
+        TaskTypeBulkhead bulkhead = new TaskTypeBulkhead(Map.of(), 1, 2);
+
+        assertTrue(bulkhead.tryAdmit());
+        assertTrue(bulkhead.tryAdmit());
+        assertFalse(bulkhead.tryAdmit());
+
+        bulkhead.leave();
+        assertEquals(1, bulkhead.pending());
+        assertTrue(bulkhead.tryAdmit());
+    }
+
+    @Test
+    void tryCall_shouldGiveUpAfterMaxWait() throws Exception {
+        TaskTypeBulkhead bulkhead = new TaskTypeBulkhead(Map.of("CHAT_SYNC", 1), 4, 10);
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            try {
+                bulkhead.run("CHAT_SYNC", () -> {
+                    holding.countDown();
+                    await(release);
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        holder.start();
+        assertTrue(holding.await(1, TimeUnit.SECONDS));
+
+        TaskTypeBulkhead.Permit<String> rejected = bulkhead.tryCall("CHAT_SYNC", Duration.ofMillis(20), () -> "late");
+        assertFalse(rejected.acquired());
+        assertNull(rejected.value());
+
+        release.countDown();
+        holder.join();
+        TaskTypeBulkhead.Permit<String> accepted = bulkhead.tryCall("CHAT_SYNC", Duration.ofMillis(20), () -> "ok");
+        assertTrue(accepted.acquired());
+        assertEquals("ok", accepted.value());
+    }
+
+    @Test
+    void unlimited_shouldAlwaysAdmitAndRun() throws Exception {
+        TaskTypeBulkhead bulkhead = TaskTypeBulkhead.unlimited();
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(bulkhead.tryAdmit());
+        }
+        assertTrue(bulkhead.tryCall("CHAT", Duration.ZERO, () -> 1).acquired());
+        assertEquals(0, bulkhead.inFlight("CHAT"));
+    }
+
+    @Test
+    void capacity_shouldSumTypeLimitsUpToMaxPending() {
+        TaskTypeBulkhead bulkhead = new TaskTypeBulkhead(Map.of("CV_ANALYZE", 4, "CHAT", 32), 16, 500);
+
+        assertEquals(52, bulkhead.capacity(List.of("CV_ANALYZE", "CHAT", "INTERVIEW_ANSWER")));
+        assertEquals(40, new TaskTypeBulkhead(Map.of("CHAT", 32), 16, 40).capacity(List.of("CHAT", "CV_MATCH")));
+        assertEquals(Integer.MAX_VALUE, TaskTypeBulkhead.unlimited().capacity(List.of("CHAT", "CV_MATCH")));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package vn.hoangtung.jobfind.util.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+class UpstreamErrorsTest {
+
+    @Test
+    void shouldReadRetryAfterHeaderFromHttpError() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Retry-After", "12");
+        HttpClientErrorException tooManyRequests = HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS,
+                "Too Many Requests", headers, new byte[0], StandardCharsets.UTF_8);
+        RuntimeException wrapped = new RuntimeException("wrapper", tooManyRequests);
+
+        assertTrue(UpstreamErrors.isOverloaded(wrapped));
+        assertEquals(Duration.ofSeconds(12), UpstreamErrors.retryAfter(wrapped));
+    }
+
+    @Test
+    void shouldParseGroqRateLimitMessage() {
+        RuntimeException error = new RuntimeException(
+                "[429] Rate limit reached for model llama-3.3-70b-versatile. Please try again in 1m7.5s.");
+
+        assertTrue(UpstreamErrors.isOverloaded(error));
+        assertEquals(Duration.ofMillis(67_500), UpstreamErrors.retryAfter(error));
+    }
+
+    @Test
+    void shouldTreatPlainErrorsAsNotOverloaded() {
+        RuntimeException error = new RuntimeException("invalid prompt");
+
+        assertFalse(UpstreamErrors.isOverloaded(error));
+        assertNull(UpstreamErrors.retryAfter(error));
+    }
+
+    @Test
+    void isUnavailable_shouldIgnoreClientErrorsButCountServerAndConnectionErrors() {
+        HttpClientErrorException badRequest = HttpClientErrorException.create(HttpStatus.BAD_REQUEST,
+                "Bad Request", new HttpHeaders(), new byte[0], StandardCharsets.UTF_8);
+        HttpServerErrorException serverError = HttpServerErrorException.create(HttpStatus.INTERNAL_SERVER_ERROR,
+                "Internal Server Error", new HttpHeaders(), new byte[0], StandardCharsets.UTF_8);
+        ResourceAccessException connectionRefused = new ResourceAccessException("I/O error",
+                new ConnectException("Connection refused"));
+
+        assertFalse(UpstreamErrors.isUnavailable(new RuntimeException("wrapper", badRequest)));
+        assertFalse(UpstreamErrors.isUnavailable(new RuntimeException("invalid prompt")));
+        assertTrue(UpstreamErrors.isUnavailable(new RuntimeException("wrapper", serverError)));
+        assertTrue(UpstreamErrors.isUnavailable(new RuntimeException("[503] Service Unavailable")));
+        assertTrue(UpstreamErrors.isUnavailable(connectionRefused));
+    }
+
+    @Test
+    void backoff_shouldStayWithinCapAndRespectRetryAfter() {
+        for (int attempt = 1; attempt <= 10; attempt++) {
+            Duration delay = UpstreamErrors.backoff(attempt, Duration.ofMillis(100), Duration.ofSeconds(2), null);
+            assertTrue(delay.toMillis() <= 2_000);
+        }
+        Duration delay = UpstreamErrors.backoff(1, Duration.ofMillis(100), Duration.ofSeconds(2),
+                Duration.ofSeconds(5));
+        assertEquals(Duration.ofSeconds(5), delay);
+    }
+}
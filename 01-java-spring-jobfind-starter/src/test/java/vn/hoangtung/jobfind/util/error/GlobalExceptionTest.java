@@ -0,0 +1,46 @@
+package vn.hoangtung.jobfind.util.error;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+import vn.hoangtung.jobfind.domain.response.RestResponse;
+
+class GlobalExceptionTest {
+
+    private final GlobalException handler = new GlobalException();
+
+    @Test
+    void maxUploadSize_shouldReturn400WithUploadLimitMessage() {
+        ResponseEntity<RestResponse<Object>> response = handler.handleMaxUploadSizeException(
+                new MaxUploadSizeExceededException(10L * 1024 * 1024));
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals("File is too large. Maximum size is 10MB.", response.getBody().getMessage());
+    }
+
+    @Test
+    void aiUnavailable_shouldReturn503WithRetryAfterSeconds() {
+        ResponseEntity<RestResponse<Object>> response = handler.handleAiUnavailableException(
+                new AiUnavailableException("AI đang tạm ngưng", Duration.ofMillis(2_300)));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("3", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(503, response.getBody().getStatusCode());
+        assertEquals("AI đang tạm ngưng", response.getBody().getMessage());
+    }
+
+    @Test
+    void aiUnavailable_withoutRetryAfter_shouldUseDefault() {
+        ResponseEntity<RestResponse<Object>> response = handler.handleAiUnavailableException(
+                new AiUnavailableException("AI đang quá tải"));
+
+        assertEquals("5", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+}